@@ -0,0 +1,137 @@
+package de.fabianparzefall.jraytracer.animation;
+
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.FrameScene;
+import de.fabianparzefall.jraytracer.scene.Looker;
+import de.fabianparzefall.jraytracer.scene.Scene;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The keyframes of an animation of a scene: the looker, the light and the translations of primitives. Everything,
+ * that has no keyframes, stays like in the scene.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class Animation {
+    /**
+     * The positions of the camera.
+     */
+    private final Track cameraPositions = new Track(3);
+
+    /**
+     * The center points of the viewport.
+     */
+    private final Track viewportCenters = new Track(3);
+
+    /**
+     * The widths and heights of the viewport.
+     */
+    private final Track viewportSizes = new Track(2);
+
+    /**
+     * The positions of the light.
+     */
+    private final Track lights = new Track(3);
+
+    /**
+     * The translations of the primitives by their ids.
+     */
+    private final Map<Integer, Track> translations = new TreeMap<>();
+
+    /**
+     * Adds a keyframe of the looker.
+     *
+     * @param time           The time of the keyframe in seconds.
+     * @param cameraPosition The position of the camera.
+     * @param viewportCenter The center point of the viewport.
+     * @param viewportWidth  The width of the viewport.
+     * @param viewportHeight The height of the viewport.
+     */
+    public void addLookerKeyframe(final double time, final Point cameraPosition, final Point viewportCenter,
+                                  final double viewportWidth, final double viewportHeight) {
+        assert cameraPosition != null;
+        assert viewportCenter != null;
+
+        cameraPositions.add(time, cameraPosition.getX(), cameraPosition.getY(), cameraPosition.getZ());
+        viewportCenters.add(time, viewportCenter.getX(), viewportCenter.getY(), viewportCenter.getZ());
+        viewportSizes.add(time, viewportWidth, viewportHeight);
+    }
+
+    /**
+     * Adds a keyframe of the light.
+     *
+     * @param time  The time of the keyframe in seconds.
+     * @param light The position of the light.
+     */
+    public void addLightKeyframe(final double time, final Point light) {
+        assert light != null;
+
+        lights.add(time, light.getX(), light.getY(), light.getZ());
+    }
+
+    /**
+     * Adds a keyframe of the translation of a primitive.
+     *
+     * @param id          The id of the primitive in the scene.
+     * @param time        The time of the keyframe in seconds.
+     * @param translation The translation from the position of the primitive in the scene.
+     */
+    public void addTranslationKeyframe(final int id, final double time, final Vector translation) {
+        assert translation != null;
+
+        translations.computeIfAbsent(id, key -> new Track(3))
+                .add(time, translation.getX(), translation.getY(), translation.getZ());
+    }
+
+    /**
+     * Creates the frame of a scene at a time.
+     *
+     * @param scene The scene, which must contain the animated primitives.
+     * @param time  The time in seconds.
+     * @return The frame, that shares the primitives and materials of the scene.
+     */
+    public FrameScene createFrame(final Scene scene, final double time) {
+        assert scene != null;
+
+        final Looker looker;
+        if (cameraPositions.isEmpty()) {
+            looker = scene.getLooker();
+        } else {
+            final double[] viewportSize = viewportSizes.getValues(time);
+            looker = new Looker(toPoint(cameraPositions.getValues(time)), toPoint(viewportCenters.getValues(time)),
+                    viewportSize[0], viewportSize[1]);
+        }
+
+        final Optional<Point> light = lights.isEmpty() ? scene.getLight() : Optional.of(toPoint(lights.getValues(time)));
+
+        final Map<Integer, Vector> frameTranslations = new HashMap<>();
+        for (final Map.Entry<Integer, Track> translation : translations.entrySet()) {
+            final double[] values = translation.getValue().getValues(time);
+            frameTranslations.put(translation.getKey(), new Vector(values[0], values[1], values[2]));
+        }
+
+        return new FrameScene(scene, looker, light, frameTranslations);
+    }
+
+    /**
+     * Converts the values of a track to a point.
+     *
+     * @param values The three coordinates.
+     * @return The point.
+     */
+    private static Point toPoint(final double[] values) {
+        return new Point(values[0], values[1], values[2]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Animation{cameraPositions=%s, viewportCenters=%s, viewportSizes=%s, lights=%s, translations=%s}",
+                cameraPositions, viewportCenters, viewportSizes, lights, translations);
+    }
+}
@@ -0,0 +1,194 @@
+package de.fabianparzefall.jraytracer.animation;
+
+import de.fabianparzefall.jraytracer.image.Image;
+import de.fabianparzefall.jraytracer.raster.ParallelRaster;
+import de.fabianparzefall.jraytracer.raster.Raster;
+import de.fabianparzefall.jraytracer.scene.Scene;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Renders the frames of an animation and saves them as images.
+ * <p>
+ * Several frames are rendered at the same time. All of them share the scene and the pool of their parallel rasters,
+ * so the tiles of all frames in flight keep the workers busy, even if a single frame has fewer tiles than workers.
+ * The frames are saved by a separate thread in their order, while the next frames are rendered.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class AnimationRenderer {
+    /**
+     * The default count of frames, that are rendered at the same time.
+     */
+    public static final int DEFAULT_FRAMES_IN_FLIGHT = 4;
+
+    /**
+     * The width of the frames.
+     */
+    private final int width;
+
+    /**
+     * The height of the frames.
+     */
+    private final int height;
+
+    /**
+     * The number of threads of the pool, that renders the tiles of all frames.
+     */
+    private final int threadCount;
+
+    /**
+     * The count of frames, that are rendered at the same time.
+     */
+    private final int framesInFlight;
+
+    /**
+     * The count of frames per second.
+     */
+    private final double frameRate;
+
+    /**
+     * Constructs an AnimationRenderer.
+     *
+     * @param width          The width of the frames, must be at least 1.
+     * @param height         The height of the frames, must be at least 1.
+     * @param threadCount    The number of threads to use, must be positive or 0. If it's 0, than the count of
+     *                       available processors is used.
+     * @param framesInFlight The count of frames, that are rendered at the same time, must be at least 1.
+     * @param frameRate      The count of frames per second, must be positive.
+     */
+    public AnimationRenderer(final int width, final int height, final int threadCount, final int framesInFlight,
+                             final double frameRate) {
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+        if (threadCount < 0)
+            throw new IllegalArgumentException("threadCount must be at least 0.");
+        if (framesInFlight < 1)
+            throw new IllegalArgumentException("framesInFlight is less than 1.");
+        if (!(frameRate > 0))
+            throw new IllegalArgumentException("frameRate is not positive.");
+
+        this.width = width;
+        this.height = height;
+        this.threadCount = threadCount;
+        this.framesInFlight = framesInFlight;
+        this.frameRate = frameRate;
+    }
+
+    public int getFramesInFlight() {
+        return framesInFlight;
+    }
+
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Renders the frames of an animation. The first frame is at time 0.
+     *
+     * @param scene      The scene.
+     * @param animation  The keyframes of the animation.
+     * @param frameCount The count of frames.
+     * @param images     Creates the image of a frame from its index.
+     * @throws IOException If an image cannot be saved.
+     */
+    public void render(final Scene scene, final Animation animation, final int frameCount,
+                       final IntFunction<? extends Image> images) throws IOException {
+        assert scene != null;
+        assert animation != null;
+        assert images != null;
+        if (frameCount < 0)
+            throw new IllegalArgumentException("frameCount is negative.");
+
+        final AtomicInteger frameThreadIndex = new AtomicInteger();
+        final ExecutorService frameThreads = Executors.newFixedThreadPool(framesInFlight, runnable -> {
+            final Thread thread = new Thread(runnable, "frame-" + frameThreadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            final Deque<Future<Raster>> renderingFrames = new ArrayDeque<>();
+            final Deque<Future<Raster>> savingFrames = new ArrayDeque<>();
+            int savedFrameCount = 0;
+
+            for (int frame = 0; frame < frameCount || !renderingFrames.isEmpty(); ) {
+                if (frame < frameCount && renderingFrames.size() < framesInFlight) {
+                    final double time = frame / frameRate;
+                    renderingFrames.add(frameThreads.submit(() -> new ParallelRaster(width, height, threadCount)
+                            .render(new Raytracer(animation.createFrame(scene, time)))));
+                    frame++;
+                    continue;
+                }
+
+                // The frames are saved in their order, while the frames after them are rendered.
+                final Raster raster = await(renderingFrames.remove());
+                final int index = savedFrameCount++;
+                savingFrames.add(writer.submit(() -> {
+                    images.apply(index).save(raster);
+                    return raster;
+                }));
+                // The rendered frames wait in memory, until they are saved.
+                if (savingFrames.size() > framesInFlight) {
+                    await(savingFrames.remove());
+                }
+            }
+
+            while (!savingFrames.isEmpty()) {
+                await(savingFrames.remove());
+            }
+        } finally {
+            frameThreads.shutdownNow();
+            writer.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits until a frame is rendered or saved.
+     *
+     * @param pendingFrame The future of the frame.
+     * @return The raster of the frame.
+     * @throws IOException If the frame cannot be saved or the thread is interrupted.
+     */
+    private static Raster await(final Future<Raster> pendingFrame) throws IOException {
+        try {
+            return pendingFrame.get();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while rendering an animation.");
+        } catch (final ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AnimationRenderer{width=%d, height=%d, threadCount=%d, framesInFlight=%d, frameRate=%s}",
+                width, height, threadCount, framesInFlight, frameRate);
+    }
+}
@@ -0,0 +1,104 @@
+package de.fabianparzefall.jraytracer.animation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A track of keyframes, each with a fixed count of values. Between the keyframes, the values are interpolated
+ * linearly, before the first and after the last keyframe they are held.
+ * <p>
+ * A track must not be changed, while an animation with it is rendered.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class Track {
+    /**
+     * The count of values of a keyframe.
+     */
+    private final int dimension;
+
+    /**
+     * The values of the keyframes by their times.
+     */
+    private final TreeMap<Double, double[]> keyframes = new TreeMap<>();
+
+    /**
+     * Constructs an empty track.
+     *
+     * @param dimension The count of values of a keyframe, must be positive.
+     */
+    public Track(final int dimension) {
+        if (dimension < 1)
+            throw new IllegalArgumentException("dimension is less than 1.");
+
+        this.dimension = dimension;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Adds a keyframe. A keyframe at the same time is replaced.
+     *
+     * @param time   The time of the keyframe in seconds.
+     * @param values The values of the keyframe.
+     */
+    public void add(final double time, final double... values) {
+        assert values != null;
+        if (values.length != dimension)
+            throw new IllegalArgumentException("values don't have the dimension of the track.");
+        if (Double.isNaN(time) || Double.isInfinite(time))
+            throw new IllegalArgumentException("time is not finite.");
+
+        keyframes.put(time, values.clone());
+    }
+
+    /**
+     * Tests if the track has no keyframes.
+     *
+     * @return True, if there are no keyframes.
+     */
+    public boolean isEmpty() {
+        return keyframes.isEmpty();
+    }
+
+    /**
+     * Gets the values at a time.
+     *
+     * @param time The time in seconds.
+     * @return The interpolated values.
+     */
+    public double[] getValues(final double time) {
+        if (keyframes.isEmpty())
+            throw new IllegalStateException("track has no keyframes.");
+
+        final Map.Entry<Double, double[]> previous = keyframes.floorEntry(time);
+        final Map.Entry<Double, double[]> next = keyframes.ceilingEntry(time);
+        if (previous == null)
+            return next.getValue().clone();
+        if (next == null || previous.getKey().equals(next.getKey()))
+            return previous.getValue().clone();
+
+        final double weight = (time - previous.getKey()) / (next.getKey() - previous.getKey());
+        final double[] values = new double[dimension];
+        for (int index = 0; index < dimension; index++) {
+            values[index] = previous.getValue()[index] * (1 - weight) + next.getValue()[index] * weight;
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final Map.Entry<Double, double[]> keyframe : keyframes.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(keyframe.getKey()).append('=').append(Arrays.toString(keyframe.getValue()));
+        }
+        return String.format("Track{dimension=%d, keyframes={%s}}", dimension, builder);
+    }
+}
@@ -0,0 +1,222 @@
+package de.fabianparzefall.jraytracer.benchmark;
+
+import de.fabianparzefall.jraytracer.raster.ParallelRaster;
+import de.fabianparzefall.jraytracer.raster.TileOrder;
+import de.fabianparzefall.jraytracer.scene.Scene;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the throughput of a {@link ParallelRaster} with the different tile orders.
+ * <p>
+ * Usage: {@code TileOrderBenchmark [--cache-misses] <scene file or ""> <width> <height> <threads> <tile size>
+ * <repetitions> [orders]}
+ * <p>
+ * The orders are the names of {@link TileOrder} and {@code ADAPTIVE} for the adaptive splitting, all by default.
+ * <p>
+ * The JVM can't read the hardware counters, so with {@code --cache-misses} every order is measured in its own process
+ * under {@code perf stat}. Every order runs twice, once without measured renders, so the misses of starting the JVM,
+ * loading the scene and warming up are subtracted and only the misses of the measured renders are reported.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class TileOrderBenchmark {
+    /**
+     * The name for the adaptive splitting without an order.
+     */
+    private static final String ADAPTIVE = "ADAPTIVE";
+
+    /**
+     * The count of renders before the measured ones, so the JIT compiler is done.
+     */
+    private static final int WARM_UP_RENDERS = 2;
+
+    /**
+     * The count of nanoseconds per millisecond.
+     */
+    private static final double NANOSECONDS_PER_MILLISECOND = 1E6;
+
+    /**
+     * The option, that counts the cache misses of every order.
+     */
+    private static final String CACHE_MISSES_OPTION = "--cache-misses";
+
+    /**
+     * The hardware events, that are counted with {@code perf stat}.
+     */
+    private static final String[] CACHE_EVENTS = {"cache-references", "cache-misses"};
+
+    /**
+     * The count of arguments before the orders.
+     */
+    private static final int ORDER_ARGUMENT = 6;
+
+    /**
+     * This class is not instantiated.
+     */
+    private TileOrderBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The arguments as described in the class comment.
+     * @throws ClassNotFoundException If the scene class cannot be found.
+     * @throws IOException            If the scene file cannot be read or perf can't count the cache misses.
+     * @throws InterruptedException   If the thread is interrupted while waiting for perf.
+     */
+    public static void main(final String[] args) throws ClassNotFoundException, IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals(CACHE_MISSES_OPTION)) {
+            countCacheMisses(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length < ORDER_ARGUMENT)
+            throw new IllegalArgumentException("usage: [--cache-misses] <scene file or \"\"> <width> <height> <threads> <tile size> <repetitions> [orders]");
+
+        final Scene scene = args[0].isEmpty() ? Scene.make("") : Scene.make("LoadedScene", args[0]);
+        final int width = Integer.parseInt(args[1]);
+        final int height = Integer.parseInt(args[2]);
+        final int threadCount = Integer.parseInt(args[3]);
+        final int tileSize = Integer.parseInt(args[4]);
+        final int repetitions = Integer.parseInt(args[5]);
+        final List<String> orders = getOrders(args);
+
+        for (final String order : orders) {
+            final ParallelRaster raster = order.equals(ADAPTIVE)
+                    ? new ParallelRaster(width, height, threadCount, tileSize)
+                    : new ParallelRaster(width, height, threadCount, tileSize, TileOrder.valueOf(order));
+            final Raytracer raytracer = new Raytracer(scene);
+
+            for (int render = 0; render < WARM_UP_RENDERS; render++) {
+                raster.render(raytracer);
+            }
+
+            long bestTime = Long.MAX_VALUE;
+            long totalTime = 0;
+            for (int render = 0; render < repetitions; render++) {
+                final long start = System.nanoTime();
+                raster.render(raytracer);
+                final long time = System.nanoTime() - start;
+
+                bestTime = Math.min(bestTime, time);
+                totalTime += time;
+            }
+            if (repetitions == 0) {
+                continue;
+            }
+
+            final double meanMilliseconds = totalTime / NANOSECONDS_PER_MILLISECOND / repetitions;
+            final double bestMilliseconds = bestTime / NANOSECONDS_PER_MILLISECOND;
+            System.out.println(String.format("%-10s best=%9.2fms mean=%9.2fms throughput=%7.3fMpx/s",
+                    order, bestMilliseconds, meanMilliseconds, (double) width * height / bestMilliseconds / 1E3));
+        }
+    }
+
+    /**
+     * Gets the orders of the arguments.
+     *
+     * @param args The arguments as described in the class comment without the option.
+     * @return The orders to measure.
+     */
+    private static List<String> getOrders(final String[] args) {
+        final List<String> orders = new ArrayList<>();
+        if (args.length > ORDER_ARGUMENT) {
+            orders.addAll(Arrays.asList(args).subList(ORDER_ARGUMENT, args.length));
+        } else {
+            orders.add(ADAPTIVE);
+            for (final TileOrder tileOrder : TileOrder.values()) {
+                orders.add(tileOrder.name());
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Measures every order in its own process under {@code perf stat} and reports the cache misses of its measured
+     * renders.
+     *
+     * @param args The arguments as described in the class comment without the option.
+     * @throws IOException          If perf can't be started or can't count the events.
+     * @throws InterruptedException If the thread is interrupted while waiting for a process.
+     */
+    private static void countCacheMisses(final String[] args) throws IOException, InterruptedException {
+        if (args.length < ORDER_ARGUMENT)
+            throw new IllegalArgumentException("usage: [--cache-misses] <scene file or \"\"> <width> <height> <threads> <tile size> <repetitions> [orders]");
+
+        final long pixelCount = (long) Integer.parseInt(args[1]) * Integer.parseInt(args[2]);
+        final int repetitions = Integer.parseInt(args[5]);
+        if (repetitions < 1)
+            throw new IllegalArgumentException("repetitions must be at least 1.");
+
+        for (final String order : getOrders(args)) {
+            final long[] measured = runUnderPerf(args, repetitions, order);
+            final long[] baseline = runUnderPerf(args, 0, order);
+
+            final double references = (double) (measured[0] - baseline[0]) / repetitions;
+            final double misses = (double) (measured[1] - baseline[1]) / repetitions;
+            System.out.println(String.format("%-10s cache-references/px=%8.2f cache-misses/px=%8.2f miss-rate=%6.3f",
+                    order, references / pixelCount, misses / pixelCount, references == 0 ? 0 : misses / references));
+        }
+    }
+
+    /**
+     * Runs the benchmark of one order in a new JVM under {@code perf stat}. The throughput of the measured renders is
+     * printed by the new JVM.
+     *
+     * @param args        The arguments as described in the class comment without the option.
+     * @param repetitions The count of measured renders.
+     * @param order       The order.
+     * @return The counts of {@link #CACHE_EVENTS} of the whole process.
+     * @throws IOException          If perf can't be started or can't count the events.
+     * @throws InterruptedException If the thread is interrupted while waiting for the process.
+     */
+    private static long[] runUnderPerf(final String[] args, final int repetitions, final String order)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>(Arrays.asList("perf", "stat", "-x", ",",
+                "-e", String.join(",", CACHE_EVENTS), "--",
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), TileOrderBenchmark.class.getName()));
+        command.addAll(Arrays.asList(args).subList(0, ORDER_ARGUMENT - 1));
+        command.add(Integer.toString(repetitions));
+        command.add(order);
+
+        final Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+        final long[] counts = new long[CACHE_EVENTS.length];
+        final boolean[] counted = new boolean[CACHE_EVENTS.length];
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // perf writes one line per event: count, unit, event and more.
+                final String[] fields = line.split(",");
+                final int event = fields.length > 2 ? Arrays.asList(CACHE_EVENTS).indexOf(fields[2]) : -1;
+                if (event < 0) {
+                    continue;
+                }
+                try {
+                    counts[event] = Long.parseLong(fields[0]);
+                    counted[event] = true;
+                } catch (final NumberFormatException e) {
+                    throw new IOException(String.format("perf can't count %s.", fields[2]), e);
+                }
+            }
+        }
+
+        if (process.waitFor() != 0)
+            throw new IOException(String.format("benchmark of %s failed under perf.", order));
+        for (int event = 0; event < CACHE_EVENTS.length; event++) {
+            if (!counted[event])
+                throw new IOException(String.format("perf didn't report %s.", CACHE_EVENTS[event]));
+        }
+        return counts;
+    }
+}
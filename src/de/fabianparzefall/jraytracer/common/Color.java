@@ -0,0 +1,245 @@
+package de.fabianparzefall.jraytracer.common;
+
+/**
+ * An RGB colour with channels between 0 and 1.
+ * <p>
+ * Rasters store colours packed into one int with 8 bits per channel, so a colour needs as much memory as a brightness
+ * value. The raytracer shades into arrays of channels, which hold the red, green and blue channel of a colour one
+ * after another, and creates a colour only for the result of a ray.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class Color {
+    /**
+     * Black, which is also the colour of rays without an intersection.
+     */
+    public static final Color BLACK = new Color(0, 0, 0);
+
+    /**
+     * White.
+     */
+    public static final Color WHITE = new Color(1, 1, 1);
+
+    /**
+     * The count of channels of a colour in an array of channels.
+     */
+    public static final int CHANNELS = 3;
+
+    /**
+     * The maximum value of a packed channel.
+     */
+    private static final int MAX_CHANNEL = 255;
+
+    /**
+     * The count of bits of a packed channel.
+     */
+    private static final int CHANNEL_BITS = 8;
+
+    /**
+     * The red channel.
+     */
+    private final double red;
+
+    /**
+     * The green channel.
+     */
+    private final double green;
+
+    /**
+     * The blue channel.
+     */
+    private final double blue;
+
+    /**
+     * Constructs a colour from its channels.
+     *
+     * @param red   The red channel, must be positive or 0.
+     * @param green The green channel, must be positive or 0.
+     * @param blue  The blue channel, must be positive or 0.
+     */
+    public Color(final double red, final double green, final double blue) {
+        // Light mustn't be negative.
+        assert red >= 0 && green >= 0 && blue >= 0;
+
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+    }
+
+    /**
+     * Constructs a gray colour.
+     *
+     * @param brightness The brightness of all channels.
+     * @return A gray colour.
+     */
+    public static Color gray(final double brightness) {
+        return new Color(brightness, brightness, brightness);
+    }
+
+    /**
+     * Creates a colour from an array of channels.
+     *
+     * @param channels The channels.
+     * @param offset   The index of the red channel of the colour.
+     * @return The colour.
+     */
+    public static Color fromChannels(final double[] channels, final int offset) {
+        return new Color(channels[offset], channels[offset + 1], channels[offset + 2]);
+    }
+
+    /**
+     * Unpacks a colour from an int with 8 bits per channel.
+     *
+     * @param rgb The packed colour.
+     * @return The colour.
+     */
+    public static Color fromRGB(final int rgb) {
+        return new Color(getRed(rgb) / (double) MAX_CHANNEL, getGreen(rgb) / (double) MAX_CHANNEL, getBlue(rgb) / (double) MAX_CHANNEL);
+    }
+
+    /**
+     * Packs three channels between 0 and 255 into an int.
+     *
+     * @param red   The red channel.
+     * @param green The green channel.
+     * @param blue  The blue channel.
+     * @return The packed colour.
+     */
+    public static int pack(final int red, final int green, final int blue) {
+        assert 0 <= red && red <= MAX_CHANNEL;
+        assert 0 <= green && green <= MAX_CHANNEL;
+        assert 0 <= blue && blue <= MAX_CHANNEL;
+
+        return (red << CHANNEL_BITS | green) << CHANNEL_BITS | blue;
+    }
+
+    /**
+     * Gets the red channel of a packed colour.
+     *
+     * @param rgb The packed colour.
+     * @return A value between 0 and 255.
+     */
+    public static int getRed(final int rgb) {
+        return rgb >> 2 * CHANNEL_BITS & MAX_CHANNEL;
+    }
+
+    /**
+     * Gets the green channel of a packed colour.
+     *
+     * @param rgb The packed colour.
+     * @return A value between 0 and 255.
+     */
+    public static int getGreen(final int rgb) {
+        return rgb >> CHANNEL_BITS & MAX_CHANNEL;
+    }
+
+    /**
+     * Gets the blue channel of a packed colour.
+     *
+     * @param rgb The packed colour.
+     * @return A value between 0 and 255.
+     */
+    public static int getBlue(final int rgb) {
+        return rgb & MAX_CHANNEL;
+    }
+
+    /**
+     * Calculates the brightness of a packed colour. Gray colours keep their brightness exactly.
+     *
+     * @param rgb The packed colour.
+     * @return A brightness between 0 and 255.
+     */
+    public static int getBrightness(final int rgb) {
+        // The weights of the channels sum up to 256.
+        return (77 * getRed(rgb) + 150 * getGreen(rgb) + 29 * getBlue(rgb) + 128) >> CHANNEL_BITS;
+    }
+
+    public double getRed() {
+        return red;
+    }
+
+    public double getGreen() {
+        return green;
+    }
+
+    public double getBlue() {
+        return blue;
+    }
+
+    /**
+     * Adds another colour.
+     *
+     * @param other The colour to add.
+     * @return The sum of the colours.
+     */
+    public Color add(final Color other) {
+        assert other != null;
+
+        return new Color(red + other.red, green + other.green, blue + other.blue);
+    }
+
+    /**
+     * Multiplies the colour with a scalar.
+     *
+     * @param scalar The scalar, must be positive or 0.
+     * @return A new colour.
+     */
+    public Color scalarProduct(final double scalar) {
+        return new Color(red * scalar, green * scalar, blue * scalar);
+    }
+
+    /**
+     * Limits every channel to 1.
+     *
+     * @return A colour with all channels between 0 and 1.
+     */
+    public Color clamp() {
+        if (red <= 1 && green <= 1 && blue <= 1) {
+            return this;
+        }
+        return new Color(Math.min(red, 1), Math.min(green, 1), Math.min(blue, 1));
+    }
+
+    /**
+     * Packs the colour into an int with 8 bits per channel. Channels above 1 are limited to 1.
+     *
+     * @return The packed colour.
+     */
+    public int toRGB() {
+        return pack(toChannel(red), toChannel(green), toChannel(blue));
+    }
+
+    /**
+     * Converts a channel to a value between 0 and 255.
+     *
+     * @param channel The channel.
+     * @return The packed channel.
+     */
+    private static int toChannel(final double channel) {
+        return (int) (Math.min(channel, 1) * MAX_CHANNEL);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Color{red=%s, green=%s, blue=%s}", red, green, blue);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        assert obj != null;
+        if (this == obj) return true;
+        if (getClass() != obj.getClass()) return false;
+
+        final Color that = (Color) obj;
+
+        return Doubles.equals(that.red, red)
+                && Doubles.equals(that.green, green)
+                && Doubles.equals(that.blue, blue);
+    }
+
+    @Override
+    public int hashCode() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,96 @@
+package de.fabianparzefall.jraytracer.common;
+
+/**
+ * Calculates Morton codes, which interleave the bits of coordinates. Points with close Morton codes are close in space.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class Morton {
+    /**
+     * The count of bits per coordinate of a 3 dimensional code.
+     */
+    public static final int BITS_3D = 10;
+
+    /**
+     * The count of bits per coordinate of a 2 dimensional code.
+     */
+    public static final int BITS_2D = 15;
+
+    /**
+     * Interleaves the lower {@link #BITS_3D} bits of three coordinates.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return A code with 30 bits.
+     */
+    public static int encode(final int x, final int y, final int z) {
+        assert 0 <= x && x < 1 << BITS_3D;
+        assert 0 <= y && y < 1 << BITS_3D;
+        assert 0 <= z && z < 1 << BITS_3D;
+
+        return spreadBits(x) << 2 | spreadBits(y) << 1 | spreadBits(z);
+    }
+
+    /**
+     * Interleaves the lower {@link #BITS_2D} bits of two coordinates.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return A code with 30 bits.
+     */
+    public static int encode(final int x, final int y) {
+        assert 0 <= x && x < 1 << BITS_2D;
+        assert 0 <= y && y < 1 << BITS_2D;
+
+        return spreadBitsOnce(y) << 1 | spreadBitsOnce(x);
+    }
+
+    /**
+     * Quantizes a value within a range to a coordinate for a 3 dimensional code.
+     *
+     * @param value   The value.
+     * @param minimum The lower bound of the range.
+     * @param maximum The upper bound of the range.
+     * @return A coordinate between 0 and 2 to the power of {@link #BITS_3D} exclusive.
+     */
+    public static int quantize(final double value, final double minimum, final double maximum) {
+        final int maximumCoordinate = (1 << BITS_3D) - 1;
+        if (maximum <= minimum) {
+            return 0;
+        }
+        final int coordinate = (int) ((value - minimum) / (maximum - minimum) * maximumCoordinate);
+        return Math.max(0, Math.min(maximumCoordinate, coordinate));
+    }
+
+    /**
+     * Inserts two zero bits between the lower 10 bits of a value.
+     *
+     * @param value The value.
+     * @return The spread value.
+     */
+    private static int spreadBits(final int value) {
+        int spread = value & 0x3FF;
+        spread = (spread | spread << 16) & 0x030000FF;
+        spread = (spread | spread << 8) & 0x0300F00F;
+        spread = (spread | spread << 4) & 0x030C30C3;
+        spread = (spread | spread << 2) & 0x09249249;
+        return spread;
+    }
+
+    /**
+     * Inserts one zero bit between the lower 15 bits of a value.
+     *
+     * @param value The value.
+     * @return The spread value.
+     */
+    private static int spreadBitsOnce(final int value) {
+        int spread = value & 0x7FFF;
+        spread = (spread | spread << 8) & 0x00FF00FF;
+        spread = (spread | spread << 4) & 0x0F0F0F0F;
+        spread = (spread | spread << 2) & 0x33333333;
+        spread = (spread | spread << 1) & 0x55555555;
+        return spread;
+    }
+}
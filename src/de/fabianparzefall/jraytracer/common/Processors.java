@@ -0,0 +1,107 @@
+package de.fabianparzefall.jraytracer.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalDouble;
+
+/**
+ * Counts the processors, which the process may really use.
+ * <p>
+ * In a container the JVM may see all processors of the host, while a CPU quota of the cgroup lets the process only
+ * run for a part of the time. Threads beyond the quota don't render faster, they only get throttled. The quota is
+ * read from cgroup v2 ({@code cpu.max}) and cgroup v1 ({@code cpu.cfs_quota_us} and {@code cpu.cfs_period_us}).
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class Processors {
+    /**
+     * The directory, where the cgroup hierarchies are mounted.
+     */
+    private static final Path CGROUP_ROOT = Paths.get("/sys/fs/cgroup");
+
+    /**
+     * The file with the cgroups of the process.
+     */
+    private static final Path CGROUP_MEMBERSHIPS = Paths.get("/proc/self/cgroup");
+
+    /**
+     * Gets the count of processors, that the process can use at once.
+     *
+     * @return The smaller one of the available processors and the quota rounded up, at least 1.
+     */
+    public static int getAvailableCount() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final OptionalDouble quota = getQuota();
+        // A quota of 1.5 processors still lets two threads run at the same time.
+        return quota.isPresent() ? Math.max(1, Math.min(processors, (int) Math.ceil(quota.getAsDouble()))) : processors;
+    }
+
+    /**
+     * Gets the CPU quota of the cgroup of the process.
+     *
+     * @return The quota in processors or an empty optional, if there are no cgroups or no quota.
+     */
+    public static OptionalDouble getQuota() {
+        if (!Files.isReadable(CGROUP_MEMBERSHIPS))
+            return OptionalDouble.empty();
+
+        try {
+            return readQuota(CGROUP_ROOT, Files.readAllLines(CGROUP_MEMBERSHIPS));
+        } catch (final IOException | NumberFormatException exception) {
+            // Without a readable quota, the process is treated as unlimited.
+            return OptionalDouble.empty();
+        }
+    }
+
+    /**
+     * Reads the CPU quota of the cgroups of a process.
+     *
+     * @param cgroupRoot  The directory, where the cgroup hierarchies are mounted.
+     * @param memberships The lines of {@code /proc/self/cgroup}, like {@code 0::/user.slice} or {@code 4:cpu,cpuacct:/}.
+     * @return The quota in processors or an empty optional, if there is no quota.
+     * @throws IOException If a quota file cannot be read.
+     */
+    static OptionalDouble readQuota(final Path cgroupRoot, final List<String> memberships) throws IOException {
+        assert cgroupRoot != null;
+        assert memberships != null;
+
+        for (final String membership : memberships) {
+            final String[] fields = membership.split(":", 3);
+            if (fields.length != 3)
+                continue;
+            final String cgroup = fields[2].startsWith("/") ? fields[2].substring(1) : fields[2];
+
+            if (fields[1].isEmpty()) {
+                // In a container the cgroup of the process is often mounted as the root.
+                for (final Path directory : Arrays.asList(cgroupRoot.resolve(cgroup), cgroupRoot)) {
+                    final Path maximumFile = directory.resolve("cpu.max");
+                    if (Files.isReadable(maximumFile)) {
+                        final String[] values = Files.readAllLines(maximumFile).get(0).trim().split(" ");
+                        if (!values[0].equals("max"))
+                            return OptionalDouble.of(Double.parseDouble(values[0]) / Double.parseDouble(values[1]));
+                        break;
+                    }
+                }
+            } else if (Arrays.asList(fields[1].split(",")).contains("cpu")) {
+                final Path mount = cgroupRoot.resolve(fields[1]);
+                for (final Path directory : Arrays.asList(mount.resolve(cgroup), mount)) {
+                    final Path quotaFile = directory.resolve("cpu.cfs_quota_us");
+                    final Path periodFile = directory.resolve("cpu.cfs_period_us");
+                    if (Files.isReadable(quotaFile) && Files.isReadable(periodFile)) {
+                        final double quota = Double.parseDouble(Files.readAllLines(quotaFile).get(0).trim());
+                        if (quota > 0)
+                            return OptionalDouble.of(quota / Double.parseDouble(Files.readAllLines(periodFile).get(0).trim()));
+                        break;
+                    }
+                }
+            }
+        }
+
+        return OptionalDouble.empty();
+    }
+}
@@ -0,0 +1,70 @@
+package de.fabianparzefall.jraytracer.distributed;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.raster.FrameBuffer;
+import de.fabianparzefall.jraytracer.raster.PixelFormat;
+import de.fabianparzefall.jraytracer.raster.PixelView;
+import de.fabianparzefall.jraytracer.raster.Tile;
+
+/**
+ * A frame, whose tiles were rendered by workers and gathered by a {@link RenderCoordinator}.
+ * <p>
+ * A frame is a read-only view of the gathered pixels, so it can be saved as an image.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+final class GatheredFrame implements PixelView {
+    /**
+     * The buffer, into which the tiles are copied.
+     */
+    private final FrameBuffer frameBuffer;
+
+    /**
+     * Constructs a black frame.
+     *
+     * @param width  The width of the frame, must be positive.
+     * @param height The height of the frame, must be positive.
+     */
+    GatheredFrame(final int width, final int height) {
+        frameBuffer = FrameBuffer.allocate(PixelFormat.PACKED_RGB, width, height);
+    }
+
+    /**
+     * Copies the pixels of a tile into the frame.
+     *
+     * @param tile   The tile, must be within the frame.
+     * @param pixels The packed colours of the tile row by row.
+     */
+    void setTile(final Tile tile, final int[] pixels) {
+        frameBuffer.setTile(tile, pixels);
+    }
+
+    @Override
+    public int getWidth() {
+        return frameBuffer.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return frameBuffer.getHeight();
+    }
+
+    @Override
+    public int getPixel(final int yCoordinate, final int xCoordinate) {
+        return Color.getBrightness(getColor(yCoordinate, xCoordinate));
+    }
+
+    @Override
+    public int getColor(final int yCoordinate, final int xCoordinate) {
+        if (!(0 <= xCoordinate && xCoordinate < getWidth() && 0 <= yCoordinate && yCoordinate < getHeight()))
+            throw new IllegalArgumentException("point is not within the resolution.");
+
+        return frameBuffer.getRGB(yCoordinate, xCoordinate);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GatheredFrame{width=%d, height=%d}", getWidth(), getHeight());
+    }
+}
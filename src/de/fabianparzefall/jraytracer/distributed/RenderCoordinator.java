@@ -0,0 +1,489 @@
+package de.fabianparzefall.jraytracer.distributed;
+
+import de.fabianparzefall.jraytracer.image.Image;
+import de.fabianparzefall.jraytracer.raster.PixelView;
+import de.fabianparzefall.jraytracer.raster.Tile;
+import de.fabianparzefall.jraytracer.raster.TileOrder;
+import de.fabianparzefall.jraytracer.scene.Scene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders a frame on {@link RenderWorker}s, that connect over TCP.
+ * <p>
+ * Usage: {@code RenderCoordinator <scene file> <width> <height> <port> <png file> [tile size]}
+ * <p>
+ * Every worker gets the instructions of the scene once, when it connects, and builds the scene itself. The tiles are
+ * handed out on demand, so fast workers render more tiles than slow ones. Every worker has a few tiles in flight, so
+ * it doesn't wait for the next tile after a result. A worker, whose connection breaks or which doesn't return a tile
+ * within the timeout, is dropped and its tiles are handed out to the others again. The timeout of a tile starts, when
+ * the worker is done with the tile before, and its socket is closed at the deadline, so a worker, that sends its
+ * result slowly, doesn't keep its tiles. Workers may connect at any time of the render, and a render waits for new
+ * workers, if all of them are lost.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class RenderCoordinator implements Closeable {
+    /**
+     * The default edge length of a tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    /**
+     * The default time in milliseconds, within which a worker must return a tile.
+     */
+    public static final int DEFAULT_TILE_TIMEOUT = 60_000;
+
+    /**
+     * The count of tiles, that a worker has at the same time.
+     */
+    private static final int TILES_IN_FLIGHT = 2;
+
+    /**
+     * The time in milliseconds, after which idle threads check, if the render is finished.
+     */
+    private static final int IDLE_MILLISECONDS = 100;
+
+    /**
+     * The socket, on which the workers connect.
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * The instructions of the scene.
+     */
+    private final List<String> instructions;
+
+    /**
+     * The fingerprint of the scene, which the workers must build.
+     */
+    private final String fingerprint;
+
+    /**
+     * The width of the frame.
+     */
+    private final int width;
+
+    /**
+     * The height of the frame.
+     */
+    private final int height;
+
+    /**
+     * The tiles by their index.
+     */
+    private final List<Tile> tiles;
+
+    /**
+     * The time in milliseconds, within which a worker must return a tile.
+     */
+    private final int tileTimeout;
+
+    /**
+     * The thread, that closes the sockets of workers at the deadline of their tile.
+     */
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "tile-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The count of workers, that built the scene.
+     */
+    private final AtomicInteger connectedWorkerCount = new AtomicInteger();
+
+    /**
+     * The count of workers, that were dropped before the end of their render.
+     */
+    private final AtomicInteger lostWorkerCount = new AtomicInteger();
+
+    /**
+     * The count of tiles, that were handed out again after their worker was lost.
+     */
+    private final AtomicInteger reassignedTileCount = new AtomicInteger();
+
+    /**
+     * Constructs a RenderCoordinator with the default tiles and timeout.
+     *
+     * @param port         The port, on which the workers connect. With 0, a free port is chosen.
+     * @param instructions The instructions of the scene.
+     * @param width        The width of the frame, must be positive.
+     * @param height       The height of the frame, must be positive.
+     * @throws IOException If the port cannot be opened.
+     */
+    public RenderCoordinator(final int port, final List<String> instructions, final int width, final int height)
+            throws IOException {
+        this(port, instructions, width, height, DEFAULT_TILE_SIZE, DEFAULT_TILE_TIMEOUT);
+    }
+
+    /**
+     * Constructs a RenderCoordinator.
+     *
+     * @param port         The port, on which the workers connect. With 0, a free port is chosen.
+     * @param instructions The instructions of the scene.
+     * @param width        The width of the frame, must be positive.
+     * @param height       The height of the frame, must be positive.
+     * @param tileSize     The edge length of a tile, must be at least 1.
+     * @param tileTimeout  The time in milliseconds, within which a worker must return a tile, must be positive.
+     * @throws IOException If the port cannot be opened.
+     */
+    public RenderCoordinator(final int port, final List<String> instructions, final int width, final int height,
+                             final int tileSize, final int tileTimeout) throws IOException {
+        assert instructions != null;
+
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("width and height must be positive.");
+        if (tileSize < 1)
+            throw new IllegalArgumentException("tileSize is less than 1.");
+        if (tileTimeout < 1)
+            throw new IllegalArgumentException("tileTimeout is less than 1.");
+
+        this.instructions = Collections.unmodifiableList(new ArrayList<>(instructions));
+        // The scene is built once here, so broken instructions fail before any worker connects.
+        fingerprint = createScene(this.instructions).getFingerprint();
+        this.width = width;
+        this.height = height;
+        tiles = TileOrder.HILBERT.arrange(width, height, tileSize);
+        this.tileTimeout = tileTimeout;
+
+        serverSocket = new ServerSocket(port);
+        serverSocket.setSoTimeout(IDLE_MILLISECONDS);
+    }
+
+    /**
+     * Renders a frame of a scene file on the workers and saves it as PNG image.
+     *
+     * @param args The arguments as described in the class comment.
+     * @throws ClassNotFoundException If the image class cannot be found.
+     * @throws IOException            If the scene cannot be read, the port cannot be opened or the image cannot be
+     *                                saved.
+     */
+    public static void main(final String[] args) throws ClassNotFoundException, IOException {
+        if (args.length < 5)
+            throw new IllegalArgumentException("usage: <scene file> <width> <height> <port> <png file> [tile size]");
+
+        final List<String> instructions = Files.readAllLines(Paths.get(args[0]));
+        final int tileSize = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_TILE_SIZE;
+        try (RenderCoordinator coordinator = new RenderCoordinator(Integer.parseInt(args[3]), instructions,
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]), tileSize, DEFAULT_TILE_TIMEOUT)) {
+            Image.make("PNGImage", args[4]).save(coordinator.render());
+        }
+    }
+
+    /**
+     * Creates the scene of a list of instructions.
+     *
+     * @param instructions The instructions.
+     * @return The scene.
+     */
+    static Scene createScene(final List<String> instructions) {
+        final String[] args = new String[instructions.size() + 1];
+        args[0] = "ScriptedScene";
+        for (int index = 0; index < instructions.size(); index++) {
+            args[index + 1] = instructions.get(index);
+        }
+
+        try {
+            return Scene.make(args);
+        } catch (final ClassNotFoundException | IOException exception) {
+            // A scripted scene neither loads a class nor a file.
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileTimeout() {
+        return tileTimeout;
+    }
+
+    public int getConnectedWorkerCount() {
+        return connectedWorkerCount.get();
+    }
+
+    public int getLostWorkerCount() {
+        return lostWorkerCount.get();
+    }
+
+    public int getReassignedTileCount() {
+        return reassignedTileCount.get();
+    }
+
+    /**
+     * Renders the frame on the workers, that connect during the render. The workers are sent away at the end, so
+     * every render needs new connections.
+     *
+     * @return The frame.
+     * @throws IOException If the port fails or the thread is interrupted.
+     */
+    public PixelView render() throws IOException {
+        final Session session = new Session();
+        final AtomicInteger workerIndex = new AtomicInteger();
+        final ExecutorService workerThreads = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "worker-" + workerIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            while (!session.isFinished()) {
+                if (Thread.interrupted())
+                    throw new InterruptedIOException("interrupted while rendering on workers.");
+
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (final SocketTimeoutException exception) {
+                    // The timeout only lets the loop check, if the render is finished.
+                    continue;
+                }
+                workerThreads.execute(() -> serveWorker(socket, session));
+            }
+        } finally {
+            session.finish();
+            // The workers end themselves, after they were sent away.
+            workerThreads.shutdown();
+        }
+
+        return session.frame;
+    }
+
+    /**
+     * Hands out tiles to a worker and collects its results, until the render is finished or the worker is lost.
+     *
+     * @param socket  The socket of the worker.
+     * @param session The render.
+     */
+    private void serveWorker(final Socket socket, final Session session) {
+        final Deque<Integer> assignedTiles = new ArrayDeque<>();
+        ScheduledFuture<?> deadline = null;
+        try (Socket openedSocket = socket) {
+            openedSocket.setTcpNoDelay(true);
+            // The worker must build the scene within the timeout of a tile.
+            deadline = scheduleDeadline(openedSocket);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(openedSocket.getInputStream()));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(openedSocket.getOutputStream()));
+
+            RenderProtocol.writeHeader(output);
+            RenderProtocol.writeJob(output, width, height, instructions);
+            output.flush();
+            RenderProtocol.readHeader(input);
+            if (!input.readUTF().equals(fingerprint))
+                throw new IOException("worker built another scene.");
+            deadline.cancel(false);
+            deadline = null;
+            connectedWorkerCount.incrementAndGet();
+
+            int[] pixels = new int[0];
+            while (!session.isFinished()) {
+                while (assignedTiles.size() < TILES_IN_FLIGHT) {
+                    // An idle worker waits a little for tiles of lost workers.
+                    final Integer index = assignedTiles.isEmpty()
+                            ? session.pendingTiles.poll(IDLE_MILLISECONDS, TimeUnit.MILLISECONDS)
+                            : session.pendingTiles.poll();
+                    if (index == null)
+                        break;
+
+                    RenderProtocol.writeTile(output, index, tiles.get(index));
+                    assignedTiles.add(index);
+                }
+                output.flush();
+                if (assignedTiles.isEmpty())
+                    continue;
+                if (deadline == null) {
+                    // The worker renders its tiles one after another, so the oldest one is started now.
+                    deadline = scheduleDeadline(openedSocket);
+                }
+
+                final byte type = input.readByte();
+                if (type != RenderProtocol.RESULT)
+                    throw new IOException(String.format("unexpected message %d.", type));
+                final int index = input.readInt();
+                if (index != assignedTiles.element())
+                    throw new IOException("worker answered another tile.");
+
+                final Tile tile = tiles.get(index);
+                if (pixels.length < tile.getArea()) {
+                    pixels = new int[tile.getArea()];
+                }
+                RenderProtocol.readPixels(input, pixels, tile.getArea());
+                assignedTiles.remove();
+                session.complete(index, pixels);
+                deadline.cancel(false);
+                deadline = null;
+            }
+
+            output.writeByte(RenderProtocol.END);
+            output.flush();
+        } catch (final IOException exception) {
+            // The tiles of a lost worker are rendered by the others.
+            lostWorkerCount.incrementAndGet();
+            reassignedTileCount.addAndGet(assignedTiles.size());
+            session.reassign(assignedTiles);
+        } catch (final InterruptedException exception) {
+            session.reassign(assignedTiles);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Closes the socket of a worker, if it doesn't return a tile within the timeout. A blocked read on the socket
+     * fails then, even if the worker still sends bytes.
+     *
+     * @param socket The socket of the worker.
+     * @return The deadline, which is cancelled when the tile is returned.
+     */
+    private ScheduledFuture<?> scheduleDeadline(final Socket socket) {
+        return deadlines.schedule(() -> {
+            try {
+                socket.close();
+            } catch (final IOException exception) {
+                // The thread of the worker fails on the socket anyway.
+            }
+        }, tileTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the port and stops closing the sockets of late workers. Running renders fail.
+     *
+     * @throws IOException If the port cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        deadlines.shutdown();
+        serverSocket.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RenderCoordinator{port=%d, width=%d, height=%d, tileCount=%d, tileTimeout=%d}",
+                getPort(), width, height, tiles.size(), tileTimeout);
+    }
+
+    /**
+     * The state of a render, that the threads of all workers share.
+     */
+    private final class Session {
+        /**
+         * The frame, into which the tiles are gathered.
+         */
+        private final GatheredFrame frame = new GatheredFrame(width, height);
+
+        /**
+         * The indices of the tiles, that no worker has. Reassigned tiles are put at the front.
+         */
+        private final LinkedBlockingDeque<Integer> pendingTiles = new LinkedBlockingDeque<>();
+
+        /**
+         * Whether the tiles are finished by their index.
+         */
+        private final boolean[] finishedTiles = new boolean[tiles.size()];
+
+        /**
+         * The count of tiles, that are not finished.
+         */
+        private int remainingTileCount = tiles.size();
+
+        /**
+         * Whether the render ended, because all tiles are finished or the coordinator gave up.
+         */
+        private volatile boolean finished = tiles.isEmpty();
+
+        /**
+         * Creates a session with all tiles pending.
+         */
+        Session() {
+            for (int index = 0; index < tiles.size(); index++) {
+                pendingTiles.add(index);
+            }
+        }
+
+        /**
+         * Tests, if the render ended.
+         *
+         * @return True, if the workers should be sent away.
+         */
+        boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Ends the render, even if tiles are missing.
+         */
+        void finish() {
+            finished = true;
+        }
+
+        /**
+         * Copies the pixels of a rendered tile into the frame. A tile, that is already finished, is ignored.
+         *
+         * @param index  The index of the tile.
+         * @param pixels The packed colours of the tile row by row.
+         */
+        synchronized void complete(final int index, final int[] pixels) {
+            if (finishedTiles[index])
+                return;
+
+            frame.setTile(tiles.get(index), pixels);
+            finishedTiles[index] = true;
+            remainingTileCount--;
+            if (remainingTileCount == 0) {
+                finished = true;
+            }
+        }
+
+        /**
+         * Hands the tiles of a lost worker out again.
+         *
+         * @param indices The indices of the tiles.
+         */
+        void reassign(final Collection<Integer> indices) {
+            final List<Integer> reversedIndices = new ArrayList<>(indices);
+            Collections.reverse(reversedIndices);
+            // The tiles keep their order at the front of the queue.
+            for (final Integer index : reversedIndices) {
+                pendingTiles.addFirst(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package de.fabianparzefall.jraytracer.distributed;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.raster.Tile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages between a {@link RenderCoordinator} and a {@link RenderWorker}.
+ * <p>
+ * Both sides start with a header of magic and version. The coordinator sends the job with the size of the frame and
+ * the instructions of the scene, the worker answers with the fingerprint of its scene. Then the coordinator sends
+ * tiles and the worker answers every tile in order with its pixels, until the coordinator sends the end. A pixel is
+ * sent as three bytes red, green and blue.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+final class RenderProtocol {
+    /**
+     * The first int of both sides.
+     */
+    private static final int MAGIC = 0x4A524450;
+
+    /**
+     * The version of the protocol.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The type of a message with a tile to render.
+     */
+    static final byte TILE = 1;
+
+    /**
+     * The type of the message, that ends the session.
+     */
+    static final byte END = 2;
+
+    /**
+     * The type of a message with the pixels of a rendered tile.
+     */
+    static final byte RESULT = 3;
+
+    /**
+     * The count of bytes per pixel.
+     */
+    private static final int BYTES_PER_PIXEL = 3;
+
+    /**
+     * Writes the header.
+     *
+     * @param output The output.
+     * @throws IOException If the header cannot be written.
+     */
+    static void writeHeader(final DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Reads and checks the header.
+     *
+     * @param input The input.
+     * @throws IOException If the header cannot be read or the other side speaks another protocol.
+     */
+    static void readHeader(final DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC)
+            throw new IOException("peer doesn't speak the render protocol.");
+        if (input.readInt() != VERSION)
+            throw new IOException("peer speaks another version of the render protocol.");
+    }
+
+    /**
+     * Writes the job.
+     *
+     * @param output       The output.
+     * @param width        The width of the frame.
+     * @param height       The height of the frame.
+     * @param instructions The instructions of the scene.
+     * @throws IOException If the job cannot be written.
+     */
+    static void writeJob(final DataOutputStream output, final int width, final int height,
+                         final List<String> instructions) throws IOException {
+        output.writeInt(width);
+        output.writeInt(height);
+        output.writeInt(instructions.size());
+        for (final String instruction : instructions) {
+            output.writeUTF(instruction);
+        }
+    }
+
+    /**
+     * Reads the instructions of a job, after its width and height.
+     *
+     * @param input The input.
+     * @return The instructions of the scene.
+     * @throws IOException If the instructions cannot be read.
+     */
+    static List<String> readInstructions(final DataInputStream input) throws IOException {
+        final int count = input.readInt();
+        if (count < 0)
+            throw new IOException("count of instructions is negative.");
+
+        final List<String> instructions = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            instructions.add(input.readUTF());
+        }
+
+        return instructions;
+    }
+
+    /**
+     * Writes a tile to render.
+     *
+     * @param output The output.
+     * @param index  The index of the tile.
+     * @param tile   The tile in the coordinates of the frame.
+     * @throws IOException If the tile cannot be written.
+     */
+    static void writeTile(final DataOutputStream output, final int index, final Tile tile) throws IOException {
+        output.writeByte(TILE);
+        output.writeInt(index);
+        output.writeInt(tile.getXCoordinate());
+        output.writeInt(tile.getYCoordinate());
+        output.writeInt(tile.getWidth());
+        output.writeInt(tile.getHeight());
+    }
+
+    /**
+     * Reads a tile after the type of its message.
+     *
+     * @param input  The input.
+     * @param width  The width of the frame.
+     * @param height The height of the frame.
+     * @return The tile in the coordinates of the frame.
+     * @throws IOException If the tile cannot be read or isn't within the frame.
+     */
+    static Tile readTile(final DataInputStream input, final int width, final int height) throws IOException {
+        final int xCoordinate = input.readInt();
+        final int yCoordinate = input.readInt();
+        final int tileWidth = input.readInt();
+        final int tileHeight = input.readInt();
+        if (xCoordinate < 0 || yCoordinate < 0 || tileWidth < 1 || tileHeight < 1
+                || tileWidth > width - xCoordinate || tileHeight > height - yCoordinate)
+            throw new IOException("tile is not within the frame.");
+
+        return new Tile(xCoordinate, yCoordinate, tileWidth, tileHeight);
+    }
+
+    /**
+     * Writes packed colours.
+     *
+     * @param output The output.
+     * @param pixels The colours packed with 8 bits per channel.
+     * @param count  The count of pixels.
+     * @throws IOException If the pixels cannot be written.
+     */
+    static void writePixels(final DataOutputStream output, final int[] pixels, final int count) throws IOException {
+        final byte[] bytes = new byte[count * BYTES_PER_PIXEL];
+        for (int index = 0; index < count; index++) {
+            bytes[index * BYTES_PER_PIXEL] = (byte) Color.getRed(pixels[index]);
+            bytes[index * BYTES_PER_PIXEL + 1] = (byte) Color.getGreen(pixels[index]);
+            bytes[index * BYTES_PER_PIXEL + 2] = (byte) Color.getBlue(pixels[index]);
+        }
+        output.write(bytes);
+    }
+
+    /**
+     * Reads packed colours.
+     *
+     * @param input  The input.
+     * @param pixels The array, into which the colours are packed with 8 bits per channel.
+     * @param count  The count of pixels.
+     * @throws IOException If the pixels cannot be read.
+     */
+    static void readPixels(final DataInputStream input, final int[] pixels, final int count) throws IOException {
+        final byte[] bytes = new byte[count * BYTES_PER_PIXEL];
+        input.readFully(bytes);
+        for (int index = 0; index < count; index++) {
+            pixels[index] = Color.pack(bytes[index * BYTES_PER_PIXEL] & 0xFF,
+                    bytes[index * BYTES_PER_PIXEL + 1] & 0xFF, bytes[index * BYTES_PER_PIXEL + 2] & 0xFF);
+        }
+    }
+}
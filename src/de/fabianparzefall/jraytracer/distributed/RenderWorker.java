@@ -0,0 +1,132 @@
+package de.fabianparzefall.jraytracer.distributed;
+
+import de.fabianparzefall.jraytracer.raster.CropRaster;
+import de.fabianparzefall.jraytracer.raster.Tile;
+import de.fabianparzefall.jraytracer.scene.Scene;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Renders the tiles, that a {@link RenderCoordinator} sends, until the coordinator ends the session.
+ * <p>
+ * Usage: {@code RenderWorker <host> <port> [threads]}
+ * <p>
+ * The worker builds the scene from the instructions of the coordinator once and renders every tile as a window of the
+ * frame on its own threads, so the tiles look like the parts of a frame, that was rendered in one piece.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class RenderWorker {
+    /**
+     * The number of threads, that render a tile.
+     */
+    private final int threadCount;
+
+    /**
+     * Constructs a RenderWorker.
+     *
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public RenderWorker(final int threadCount) {
+        if (threadCount < 0)
+            throw new IllegalArgumentException("threadCount must be at least 0.");
+
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Runs a worker.
+     *
+     * @param args The arguments as described in the class comment.
+     * @throws IOException If the connection to the coordinator fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2)
+            throw new IllegalArgumentException("usage: <host> <port> [threads]");
+
+        new RenderWorker(args.length > 2 ? Integer.parseInt(args[2]) : 0).serve(args[0], Integer.parseInt(args[1]));
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Connects to a coordinator and renders its tiles.
+     *
+     * @param host The host of the coordinator.
+     * @param port The port of the coordinator.
+     * @throws IOException If the connection fails or the coordinator breaks the protocol.
+     */
+    public void serve(final String host, final int port) throws IOException {
+        assert host != null;
+
+        try (Socket socket = new Socket(host, port)) {
+            serve(socket);
+        }
+    }
+
+    /**
+     * Renders the tiles of a coordinator on a connected socket.
+     *
+     * @param socket The socket.
+     * @throws IOException If the connection fails or the coordinator breaks the protocol.
+     */
+    public void serve(final Socket socket) throws IOException {
+        assert socket != null;
+
+        socket.setTcpNoDelay(true);
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        RenderProtocol.readHeader(input);
+        final int width = input.readInt();
+        final int height = input.readInt();
+        final List<String> instructions = RenderProtocol.readInstructions(input);
+
+        final Scene scene = RenderCoordinator.createScene(instructions);
+        final Raytracer raytracer = new Raytracer(scene);
+
+        RenderProtocol.writeHeader(output);
+        output.writeUTF(scene.getFingerprint());
+        output.flush();
+
+        int[] pixels = new int[0];
+        while (true) {
+            final byte type = input.readByte();
+            if (type == RenderProtocol.END)
+                return;
+            if (type != RenderProtocol.TILE)
+                throw new IOException(String.format("unexpected message %d.", type));
+
+            final int index = input.readInt();
+            final Tile tile = RenderProtocol.readTile(input, width, height);
+            final CropRaster raster = new CropRaster(width, height, tile, threadCount);
+            raster.render(raytracer);
+
+            if (pixels.length < tile.getArea()) {
+                pixels = new int[tile.getArea()];
+            }
+            raster.getFrameBuffer().getTile(new Tile(0, 0, tile.getWidth(), tile.getHeight()), pixels);
+
+            output.writeByte(RenderProtocol.RESULT);
+            output.writeInt(index);
+            RenderProtocol.writePixels(output, pixels, tile.getArea());
+            output.flush();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RenderWorker{threadCount=%d}", threadCount);
+    }
+}
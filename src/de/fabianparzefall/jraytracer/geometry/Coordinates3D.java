@@ -6,7 +6,7 @@ import de.fabianparzefall.jraytracer.common.Doubles;
  * Class representing coordinates in 3 dimensional space.
  *
  * @author Fabian Parzefall
- * @version 15-05-25
+ * @version 26-10-19
  */
 abstract class Coordinates3D {
     /**
@@ -37,15 +37,15 @@ abstract class Coordinates3D {
         zCoordinate = z;
     }
 
-    protected double getX() {
+    public double getX() {
         return xCoordinate;
     }
 
-    protected double getY() {
+    public double getY() {
         return yCoordinate;
     }
 
-    protected double getZ() {
+    public double getZ() {
         return zCoordinate;
     }
 
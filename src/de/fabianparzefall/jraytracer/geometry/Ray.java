@@ -4,7 +4,7 @@ package de.fabianparzefall.jraytracer.geometry;
  * Class representing a ray in 3 dimensional room.
  *
  * @author Fabian Parzefall
- * @version 15-06-03
+ * @version 26-10-19
  */
 public final class Ray {
     /**
@@ -27,6 +27,21 @@ public final class Ray {
      */
     private final double weight;
 
+    /**
+     * The width of the ray at its start point.
+     */
+    private final double footprint;
+
+    /**
+     * The growth of the width of the ray per distance unit.
+     */
+    private final double spread;
+
+    /**
+     * The count of reflexions, that lead to the ray.
+     */
+    private final int depth;
+
     /**
      * Constructs the ray from a start startPoint and a direction vector. The direction mustn't be the null vector.
      *
@@ -45,14 +60,53 @@ public final class Ray {
      * @param weight     The weight of the ray.
      */
     public Ray(final Point startPoint, final Vector direction, final double weight) {
+        this(startPoint, direction, weight, 0, 0);
+    }
+
+    /**
+     * Constructs the ray from a start startPoint, a direction vector and its footprint. The footprint is the width of
+     * the area a ray represents, for example the width of a pixel. It grows linear with the distance.
+     *
+     * @param startPoint Start startPoint of ray.
+     * @param direction  Direction vector of ray.
+     * @param weight     The weight of the ray.
+     * @param footprint  The width of the ray at its start point, must be positive or 0.
+     * @param spread     The growth of the width per distance unit, must be positive or 0.
+     */
+    public Ray(final Point startPoint, final Vector direction, final double weight, final double footprint, final double spread) {
+        this(startPoint, direction, weight, footprint, spread, 0);
+    }
+
+    /**
+     * Constructs the ray from a start startPoint, a direction vector, its footprint and the count of reflexions, that
+     * lead to it.
+     *
+     * @param startPoint Start startPoint of ray.
+     * @param direction  Direction vector of ray.
+     * @param weight     The weight of the ray.
+     * @param footprint  The width of the ray at its start point, must be positive or 0.
+     * @param spread     The growth of the width per distance unit, must be positive or 0.
+     * @param depth      The count of reflexions, must be positive or 0.
+     */
+    public Ray(final Point startPoint, final Vector direction, final double weight, final double footprint, final double spread,
+               final int depth) {
         assert startPoint != null;
         assert direction != null;
         if (direction.equals(Vector.NULL_VECTOR))
             throw new IllegalArgumentException("direction is the 0-vector.");
+        if (footprint < 0)
+            throw new IllegalArgumentException("footprint is negative.");
+        if (spread < 0)
+            throw new IllegalArgumentException("spread is negative.");
+        if (depth < 0)
+            throw new IllegalArgumentException("depth is negative.");
 
         this.startPoint = startPoint;
         this.direction = direction.normalize();
         this.weight = weight;
+        this.footprint = footprint;
+        this.spread = spread;
+        this.depth = depth;
     }
 
     public Point getStartPoint() {
@@ -67,6 +121,24 @@ public final class Ray {
         return weight;
     }
 
+    public double getSpread() {
+        return spread;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the width of the ray at a distance to the start point.
+     *
+     * @param distance The distance to the start point.
+     * @return The width of the ray.
+     */
+    public double getFootprint(final double distance) {
+        return footprint + spread * distance;
+    }
+
     /**
      * Gets a point on the ray, that has a distance to the start point.
      *
@@ -1,6 +1,6 @@
 package de.fabianparzefall.jraytracer.image;
 
-import de.fabianparzefall.jraytracer.raster.Raster;
+import de.fabianparzefall.jraytracer.raster.PixelView;
 
 import java.io.IOException;
 
@@ -47,5 +47,5 @@ public interface Image {
      * @param raster The raster.
      * @throws IOException If the image cannot be saved.
      */
-    void save(Raster raster) throws IOException;
+    void save(PixelView raster) throws IOException;
 }
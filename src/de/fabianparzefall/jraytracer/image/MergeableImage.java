@@ -0,0 +1,51 @@
+package de.fabianparzefall.jraytracer.image;
+
+import de.fabianparzefall.jraytracer.raster.PixelView;
+
+import java.io.IOException;
+
+/**
+ * An image, whose saved file can be read again, so a part of it can be replaced without saving the whole raster.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public interface MergeableImage extends Image {
+    /**
+     * Creates a mergeable image by an array of strings.
+     * <p>
+     * The first element of the array is the class of the image, the other elements are the parameters for the image.
+     *
+     * @param args An array with the class name as first element and the parameters as the other elements.
+     * @return An instance of a mergeable image.
+     * @throws ClassNotFoundException If the specified class cannot be found.
+     */
+    static MergeableImage make(final String... args) throws ClassNotFoundException {
+        assert args != null;
+        if (args.length == 0)
+            throw new IllegalArgumentException("args has no elements.");
+
+        final String imageType = args[0];
+
+        switch (imageType) {
+            case "PNGImage":
+                if (args.length != 2)
+                    throw new IllegalArgumentException("PNGImage doesn't have exactly one argument.");
+                return new PNGImage(args[1]);
+            default:
+                throw new ClassNotFoundException(String.format("Could not find mergeable image class \"%s.\"", imageType));
+        }
+    }
+
+    /**
+     * Replaces a part of a saved image by a patch, for example the window of a
+     * {@link de.fabianparzefall.jraytracer.raster.CropRaster}. The coordinates are raster coordinates, so the y
+     * coordinate counts from the bottom.
+     *
+     * @param patch       The raster, that is put into the image.
+     * @param xCoordinate The x coordinate in the image of the first column of the patch.
+     * @param yCoordinate The y coordinate in the image of the first row of the patch.
+     * @throws IOException If the image cannot be read or saved.
+     */
+    void merge(PixelView patch, int xCoordinate, int yCoordinate) throws IOException;
+}
@@ -1,6 +1,6 @@
 package de.fabianparzefall.jraytracer.image;
 
-import de.fabianparzefall.jraytracer.raster.Raster;
+import de.fabianparzefall.jraytracer.raster.PixelView;
 
 /**
  * Saves an array of pixels to a PGM file.
@@ -24,7 +24,7 @@ class PGMOut implements Image {
      *
      * @param raster The raster.
      */
-    public void save(final Raster raster) {
+    public void save(final PixelView raster) {
         assert raster != null;
 
         System.out.println(asString(raster));
@@ -37,7 +37,7 @@ class PGMOut implements Image {
      * @return A pgm formatted string.
      * @see <a href="http://en.wikipedia.org/wiki/Netpbm_format">PGM</a>
      */
-    public String asString(final Raster raster) {
+    public String asString(final PixelView raster) {
         assert raster != null;
 
         if (raster.getWidth() < 1 || raster.getHeight() < 1)
@@ -0,0 +1,100 @@
+package de.fabianparzefall.jraytracer.image;
+
+import de.fabianparzefall.jraytracer.common.Color;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * This class writes a PGM file row by row in the same format as {@link PGMOut}.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ * @see <a href="http://en.wikipedia.org/wiki/Netpbm_format">PGM</a>
+ */
+class PGMStream implements StreamingImage {
+    /**
+     * The maximum brightness of a pixel.
+     */
+    private static final int MAX_BRIGHTNESS = 255;
+
+    /**
+     * The filename of the image.
+     */
+    private final String filename;
+
+    /**
+     * The writer to the file.
+     */
+    private Writer writer;
+
+    /**
+     * The width of the image.
+     */
+    private int width;
+
+    /**
+     * The count of rows, that are not written yet.
+     */
+    private int remainingRows;
+
+    /**
+     * Constructs a PGMStream with the filename of the image.
+     *
+     * @param filename The filename of the image.
+     */
+    public PGMStream(final String filename) {
+        assert filename != null;
+        this.filename = filename;
+    }
+
+    @Override
+    public void begin(final int width, final int height) throws IOException {
+        if (writer != null)
+            throw new IllegalStateException("image is already started.");
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("image resolution must be at least 1x1");
+
+        this.width = width;
+        remainingRows = height;
+
+        writer = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.US_ASCII);
+        writer.write(String.format("P2%n%d %d%n%d%n", width, height, MAX_BRIGHTNESS));
+    }
+
+    @Override
+    public void writeRow(final int[] colors) throws IOException {
+        assert colors != null;
+
+        if (writer == null)
+            throw new IllegalStateException("image is not started.");
+        if (remainingRows == 0)
+            throw new IllegalStateException("all rows are written.");
+        if (colors.length != width)
+            throw new IllegalArgumentException("row doesn't have the width of the image.");
+
+        for (final int color : colors) {
+            writer.write(Integer.toString(Color.getBrightness(color)));
+            writer.write(' ');
+        }
+        writer.write('\n');
+        remainingRows--;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer == null)
+            return;
+
+        try {
+            if (remainingRows > 0)
+                throw new IllegalStateException(String.format("%d rows are missing.", remainingRows));
+        } finally {
+            writer.close();
+            writer = null;
+        }
+    }
+}
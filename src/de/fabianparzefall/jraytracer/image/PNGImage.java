@@ -1,6 +1,6 @@
 package de.fabianparzefall.jraytracer.image;
 
-import de.fabianparzefall.jraytracer.raster.Raster;
+import de.fabianparzefall.jraytracer.raster.PixelView;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -13,18 +13,23 @@ import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
  * This class saves a raster as a PNG file.
  *
  * @author Fabian Parzefall
- * @version 15-05-25
+ * @version 26-10-19
  */
-class PNGImage implements Image {
+class PNGImage implements MergeableImage {
     /**
-     * The minimum brightness of a pixel.
+     * The minimum packed colour of a pixel.
      */
-    private static final int MIN_BRIGHTNESS = 0;
+    private static final int MIN_COLOR = 0;
 
     /**
-     * The maximum brightness of a pixel.
+     * The maximum packed colour of a pixel.
      */
-    private static final int MAX_BRIGHTNESS = 255;
+    private static final int MAX_COLOR = 0xFFFFFF;
+
+    /**
+     * The alpha channel of an opaque ARGB value.
+     */
+    private static final int OPAQUE = 0xFF000000;
 
     /**
      * The filename of the image.
@@ -47,7 +52,7 @@ class PNGImage implements Image {
      * @param raster The raster.
      */
     @Override
-    public void save(final Raster raster) throws IOException {
+    public void save(final PixelView raster) throws IOException {
         assert raster != null;
 
         if (raster.getWidth() < 1 || raster.getHeight() < 1)
@@ -57,10 +62,10 @@ class PNGImage implements Image {
 
         for (int yCoordinate = 0; yCoordinate < raster.getHeight(); yCoordinate++) {
             for (int xCoordinate = 0; xCoordinate < raster.getWidth(); xCoordinate++) {
-                final int brightness = raster.getPixel(yCoordinate, xCoordinate);
-                if (brightness < MIN_BRIGHTNESS || brightness > MAX_BRIGHTNESS)
-                    throw new IllegalArgumentException("raster must only contain values between 0 and 255.");
-                image.setRGB(xCoordinate, raster.getHeight() - yCoordinate - 1, byteToARGB(brightness));
+                final int rgb = raster.getColor(yCoordinate, xCoordinate);
+                if (rgb < MIN_COLOR || rgb > MAX_COLOR)
+                    throw new IllegalArgumentException("raster must only contain colours with 8 bits per channel.");
+                image.setRGB(xCoordinate, raster.getHeight() - yCoordinate - 1, OPAQUE | rgb);
             }
         }
 
@@ -68,15 +73,34 @@ class PNGImage implements Image {
     }
 
     /**
-     * Transforms a brightness value to an ARGB value.
+     * Replaces a part of the PNG file by a patch. Only the pixels of the patch are changed.
      *
-     * @param brightness A brightness value between 0 (black) and 255 (white).
-     * @return An ARGB value.
+     * @param patch       The raster, that is put into the image.
+     * @param xCoordinate The x coordinate in the image of the first column of the patch.
+     * @param yCoordinate The y coordinate in the image of the first row of the patch, counted from the bottom.
+     * @throws IOException If the image cannot be read or saved.
      */
-    private int byteToARGB(final int brightness) {
-        assert brightness >= MIN_BRIGHTNESS && brightness <= MAX_BRIGHTNESS;
-        final int bitsInByte = 8;
-        final int opaqueBitmask = 0xFF;
-        return ((opaqueBitmask << bitsInByte | brightness) << bitsInByte | brightness) << bitsInByte | brightness;
+    @Override
+    public void merge(final PixelView patch, final int xCoordinate, final int yCoordinate) throws IOException {
+        assert patch != null;
+
+        final File file = new File(filename);
+        final BufferedImage image = ImageIO.read(file);
+        if (image == null)
+            throw new IOException(String.format("\"%s\" is not a readable image.", filename));
+        if (xCoordinate < 0 || yCoordinate < 0
+                || xCoordinate + patch.getWidth() > image.getWidth() || yCoordinate + patch.getHeight() > image.getHeight())
+            throw new IllegalArgumentException("patch is not within the image.");
+
+        for (int patchY = 0; patchY < patch.getHeight(); patchY++) {
+            for (int patchX = 0; patchX < patch.getWidth(); patchX++) {
+                final int rgb = patch.getColor(patchY, patchX);
+                if (rgb < MIN_COLOR || rgb > MAX_COLOR)
+                    throw new IllegalArgumentException("patch must only contain colours with 8 bits per channel.");
+                image.setRGB(xCoordinate + patchX, image.getHeight() - (yCoordinate + patchY) - 1, OPAQUE | rgb);
+            }
+        }
+
+        ImageIO.write(image, "png", file);
     }
 }
@@ -0,0 +1,229 @@
+package de.fabianparzefall.jraytracer.image;
+
+import de.fabianparzefall.jraytracer.common.Color;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This class writes a PNG file row by row.
+ * <p>
+ * Every row is filtered with the Sub filter and compressed into IDAT chunks right away, so only the current row, the
+ * state of the deflater and one chunk are kept in memory.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ * @see <a href="https://www.w3.org/TR/png/">PNG</a>
+ */
+class PNGStream implements StreamingImage {
+    /**
+     * The signature at the beginning of every PNG file.
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * The maximum size of the data of an IDAT chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * The bit depth of a channel.
+     */
+    private static final int BIT_DEPTH = 8;
+
+    /**
+     * The colour type for RGB pixels.
+     */
+    private static final int COLOR_TYPE_RGB = 2;
+
+    /**
+     * The filter type, that subtracts the pixel on the left.
+     */
+    private static final int FILTER_SUB = 1;
+
+    /**
+     * The count of bytes per pixel.
+     */
+    private static final int BYTES_PER_PIXEL = 3;
+
+    /**
+     * The filename of the image.
+     */
+    private final String filename;
+
+    /**
+     * The stream to the file.
+     */
+    private DataOutputStream output;
+
+    /**
+     * The compressor of the rows.
+     */
+    private Deflater deflater;
+
+    /**
+     * The compressed data of the next IDAT chunk.
+     */
+    private byte[] chunk;
+
+    /**
+     * The count of bytes in the chunk.
+     */
+    private int chunkLength;
+
+    /**
+     * The filtered bytes of a row with the filter type in front.
+     */
+    private byte[] row;
+
+    /**
+     * The width of the image.
+     */
+    private int width;
+
+    /**
+     * The count of rows, that are not written yet.
+     */
+    private int remainingRows;
+
+    /**
+     * Constructs a PNGStream with the filename of the image.
+     *
+     * @param filename The filename of the image.
+     */
+    public PNGStream(final String filename) {
+        assert filename != null;
+        this.filename = filename;
+    }
+
+    @Override
+    public void begin(final int width, final int height) throws IOException {
+        if (output != null)
+            throw new IllegalStateException("image is already started.");
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("image resolution must be at least 1x1");
+
+        this.width = width;
+        remainingRows = height;
+        row = new byte[1 + width * BYTES_PER_PIXEL];
+        chunk = new byte[CHUNK_SIZE];
+        deflater = new Deflater();
+
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+        output.write(SIGNATURE);
+
+        final byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = BIT_DEPTH;
+        header[9] = COLOR_TYPE_RGB;
+        // Compression, filter method and interlace method are 0.
+        writeChunk("IHDR", header, header.length);
+    }
+
+    @Override
+    public void writeRow(final int[] colors) throws IOException {
+        assert colors != null;
+
+        if (output == null)
+            throw new IllegalStateException("image is not started.");
+        if (remainingRows == 0)
+            throw new IllegalStateException("all rows are written.");
+        if (colors.length != width)
+            throw new IllegalArgumentException("row doesn't have the width of the image.");
+
+        row[0] = FILTER_SUB;
+        int previous = 0;
+        for (int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+            final int color = colors[xCoordinate];
+            final int index = 1 + xCoordinate * BYTES_PER_PIXEL;
+            row[index] = (byte) (Color.getRed(color) - Color.getRed(previous));
+            row[index + 1] = (byte) (Color.getGreen(color) - Color.getGreen(previous));
+            row[index + 2] = (byte) (Color.getBlue(color) - Color.getBlue(previous));
+            previous = color;
+        }
+
+        deflater.setInput(row);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+        remainingRows--;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (output == null)
+            return;
+
+        try {
+            if (remainingRows > 0)
+                throw new IllegalStateException(String.format("%d rows are missing.", remainingRows));
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (chunkLength > 0) {
+                writeChunk("IDAT", chunk, chunkLength);
+            }
+            writeChunk("IEND", chunk, 0);
+        } finally {
+            deflater.end();
+            output.close();
+            output = null;
+        }
+    }
+
+    /**
+     * Compresses the next data into the chunk and writes the chunk, when it is full.
+     *
+     * @throws IOException If the chunk cannot be written.
+     */
+    private void deflate() throws IOException {
+        chunkLength += deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+        if (chunkLength == chunk.length) {
+            writeChunk("IDAT", chunk, chunkLength);
+            chunkLength = 0;
+        }
+    }
+
+    /**
+     * Writes a chunk with its length and checksum.
+     *
+     * @param type   The type of the chunk.
+     * @param data   The data.
+     * @param length The count of bytes of the data.
+     * @throws IOException If the chunk cannot be written.
+     */
+    private void writeChunk(final String type, final byte[] data, final int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(typeBytes);
+        checksum.update(data, 0, length);
+
+        output.writeInt(length);
+        output.write(typeBytes);
+        output.write(data, 0, length);
+        output.writeInt((int) checksum.getValue());
+    }
+
+    /**
+     * Writes an int in network byte order into an array.
+     *
+     * @param array  The array.
+     * @param offset The index of the first byte.
+     * @param value  The value.
+     */
+    private static void writeInt(final byte[] array, final int offset, final int value) {
+        array[offset] = (byte) (value >>> 24);
+        array[offset + 1] = (byte) (value >>> 16);
+        array[offset + 2] = (byte) (value >>> 8);
+        array[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,61 @@
+package de.fabianparzefall.jraytracer.image;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An interface for writing an image row by row, so the whole image is never kept in memory.
+ * <p>
+ * The rows are written from the top of the image, which is the row with the highest y coordinate of a raster.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public interface StreamingImage extends Closeable {
+    /**
+     * Creates a streaming image by an array of strings.
+     * <p>
+     * The first element of the array is the class of the image, the other elements are the parameters for the image.
+     *
+     * @param args An array with the class name as first element and the parameters as the other elements.
+     * @return An instance of a streaming image.
+     * @throws ClassNotFoundException If the specified class cannot be found.
+     */
+    static StreamingImage make(final String... args) throws ClassNotFoundException {
+        assert args != null;
+        if (args.length == 0)
+            throw new IllegalArgumentException("args has no elements.");
+
+        final String imageType = args[0];
+
+        switch (imageType) {
+            case "PNGStream":
+                if (args.length != 2)
+                    throw new IllegalArgumentException("PNGStream doesn't have exactly one argument.");
+                return new PNGStream(args[1]);
+            case "PGMStream":
+                if (args.length != 2)
+                    throw new IllegalArgumentException("PGMStream doesn't have exactly one argument.");
+                return new PGMStream(args[1]);
+            default:
+                throw new ClassNotFoundException(String.format("Could not find streaming image class \"%s.\"", imageType));
+        }
+    }
+
+    /**
+     * Starts the image. This method must be called once before the first row.
+     *
+     * @param width  The width of the image, must be at least 1.
+     * @param height The height of the image, must be at least 1.
+     * @throws IOException If the image cannot be written.
+     */
+    void begin(int width, int height) throws IOException;
+
+    /**
+     * Writes the next row.
+     *
+     * @param colors The colours of the row from the left, packed with 8 bits per channel.
+     * @throws IOException If the image cannot be written.
+     */
+    void writeRow(int[] colors) throws IOException;
+}
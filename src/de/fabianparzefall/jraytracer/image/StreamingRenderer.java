@@ -0,0 +1,183 @@
+package de.fabianparzefall.jraytracer.image;
+
+import de.fabianparzefall.jraytracer.raster.FrameBuffer;
+import de.fabianparzefall.jraytracer.raster.ParallelRaster;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Renders an image in bands of rows and writes every band to a {@link StreamingImage}, as soon as it is done.
+ * <p>
+ * While a band is written by a separate thread, the next band is rendered. So at most two bands are in memory and the
+ * size of the image is only limited by the file.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class StreamingRenderer {
+    /**
+     * The default count of rows of a band.
+     */
+    public static final int DEFAULT_BAND_HEIGHT = 64;
+
+    /**
+     * The width of the image.
+     */
+    private final int width;
+
+    /**
+     * The height of the image.
+     */
+    private final int height;
+
+    /**
+     * The count of rows of a band.
+     */
+    private final int bandHeight;
+
+    /**
+     * Creates the raster of a band from its width and height.
+     */
+    private final BiFunction<Integer, Integer, ? extends ParallelRaster> bandFactory;
+
+    /**
+     * Constructs a StreamingRenderer, that renders the bands with parallel rasters.
+     *
+     * @param width       The width of the image, must be at least 1.
+     * @param height      The height of the image, must be at least 1.
+     * @param bandHeight  The count of rows of a band, must be at least 1.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public StreamingRenderer(final int width, final int height, final int bandHeight, final int threadCount) {
+        this(width, height, bandHeight, (bandWidth, rows) -> new ParallelRaster(bandWidth, rows, threadCount));
+    }
+
+    /**
+     * Constructs a StreamingRenderer with a factory for the rasters of the bands.
+     *
+     * @param width       The width of the image, must be at least 1.
+     * @param height      The height of the image, must be at least 1.
+     * @param bandHeight  The count of rows of a band, must be at least 1.
+     * @param bandFactory Creates a raster from the width and the count of rows of a band.
+     */
+    public StreamingRenderer(final int width, final int height, final int bandHeight,
+                             final BiFunction<Integer, Integer, ? extends ParallelRaster> bandFactory) {
+        assert bandFactory != null;
+
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+        if (bandHeight < 1)
+            throw new IllegalArgumentException("bandHeight is less than 1.");
+
+        this.width = width;
+        this.height = height;
+        this.bandHeight = bandHeight;
+        this.bandFactory = bandFactory;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
+    /**
+     * Renders the image into a streaming image. The image is started, but not closed.
+     *
+     * @param raytracer The raytracer.
+     * @param image     The image.
+     * @throws IOException If the image cannot be written.
+     */
+    public void render(final Raytracer raytracer, final StreamingImage image) throws IOException {
+        assert raytracer != null;
+        assert image != null;
+
+        image.begin(width, height);
+
+        final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> pendingBand = null;
+            // The image starts with the top, so the bands are rendered from the highest y coordinate.
+            for (int top = height; top > 0; top -= bandHeight) {
+                final int rows = Math.min(bandHeight, top);
+                final ParallelRaster band = bandFactory.apply(width, rows);
+                if (band.getWidth() != width || band.getHeight() != rows)
+                    throw new IllegalStateException("band has the wrong resolution.");
+
+                band.setFrame(width, height, 0, top - rows);
+                band.render(raytracer);
+
+                await(pendingBand);
+                pendingBand = writer.submit(() -> {
+                    writeBand(band.getFrameBuffer(), image);
+                    return null;
+                });
+            }
+            await(pendingBand);
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the rows of a band from the top.
+     *
+     * @param band  The pixels of the band.
+     * @param image The image.
+     * @throws IOException If the image cannot be written.
+     */
+    private static void writeBand(final FrameBuffer band, final StreamingImage image) throws IOException {
+        final int[] row = new int[band.getWidth()];
+        for (int yCoordinate = band.getHeight() - 1; yCoordinate >= 0; yCoordinate--) {
+            band.getRow(yCoordinate, 0, row.length, row, 0);
+            image.writeRow(row);
+        }
+    }
+
+    /**
+     * Waits until a band is written.
+     *
+     * @param pendingBand The future of the band or null, if there is no band.
+     * @throws IOException If the band cannot be written or the thread is interrupted.
+     */
+    private static void await(final Future<?> pendingBand) throws IOException {
+        if (pendingBand == null)
+            return;
+
+        try {
+            pendingBand.get();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing a band.");
+        } catch (final ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.sampling.Sampler;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A parallel raster, that supersamples only the pixels with a high contrast.
+ * <p>
+ * The first pass traces one sample per pixel. A pixel, whose colour differs from one of its neighbours by more than
+ * the contrast threshold, gets more stratified samples, which the sampler places in the strata. The first sample counts
+ * towards the maximum count of samples.
+ * <p>
+ * If the pattern of the sampler is nested, the first sample is the first one of every grid. The pixel is refined with
+ * 2x2 samples and, as long as these samples still differ by more than the threshold, with 4x4, 8x8 and so on up to the
+ * maximum count of samples. A finer grid keeps the samples of the coarser one. The samples are similar, if no channel
+ * differs by more than the threshold. Other patterns would have to trace every grid anew, so the pixel gets only the
+ * finest grid, that fits beside the first sample, and its colour is the average of the grid alone. The first sample
+ * may lie at a position of the grid, so it would be counted twice.
+ * <p>
+ * Within the package the first pass and the refinement can be run on their own. With a nested pattern, the pixels,
+ * that are still contrasting, can be refined again with a higher maximum of samples and keep the samples traced so far.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class AdaptiveSupersampled extends ParallelRaster {
+    /**
+     * The default maximum count of samples per pixel.
+     */
+    public static final int DEFAULT_MAXIMUM_SAMPLES = 16;
+
+    /**
+     * The default contrast threshold.
+     */
+    public static final double DEFAULT_CONTRAST_THRESHOLD = 0.1;
+
+    /**
+     * The maximum value of a colour channel.
+     */
+    private static final int MAX_CHANNEL = 255;
+
+    /**
+     * The maximum count of samples per pixel.
+     */
+    private final int maximumSamples;
+
+    /**
+     * The maximum difference of a colour channel between 0 and 1, up to which no more samples are traced.
+     */
+    private final double contrastThreshold;
+
+    /**
+     * The sampler, that places the samples of the refined pixels.
+     */
+    private final Sampler sampler;
+
+    /**
+     * The edge of the finest grid of samples of the current refinement.
+     */
+    private volatile int finestGridSize;
+
+    /**
+     * The pixels, that are contrasting and can be refined further, row by row.
+     */
+    private final boolean[] refinedPixels;
+
+    /**
+     * The count of samples, that every pixel got so far, row by row.
+     */
+    private final int[] tracedSamples;
+
+    /**
+     * True, while the second pass is running.
+     */
+    private volatile boolean refining;
+
+    /**
+     * The count of traced samples of the last render.
+     */
+    private final LongAdder sampleCount = new LongAdder();
+
+    /**
+     * The count of refined pixels of the last render.
+     */
+    private final LongAdder refinedPixelCount = new LongAdder();
+
+    /**
+     * Constructs an AdaptiveSupersampled raster with the default maximum of samples and the default threshold.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public AdaptiveSupersampled(final int width, final int height, final int threadCount) {
+        this(width, height, threadCount, DEFAULT_MAXIMUM_SAMPLES, DEFAULT_CONTRAST_THRESHOLD);
+    }
+
+    /**
+     * Constructs an AdaptiveSupersampled raster.
+     *
+     * @param width             The width of the raster, must be positive.
+     * @param height            The height of the raster, must be positive.
+     * @param threadCount       The number of threads to use, must be positive or 0. If it's 0, than the count of
+     *                          available processors is used.
+     * @param maximumSamples    The maximum count of samples per pixel including the first one, must be at least 1. A
+     *                          nested pattern refines in square grids with a power of two as edge, so 16 and 20 both
+     *                          allow up to 4x4 samples. Other patterns trace the finest square grid beside the first
+     *                          sample, so 16 allows 1 + 3x3 samples.
+     * @param contrastThreshold The maximum difference of a colour channel between 0 and 1, up to which no more samples
+     *                          are traced, must be positive or 0.
+     */
+    public AdaptiveSupersampled(final int width, final int height, final int threadCount, final int maximumSamples,
+                                final double contrastThreshold) {
+        this(width, height, threadCount, maximumSamples, contrastThreshold, Sampler.CENTERED);
+    }
+
+    /**
+     * Constructs an AdaptiveSupersampled raster, whose samples are placed by a sampler.
+     *
+     * @param width             The width of the raster, must be positive.
+     * @param height            The height of the raster, must be positive.
+     * @param threadCount       The number of threads to use, must be positive or 0. If it's 0, than the count of
+     *                          available processors is used.
+     * @param maximumSamples    The maximum count of samples per pixel including the first one, must be at least 1. A
+     *                          nested pattern refines in square grids with a power of two as edge, so 16 and 20 both
+     *                          allow up to 4x4 samples. Other patterns trace the finest square grid beside the first
+     *                          sample, so 16 allows 1 + 3x3 samples.
+     * @param contrastThreshold The maximum difference of a colour channel between 0 and 1, up to which no more samples
+     *                          are traced, must be positive or 0.
+     * @param sampler           The sampler, that places the samples in the pixels.
+     */
+    public AdaptiveSupersampled(final int width, final int height, final int threadCount, final int maximumSamples,
+                                final double contrastThreshold, final Sampler sampler) {
+        super(width, height, threadCount);
+        assert sampler != null;
+
+        if (maximumSamples < 1)
+            throw new IllegalArgumentException("maximumSamples is less than 1.");
+        if (contrastThreshold < 0)
+            throw new IllegalArgumentException("contrastThreshold is negative.");
+
+        this.maximumSamples = maximumSamples;
+        this.contrastThreshold = contrastThreshold;
+        this.sampler = sampler;
+
+        refinedPixels = new boolean[width * height];
+        tracedSamples = new int[width * height];
+    }
+
+    public int getMaximumSamples() {
+        return maximumSamples;
+    }
+
+    public double getContrastThreshold() {
+        return contrastThreshold;
+    }
+
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * Gets the count of samples of the last render.
+     *
+     * @return The count of traced primary rays.
+     */
+    public long getSampleCount() {
+        return sampleCount.sum();
+    }
+
+    /**
+     * Gets the count of pixels of the last render, that got more than one sample.
+     *
+     * @return The count of refined pixels.
+     */
+    public long getRefinedPixelCount() {
+        return refinedPixelCount.sum();
+    }
+
+    /**
+     * Gets the average count of samples per pixel of the last render.
+     *
+     * @return The cost of the render relative to one sample per pixel.
+     */
+    public double getSamplesPerPixel() {
+        return (double) getSampleCount() / (getWidth() * getHeight());
+    }
+
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        renderFirstPass(raytracer);
+        return refine(raytracer, maximumSamples);
+    }
+
+    /**
+     * Traces one sample per pixel and finds the contrasting pixels. The samples of an earlier render are forgotten.
+     *
+     * @param raytracer The raytracer.
+     * @return This with the image of the first pass.
+     */
+    Raster renderFirstPass(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        sampleCount.reset();
+        refinedPixelCount.reset();
+
+        refining = false;
+        super.render(raytracer);
+        sampleCount.add((long) getWidth() * getHeight());
+
+        Arrays.fill(tracedSamples, 1);
+        findContrastingPixels();
+
+        return this;
+    }
+
+    /**
+     * Traces more samples in the contrasting pixels up to a maximum count of samples per pixel.
+     *
+     * @param raytracer      The raytracer of the first pass.
+     * @param maximumSamples The maximum count of samples per pixel including the first one.
+     * @return This with the refined image.
+     */
+    Raster refine(final Raytracer raytracer, final int maximumSamples) {
+        assert raytracer != null;
+
+        finestGridSize = getFinestGridSize(maximumSamples);
+        if (finestGridSize < 2)
+            return this;
+
+        refining = true;
+        try {
+            super.render(raytracer);
+        } finally {
+            refining = false;
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the edge of the finest grid of samples, that a pixel can get with the pattern of the sampler.
+     *
+     * @param maximumSamples The maximum count of samples per pixel including the first one.
+     * @return The edge or 1, if no pixel can be refined.
+     */
+    private int getFinestGridSize(final int maximumSamples) {
+        int gridSize = 1;
+        if (sampler.getPattern().isNested()) {
+            while (4 * gridSize * gridSize <= maximumSamples) {
+                gridSize *= 2;
+            }
+        } else {
+            while ((gridSize + 1) * (gridSize + 1) + 1 <= maximumSamples) {
+                gridSize++;
+            }
+        }
+        return gridSize;
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        if (!refining) {
+            super.renderTile(raytracer, coordinateConverter, tile);
+            return;
+        }
+
+        final int gridSize = finestGridSize;
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                final int index = yCoordinate * getWidth() + xCoordinate;
+                if (refinedPixels[index] && tracedSamples[index] < gridSize * gridSize) {
+                    setColor(yCoordinate, xCoordinate,
+                            refinePixel(raytracer, coordinateConverter, yCoordinate, xCoordinate, gridSize));
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the pixels of the first pass, that differ from one of their neighbours by more than the threshold.
+     */
+    private void findContrastingPixels() {
+        final int width = getWidth();
+        final int height = getHeight();
+        Arrays.fill(refinedPixels, false);
+
+        for (int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+            for (int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+                final int color = getColor(yCoordinate, xCoordinate);
+                // Compare with the right and the upper neighbour and mark both pixels of a contrasting pair.
+                if (xCoordinate + 1 < width && isContrasting(color, getColor(yCoordinate, xCoordinate + 1))) {
+                    refinedPixels[yCoordinate * width + xCoordinate] = true;
+                    refinedPixels[yCoordinate * width + xCoordinate + 1] = true;
+                }
+                if (yCoordinate + 1 < height && isContrasting(color, getColor(yCoordinate + 1, xCoordinate))) {
+                    refinedPixels[yCoordinate * width + xCoordinate] = true;
+                    refinedPixels[(yCoordinate + 1) * width + xCoordinate] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Traces the first sample of a pixel, which is the first sample of every grid of a nested pattern.
+     *
+     * @param raytracer           The raytracer.
+     * @param coordinateConverter The converter for the resolution of the raster.
+     * @param yCoordinate         The y coordinate of the pixel.
+     * @param xCoordinate         The x coordinate of the pixel.
+     * @return The colour of the sample.
+     */
+    @Override
+    protected Color tracePixel(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                                final int yCoordinate, final int xCoordinate) {
+        return traceSample(raytracer, coordinateConverter, yCoordinate, xCoordinate, 1, 0);
+    }
+
+    /**
+     * Traces more stratified samples of a pixel, until the samples are similar or the maximum of samples is reached.
+     * The samples only depend on the position of the pixel in the frame, not on the tile or the thread.
+     *
+     * @param raytracer           The raytracer.
+     * @param coordinateConverter The converter for the resolution of the raster.
+     * @param yCoordinate         The y coordinate of the pixel.
+     * @param xCoordinate         The x coordinate of the pixel.
+     * @param finestGridSize      The edge of the finest grid of samples.
+     * @return The average colour of the samples traced so far.
+     */
+    private Color refinePixel(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                              final int yCoordinate, final int xCoordinate, final int finestGridSize) {
+        final int pixel = yCoordinate * getWidth() + xCoordinate;
+        final int previousSamples = tracedSamples[pixel];
+        if (previousSamples == 1) {
+            refinedPixelCount.increment();
+        }
+
+        if (!sampler.getPattern().isNested()) {
+            // The first sample is left out of the average, because the grid may trace its position again.
+            final int samples = finestGridSize * finestGridSize;
+            Color sum = Color.BLACK;
+            for (int index = 0; index < samples; index++) {
+                sum = sum.add(traceSample(raytracer, coordinateConverter, yCoordinate, xCoordinate, finestGridSize, index));
+            }
+            sampleCount.add(samples);
+            tracedSamples[pixel] = samples + 1;
+            // A finer grid would trace all samples again.
+            refinedPixels[pixel] = false;
+
+            return sum.scalarProduct(1.0 / samples);
+        }
+
+        // The samples so far are kept, their average only lost the fractions of the channels.
+        final int color = getColor(yCoordinate, xCoordinate);
+        Color sum = Color.fromRGB(color).scalarProduct(previousSamples);
+
+        // The range of every channel starts at the colour so far and grows with the new samples.
+        int minimumRed = Color.getRed(color);
+        int maximumRed = minimumRed;
+        int minimumGreen = Color.getGreen(color);
+        int maximumGreen = minimumGreen;
+        int minimumBlue = Color.getBlue(color);
+        int maximumBlue = minimumBlue;
+        final double threshold = contrastThreshold * MAX_CHANNEL;
+        Color average = Color.fromRGB(color);
+        int traced = previousSamples;
+        for (int gridSize = 2; gridSize <= finestGridSize; gridSize *= 2) {
+            final int samples = gridSize * gridSize;
+            if (samples <= traced)
+                continue;
+
+            for (int index = traced; index < samples; index++) {
+                final Color sample = traceSample(raytracer, coordinateConverter, yCoordinate, xCoordinate, gridSize,
+                        index);
+                sum = sum.add(sample);
+
+                final int rgb = sample.toRGB();
+                minimumRed = Math.min(minimumRed, Color.getRed(rgb));
+                maximumRed = Math.max(maximumRed, Color.getRed(rgb));
+                minimumGreen = Math.min(minimumGreen, Color.getGreen(rgb));
+                maximumGreen = Math.max(maximumGreen, Color.getGreen(rgb));
+                minimumBlue = Math.min(minimumBlue, Color.getBlue(rgb));
+                maximumBlue = Math.max(maximumBlue, Color.getBlue(rgb));
+            }
+            sampleCount.add(samples - traced);
+            traced = samples;
+
+            average = sum.scalarProduct(1.0 / samples);
+            if (maximumRed - minimumRed <= threshold && maximumGreen - minimumGreen <= threshold
+                    && maximumBlue - minimumBlue <= threshold) {
+                refinedPixels[pixel] = false;
+                break;
+            }
+        }
+        tracedSamples[pixel] = traced;
+
+        return average;
+    }
+
+    /**
+     * Traces a sample of a pixel, that the sampler places in a grid.
+     *
+     * @param raytracer           The raytracer.
+     * @param coordinateConverter The converter for the resolution of the raster.
+     * @param yCoordinate         The y coordinate of the pixel.
+     * @param xCoordinate         The x coordinate of the pixel.
+     * @param gridSize            The edge of the grid.
+     * @param index               The index of the sample in the grid.
+     * @return The colour of the sample.
+     */
+    private Color traceSample(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                              final int yCoordinate, final int xCoordinate, final int gridSize, final int index) {
+        // The centre of the pixel is at its integer coordinates.
+        final double[] position = sampler.getPosition(xCoordinate + getXOffset(), yCoordinate + getYOffset(),
+                gridSize, index);
+        final double subpixelX = xCoordinate - 0.5 + position[0];
+        final double subpixelY = yCoordinate - 0.5 + position[1];
+
+        return raytracer.tracePrimary(
+                coordinateConverter.calculateHorizontalCoordinate(subpixelX),
+                coordinateConverter.calculateVerticalCoordinate(subpixelY), coordinateConverter.getPixelSize() / gridSize);
+    }
+
+    /**
+     * Tests if two packed colours differ in a channel by more than the threshold.
+     *
+     * @param first  The first colour.
+     * @param second The second colour.
+     * @return True, if the pixels need more samples.
+     */
+    private boolean isContrasting(final int first, final int second) {
+        final double threshold = contrastThreshold * MAX_CHANNEL;
+        return Math.abs(Color.getRed(first) - Color.getRed(second)) > threshold
+                || Math.abs(Color.getGreen(first) - Color.getGreen(second)) > threshold
+                || Math.abs(Color.getBlue(first) - Color.getBlue(second)) > threshold;
+    }
+}
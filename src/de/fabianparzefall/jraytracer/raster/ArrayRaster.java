@@ -1,12 +1,14 @@
 package de.fabianparzefall.jraytracer.raster;
 
+import de.fabianparzefall.jraytracer.common.Color;
 import de.fabianparzefall.jraytracer.tracer.Raytracer;
 
 /**
- * A raster, that uses a raytracer to calculate an array with brightness values.
+ * A raster, that uses a raytracer to calculate an array with colours. The colours are kept in a {@link FrameBuffer},
+ * by default packed into one int per pixel.
  *
  * @author Fabian Parzefall
- * @version 15-06-18
+ * @version 26-10-19
  */
 class ArrayRaster implements Raster {
     /**
@@ -30,9 +32,29 @@ class ArrayRaster implements Raster {
     private final int height;
 
     /**
-     * The array in which the values get saved into.
+     * The buffer in which the colours get saved into.
      */
-    private final int[][] raster;
+    private final FrameBuffer frameBuffer;
+
+    /**
+     * The width of the frame, of which the raster is a part.
+     */
+    private int frameWidth;
+
+    /**
+     * The height of the frame, of which the raster is a part.
+     */
+    private int frameHeight;
+
+    /**
+     * The x coordinate in the frame of the first column of the raster.
+     */
+    private int xOffset;
+
+    /**
+     * The y coordinate in the frame of the first row of the raster.
+     */
+    private int yOffset;
 
     /**
      * Constructs an ArrayRaster with a resolution of 128x128.
@@ -48,14 +70,83 @@ class ArrayRaster implements Raster {
      * @param height Height of the raster, must be greater or equal 1.
      */
     public ArrayRaster(final int width, final int height) {
-        if (width < 1)
-            throw new IllegalArgumentException("width is less than 1.");
-        if (height < 1)
-            throw new IllegalArgumentException("height is less than 1.");
+        this(width, height, PixelFormat.PACKED_RGB);
+    }
 
-        this.width = width;
-        this.height = height;
-        raster = new int[height][width];
+    /**
+     * Constructs the raster with the given width, height and pixel format.
+     *
+     * @param width  Width of the raster, must be greater or equal 1.
+     * @param height Height of the raster, must be greater or equal 1.
+     * @param format The format, in which the pixels are stored.
+     */
+    public ArrayRaster(final int width, final int height, final PixelFormat format) {
+        this(FrameBuffer.allocate(format, width, height));
+    }
+
+    /**
+     * Constructs the raster on a frame buffer.
+     *
+     * @param frameBuffer The buffer, in which the colours are stored.
+     */
+    ArrayRaster(final FrameBuffer frameBuffer) {
+        assert frameBuffer != null;
+
+        width = frameBuffer.getWidth();
+        height = frameBuffer.getHeight();
+        this.frameBuffer = frameBuffer;
+        frameWidth = width;
+        frameHeight = height;
+    }
+
+    public FrameBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    public int getXOffset() {
+        return xOffset;
+    }
+
+    public int getYOffset() {
+        return yOffset;
+    }
+
+    /**
+     * Makes the raster a part of a bigger frame. The next render traces the pixels of the raster like a raster with
+     * the resolution of the frame would trace them.
+     *
+     * @param frameWidth  The width of the frame.
+     * @param frameHeight The height of the frame.
+     * @param xOffset     The x coordinate in the frame of the first column of the raster.
+     * @param yOffset     The y coordinate in the frame of the first row of the raster.
+     */
+    public void setFrame(final int frameWidth, final int frameHeight, final int xOffset, final int yOffset) {
+        if (xOffset < 0 || yOffset < 0)
+            throw new IllegalArgumentException("offsets are negative.");
+        if (xOffset + width > frameWidth || yOffset + height > frameHeight)
+            throw new IllegalArgumentException("raster is not within the frame.");
+
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+    }
+
+    /**
+     * Creates a converter for the resolution of the frame and the position of the raster in it.
+     *
+     * @return The converter.
+     */
+    CoordinateConverter createCoordinateConverter() {
+        return new CoordinateConverter(frameWidth, frameHeight, xOffset, yOffset);
     }
 
     @Override
@@ -73,42 +164,88 @@ class ArrayRaster implements Raster {
         if (!(0 <= xCoordinate && xCoordinate < width) && !(0 <= yCoordinate && yCoordinate < height))
             throw new IllegalArgumentException("point is not within the resolution.");
 
-        return raster[yCoordinate][xCoordinate];
+        return Color.getBrightness(frameBuffer.getRGB(yCoordinate, xCoordinate));
+    }
+
+    @Override
+    public int getColor(final int yCoordinate, final int xCoordinate) {
+        if (!(0 <= xCoordinate && xCoordinate < width) && !(0 <= yCoordinate && yCoordinate < height))
+            throw new IllegalArgumentException("point is not within the resolution.");
+
+        return frameBuffer.getRGB(yCoordinate, xCoordinate);
     }
 
     /**
-     * Sets the pixel in raster at the given coordinates.
+     * Sets the pixel in raster at the given coordinates to a gray value.
      *
      * @param yCoordinate The y coordinate of the pixel.
      * @param xCoordinate The x coordinate of the pixel.
      * @param brightness  The brightness of the pixel.
      */
     void setPixel(final int yCoordinate, final int xCoordinate, final int brightness) {
+        assert 0 <= brightness && brightness <= MAX_BRIGHTNESS;
+
+        setColor(yCoordinate, xCoordinate, Color.pack(brightness, brightness, brightness));
+    }
+
+    /**
+     * Sets the colour of the pixel in raster at the given coordinates.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @param rgb         The colour of the pixel packed with 8 bits per channel.
+     */
+    void setColor(final int yCoordinate, final int xCoordinate, final int rgb) {
+        assert 0 <= xCoordinate && xCoordinate < width;
+        assert 0 <= yCoordinate && yCoordinate < height;
+
+        frameBuffer.setRGB(yCoordinate, xCoordinate, rgb);
+    }
+
+    /**
+     * Sets the colour of the pixel in raster at the given coordinates in the precision of the pixel format.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @param color       The colour of the pixel.
+     */
+    void setColor(final int yCoordinate, final int xCoordinate, final Color color) {
         assert 0 <= xCoordinate && xCoordinate < width;
         assert 0 <= yCoordinate && yCoordinate < height;
-        assert 0 <= brightness && brightness <= MAX_BRIGHTNESS;
 
-        raster[yCoordinate][xCoordinate] = brightness;
+        frameBuffer.setColor(yCoordinate, xCoordinate, color);
     }
 
     @Override
     public Raster render(final Raytracer raytracer) {
         assert raytracer != null;
 
-        final CoordinateConverter coordinateConverter = new CoordinateConverter(width, height);
+        final CoordinateConverter coordinateConverter = createCoordinateConverter();
 
         for (int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
             for (int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
-                setPixel(yCoordinate, xCoordinate,
-                        (int) (raytracer.tracePrimary(
-                                coordinateConverter.calculateHorizontalCoordinate(xCoordinate),
-                                coordinateConverter.calculateVerticalCoordinate(yCoordinate)
-                        ) * MAX_BRIGHTNESS));
+                setColor(yCoordinate, xCoordinate, tracePixel(raytracer, coordinateConverter, yCoordinate, xCoordinate));
             }
         }
 
         return this;
     }
 
+    /**
+     * Calculates the colour of a pixel.
+     *
+     * @param raytracer           The raytracer.
+     * @param coordinateConverter The converter for the resolution of the raster.
+     * @param yCoordinate         The y coordinate of the pixel.
+     * @param xCoordinate         The x coordinate of the pixel.
+     * @return The colour with all channels between 0 and 1.
+     */
+    protected Color tracePixel(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                                final int yCoordinate, final int xCoordinate) {
+        return raytracer.tracePrimary(
+                coordinateConverter.calculateHorizontalCoordinate(xCoordinate),
+                coordinateConverter.calculateVerticalCoordinate(yCoordinate),
+                coordinateConverter.getPixelSize());
+    }
 
 }
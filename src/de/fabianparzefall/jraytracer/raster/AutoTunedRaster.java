@@ -0,0 +1,115 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A raster, that renders with the fastest configuration of an {@link AutoTuner}.
+ * <p>
+ * The first render tunes the configuration for its raytracer or takes it from the profile of the tuner. Later renders
+ * keep that configuration, so the frames of an animation are not probed again.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class AutoTunedRaster implements Raster {
+    /**
+     * The width of the raster.
+     */
+    private final int width;
+
+    /**
+     * The height of the raster.
+     */
+    private final int height;
+
+    /**
+     * The tuner, that chooses the configuration.
+     */
+    private final AutoTuner tuner;
+
+    /**
+     * The raster with the tuned configuration or null, if the raster wasn't rendered yet.
+     */
+    private ParallelRaster tunedRaster;
+
+    /**
+     * Constructs an AutoTunedRaster from width, height and a tuner.
+     *
+     * @param width  The width of the raster, must be positive.
+     * @param height The height of the raster, must be positive.
+     * @param tuner  The tuner with the profile.
+     */
+    public AutoTunedRaster(final int width, final int height, final AutoTuner tuner) {
+        assert tuner != null;
+
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("width and height must be positive.");
+
+        this.width = width;
+        this.height = height;
+        this.tuner = tuner;
+    }
+
+    public AutoTuner getTuner() {
+        return tuner;
+    }
+
+    /**
+     * Gets the configuration, that the raster renders with.
+     *
+     * @return The configuration.
+     */
+    public RasterConfiguration getConfiguration() {
+        if (tunedRaster == null)
+            throw new IllegalStateException("raster wasn't rendered yet.");
+
+        return tunedRaster instanceof CoherentRaster
+                ? RasterConfiguration.coherent(tunedRaster.getThreadCount())
+                : RasterConfiguration.parallel(tunedRaster.getThreadCount(), tunedRaster.getTileSize(), tunedRaster.getTileOrder());
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getPixel(final int yCoordinate, final int xCoordinate) {
+        if (tunedRaster == null)
+            throw new IllegalStateException("raster wasn't rendered yet.");
+
+        return tunedRaster.getPixel(yCoordinate, xCoordinate);
+    }
+
+    @Override
+    public int getColor(final int yCoordinate, final int xCoordinate) {
+        if (tunedRaster == null)
+            throw new IllegalStateException("raster wasn't rendered yet.");
+
+        return tunedRaster.getColor(yCoordinate, xCoordinate);
+    }
+
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        if (tunedRaster == null) {
+            try {
+                tunedRaster = tuner.tune(raytracer, width, height).createRaster(width, height);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        tunedRaster.render(raytracer);
+
+        return this;
+    }
+}
@@ -0,0 +1,319 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Processors;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Finds the fastest configuration of a parallel raster for a scene on this host.
+ * <p>
+ * The tuner renders a window in the centre of the frame under several configurations and measures the throughput of
+ * each. The search goes in stages: first the count of threads is chosen with the default tiles, then the tile size with
+ * that count of threads, and at last the tile order and the coherent tracing. The best configuration is kept in a
+ * profile file by the host, the size of the frame and the fingerprint of the raytracer, so later renders of the same
+ * scene on the same host don't probe again.
+ * <p>
+ * The host is identified by its name, its architecture and the count of processors within the CPU quota, so a
+ * container with another quota gets its own entries.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class AutoTuner {
+    /**
+     * The maximum edge length of the probe window.
+     */
+    public static final int PROBE_SIZE = 128;
+
+    /**
+     * The count of renders of a configuration before the measured ones, so the JIT compiler and the pool are ready.
+     */
+    private static final int WARM_UP_RENDERS = 2;
+
+    /**
+     * The count of measured renders of a configuration, of which the fastest one counts.
+     */
+    private static final int PROBE_RENDERS = 3;
+
+    /**
+     * The tile sizes, that are probed.
+     */
+    private static final int[] TILE_SIZES = {16, 32, 64};
+
+    /**
+     * The count of nanoseconds per second.
+     */
+    private static final double NANOSECONDS_PER_SECOND = 1E9;
+
+    /**
+     * The file of the profile.
+     */
+    private final Path profileFile;
+
+    /**
+     * Constructs an AutoTuner with a profile file. The file is created on the first tuning.
+     *
+     * @param profileFile The file of the profile.
+     */
+    public AutoTuner(final Path profileFile) {
+        assert profileFile != null;
+
+        this.profileFile = profileFile;
+    }
+
+    public Path getProfileFile() {
+        return profileFile;
+    }
+
+    /**
+     * Gets the best configuration for a render from the profile or probes it, if the profile doesn't have it yet.
+     *
+     * @param raytracer The raytracer of the render.
+     * @param width     The width of the frame, must be positive.
+     * @param height    The height of the frame, must be positive.
+     * @return The best configuration.
+     * @throws IOException If the profile cannot be read or written.
+     */
+    public synchronized RasterConfiguration tune(final Raytracer raytracer, final int width, final int height)
+            throws IOException {
+        final Optional<RasterConfiguration> knownConfiguration = lookUp(raytracer, width, height);
+        if (knownConfiguration.isPresent())
+            return knownConfiguration.get();
+
+        final RasterConfiguration configuration = probe(raytracer, width, height);
+
+        // The profile is read again, so entries of other processes since the lookup are kept.
+        final Properties profile = loadProfile();
+        profile.setProperty(createKey(raytracer, width, height), configuration.getDescription());
+        storeProfile(profile);
+
+        return configuration;
+    }
+
+    /**
+     * Looks the best configuration for a render up in the profile.
+     *
+     * @param raytracer The raytracer of the render.
+     * @param width     The width of the frame, must be positive.
+     * @param height    The height of the frame, must be positive.
+     * @return The configuration or an empty optional, if the profile doesn't have a valid one.
+     * @throws IOException If the profile cannot be read.
+     */
+    public Optional<RasterConfiguration> lookUp(final Raytracer raytracer, final int width, final int height)
+            throws IOException {
+        final String description = loadProfile().getProperty(createKey(raytracer, width, height));
+        if (description == null)
+            return Optional.empty();
+
+        try {
+            return Optional.of(RasterConfiguration.parse(description));
+        } catch (final IllegalArgumentException exception) {
+            // A broken entry is probed again and overwritten.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Probes the configurations for a render without the profile.
+     *
+     * @param raytracer The raytracer of the render.
+     * @param width     The width of the frame, must be positive.
+     * @param height    The height of the frame, must be positive.
+     * @return The configuration with the highest throughput.
+     */
+    public RasterConfiguration probe(final Raytracer raytracer, final int width, final int height) {
+        assert raytracer != null;
+
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("width and height must be positive.");
+
+        final int processors = Processors.getAvailableCount();
+        final List<RasterConfiguration> threadCandidates = new ArrayList<>();
+        for (final int threadCount : new int[]{1, processors / 2, processors, 2 * processors}) {
+            final RasterConfiguration candidate = RasterConfiguration.parallel(Math.max(1, threadCount),
+                    ParallelRaster.DEFAULT_TILE_SIZE, Optional.empty());
+            if (!threadCandidates.contains(candidate))
+                threadCandidates.add(candidate);
+        }
+        final RasterConfiguration threadWinner = findFastest(raytracer, width, height, threadCandidates);
+
+        final List<RasterConfiguration> tileCandidates = new ArrayList<>();
+        for (final int tileSize : TILE_SIZES) {
+            tileCandidates.add(RasterConfiguration.parallel(threadWinner.getThreadCount(), tileSize, Optional.empty()));
+        }
+        final RasterConfiguration tileWinner = findFastest(raytracer, width, height, tileCandidates);
+
+        final List<RasterConfiguration> orderCandidates = new ArrayList<>();
+        orderCandidates.add(tileWinner);
+        for (final TileOrder tileOrder : TileOrder.values()) {
+            orderCandidates.add(RasterConfiguration.parallel(tileWinner.getThreadCount(), tileWinner.getTileSize(),
+                    Optional.of(tileOrder)));
+        }
+        orderCandidates.add(RasterConfiguration.coherent(tileWinner.getThreadCount()));
+        return findFastest(raytracer, width, height, orderCandidates);
+    }
+
+    /**
+     * Measures the throughput of a configuration on the probe window of a frame.
+     *
+     * @param configuration The configuration.
+     * @param raytracer     The raytracer of the render.
+     * @param width         The width of the frame, must be positive.
+     * @param height        The height of the frame, must be positive.
+     * @return The pixels per second of the fastest render.
+     */
+    public double measure(final RasterConfiguration configuration, final Raytracer raytracer, final int width,
+                          final int height) {
+        assert configuration != null;
+        assert raytracer != null;
+
+        final int probeWidth = Math.min(width, PROBE_SIZE);
+        final int probeHeight = Math.min(height, PROBE_SIZE);
+        final ParallelRaster raster = configuration.createRaster(probeWidth, probeHeight);
+        raster.setFrame(width, height, (width - probeWidth) / 2, (height - probeHeight) / 2);
+
+        for (int render = 0; render < WARM_UP_RENDERS; render++) {
+            raster.render(raytracer);
+        }
+
+        long bestTime = Long.MAX_VALUE;
+        for (int render = 0; render < PROBE_RENDERS; render++) {
+            final long start = System.nanoTime();
+            raster.render(raytracer);
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+
+        return (double) probeWidth * probeHeight * NANOSECONDS_PER_SECOND / Math.max(1, bestTime);
+    }
+
+    /**
+     * Finds the configuration with the highest throughput. On a tie, the earlier one wins.
+     *
+     * @param raytracer  The raytracer of the render.
+     * @param width      The width of the frame.
+     * @param height     The height of the frame.
+     * @param candidates The configurations, at least one.
+     * @return The fastest configuration.
+     */
+    private RasterConfiguration findFastest(final Raytracer raytracer, final int width, final int height,
+                                            final List<RasterConfiguration> candidates) {
+        RasterConfiguration fastest = null;
+        double bestThroughput = 0;
+        for (final RasterConfiguration candidate : candidates) {
+            final double throughput = measure(candidate, raytracer, width, height);
+            if (fastest == null || throughput > bestThroughput) {
+                fastest = candidate;
+                bestThroughput = throughput;
+            }
+        }
+
+        return fastest;
+    }
+
+    /**
+     * Reads the profile file.
+     *
+     * @return The profile, which is empty, if the file doesn't exist.
+     * @throws IOException If the file cannot be read.
+     */
+    private Properties loadProfile() throws IOException {
+        final Properties profile = new Properties();
+        if (Files.exists(profileFile)) {
+            try (InputStream input = Files.newInputStream(profileFile)) {
+                profile.load(input);
+            }
+        }
+
+        return profile;
+    }
+
+    /**
+     * Writes the profile file. The old file is replaced atomically, so a crash never leaves a broken profile.
+     *
+     * @param profile The profile.
+     * @throws IOException If the file cannot be written.
+     */
+    private void storeProfile(final Properties profile) throws IOException {
+        final Path absoluteFile = profileFile.toAbsolutePath();
+        Files.createDirectories(absoluteFile.getParent());
+
+        final Path temporaryFile = Files.createTempFile(absoluteFile.getParent(), absoluteFile.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temporaryFile)) {
+                profile.store(output, "Raster configurations by host, frame size and scene");
+            }
+            Files.move(temporaryFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Creates the key of a render in the profile.
+     *
+     * @param raytracer The raytracer of the render.
+     * @param width     The width of the frame.
+     * @param height    The height of the frame.
+     * @return The key with the host, the size and the hash of the fingerprint of the raytracer.
+     */
+    static String createKey(final Raytracer raytracer, final int width, final int height) {
+        assert raytracer != null;
+
+        return String.format("%s/%dx%d/%s", getHostName(), width, height, hash(raytracer.getFingerprint()));
+    }
+
+    /**
+     * Gets the name of the host with its architecture and the count of usable processors.
+     *
+     * @return The name like "render-01/amd64/8".
+     */
+    static String getHostName() {
+        String name;
+        try {
+            name = InetAddress.getLocalHost().getHostName();
+        } catch (final UnknownHostException exception) {
+            // Without a resolvable name, the hosts of a profile can't be told apart anymore.
+            name = "unknown";
+        }
+
+        return String.format("%s/%s/%d", name, System.getProperty("os.arch"), Processors.getAvailableCount());
+    }
+
+    /**
+     * Hashes a fingerprint, so the keys of the profile stay short.
+     *
+     * @param fingerprint The fingerprint.
+     * @return The first 16 hexadecimal digits of the SHA-256 hash.
+     */
+    private static String hash(final String fingerprint) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException exception) {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(exception);
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (final byte value : digest.digest(fingerprint.getBytes(StandardCharsets.UTF_8))) {
+            builder.append(String.format("%02x", value));
+        }
+
+        return builder.substring(0, 16);
+    }
+}
@@ -0,0 +1,126 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token, with which a render can be cancelled from another thread.
+ * <p>
+ * Rasters check the token between their tiles, so a cancelled render stops after the tiles, that are already being
+ * rendered. A token is cancelled explicitly, by its deadline or by its parent.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class CancellationToken {
+    /**
+     * The token, whose cancellation cancels this token, too.
+     */
+    private final Optional<CancellationToken> parent;
+
+    /**
+     * Whether the token is cancelled explicitly.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Whether the token has a deadline.
+     */
+    private volatile boolean hasDeadline;
+
+    /**
+     * The time in nanoseconds, at which the token is cancelled.
+     */
+    private volatile long deadline;
+
+    /**
+     * Constructs a token, which is only cancelled explicitly or by its deadline.
+     */
+    public CancellationToken() {
+        this(Optional.empty());
+    }
+
+    /**
+     * Constructs a token with a parent.
+     *
+     * @param parent The parent of the token.
+     */
+    private CancellationToken(final Optional<CancellationToken> parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a token, that is cancelled together with this token, but can be cancelled alone, too.
+     *
+     * @return The child token.
+     */
+    public CancellationToken createChild() {
+        return new CancellationToken(Optional.of(this));
+    }
+
+    /**
+     * Cancels the token.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Cancels the token after a time. An earlier deadline is replaced.
+     *
+     * @param timeout The time until the token is cancelled, must be positive or 0.
+     * @param unit    The unit of the time.
+     */
+    public void cancelAfter(final long timeout, final TimeUnit unit) {
+        assert unit != null;
+        if (timeout < 0)
+            throw new IllegalArgumentException("timeout is negative.");
+
+        deadline = System.nanoTime() + unit.toNanos(timeout);
+        hasDeadline = true;
+    }
+
+    /**
+     * Gets the time until the deadline of the token or its parents.
+     *
+     * @return The time in nanoseconds, which is negative, if the deadline is passed, or an empty optional, if there
+     * isn't a deadline.
+     */
+    public Optional<Long> getRemainingTime() {
+        Optional<Long> remainingTime = parent.flatMap(CancellationToken::getRemainingTime);
+        if (hasDeadline) {
+            final long ownRemainingTime = deadline - System.nanoTime();
+            if (!remainingTime.isPresent() || ownRemainingTime < remainingTime.get()) {
+                remainingTime = Optional.of(ownRemainingTime);
+            }
+        }
+        return remainingTime;
+    }
+
+    /**
+     * Tests if the token is cancelled.
+     *
+     * @return True, if the token, its parent or their deadlines cancelled it.
+     */
+    public boolean isCancelled() {
+        return cancelled
+                || hasDeadline && System.nanoTime() - deadline >= 0
+                || parent.isPresent() && parent.get().isCancelled();
+    }
+
+    /**
+     * Throws an exception, if the token is cancelled.
+     *
+     * @throws CancellationException If the token is cancelled.
+     */
+    public void throwIfCancelled() {
+        if (isCancelled())
+            throw new CancellationException("render is cancelled.");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CancellationToken{cancelled=%s, remainingTime=%s}", isCancelled(), getRemainingTime());
+    }
+}
@@ -0,0 +1,178 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A parallel raster, that records its completed tiles in a {@link TileJournal}, so a render, that was killed, can be
+ * continued by another process.
+ * <p>
+ * A render restores the tiles of an earlier render with the same fingerprint from the directory and only renders the
+ * missing ones. The fingerprint contains the scene, the looker, the settings of the raytracer and the raster.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class CheckpointedRaster extends ParallelRaster {
+    /**
+     * The default time in seconds between two snapshots.
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 60;
+
+    /**
+     * The directory of the journal.
+     */
+    private final Path directory;
+
+    /**
+     * The time in seconds between two snapshots.
+     */
+    private final long snapshotInterval;
+
+    /**
+     * The tiles by their index in the grid, row by row.
+     */
+    private final List<Tile> tiles;
+
+    /**
+     * The count of tiles in a row of the grid.
+     */
+    private final int tileColumns;
+
+    /**
+     * The journal of the current render.
+     */
+    private volatile TileJournal journal;
+
+    /**
+     * The count of tiles, that were restored by the last render.
+     */
+    private final LongAdder restoredTileCount = new LongAdder();
+
+    /**
+     * Constructs a CheckpointedRaster with the default snapshot interval.
+     *
+     * @param directory   The directory of the journal.
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public CheckpointedRaster(final Path directory, final int width, final int height, final int threadCount) {
+        this(directory, width, height, threadCount, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Constructs a CheckpointedRaster.
+     *
+     * @param directory        The directory of the journal.
+     * @param width            The width of the raster, must be positive.
+     * @param height           The height of the raster, must be positive.
+     * @param threadCount      The number of threads to use, must be positive or 0. If it's 0, than the count of
+     *                         available processors is used.
+     * @param snapshotInterval The time in seconds between two snapshots, must be positive.
+     */
+    public CheckpointedRaster(final Path directory, final int width, final int height, final int threadCount,
+                              final long snapshotInterval) {
+        super(FrameBuffer.allocate(PixelFormat.PACKED_RGB, width, height), threadCount, DEFAULT_TILE_SIZE,
+                Optional.of(TileOrder.HILBERT));
+        assert directory != null;
+
+        if (snapshotInterval < 1)
+            throw new IllegalArgumentException("snapshotInterval is less than 1.");
+
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+
+        tileColumns = (width + DEFAULT_TILE_SIZE - 1) / DEFAULT_TILE_SIZE;
+        final int tileRows = (height + DEFAULT_TILE_SIZE - 1) / DEFAULT_TILE_SIZE;
+        final List<Tile> grid = new ArrayList<>(tileColumns * tileRows);
+        for (int row = 0; row < tileRows; row++) {
+            for (int column = 0; column < tileColumns; column++) {
+                final int xCoordinate = column * DEFAULT_TILE_SIZE;
+                final int yCoordinate = row * DEFAULT_TILE_SIZE;
+                grid.add(new Tile(xCoordinate, yCoordinate,
+                        Math.min(DEFAULT_TILE_SIZE, width - xCoordinate), Math.min(DEFAULT_TILE_SIZE, height - yCoordinate)));
+            }
+        }
+        tiles = Collections.unmodifiableList(grid);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the count of tiles, that the last render restored from the journal instead of rendering them.
+     *
+     * @return The count of tiles.
+     */
+    public long getRestoredTileCount() {
+        return restoredTileCount.sum();
+    }
+
+    /**
+     * Gets the fingerprint of a render with a raytracer.
+     *
+     * @param raytracer The raytracer.
+     * @return The fingerprint.
+     */
+    public String getFingerprint(final Raytracer raytracer) {
+        return String.format("%s, raster=%s %dx%d, tileSize=%d", raytracer.getFingerprint(), getClass().getName(),
+                getWidth(), getHeight(), getTileSize());
+    }
+
+    /**
+     * Deletes the journal and the snapshot, so the next render starts from scratch.
+     *
+     * @throws IOException If the files cannot be deleted.
+     */
+    public void discardCheckpoint() throws IOException {
+        TileJournal.delete(directory);
+    }
+
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        restoredTileCount.reset();
+        try (TileJournal openedJournal = new TileJournal(directory, getFingerprint(raytracer), getFrameBuffer(), tiles,
+                TimeUnit.SECONDS.toNanos(snapshotInterval))) {
+            restoredTileCount.add(openedJournal.getRestoredTileCount());
+
+            journal = openedJournal;
+            super.render(raytracer);
+            // The finished image is kept in the snapshot, so a restart doesn't render anything.
+            openedJournal.checkpoint();
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        } finally {
+            journal = null;
+        }
+
+        return this;
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        final int index = tile.getYCoordinate() / DEFAULT_TILE_SIZE * tileColumns + tile.getXCoordinate() / DEFAULT_TILE_SIZE;
+        if (journal.isCompleted(index))
+            return;
+
+        super.renderTile(raytracer, coordinateConverter, tile);
+        try {
+            journal.record(index);
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
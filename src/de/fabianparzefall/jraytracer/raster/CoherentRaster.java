@@ -0,0 +1,73 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+import de.fabianparzefall.jraytracer.tracer.SecondaryRayScheduler;
+
+/**
+ * A parallel raster, that traces the rays of every tile in coherent waves with a {@link SecondaryRayScheduler}.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class CoherentRaster extends ParallelRaster {
+    /**
+     * The scheduler of the last render.
+     */
+    private SecondaryRayScheduler scheduler;
+
+    /**
+     * Constructs a CoherentRaster from width, height and the count of threads.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public CoherentRaster(final int width, final int height, final int threadCount) {
+        super(width, height, threadCount);
+    }
+
+    /**
+     * Gets the scheduler of the last render, which holds the statistics about the secondary rays.
+     *
+     * @return The scheduler.
+     */
+    public SecondaryRayScheduler getScheduler() {
+        if (scheduler == null)
+            throw new IllegalStateException("raster wasn't rendered yet.");
+
+        return scheduler;
+    }
+
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        scheduler = new SecondaryRayScheduler(raytracer);
+        return super.render(raytracer);
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        final Ray[] primaryRays = new Ray[tile.getArea()];
+        int index = 0;
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            final double verticalCoordinate = coordinateConverter.calculateVerticalCoordinate(yCoordinate);
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                primaryRays[index++] = raytracer.getPrimaryRay(
+                        coordinateConverter.calculateHorizontalCoordinate(xCoordinate), verticalCoordinate,
+                        coordinateConverter.getPixelSize());
+            }
+        }
+
+        final double[] channels = scheduler.trace(primaryRays);
+        index = 0;
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                setColor(yCoordinate, xCoordinate, Color.fromChannels(channels, index++ * Color.CHANNELS));
+            }
+        }
+    }
+}
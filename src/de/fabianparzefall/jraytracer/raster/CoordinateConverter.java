@@ -4,7 +4,7 @@ package de.fabianparzefall.jraytracer.raster;
  * This class provides methods to convert resolution based coordinates to viewport coordinates.
  *
  * @author Fabian Parzefall
- * @version 15-06-16
+ * @version 26-10-19
  */
 class CoordinateConverter {
     /**
@@ -27,6 +27,16 @@ class CoordinateConverter {
      */
     private final double verticalShift;
 
+    /**
+     * The x coordinate in the frame of the first column of the raster.
+     */
+    private final int horizontalOffset;
+
+    /**
+     * The y coordinate in the frame of the first row of the raster.
+     */
+    private final int verticalOffset;
+
     /**
      * Constructs the CoordinateConverter with the resolution of the raster.
      *
@@ -34,30 +44,96 @@ class CoordinateConverter {
      * @param verticalResolution   The vertical resoultion of the raster.
      */
     public CoordinateConverter(final int horizontalResolution, final int verticalResolution) {
+        this(horizontalResolution, verticalResolution, 0, 0);
+    }
+
+    /**
+     * Constructs the CoordinateConverter for a raster, which is a part of a bigger frame.
+     *
+     * @param horizontalResolution The horizontal resolution of the frame.
+     * @param verticalResolution   The vertical resolution of the frame.
+     * @param horizontalOffset     The x coordinate in the frame of the first column of the raster.
+     * @param verticalOffset       The y coordinate in the frame of the first row of the raster.
+     */
+    public CoordinateConverter(final int horizontalResolution, final int verticalResolution,
+                               final int horizontalOffset, final int verticalOffset) {
         horizontalFactor = calculateScaleFactor(horizontalResolution);
         horizontalShift = calculateShift(horizontalResolution);
         verticalFactor = calculateScaleFactor(verticalResolution);
         verticalShift = calculateShift(verticalResolution);
+        this.horizontalOffset = horizontalOffset;
+        this.verticalOffset = verticalOffset;
     }
 
     /**
      * Calculates the horizontal viewport coordinate component.
      *
-     * @param xCoordinate The horizontal coordinate component.
+     * @param xCoordinate The horizontal coordinate component in the raster.
      * @return The horizontal viewport coordinate component.
      */
     public double calculateHorizontalCoordinate(final int xCoordinate) {
-        return xCoordinate * horizontalFactor - horizontalShift;
+        return (xCoordinate + horizontalOffset) * horizontalFactor - horizontalShift;
     }
 
     /**
      * Calculates the vertical viewport coordinate component.
      *
-     * @param yCoordinate The vertical coordinate component.
+     * @param yCoordinate The vertical coordinate component in the raster.
      * @return The vertical viewport coordinate component.
      */
     public double calculateVerticalCoordinate(final int yCoordinate) {
-        return yCoordinate * verticalFactor - verticalShift;
+        return (yCoordinate + verticalOffset) * verticalFactor - verticalShift;
+    }
+
+    /**
+     * Calculates the horizontal viewport coordinate component of a position within a pixel.
+     *
+     * @param xCoordinate The horizontal coordinate component, the centre of pixel x is at x.
+     * @return The horizontal viewport coordinate component.
+     */
+    public double calculateHorizontalCoordinate(final double xCoordinate) {
+        return (xCoordinate + horizontalOffset) * horizontalFactor - horizontalShift;
+    }
+
+    /**
+     * Calculates the vertical viewport coordinate component of a position within a pixel.
+     *
+     * @param yCoordinate The vertical coordinate component, the centre of pixel y is at y.
+     * @return The vertical viewport coordinate component.
+     */
+    public double calculateVerticalCoordinate(final double yCoordinate) {
+        return (yCoordinate + verticalOffset) * verticalFactor - verticalShift;
+    }
+
+    /**
+     * Converts a horizontal viewport coordinate back to a x coordinate of the raster. This is the inverse of
+     * {@link #calculateHorizontalCoordinate(double)}.
+     *
+     * @param horizontal The horizontal viewport coordinate.
+     * @return The x coordinate, whose integer values are the centers of the pixels.
+     */
+    public double calculateXCoordinate(final double horizontal) {
+        return (horizontal + horizontalShift) / horizontalFactor - horizontalOffset;
+    }
+
+    /**
+     * Converts a vertical viewport coordinate back to a y coordinate of the raster. This is the inverse of
+     * {@link #calculateVerticalCoordinate(double)}.
+     *
+     * @param vertical The vertical viewport coordinate.
+     * @return The y coordinate, whose integer values are the centers of the pixels.
+     */
+    public double calculateYCoordinate(final double vertical) {
+        return (vertical + verticalShift) / verticalFactor - verticalOffset;
+    }
+
+    /**
+     * Gets the size of a pixel in viewport coordinates.
+     *
+     * @return The bigger one of width and height of a pixel.
+     */
+    public double getPixelSize() {
+        return Math.max(horizontalFactor, verticalFactor);
     }
 
     /**
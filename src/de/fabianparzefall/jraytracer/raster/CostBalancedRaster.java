@@ -0,0 +1,141 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parallel raster, that splits the raster into work units of nearly the same cost instead of the same size.
+ * <p>
+ * The cost of a pixel differs a lot: a pixel of the background traces a single ray, while a pixel between two mirrors
+ * traces reflexions, until their weight gets too low. A render first traces one sample pixel in every cell of a coarse
+ * grid and counts its rays in a {@link CostMap}. Then the raster is partitioned into a few work units per thread with
+ * nearly the same count of rays, which the workers take the most expensive one first. So no worker is left alone with
+ * an expensive part of the raster at the end.
+ * <p>
+ * The probe pass doesn't use the irradiance cache of the raytracer, so with a cache the diffuse light is estimated a
+ * little more expensive than it is.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class CostBalancedRaster extends ParallelRaster {
+    /**
+     * The default distance between the sample pixels of the probe pass.
+     */
+    public static final int DEFAULT_PROBE_STRIDE = 8;
+
+    /**
+     * The count of work units per thread. More units balance errors of the estimate, fewer units save overhead.
+     */
+    private static final int UNITS_PER_THREAD = 8;
+
+    /**
+     * The distance between the sample pixels of the probe pass.
+     */
+    private final int probeStride;
+
+    /**
+     * The cost map, that the probe pass fills, or null, if the raster doesn't probe.
+     */
+    private volatile CostMap probedCostMap;
+
+    /**
+     * The work units of the last render.
+     */
+    private volatile List<Tile> workUnits = Collections.emptyList();
+
+    /**
+     * Constructs a CostBalancedRaster from width, height and the count of threads.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public CostBalancedRaster(final int width, final int height, final int threadCount) {
+        this(width, height, threadCount, DEFAULT_PROBE_STRIDE);
+    }
+
+    /**
+     * Constructs a CostBalancedRaster from width, height, the count of threads and the stride of the probe pass.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param probeStride The distance between the sample pixels of the probe pass, must be positive. The probe pass
+     *                    traces one of probeStride * probeStride pixels.
+     */
+    public CostBalancedRaster(final int width, final int height, final int threadCount, final int probeStride) {
+        super(width, height, threadCount);
+
+        if (probeStride < 1)
+            throw new IllegalArgumentException("probeStride is less than 1.");
+
+        this.probeStride = probeStride;
+    }
+
+    public int getProbeStride() {
+        return probeStride;
+    }
+
+    /**
+     * Gets the work units of the last render in the order, in which they were taken.
+     *
+     * @return The work units, which are empty before the first render.
+     */
+    public List<Tile> getWorkUnits() {
+        return workUnits;
+    }
+
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        final CostMap costMap = new CostMap(getWidth(), getHeight(), probeStride);
+        final Raytracer probeRaytracer = new Raytracer(new RayCountingScene(raytracer.getScene()), raytracer.getLooker())
+                .withMaximumReflexionDepth(raytracer.getMaximumReflexionDepth());
+        probedCostMap = costMap;
+        try {
+            super.render(probeRaytracer);
+        } finally {
+            probedCostMap = null;
+        }
+
+        workUnits = Collections.unmodifiableList(costMap.partition(getThreadCount() * UNITS_PER_THREAD));
+        return renderTiles(raytracer, workUnits);
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        final CostMap costMap = probedCostMap;
+        if (costMap == null) {
+            super.renderTile(raytracer, coordinateConverter, tile);
+            return;
+        }
+
+        // Only the sample pixels within the tile are traced, their colours are traced again by the full pass.
+        final RayCountingScene countingScene = (RayCountingScene) raytracer.getScene();
+        for (int row = tile.getYCoordinate() / probeStride; row < costMap.getRows(); row++) {
+            final int yCoordinate = costMap.getSampleYCoordinate(row);
+            if (yCoordinate < tile.getYCoordinate())
+                continue;
+            if (yCoordinate >= tile.getEndYCoordinate())
+                break;
+
+            for (int column = tile.getXCoordinate() / probeStride; column < costMap.getColumns(); column++) {
+                final int xCoordinate = costMap.getSampleXCoordinate(column);
+                if (xCoordinate < tile.getXCoordinate())
+                    continue;
+                if (xCoordinate >= tile.getEndXCoordinate())
+                    break;
+
+                final long previousRayCount = countingScene.getRayCount();
+                tracePixel(raytracer, coordinateConverter, yCoordinate, xCoordinate);
+                costMap.setCost(row, column, countingScene.getRayCount() - previousRayCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The estimated cost of the pixels of a raster in a grid of square cells.
+ * <p>
+ * Every cell gets the cost of one sample pixel for all of its pixels. The map partitions the raster into tiles of
+ * nearly the same cost by splitting it again and again across its longer side, where the costs of both parts match
+ * the counts of tiles, that they get.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+final class CostMap {
+    /**
+     * The width of the raster.
+     */
+    private final int width;
+
+    /**
+     * The height of the raster.
+     */
+    private final int height;
+
+    /**
+     * The edge length of a cell in pixels.
+     */
+    private final int cellSize;
+
+    /**
+     * The count of cells in a row.
+     */
+    private final int columns;
+
+    /**
+     * The count of cells in a column.
+     */
+    private final int rows;
+
+    /**
+     * The costs of the cells row by row.
+     */
+    private final long[] costs;
+
+    /**
+     * Constructs a CostMap, in which all cells cost nothing.
+     *
+     * @param width    The width of the raster, must be positive.
+     * @param height   The height of the raster, must be positive.
+     * @param cellSize The edge length of a cell, must be positive.
+     */
+    CostMap(final int width, final int height, final int cellSize) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("width and height must be positive.");
+        if (cellSize < 1)
+            throw new IllegalArgumentException("cellSize is less than 1.");
+
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        columns = (width + cellSize - 1) / cellSize;
+        rows = (height + cellSize - 1) / cellSize;
+        costs = new long[columns * rows];
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the x coordinate of the sample pixels of a column of cells.
+     *
+     * @param column The column.
+     * @return The x coordinate in the centre of the cell or the last one of the raster.
+     */
+    int getSampleXCoordinate(final int column) {
+        return Math.min(column * cellSize + cellSize / 2, width - 1);
+    }
+
+    /**
+     * Gets the y coordinate of the sample pixels of a row of cells.
+     *
+     * @param row The row.
+     * @return The y coordinate in the centre of the cell or the last one of the raster.
+     */
+    int getSampleYCoordinate(final int row) {
+        return Math.min(row * cellSize + cellSize / 2, height - 1);
+    }
+
+    /**
+     * Sets the cost of a cell by the cost of its sample pixel. Cells at the edges of the raster have fewer pixels.
+     *
+     * @param row       The row of the cell.
+     * @param column    The column of the cell.
+     * @param pixelCost The cost of the sample pixel, must be at least 0.
+     */
+    void setCost(final int row, final int column, final long pixelCost) {
+        if (pixelCost < 0)
+            throw new IllegalArgumentException("pixelCost is negative.");
+
+        final long cellWidth = Math.min(cellSize, width - column * cellSize);
+        final long cellHeight = Math.min(cellSize, height - row * cellSize);
+        costs[row * columns + column] = pixelCost * cellWidth * cellHeight;
+    }
+
+    /**
+     * Partitions the raster into tiles of nearly the same cost. A cell is never split, so there are fewer tiles, if
+     * there are fewer cells.
+     *
+     * @param count The count of tiles, must be positive.
+     * @return The tiles, the most expensive one first.
+     */
+    List<Tile> partition(final int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("count is less than 1.");
+
+        // The sums of all cells above and left of a corner give the cost of any rectangle in constant time.
+        final long[] sums = new long[(rows + 1) * (columns + 1)];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                sums[(row + 1) * (columns + 1) + column + 1] = costs[row * columns + column]
+                        + sums[row * (columns + 1) + column + 1]
+                        + sums[(row + 1) * (columns + 1) + column]
+                        - sums[row * (columns + 1) + column];
+            }
+        }
+
+        final List<Tile> tiles = new ArrayList<>(count);
+        split(sums, 0, 0, columns, rows, count, tiles);
+        tiles.sort(Comparator.comparingLong((Tile tile) -> sum(sums, tile.getXCoordinate() / cellSize,
+                tile.getYCoordinate() / cellSize, (tile.getEndXCoordinate() + cellSize - 1) / cellSize,
+                (tile.getEndYCoordinate() + cellSize - 1) / cellSize)).reversed());
+
+        return tiles;
+    }
+
+    /**
+     * Splits a rectangle of cells into a count of tiles.
+     *
+     * @param sums        The sums of the cells above and left of every corner.
+     * @param firstColumn The first column of the rectangle.
+     * @param firstRow    The first row of the rectangle.
+     * @param endColumn   The column after the rectangle.
+     * @param endRow      The row after the rectangle.
+     * @param count       The count of tiles, that the rectangle gets.
+     * @param tiles       The list, to which the tiles are added.
+     */
+    private void split(final long[] sums, final int firstColumn, final int firstRow, final int endColumn,
+                       final int endRow, final int count, final List<Tile> tiles) {
+        final int columnCount = endColumn - firstColumn;
+        final int rowCount = endRow - firstRow;
+        if (count == 1 || columnCount == 1 && rowCount == 1) {
+            final int xCoordinate = firstColumn * cellSize;
+            final int yCoordinate = firstRow * cellSize;
+            tiles.add(new Tile(xCoordinate, yCoordinate, Math.min(endColumn * cellSize, width) - xCoordinate,
+                    Math.min(endRow * cellSize, height) - yCoordinate));
+            return;
+        }
+
+        // The first part gets the smaller half of the tiles and the matching share of the cost.
+        final int firstCount = count / 2;
+        final double target = (double) sum(sums, firstColumn, firstRow, endColumn, endRow) * firstCount / count;
+        final boolean splitColumns = columnCount >= rowCount;
+        final int first = splitColumns ? firstColumn : firstRow;
+        final int end = splitColumns ? endColumn : endRow;
+
+        int bestSplit = first + 1;
+        double bestDifference = Double.MAX_VALUE;
+        for (int split = first + 1; split < end; split++) {
+            final long firstCost = splitColumns
+                    ? sum(sums, firstColumn, firstRow, split, endRow)
+                    : sum(sums, firstColumn, firstRow, endColumn, split);
+            final double difference = Math.abs(firstCost - target);
+            if (difference < bestDifference) {
+                bestSplit = split;
+                bestDifference = difference;
+            }
+        }
+
+        if (splitColumns) {
+            split(sums, firstColumn, firstRow, bestSplit, endRow, firstCount, tiles);
+            split(sums, bestSplit, firstRow, endColumn, endRow, count - firstCount, tiles);
+        } else {
+            split(sums, firstColumn, firstRow, endColumn, bestSplit, firstCount, tiles);
+            split(sums, firstColumn, bestSplit, endColumn, endRow, count - firstCount, tiles);
+        }
+    }
+
+    /**
+     * Sums the costs of a rectangle of cells.
+     *
+     * @param sums        The sums of the cells above and left of every corner.
+     * @param firstColumn The first column of the rectangle.
+     * @param firstRow    The first row of the rectangle.
+     * @param endColumn   The column after the rectangle.
+     * @param endRow      The row after the rectangle.
+     * @return The cost of the rectangle.
+     */
+    private long sum(final long[] sums, final int firstColumn, final int firstRow, final int endColumn,
+                     final int endRow) {
+        return sums[endRow * (columns + 1) + endColumn]
+                - sums[firstRow * (columns + 1) + endColumn]
+                - sums[endRow * (columns + 1) + firstColumn]
+                + sums[firstRow * (columns + 1) + firstColumn];
+    }
+}
@@ -0,0 +1,64 @@
+package de.fabianparzefall.jraytracer.raster;
+
+/**
+ * A parallel raster, that renders only a window of a bigger frame.
+ * <p>
+ * The pixels of the window are traced exactly like a raster with the resolution of the frame would trace them, but
+ * only the window is traced and only its pixels are stored. So a patch, that replaces a part of a frame, costs time and
+ * memory in proportion to its area. The patch is merged into the frame by {@link #mergeInto(FrameBuffer)} or into an
+ * image file by a {@link de.fabianparzefall.jraytracer.image.MergeableImage}.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class CropRaster extends ParallelRaster {
+    /**
+     * The window in the coordinates of the frame.
+     */
+    private final Tile window;
+
+    /**
+     * Constructs a CropRaster.
+     *
+     * @param frameWidth  The width of the frame, must be positive.
+     * @param frameHeight The height of the frame, must be positive.
+     * @param window      The window, that is rendered, in the coordinates of the frame. It must be within the frame.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public CropRaster(final int frameWidth, final int frameHeight, final Tile window, final int threadCount) {
+        super(window.getWidth(), window.getHeight(), threadCount);
+
+        setFrame(frameWidth, frameHeight, window.getXCoordinate(), window.getYCoordinate());
+        this.window = window;
+    }
+
+    public Tile getWindow() {
+        return window;
+    }
+
+    /**
+     * Copies the rendered window into the buffer of the frame. The colours are copied in the precision of the pixel
+     * formats.
+     *
+     * @param frameBuffer The buffer with the resolution of the frame.
+     */
+    public void mergeInto(final FrameBuffer frameBuffer) {
+        assert frameBuffer != null;
+        if (frameBuffer.getWidth() != getFrameWidth() || frameBuffer.getHeight() != getFrameHeight())
+            throw new IllegalArgumentException("frameBuffer doesn't have the resolution of the frame.");
+
+        final FrameBuffer patch = getFrameBuffer();
+        for (int yCoordinate = 0; yCoordinate < window.getHeight(); yCoordinate++) {
+            for (int xCoordinate = 0; xCoordinate < window.getWidth(); xCoordinate++) {
+                frameBuffer.setColor(window.getYCoordinate() + yCoordinate, window.getXCoordinate() + xCoordinate,
+                        patch.getColor(yCoordinate, xCoordinate));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CropRaster{frameWidth=%d, frameHeight=%d, window=%s}", getFrameWidth(), getFrameHeight(), window);
+    }
+}
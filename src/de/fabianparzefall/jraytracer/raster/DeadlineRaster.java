@@ -0,0 +1,325 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.sampling.SamplePattern;
+import de.fabianparzefall.jraytracer.sampling.Sampler;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A raster, that returns a complete image within a time budget.
+ * <p>
+ * The raster climbs the levels of {@link RenderQuality}: it renders progressive passes with one reflexion, then the
+ * image with all reflexions and at last antialiased images with more and more samples. Before each step, the time of
+ * the step is estimated from the steps before and the step is only started, if it fits into the remaining budget. A
+ * step, that takes longer than estimated, is cancelled at the deadline and the image of the level before is kept. Every
+ * progressive pass publishes a frame with its own buffer, so the image of a pass stays complete, while the next pass is
+ * rendered.
+ * <p>
+ * The antialiased levels refine the image with all reflexions in place with a nested pattern, so every level only
+ * traces the new samples of the contrasting pixels. If an antialiased level is cancelled, the pixels, that it has
+ * refined, keep their samples.
+ * <p>
+ * The coarsest pass is always finished, so the budget can be exceeded, if it is shorter than this pass.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class DeadlineRaster implements Raster {
+    /**
+     * The count of reflexions of the progressive passes.
+     */
+    static final int SHALLOW_REFLEXION_DEPTH = 1;
+
+    /**
+     * The factor of the time of the image with all reflexions, that the first antialiased level is estimated to take.
+     * It traces three more samples only in the contrasting pixels. Measured between 0.1 and 0.4 on grey and coloured
+     * scenes.
+     */
+    private static final double ANTIALIASING_COST = 0.5;
+
+    /**
+     * The factor of the time of the level before, that a finer antialiased level is estimated to take. Most refined
+     * pixels converge at 2x2 samples, so only a few get the finer grid. Measured between 1.0 and 1.6 on grey and
+     * coloured scenes.
+     */
+    private static final double REFINEMENT_COST = 2;
+
+    /**
+     * The sampler of the antialiased levels, whose pattern is nested, so a level keeps the samples of the level before.
+     */
+    private static final Sampler ANTIALIASING_SAMPLER = new Sampler(SamplePattern.SOBOL, 0);
+
+    /**
+     * The width of the raster.
+     */
+    private final int width;
+
+    /**
+     * The height of the raster.
+     */
+    private final int height;
+
+    /**
+     * The number of threads.
+     */
+    private final int threadCount;
+
+    /**
+     * The time budget of a render in milliseconds.
+     */
+    private final long budget;
+
+    /**
+     * The token, that cancels the renders.
+     */
+    private volatile CancellationToken cancellationToken = new CancellationToken();
+
+    /**
+     * The image of the highest level reached so far or null, if nothing is rendered yet.
+     */
+    private volatile PixelView image;
+
+    /**
+     * The highest level reached so far or null, if nothing is rendered yet.
+     */
+    private volatile RenderQuality quality;
+
+    /**
+     * Constructs a DeadlineRaster.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param budget      The time budget of a render in milliseconds, must be positive.
+     */
+    public DeadlineRaster(final int width, final int height, final int threadCount, final long budget) {
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+        if (threadCount < 0)
+            throw new IllegalArgumentException("threadCount must be at least 0.");
+        if (budget < 1)
+            throw new IllegalArgumentException("budget is less than 1.");
+
+        this.width = width;
+        this.height = height;
+        this.threadCount = threadCount;
+        this.budget = budget;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Sets the token, that cancels the following renders. A cancelled render throws a {@link CancellationException}
+     * instead of returning the image of a lower level.
+     *
+     * @param cancellationToken The token.
+     */
+    public void setCancellationToken(final CancellationToken cancellationToken) {
+        assert cancellationToken != null;
+
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Gets the level, that the last render reached.
+     *
+     * @return The level or an empty optional, if nothing is rendered yet.
+     */
+    public Optional<RenderQuality> getQuality() {
+        return Optional.ofNullable(quality);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getPixel(final int yCoordinate, final int xCoordinate) {
+        return getImage().getPixel(yCoordinate, xCoordinate);
+    }
+
+    @Override
+    public int getColor(final int yCoordinate, final int xCoordinate) {
+        return getImage().getColor(yCoordinate, xCoordinate);
+    }
+
+    /**
+     * Gets the image of the highest level.
+     *
+     * @return The image.
+     */
+    private PixelView getImage() {
+        final PixelView currentImage = image;
+        if (currentImage == null)
+            throw new IllegalStateException("raster is not rendered.");
+        return currentImage;
+    }
+
+    /**
+     * Renders the image with the highest quality, that fits into the budget.
+     *
+     * @param raytracer The raytracer.
+     * @return This with the rendered image.
+     * @throws CancellationException If the render is cancelled by the token or an interrupt.
+     */
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        cancellationToken.throwIfCancelled();
+        image = null;
+        quality = null;
+
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(budget);
+
+        renderPasses(raytracer.withMaximumReflexionDepth(SHALLOW_REFLEXION_DEPTH), deadline);
+        if (quality != RenderQuality.SHALLOW)
+            return this;
+
+        // The passes trace every pixel once, like the image with all reflexions, which only traces more mirrored rays.
+        final long fullStart = System.nanoTime();
+        if (deadline - fullStart < fullStart - start)
+            return this;
+        // The image with all reflexions is the first pass of the antialiased levels.
+        final AdaptiveSupersampled fullRaster = new AdaptiveSupersampled(width, height, threadCount,
+                RenderQuality.ANTIALIASED.getMaximumSamples(), AdaptiveSupersampled.DEFAULT_CONTRAST_THRESHOLD,
+                ANTIALIASING_SAMPLER);
+        if (!runUntil(fullRaster, () -> fullRaster.renderFirstPass(raytracer), deadline))
+            return this;
+        image = fullRaster;
+        quality = RenderQuality.FULL;
+
+        long levelStart = System.nanoTime();
+        long levelTime = levelStart - fullStart;
+        for (final RenderQuality level : new RenderQuality[]{RenderQuality.ANTIALIASED_4, RenderQuality.ANTIALIASED}) {
+            // Only the pixels, that are still contrasting, get more samples.
+            final double cost = level == RenderQuality.ANTIALIASED_4 ? ANTIALIASING_COST : REFINEMENT_COST;
+            final long estimatedTime = (long) (cost * levelTime);
+            if (deadline - levelStart < estimatedTime)
+                return this;
+            if (!runUntil(fullRaster, () -> fullRaster.refine(raytracer, level.getMaximumSamples()), deadline))
+                return this;
+            quality = level;
+
+            final long now = System.nanoTime();
+            levelTime = now - levelStart;
+            levelStart = now;
+        }
+
+        return this;
+    }
+
+    /**
+     * Renders the progressive passes with one reflexion. The passes are stopped, if the next one doesn't fit into the
+     * budget.
+     *
+     * @param raytracer The raytracer with the shallow reflexions.
+     * @param deadline  The deadline as time in nanoseconds.
+     */
+    private void renderPasses(final Raytracer raytracer, final long deadline) {
+        final ProgressiveRaster progressiveRaster = new ProgressiveRaster(width, height, threadCount);
+        // The first pass has no deadline, so there is always an image.
+        final CancellationToken passToken = cancellationToken.createChild();
+        progressiveRaster.setCancellationToken(passToken);
+
+        final long[] passStart = {System.nanoTime()};
+        progressiveRaster.addListener(frame -> {
+            image = frame;
+            quality = RenderQuality.ofStep(frame.getStep());
+            if (frame.isComplete())
+                return;
+
+            final long now = System.nanoTime();
+            final long estimatedTime = (now - passStart[0]) * countNewPixels(frame.getStep() / 2) / countNewPixels(frame.getStep());
+            passStart[0] = now;
+            if (deadline - now < estimatedTime) {
+                passToken.cancel();
+            } else {
+                passToken.cancelAfter(deadline - now, TimeUnit.NANOSECONDS);
+            }
+        });
+
+        try {
+            progressiveRaster.render(raytracer);
+        } catch (final CancellationException exception) {
+            rethrowIfCancelled(exception);
+        }
+    }
+
+    /**
+     * Runs a step on a raster, which is cancelled at the deadline.
+     *
+     * @param raster   The raster.
+     * @param step     The step, that renders the raster.
+     * @param deadline The deadline as time in nanoseconds.
+     * @return True, if the step is finished.
+     */
+    private boolean runUntil(final ParallelRaster raster, final Runnable step, final long deadline) {
+        final CancellationToken deadlineToken = cancellationToken.createChild();
+        deadlineToken.cancelAfter(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        raster.setCancellationToken(deadlineToken);
+
+        try {
+            step.run();
+            return true;
+        } catch (final CancellationException exception) {
+            rethrowIfCancelled(exception);
+            return false;
+        }
+    }
+
+    /**
+     * Rethrows a cancellation, that isn't caused by the deadline.
+     *
+     * @param exception The cancellation.
+     */
+    private void rethrowIfCancelled(final CancellationException exception) {
+        if (cancellationToken.isCancelled() || Thread.currentThread().isInterrupted())
+            throw exception;
+    }
+
+    /**
+     * Counts the pixels, which a progressive pass traces, that are not traced by the passes before.
+     *
+     * @param step The distance between the traced pixels of the pass.
+     * @return The count of pixels.
+     */
+    private long countNewPixels(final int step) {
+        final long tracedPixels = countTracedPixels(step);
+        return step == ProgressiveRaster.INITIAL_STEP ? tracedPixels : tracedPixels - countTracedPixels(2 * step);
+    }
+
+    /**
+     * Counts the pixels, which are traced by all passes up to a step.
+     *
+     * @param step The distance between the traced pixels.
+     * @return The count of pixels.
+     */
+    private long countTracedPixels(final int step) {
+        return (long) ((width + step - 1) / step) * ((height + step - 1) / step);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeadlineRaster{width=%d, height=%d, budget=%d, quality=%s}", width, height, budget, quality);
+    }
+}
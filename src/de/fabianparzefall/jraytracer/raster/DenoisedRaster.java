@@ -0,0 +1,483 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.Optional;
+
+/**
+ * A parallel raster, that renders another raster with few samples and removes the noise with an edge-avoiding filter.
+ * <p>
+ * After the other raster is rendered, a pass intersects the primary ray of every pixel, but doesn't shade it. The
+ * primitive, the normal and the intersection point of the pixels guide the filter: a neighbour is only averaged in,
+ * if it sees the same primitive, its normal is similar and its point lies close to the tangent plane of the pixel.
+ * The difference of the luminances is measured in standard deviations of the noise, which are estimated from the
+ * neighbourhood of every pixel, so the same settings work for weak and for strong noise.
+ * <p>
+ * The filter is an a trous wavelet: every iteration blurs with a 5x5 kernel, whose taps are twice as far apart as in
+ * the iteration before, so 3 iterations reach 14 pixels with 75 taps per pixel. More iterations remove coarser noise,
+ * but cost another pass and blur more detail within a surface. Every pass runs in parallel by tile.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class DenoisedRaster extends ParallelRaster {
+    /**
+     * The default count of filter iterations.
+     */
+    public static final int DEFAULT_ITERATIONS = 3;
+
+    /**
+     * The default difference of luminances in standard deviations, at which a neighbour gets 1/e of its weight.
+     */
+    public static final double DEFAULT_COLOR_SIGMA = 4;
+
+    /**
+     * The default exponent of the cosine between the normals.
+     */
+    public static final double DEFAULT_NORMAL_POWER = 128;
+
+    /**
+     * The default distance of a neighbour to the tangent plane relative to the distance to the camera, at which the
+     * neighbour gets 1/e of its weight.
+     */
+    public static final double DEFAULT_DEPTH_SIGMA = 0.01;
+
+    /**
+     * The weights of the B3 spline for the taps from -2 to 2.
+     */
+    private static final double[] KERNEL = {1.0 / 16, 1.0 / 4, 3.0 / 8, 1.0 / 4, 1.0 / 16};
+
+    /**
+     * The standard deviation, that is added to the one of every pixel, so pixels without noise don't divide by 0.
+     */
+    private static final double MINIMUM_DEVIATION = 1E-4;
+
+    /**
+     * The raster, which renders the noisy image.
+     */
+    private final ParallelRaster sampledRaster;
+
+    /**
+     * The count of filter iterations.
+     */
+    private final int iterations;
+
+    /**
+     * The difference of luminances in standard deviations, at which a neighbour gets 1/e of its weight.
+     */
+    private final double colorSigma;
+
+    /**
+     * The exponent of the cosine between the normals.
+     */
+    private final double normalPower;
+
+    /**
+     * The distance of a neighbour to the tangent plane relative to the distance to the camera, at which the neighbour
+     * gets 1/e of its weight.
+     */
+    private final double depthSigma;
+
+    /**
+     * The id of the intersected primitive of every pixel or {@link GBuffer#NO_PRIMITIVE}.
+     */
+    private final int[] primitiveIds;
+
+    /**
+     * The normalized normal of every pixel with three entries per pixel.
+     */
+    private final float[] normals;
+
+    /**
+     * The intersection point of every pixel with three entries per pixel.
+     */
+    private final double[] points;
+
+    /**
+     * The distance between the camera and the intersection of every pixel.
+     */
+    private final double[] distances;
+
+    /**
+     * The colours, that are filtered in the current iteration, with three channels per pixel.
+     */
+    private float[] colors;
+
+    /**
+     * The colours, into which the current iteration filters.
+     */
+    private float[] filteredColors;
+
+    /**
+     * The variance of the luminance of every pixel in the current iteration.
+     */
+    private float[] variances;
+
+    /**
+     * The variances, into which the current iteration filters.
+     */
+    private float[] filteredVariances;
+
+    /**
+     * The pass, which the tiles run.
+     */
+    private volatile Pass pass = Pass.INTERSECT;
+
+    /**
+     * The current filter iteration.
+     */
+    private volatile int iteration;
+
+    /**
+     * Constructs a DenoisedRaster with the default settings.
+     *
+     * @param sampledRaster The raster, that renders the noisy image. Its resolution and its count of threads are used.
+     */
+    public DenoisedRaster(final ParallelRaster sampledRaster) {
+        this(sampledRaster, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * Constructs a DenoisedRaster with the default weights.
+     *
+     * @param sampledRaster The raster, that renders the noisy image. Its resolution and its count of threads are used.
+     * @param iterations    The count of filter iterations, must be positive or 0.
+     */
+    public DenoisedRaster(final ParallelRaster sampledRaster, final int iterations) {
+        this(sampledRaster, iterations, DEFAULT_COLOR_SIGMA, DEFAULT_NORMAL_POWER, DEFAULT_DEPTH_SIGMA);
+    }
+
+    /**
+     * Constructs a DenoisedRaster.
+     *
+     * @param sampledRaster The raster, that renders the noisy image. Its resolution and its count of threads are used.
+     * @param iterations    The count of filter iterations, must be positive or 0. With 0, the image isn't filtered.
+     * @param colorSigma    The difference of luminances in standard deviations of the noise, at which a neighbour
+     *                      gets 1/e of its weight, must be positive. Smaller values keep more detail and more noise.
+     * @param normalPower   The exponent of the cosine between the normals, must be positive or 0.
+     * @param depthSigma    The distance of a neighbour to the tangent plane relative to the distance to the camera, at
+     *                      which the neighbour gets 1/e of its weight, must be positive.
+     */
+    public DenoisedRaster(final ParallelRaster sampledRaster, final int iterations, final double colorSigma,
+                          final double normalPower, final double depthSigma) {
+        super(sampledRaster.getWidth(), sampledRaster.getHeight(), sampledRaster.getThreadCount());
+
+        if (iterations < 0)
+            throw new IllegalArgumentException("iterations is negative.");
+        if (colorSigma <= 0)
+            throw new IllegalArgumentException("colorSigma is not positive.");
+        if (normalPower < 0)
+            throw new IllegalArgumentException("normalPower is negative.");
+        if (depthSigma <= 0)
+            throw new IllegalArgumentException("depthSigma is not positive.");
+
+        this.sampledRaster = sampledRaster;
+        this.iterations = iterations;
+        this.colorSigma = colorSigma;
+        this.normalPower = normalPower;
+        this.depthSigma = depthSigma;
+
+        final int pixelCount = getWidth() * getHeight();
+        primitiveIds = new int[pixelCount];
+        normals = new float[pixelCount * 3];
+        points = new double[pixelCount * 3];
+        distances = new double[pixelCount];
+        colors = new float[pixelCount * 3];
+        filteredColors = new float[pixelCount * 3];
+        variances = new float[pixelCount];
+        filteredVariances = new float[pixelCount];
+
+        super.setFrame(sampledRaster.getFrameWidth(), sampledRaster.getFrameHeight(), sampledRaster.getXOffset(),
+                sampledRaster.getYOffset());
+    }
+
+    public ParallelRaster getSampledRaster() {
+        return sampledRaster;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public double getColorSigma() {
+        return colorSigma;
+    }
+
+    public double getNormalPower() {
+        return normalPower;
+    }
+
+    public double getDepthSigma() {
+        return depthSigma;
+    }
+
+    /**
+     * Makes the raster and the sampled raster a part of a bigger frame.
+     *
+     * @param frameWidth  The width of the frame.
+     * @param frameHeight The height of the frame.
+     * @param xOffset     The x coordinate in the frame of the first column of the raster.
+     * @param yOffset     The y coordinate in the frame of the first row of the raster.
+     */
+    @Override
+    public void setFrame(final int frameWidth, final int frameHeight, final int xOffset, final int yOffset) {
+        sampledRaster.setFrame(frameWidth, frameHeight, xOffset, yOffset);
+        super.setFrame(frameWidth, frameHeight, xOffset, yOffset);
+    }
+
+    /**
+     * Renders the noisy image, intersects the primary rays and filters the image.
+     *
+     * @param raytracer The raytracer.
+     * @return This with the filtered image.
+     */
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        // The sampled raster is cancelled together with this raster.
+        sampledRaster.setCancellationToken(getCancellationToken());
+        sampledRaster.render(raytracer);
+        readSampledColors();
+
+        try {
+            pass = Pass.INTERSECT;
+            super.render(raytracer);
+            pass = Pass.ESTIMATE;
+            super.render(raytracer);
+
+            pass = Pass.FILTER;
+            for (int index = 0; index < iterations; index++) {
+                iteration = index;
+                super.render(raytracer);
+
+                final float[] lastColors = colors;
+                colors = filteredColors;
+                filteredColors = lastColors;
+                final float[] lastVariances = variances;
+                variances = filteredVariances;
+                filteredVariances = lastVariances;
+            }
+        } finally {
+            pass = Pass.INTERSECT;
+        }
+
+        writeColors();
+
+        return this;
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                switch (pass) {
+                    case INTERSECT:
+                        intersectPixel(raytracer, coordinateConverter, yCoordinate, xCoordinate);
+                        break;
+                    case ESTIMATE:
+                        estimateVariance(yCoordinate, xCoordinate);
+                        break;
+                    default:
+                        filterPixel(yCoordinate, xCoordinate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the primary intersection of a pixel, that guides the filter.
+     *
+     * @param raytracer           The raytracer.
+     * @param coordinateConverter The converter for the resolution of the raster.
+     * @param yCoordinate         The y coordinate of the pixel.
+     * @param xCoordinate         The x coordinate of the pixel.
+     */
+    private void intersectPixel(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                                final int yCoordinate, final int xCoordinate) {
+        final int index = yCoordinate * getWidth() + xCoordinate;
+        final Ray primaryRay = raytracer.getPrimaryRay(
+                coordinateConverter.calculateHorizontalCoordinate(xCoordinate),
+                coordinateConverter.calculateVerticalCoordinate(yCoordinate),
+                coordinateConverter.getPixelSize());
+        final Optional<Intersection> primaryIntersection = raytracer.findIntersection(primaryRay);
+        if (!primaryIntersection.isPresent()) {
+            primitiveIds[index] = GBuffer.NO_PRIMITIVE;
+            return;
+        }
+
+        final Intersection intersection = primaryIntersection.get();
+        final Point point = intersection.getIntersectionPoint();
+        final Vector normal = intersection.getIntersectedPrimitive().getNormal(point).normalize();
+        primitiveIds[index] = intersection.getIntersectedPrimitive().getId();
+        distances[index] = intersection.getDistance();
+        points[index * 3] = point.getX();
+        points[index * 3 + 1] = point.getY();
+        points[index * 3 + 2] = point.getZ();
+        normals[index * 3] = (float) normal.getX();
+        normals[index * 3 + 1] = (float) normal.getY();
+        normals[index * 3 + 2] = (float) normal.getZ();
+    }
+
+    /**
+     * Estimates the variance of the luminance of a pixel from the neighbours, which see the same primitive.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     */
+    private void estimateVariance(final int yCoordinate, final int xCoordinate) {
+        final int width = getWidth();
+        final int index = yCoordinate * width + xCoordinate;
+
+        double sum = 0;
+        double squareSum = 0;
+        int count = 0;
+        for (int neighbourY = Math.max(0, yCoordinate - 1); neighbourY <= Math.min(getHeight() - 1, yCoordinate + 1); neighbourY++) {
+            for (int neighbourX = Math.max(0, xCoordinate - 1); neighbourX <= Math.min(width - 1, xCoordinate + 1); neighbourX++) {
+                final int neighbour = neighbourY * width + neighbourX;
+                if (primitiveIds[neighbour] == primitiveIds[index]) {
+                    final double luminance = getLuminance(neighbour);
+                    sum += luminance;
+                    squareSum += luminance * luminance;
+                    count++;
+                }
+            }
+        }
+
+        final double mean = sum / count;
+        variances[index] = (float) Math.max(0, squareSum / count - mean * mean);
+    }
+
+    /**
+     * Filters a pixel with the taps of the current iteration.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     */
+    private void filterPixel(final int yCoordinate, final int xCoordinate) {
+        final int width = getWidth();
+        final int height = getHeight();
+        final int index = yCoordinate * width + xCoordinate;
+        final int step = 1 << iteration;
+        // The noise gets weaker with every iteration and so does its estimated deviation.
+        final double colorFactor = 1 / (colorSigma * Math.sqrt(variances[index]) + MINIMUM_DEVIATION);
+        final double depthFactor = 1 / (depthSigma * step * distances[index]);
+        final boolean hasIntersection = primitiveIds[index] != GBuffer.NO_PRIMITIVE;
+        final double luminance = getLuminance(index);
+
+        double red = 0;
+        double green = 0;
+        double blue = 0;
+        double variance = 0;
+        double weightSum = 0;
+        for (int row = 0; row < KERNEL.length; row++) {
+            final int neighbourY = yCoordinate + (row - KERNEL.length / 2) * step;
+            if (neighbourY < 0 || neighbourY >= height)
+                continue;
+
+            for (int column = 0; column < KERNEL.length; column++) {
+                final int neighbourX = xCoordinate + (column - KERNEL.length / 2) * step;
+                if (neighbourX < 0 || neighbourX >= width)
+                    continue;
+
+                final int neighbour = neighbourY * width + neighbourX;
+                if (primitiveIds[neighbour] != primitiveIds[index])
+                    continue;
+
+                // The exponents of all weights are summed up, so a tap costs only one exponential function.
+                double exponent = -colorFactor * Math.abs(getLuminance(neighbour) - luminance);
+
+                if (hasIntersection) {
+                    final double cosine = normals[index * 3] * normals[neighbour * 3]
+                            + normals[index * 3 + 1] * normals[neighbour * 3 + 1]
+                            + normals[index * 3 + 2] * normals[neighbour * 3 + 2];
+                    if (cosine <= 0)
+                        continue;
+
+                    final double planeDistance = Math.abs(
+                            normals[index * 3] * (points[neighbour * 3] - points[index * 3])
+                                    + normals[index * 3 + 1] * (points[neighbour * 3 + 1] - points[index * 3 + 1])
+                                    + normals[index * 3 + 2] * (points[neighbour * 3 + 2] - points[index * 3 + 2]));
+                    exponent += normalPower * Math.log(Math.min(1, cosine)) - planeDistance * depthFactor;
+                }
+
+                final double weight = KERNEL[row] * KERNEL[column] * Math.exp(exponent);
+
+                red += weight * colors[neighbour * 3];
+                green += weight * colors[neighbour * 3 + 1];
+                blue += weight * colors[neighbour * 3 + 2];
+                // The variance of a weighted average sums up the variances with the squared weights.
+                variance += weight * weight * variances[neighbour];
+                weightSum += weight;
+            }
+        }
+
+        // The pixel itself always has a weight, so the sum is never 0.
+        filteredColors[index * 3] = (float) (red / weightSum);
+        filteredColors[index * 3 + 1] = (float) (green / weightSum);
+        filteredColors[index * 3 + 2] = (float) (blue / weightSum);
+        filteredVariances[index] = (float) (variance / (weightSum * weightSum));
+    }
+
+    /**
+     * Calculates the luminance of a pixel in the current iteration.
+     *
+     * @param index The index of the pixel.
+     * @return The luminance between 0 and about 1.
+     */
+    private double getLuminance(final int index) {
+        return 0.2126 * colors[index * 3] + 0.7152 * colors[index * 3 + 1] + 0.0722 * colors[index * 3 + 2];
+    }
+
+    /**
+     * Reads the colours of the sampled raster into the colours, that are filtered.
+     */
+    private void readSampledColors() {
+        for (int yCoordinate = 0; yCoordinate < getHeight(); yCoordinate++) {
+            for (int xCoordinate = 0; xCoordinate < getWidth(); xCoordinate++) {
+                final int index = yCoordinate * getWidth() + xCoordinate;
+                final int rgb = sampledRaster.getColor(yCoordinate, xCoordinate);
+                colors[index * 3] = FrameBuffer.channelToFloat(Color.getRed(rgb));
+                colors[index * 3 + 1] = FrameBuffer.channelToFloat(Color.getGreen(rgb));
+                colors[index * 3 + 2] = FrameBuffer.channelToFloat(Color.getBlue(rgb));
+            }
+        }
+    }
+
+    /**
+     * Writes the filtered colours into the frame buffer.
+     */
+    private void writeColors() {
+        for (int yCoordinate = 0; yCoordinate < getHeight(); yCoordinate++) {
+            for (int xCoordinate = 0; xCoordinate < getWidth(); xCoordinate++) {
+                final int index = yCoordinate * getWidth() + xCoordinate;
+                setColor(yCoordinate, xCoordinate, new Color(colors[index * 3], colors[index * 3 + 1], colors[index * 3 + 2]));
+            }
+        }
+    }
+
+    /**
+     * The passes over all tiles.
+     */
+    private enum Pass {
+        /**
+         * Intersects the primary rays.
+         */
+        INTERSECT,
+
+        /**
+         * Estimates the variances of the pixels.
+         */
+        ESTIMATE,
+
+        /**
+         * Runs an iteration of the filter.
+         */
+        FILTER
+    }
+}
@@ -0,0 +1,510 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.sampling.Sampler;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A parallel raster, that traces NxN samples per pixel and reconstructs the pixels with a tent filter.
+ * <p>
+ * Unlike {@link Supersampled}, the samples are never stored for the whole image. Every tile gathers the samples of its
+ * pixels and of an apron of half a pixel around it into a buffer of its worker, and weights them into its pixels right
+ * away. The tent filter reaches one pixel from the centre of a pixel, so neighbouring pixels share samples and edges
+ * get smoother than with averaging the samples of a pixel.
+ * <p>
+ * The samples of neighbouring tiles overlap by their aprons. A finished tile hands the samples, that a neighbour needs,
+ * to the neighbours, that are not started yet, so the overlapping samples are traced once. Only the overlaps with
+ * running tiles and the aprons out of the raster are traced twice.
+ * <p>
+ * A sampler can move the samples away from the centres of their strata. A sample, which is traced by two tiles, is
+ * placed by its position in the frame, so both tiles trace the same ray.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class FilteredSupersampled extends ParallelRaster {
+    /**
+     * The radius of the tent filter in pixels.
+     */
+    private static final double FILTER_RADIUS = 1;
+
+    /**
+     * The count of directions to the neighbours of a tile including the tile itself, which are numbered
+     * {@code (yDirection + 1) * 3 + xDirection + 1}.
+     */
+    private static final int DIRECTIONS = 9;
+
+    /**
+     * The count of samples per pixel in each direction.
+     */
+    private final int factor;
+
+    /**
+     * The sampler, that places the samples in the pixels.
+     */
+    private final Sampler sampler;
+
+    /**
+     * The count of columns of the tiles.
+     */
+    private final int tileColumns;
+
+    /**
+     * Whether a tile was started in the current render, by the index of the tile.
+     */
+    private final AtomicIntegerArray startedTiles;
+
+    /**
+     * The samples, which finished tiles traced for their neighbours, by the index of the neighbour times
+     * {@link #DIRECTIONS} plus the direction of the finished tile. Every entry is taken once.
+     */
+    private final ConcurrentHashMap<Integer, SharedSamples> sharedSamples = new ConcurrentHashMap<>();
+
+    /**
+     * The buffer of the samples of a tile, which every worker reuses for its tiles.
+     */
+    private final ThreadLocal<SampleBuffer> sampleBuffers = ThreadLocal.withInitial(SampleBuffer::new);
+
+    /**
+     * Constructs a FilteredSupersampled raster.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param factor      The count of samples per pixel in each direction, must be at least 1.
+     */
+    public FilteredSupersampled(final int width, final int height, final int threadCount, final int factor) {
+        this(width, height, threadCount, factor, Sampler.CENTERED);
+    }
+
+    /**
+     * Constructs a FilteredSupersampled raster, whose samples are placed by a sampler.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param factor      The count of samples per pixel in each direction, must be at least 1.
+     * @param sampler     The sampler, that places the samples in the pixels.
+     */
+    public FilteredSupersampled(final int width, final int height, final int threadCount, final int factor,
+                                final Sampler sampler) {
+        // Fixed tiles keep the apron small compared to the tile.
+        super(width, height, threadCount, DEFAULT_TILE_SIZE, TileOrder.HILBERT);
+        assert sampler != null;
+
+        if (factor < 1)
+            throw new IllegalArgumentException("factor is less than 1.");
+
+        this.factor = factor;
+        this.sampler = sampler;
+
+        tileColumns = (width + DEFAULT_TILE_SIZE - 1) / DEFAULT_TILE_SIZE;
+        startedTiles = new AtomicIntegerArray(tileColumns * ((height + DEFAULT_TILE_SIZE - 1) / DEFAULT_TILE_SIZE));
+    }
+
+    public int getFactor() {
+        return factor;
+    }
+
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        for (int index = 0; index < startedTiles.length(); index++) {
+            startedTiles.set(index, 0);
+        }
+        try {
+            return super.render(raytracer);
+        } finally {
+            // The samples for tiles, which were started while their neighbour finished, are never taken.
+            sharedSamples.clear();
+        }
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        assert tile.getXCoordinate() % DEFAULT_TILE_SIZE == 0 && tile.getYCoordinate() % DEFAULT_TILE_SIZE == 0;
+
+        final int tileColumn = tile.getXCoordinate() / DEFAULT_TILE_SIZE;
+        final int tileRow = tile.getYCoordinate() / DEFAULT_TILE_SIZE;
+        final int tileIndex = tileRow * tileColumns + tileColumn;
+        startedTiles.set(tileIndex, 1);
+
+        // The samples, whose distance to a pixel centre of the tile is less than the filter radius. If the raster is a
+        // part of a frame, the apron may reach into the neighbouring parts, but not out of the frame.
+        final int firstSampleX = firstSampleX(tile.getXCoordinate());
+        final int endSampleX = endSampleX(tile.getEndXCoordinate());
+        final int firstSampleY = firstSampleY(tile.getYCoordinate());
+        final int endSampleY = endSampleY(tile.getEndYCoordinate());
+
+        final int sampleColumns = endSampleX - firstSampleX;
+        final int sampleRows = endSampleY - firstSampleY;
+        final SampleBuffer buffer = sampleBuffers.get();
+        buffer.clear(sampleColumns * sampleRows);
+        final float[] reds = buffer.reds;
+        final float[] greens = buffer.greens;
+        final float[] blues = buffer.blues;
+        final double[] horizontalPositions = buffer.horizontalPositions;
+        final double[] verticalPositions = buffer.verticalPositions;
+
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            final SharedSamples samples = sharedSamples.remove(tileIndex * DIRECTIONS + direction);
+            if (samples != null) {
+                samples.copyInto(buffer, firstSampleX, firstSampleY, sampleColumns);
+            }
+        }
+
+        final double samplePixelSize = coordinateConverter.getPixelSize() / factor;
+        for (int sampleY = firstSampleY; sampleY < endSampleY; sampleY++) {
+            for (int sampleX = firstSampleX; sampleX < endSampleX; sampleX++) {
+                final int index = (sampleY - firstSampleY) * sampleColumns + sampleX - firstSampleX;
+                final double[] position = calculateSamplePosition(sampleX, sampleY);
+                horizontalPositions[index] = position[0];
+                verticalPositions[index] = position[1];
+                if (buffer.traced[index])
+                    continue;
+
+                final Color sample = raytracer.tracePrimary(
+                        coordinateConverter.calculateHorizontalCoordinate(position[0]),
+                        coordinateConverter.calculateVerticalCoordinate(position[1]), samplePixelSize);
+
+                reds[index] = (float) sample.getRed();
+                greens[index] = (float) sample.getGreen();
+                blues[index] = (float) sample.getBlue();
+            }
+        }
+        shareSamples(tileColumn, tileRow, buffer, firstSampleX, endSampleX, firstSampleY, endSampleY);
+
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            final int pixelFirstSampleY = Math.max(firstSampleY, firstSample(yCoordinate));
+            final int pixelEndSampleY = Math.min(endSampleY, lastSample(yCoordinate) + 1);
+
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                final int pixelFirstSampleX = Math.max(firstSampleX, firstSample(xCoordinate));
+                final int pixelEndSampleX = Math.min(endSampleX, lastSample(xCoordinate) + 1);
+
+                double red = 0;
+                double green = 0;
+                double blue = 0;
+                double weightSum = 0;
+                for (int sampleY = pixelFirstSampleY; sampleY < pixelEndSampleY; sampleY++) {
+                    for (int sampleX = pixelFirstSampleX; sampleX < pixelEndSampleX; sampleX++) {
+                        final int index = (sampleY - firstSampleY) * sampleColumns + sampleX - firstSampleX;
+                        final double weight = calculateWeight(horizontalPositions[index] - xCoordinate)
+                                * calculateWeight(verticalPositions[index] - yCoordinate);
+
+                        red += weight * reds[index];
+                        green += weight * greens[index];
+                        blue += weight * blues[index];
+                        weightSum += weight;
+                    }
+                }
+
+                setColor(yCoordinate, xCoordinate, new Color(red / weightSum, green / weightSum, blue / weightSum));
+            }
+        }
+    }
+
+    /**
+     * Copies the samples, which overlap with the samples of the neighbours, for the neighbours, that are not started
+     * yet.
+     *
+     * @param tileColumn   The column of the tile.
+     * @param tileRow      The row of the tile.
+     * @param buffer       The samples of the tile.
+     * @param firstSampleX The horizontal index of the first sample in the buffer.
+     * @param endSampleX   The horizontal index after the last sample in the buffer.
+     * @param firstSampleY The vertical index of the first sample in the buffer.
+     * @param endSampleY   The vertical index after the last sample in the buffer.
+     */
+    private void shareSamples(final int tileColumn, final int tileRow, final SampleBuffer buffer,
+                              final int firstSampleX, final int endSampleX, final int firstSampleY, final int endSampleY) {
+        final int tileRows = startedTiles.length() / tileColumns;
+
+        for (int yDirection = -1; yDirection <= 1; yDirection++) {
+            for (int xDirection = -1; xDirection <= 1; xDirection++) {
+                final int neighbourColumn = tileColumn + xDirection;
+                final int neighbourRow = tileRow + yDirection;
+                if (xDirection == 0 && yDirection == 0 || neighbourColumn < 0 || neighbourColumn >= tileColumns
+                        || neighbourRow < 0 || neighbourRow >= tileRows)
+                    continue;
+                final int neighbour = neighbourRow * tileColumns + neighbourColumn;
+                if (startedTiles.get(neighbour) != 0)
+                    continue;
+
+                final int neighbourX = neighbourColumn * DEFAULT_TILE_SIZE;
+                final int neighbourY = neighbourRow * DEFAULT_TILE_SIZE;
+                final int fromX = Math.max(firstSampleX, firstSampleX(neighbourX));
+                final int toX = Math.min(endSampleX, endSampleX(Math.min(neighbourX + DEFAULT_TILE_SIZE, getWidth())));
+                final int fromY = Math.max(firstSampleY, firstSampleY(neighbourY));
+                final int toY = Math.min(endSampleY, endSampleY(Math.min(neighbourY + DEFAULT_TILE_SIZE, getHeight())));
+                if (fromX >= toX || fromY >= toY)
+                    continue;
+
+                // Seen from the neighbour, this tile is in the opposite direction.
+                sharedSamples.put(neighbour * DIRECTIONS + direction(-xDirection, -yDirection),
+                        new SharedSamples(buffer, firstSampleX, firstSampleY, endSampleX - firstSampleX, fromX, toX, fromY, toY));
+            }
+        }
+    }
+
+    /**
+     * Gets the number of a direction to a neighbour.
+     *
+     * @param xDirection The horizontal direction -1, 0 or 1.
+     * @param yDirection The vertical direction -1, 0 or 1.
+     * @return The number between 0 and 8, which is 4 for the tile itself.
+     */
+    private static int direction(final int xDirection, final int yDirection) {
+        return (yDirection + 1) * 3 + xDirection + 1;
+    }
+
+    /**
+     * Gets the first sample in x direction of a tile.
+     *
+     * @param xCoordinate The x coordinate of the first column of the tile.
+     * @return The horizontal index of the sample.
+     */
+    private int firstSampleX(final int xCoordinate) {
+        return Math.max(-getXOffset() * factor, firstSample(xCoordinate));
+    }
+
+    /**
+     * Gets the end of the samples in x direction of a tile.
+     *
+     * @param endXCoordinate The x coordinate after the last column of the tile.
+     * @return The horizontal index after the last sample.
+     */
+    private int endSampleX(final int endXCoordinate) {
+        return Math.min((getFrameWidth() - getXOffset()) * factor, lastSample(endXCoordinate - 1) + 1);
+    }
+
+    /**
+     * Gets the first sample in y direction of a tile.
+     *
+     * @param yCoordinate The y coordinate of the first row of the tile.
+     * @return The vertical index of the sample.
+     */
+    private int firstSampleY(final int yCoordinate) {
+        return Math.max(-getYOffset() * factor, firstSample(yCoordinate));
+    }
+
+    /**
+     * Gets the end of the samples in y direction of a tile.
+     *
+     * @param endYCoordinate The y coordinate after the last row of the tile.
+     * @return The vertical index after the last sample.
+     */
+    private int endSampleY(final int endYCoordinate) {
+        return Math.min((getFrameHeight() - getYOffset()) * factor, lastSample(endYCoordinate - 1) + 1);
+    }
+
+    /**
+     * Gets the position of a sample in pixel coordinates, in which the centre of pixel x is at x.
+     *
+     * @param sample The index of the sample in the sample grid.
+     * @return The position.
+     */
+    private double samplePosition(final int sample) {
+        return (sample + 0.5) / factor - 0.5;
+    }
+
+    /**
+     * Gets the position of a sample in pixel coordinates after the sampler moved it within its stratum.
+     *
+     * @param sampleX The horizontal index of the sample in the sample grid.
+     * @param sampleY The vertical index of the sample in the sample grid.
+     * @return An array with the x and the y position.
+     */
+    private double[] calculateSamplePosition(final int sampleX, final int sampleY) {
+        final int pixelX = Math.floorDiv(sampleX, factor);
+        final int pixelY = Math.floorDiv(sampleY, factor);
+        final int column = sampleX - pixelX * factor;
+        final int row = sampleY - pixelY * factor;
+        final double[] position = sampler.getPosition(pixelX + getXOffset(), pixelY + getYOffset(), factor,
+                row * factor + column);
+
+        // The sample is moved by the distance of the sampled position to the centre of the stratum, which is 0 with
+        // centred samples.
+        return new double[]{samplePosition(sampleX) + position[0] - (column + 0.5) / factor,
+                samplePosition(sampleY) + position[1] - (row + 0.5) / factor};
+    }
+
+    /**
+     * Gets the first sample within the filter radius of a pixel centre.
+     *
+     * @param pixel The coordinate of the pixel.
+     * @return The index of the sample, which may be outside of the raster.
+     */
+    private int firstSample(final int pixel) {
+        // The sample is the first one with samplePosition(sample) > pixel - FILTER_RADIUS.
+        return (int) Math.floor((pixel - FILTER_RADIUS + 0.5) * factor - 0.5) + 1;
+    }
+
+    /**
+     * Gets the last sample within the filter radius of a pixel centre.
+     *
+     * @param pixel The coordinate of the pixel.
+     * @return The index of the sample, which may be outside of the raster.
+     */
+    private int lastSample(final int pixel) {
+        // The sample is the last one with samplePosition(sample) < pixel + FILTER_RADIUS.
+        return (int) Math.ceil((pixel + FILTER_RADIUS + 0.5) * factor - 0.5) - 1;
+    }
+
+    /**
+     * Calculates the weight of the tent filter.
+     *
+     * @param distance The distance of the sample to the pixel centre in pixels.
+     * @return The weight between 0 and 1.
+     */
+    private static double calculateWeight(final double distance) {
+        return Math.max(0, 1 - Math.abs(distance) / FILTER_RADIUS);
+    }
+
+    /**
+     * The samples of a tile with their positions, which a worker reuses for all of its tiles.
+     */
+    private static final class SampleBuffer {
+        /**
+         * The red channels of the samples.
+         */
+        private float[] reds = new float[0];
+
+        /**
+         * The green channels of the samples.
+         */
+        private float[] greens = new float[0];
+
+        /**
+         * The blue channels of the samples.
+         */
+        private float[] blues = new float[0];
+
+        /**
+         * The horizontal positions of the samples in pixel coordinates.
+         */
+        private double[] horizontalPositions = new double[0];
+
+        /**
+         * The vertical positions of the samples in pixel coordinates.
+         */
+        private double[] verticalPositions = new double[0];
+
+        /**
+         * Whether the samples are already traced.
+         */
+        private boolean[] traced = new boolean[0];
+
+        /**
+         * Prepares the buffer for the samples of a tile, which are not traced yet. The buffer grows, if it is too
+         * small.
+         *
+         * @param sampleCount The count of samples of the tile.
+         */
+        void clear(final int sampleCount) {
+            if (reds.length < sampleCount) {
+                reds = new float[sampleCount];
+                greens = new float[sampleCount];
+                blues = new float[sampleCount];
+                horizontalPositions = new double[sampleCount];
+                verticalPositions = new double[sampleCount];
+                traced = new boolean[sampleCount];
+            } else {
+                Arrays.fill(traced, 0, sampleCount, false);
+            }
+        }
+    }
+
+    /**
+     * A rectangle of traced samples, which a finished tile hands to a neighbour.
+     */
+    private static final class SharedSamples {
+        /**
+         * The horizontal index of the first sample.
+         */
+        private final int fromX;
+
+        /**
+         * The horizontal index after the last sample.
+         */
+        private final int toX;
+
+        /**
+         * The vertical index of the first sample.
+         */
+        private final int fromY;
+
+        /**
+         * The vertical index after the last sample.
+         */
+        private final int toY;
+
+        /**
+         * The red, green and blue channels of the samples row by row.
+         */
+        private final float[] channels;
+
+        /**
+         * Copies a rectangle of samples out of the buffer of a tile.
+         *
+         * @param buffer        The buffer of the tile.
+         * @param firstSampleX  The horizontal index of the first sample in the buffer.
+         * @param firstSampleY  The vertical index of the first sample in the buffer.
+         * @param sampleColumns The count of samples per row in the buffer.
+         * @param fromX         The horizontal index of the first sample of the rectangle.
+         * @param toX           The horizontal index after the last sample of the rectangle.
+         * @param fromY         The vertical index of the first sample of the rectangle.
+         * @param toY           The vertical index after the last sample of the rectangle.
+         */
+        SharedSamples(final SampleBuffer buffer, final int firstSampleX, final int firstSampleY, final int sampleColumns,
+                      final int fromX, final int toX, final int fromY, final int toY) {
+            this.fromX = fromX;
+            this.toX = toX;
+            this.fromY = fromY;
+            this.toY = toY;
+
+            channels = new float[(toX - fromX) * (toY - fromY) * Color.CHANNELS];
+            int channel = 0;
+            for (int sampleY = fromY; sampleY < toY; sampleY++) {
+                for (int sampleX = fromX; sampleX < toX; sampleX++) {
+                    final int index = (sampleY - firstSampleY) * sampleColumns + sampleX - firstSampleX;
+                    channels[channel++] = buffer.reds[index];
+                    channels[channel++] = buffer.greens[index];
+                    channels[channel++] = buffer.blues[index];
+                }
+            }
+        }
+
+        /**
+         * Copies the samples into the buffer of another tile and marks them as traced.
+         *
+         * @param buffer        The buffer of the tile.
+         * @param firstSampleX  The horizontal index of the first sample in the buffer.
+         * @param firstSampleY  The vertical index of the first sample in the buffer.
+         * @param sampleColumns The count of samples per row in the buffer.
+         */
+        void copyInto(final SampleBuffer buffer, final int firstSampleX, final int firstSampleY, final int sampleColumns) {
+            assert firstSampleX <= fromX && firstSampleY <= fromY && toX - firstSampleX <= sampleColumns;
+
+            int channel = 0;
+            for (int sampleY = fromY; sampleY < toY; sampleY++) {
+                for (int sampleX = fromX; sampleX < toX; sampleX++) {
+                    final int index = (sampleY - firstSampleY) * sampleColumns + sampleX - firstSampleX;
+                    buffer.reds[index] = channels[channel++];
+                    buffer.greens[index] = channels[channel++];
+                    buffer.blues[index] = channels[channel++];
+                    buffer.traced[index] = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,602 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+
+/**
+ * The storage of the pixels of a raster in one of the {@link PixelFormat}s.
+ * <p>
+ * Pixels are written as colours and read as colours or packed 8 bit RGB values, converted to and from the format. The
+ * buffers created by {@link #allocate(PixelFormat, int, int)} keep all pixels in one array row by row.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public abstract class FrameBuffer {
+    /**
+     * The maximum value of a channel with 8 bits.
+     */
+    static final int MAX_8_BIT = 0xFF;
+
+    /**
+     * The maximum value of a channel with 16 bits.
+     */
+    static final int MAX_16_BIT = 0xFFFF;
+
+    /**
+     * The width in pixels.
+     */
+    private final int width;
+
+    /**
+     * The height in pixels.
+     */
+    private final int height;
+
+    /**
+     * The format of the pixels.
+     */
+    private final PixelFormat format;
+
+    /**
+     * Constructs a frame buffer.
+     *
+     * @param width  The width in pixels, must be at least 1.
+     * @param height The height in pixels, must be at least 1.
+     * @param format The format of the pixels.
+     */
+    protected FrameBuffer(final int width, final int height, final PixelFormat format) {
+        assert format != null;
+
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+
+        this.width = width;
+        this.height = height;
+        this.format = format;
+    }
+
+    /**
+     * Allocates a frame buffer on the heap, which keeps all pixels in one array.
+     *
+     * @param format The format of the pixels.
+     * @param width  The width in pixels, must be at least 1.
+     * @param height The height in pixels, must be at least 1.
+     * @return A black frame buffer.
+     */
+    public static FrameBuffer allocate(final PixelFormat format, final int width, final int height) {
+        assert format != null;
+
+        // The limit of an array is its count of elements, not of bytes.
+        if ((long) width * height * format.getElementsPerPixel() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("resolution is too big for an array.");
+
+        switch (format) {
+            case GRAY8:
+                return new Gray8Buffer(width, height);
+            case GRAY16:
+                return new Gray16Buffer(width, height);
+            case FLOAT_RGB:
+                return new FloatBuffer(width, height);
+            case PACKED_RGB:
+                return new PackedBuffer(width, height);
+            default:
+                throw new IllegalArgumentException(String.format("unknown format %s.", format));
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public PixelFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the count of bytes of the pixels.
+     *
+     * @return The size of the storage.
+     */
+    public long getByteCount() {
+        return (long) width * height * format.getBytesPerPixel();
+    }
+
+    /**
+     * Gets a pixel as packed colour.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The colour packed with 8 bits per channel.
+     */
+    public abstract int getRGB(int yCoordinate, int xCoordinate);
+
+    /**
+     * Sets a pixel to a packed colour.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @param rgb         The colour packed with 8 bits per channel.
+     */
+    public abstract void setRGB(int yCoordinate, int xCoordinate, int rgb);
+
+    /**
+     * Gets a pixel as colour.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The colour. Only a float buffer returns channels above 1.
+     */
+    public abstract Color getColor(int yCoordinate, int xCoordinate);
+
+    /**
+     * Sets a pixel to a colour. Formats with 8 bits convert it like {@link Color#toRGB()}.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @param color       The colour.
+     */
+    public abstract void setColor(int yCoordinate, int xCoordinate, Color color);
+
+    /**
+     * Copies a row or a part of it as packed colours into an array.
+     *
+     * @param yCoordinate The y coordinate of the row.
+     * @param xCoordinate The x coordinate of the first pixel.
+     * @param length      The count of pixels.
+     * @param destination The array.
+     * @param offset      The index in the array of the first pixel.
+     */
+    public void getRow(final int yCoordinate, final int xCoordinate, final int length, final int[] destination, final int offset) {
+        checkRow(yCoordinate, xCoordinate, length, destination, offset);
+
+        for (int index = 0; index < length; index++) {
+            destination[offset + index] = getRGB(yCoordinate, xCoordinate + index);
+        }
+    }
+
+    /**
+     * Copies packed colours from an array into a row or a part of it.
+     *
+     * @param yCoordinate The y coordinate of the row.
+     * @param xCoordinate The x coordinate of the first pixel.
+     * @param length      The count of pixels.
+     * @param source      The array.
+     * @param offset      The index in the array of the first pixel.
+     */
+    public void setRow(final int yCoordinate, final int xCoordinate, final int length, final int[] source, final int offset) {
+        checkRow(yCoordinate, xCoordinate, length, source, offset);
+
+        for (int index = 0; index < length; index++) {
+            setRGB(yCoordinate, xCoordinate + index, source[offset + index]);
+        }
+    }
+
+    /**
+     * Copies a tile as packed colours row by row into an array.
+     *
+     * @param tile        The tile, must be within the buffer.
+     * @param destination The array with at least as many elements as the tile has pixels.
+     */
+    public void getTile(final Tile tile, final int[] destination) {
+        assert tile != null;
+
+        for (int row = 0; row < tile.getHeight(); row++) {
+            getRow(tile.getYCoordinate() + row, tile.getXCoordinate(), tile.getWidth(), destination, row * tile.getWidth());
+        }
+    }
+
+    /**
+     * Copies packed colours row by row from an array into a tile.
+     *
+     * @param tile   The tile, must be within the buffer.
+     * @param source The array with at least as many elements as the tile has pixels.
+     */
+    public void setTile(final Tile tile, final int[] source) {
+        assert tile != null;
+
+        for (int row = 0; row < tile.getHeight(); row++) {
+            setRow(tile.getYCoordinate() + row, tile.getXCoordinate(), tile.getWidth(), source, row * tile.getWidth());
+        }
+    }
+
+    /**
+     * Checks the arguments of a row copy.
+     *
+     * @param yCoordinate The y coordinate of the row.
+     * @param xCoordinate The x coordinate of the first pixel.
+     * @param length      The count of pixels.
+     * @param array       The array.
+     * @param offset      The index in the array of the first pixel.
+     */
+    final void checkRow(final int yCoordinate, final int xCoordinate, final int length, final int[] array, final int offset) {
+        assert array != null;
+
+        if (!(0 <= yCoordinate && yCoordinate < height && 0 <= xCoordinate && 0 <= length && xCoordinate + length <= width))
+            throw new IllegalArgumentException("row is not within the resolution.");
+        if (offset < 0 || offset + length > array.length)
+            throw new IllegalArgumentException("row is not within the array.");
+    }
+
+    /**
+     * Calculates the index of a pixel in a flat array row by row.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The index.
+     */
+    int index(final int yCoordinate, final int xCoordinate) {
+        assert 0 <= xCoordinate && xCoordinate < width;
+        assert 0 <= yCoordinate && yCoordinate < height;
+
+        return yCoordinate * width + xCoordinate;
+    }
+
+    /**
+     * Converts a 16 bit brightness to a packed colour.
+     *
+     * @param brightness The brightness between 0 and 65535.
+     * @return The packed colour.
+     */
+    static int gray16ToRGB(final int brightness) {
+        // Truncated like Color#toRGB, 8 bit values are stored multiplied by 257 and come back unchanged.
+        final int brightness8 = brightness * MAX_8_BIT / MAX_16_BIT;
+        return Color.pack(brightness8, brightness8, brightness8);
+    }
+
+    /**
+     * Converts a packed colour to a 16 bit brightness.
+     *
+     * @param rgb The packed colour.
+     * @return The brightness between 0 and 65535.
+     */
+    static int rgbToGray16(final int rgb) {
+        return Color.getBrightness(rgb) * (MAX_16_BIT / MAX_8_BIT);
+    }
+
+    /**
+     * Converts a colour to a 16 bit brightness.
+     *
+     * @param color The colour.
+     * @return The brightness between 0 and 65535.
+     */
+    static int colorToGray16(final Color color) {
+        final Color clamped = color.clamp();
+        // The same weights as Color#getBrightness.
+        final double brightness = (77 * clamped.getRed() + 150 * clamped.getGreen() + 29 * clamped.getBlue()) / 256;
+        return (int) Math.round(brightness * MAX_16_BIT);
+    }
+
+    /**
+     * Converts a 16 bit brightness to a colour.
+     *
+     * @param brightness The brightness between 0 and 65535.
+     * @return The gray colour.
+     */
+    static Color gray16ToColor(final int brightness) {
+        return Color.gray((double) brightness / MAX_16_BIT);
+    }
+
+    /**
+     * Converts an 8 bit brightness to a colour.
+     *
+     * @param brightness The brightness between 0 and 255.
+     * @return The gray colour.
+     */
+    static Color gray8ToColor(final int brightness) {
+        return Color.gray((double) brightness / MAX_8_BIT);
+    }
+
+    /**
+     * Converts three float channels to a packed colour without creating a colour.
+     *
+     * @param red   The red channel.
+     * @param green The green channel.
+     * @param blue  The blue channel.
+     * @return The same packed colour as {@link Color#toRGB()}.
+     */
+    static int floatsToRGB(final float red, final float green, final float blue) {
+        return Color.pack(floatToChannel(red), floatToChannel(green), floatToChannel(blue));
+    }
+
+    /**
+     * Converts a float to a channel with 8 bits.
+     *
+     * @param channel The channel.
+     * @return The channel between 0 and 255, truncated like {@link Color#toRGB()}.
+     */
+    private static int floatToChannel(final float channel) {
+        return (int) (Math.min(channel, 1d) * MAX_8_BIT);
+    }
+
+    /**
+     * Converts a channel with 8 bits to a float.
+     *
+     * @param channel The channel between 0 and 255.
+     * @return The float, that {@link Color#toRGB()} converts back to the channel.
+     */
+    static float channelToFloat(final int channel) {
+        // The half step makes the truncation of toRGB return the same value again.
+        return (channel + 0.5f) / MAX_8_BIT;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{width=%d, height=%d, format=%s}", getClass().getSimpleName(), width, height, format);
+    }
+
+    /**
+     * A buffer with an 8 bit brightness per pixel.
+     */
+    private static final class Gray8Buffer extends FrameBuffer {
+        /**
+         * The brightness values.
+         */
+        private final byte[] pixels;
+
+        /**
+         * Constructs the buffer.
+         *
+         * @param width  The width in pixels.
+         * @param height The height in pixels.
+         */
+        Gray8Buffer(final int width, final int height) {
+            super(width, height, PixelFormat.GRAY8);
+            pixels = new byte[width * height];
+        }
+
+        @Override
+        public int getRGB(final int yCoordinate, final int xCoordinate) {
+            final int brightness = pixels[index(yCoordinate, xCoordinate)] & MAX_8_BIT;
+            return Color.pack(brightness, brightness, brightness);
+        }
+
+        @Override
+        public void setRGB(final int yCoordinate, final int xCoordinate, final int rgb) {
+            pixels[index(yCoordinate, xCoordinate)] = (byte) Color.getBrightness(rgb);
+        }
+
+        @Override
+        public Color getColor(final int yCoordinate, final int xCoordinate) {
+            return gray8ToColor(pixels[index(yCoordinate, xCoordinate)] & MAX_8_BIT);
+        }
+
+        @Override
+        public void setColor(final int yCoordinate, final int xCoordinate, final Color color) {
+            setRGB(yCoordinate, xCoordinate, color.toRGB());
+        }
+
+        @Override
+        public void getRow(final int yCoordinate, final int xCoordinate, final int length, final int[] destination, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, destination, offset);
+            if (length == 0)
+                return;
+
+            final int start = index(yCoordinate, xCoordinate);
+            for (int index = 0; index < length; index++) {
+                final int brightness = pixels[start + index] & MAX_8_BIT;
+                destination[offset + index] = Color.pack(brightness, brightness, brightness);
+            }
+        }
+
+        @Override
+        public void setRow(final int yCoordinate, final int xCoordinate, final int length, final int[] source, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, source, offset);
+            if (length == 0)
+                return;
+
+            final int start = index(yCoordinate, xCoordinate);
+            for (int index = 0; index < length; index++) {
+                pixels[start + index] = (byte) Color.getBrightness(source[offset + index]);
+            }
+        }
+    }
+
+    /**
+     * A buffer with a 16 bit brightness per pixel.
+     */
+    private static final class Gray16Buffer extends FrameBuffer {
+        /**
+         * The brightness values.
+         */
+        private final short[] pixels;
+
+        /**
+         * Constructs the buffer.
+         *
+         * @param width  The width in pixels.
+         * @param height The height in pixels.
+         */
+        Gray16Buffer(final int width, final int height) {
+            super(width, height, PixelFormat.GRAY16);
+            pixels = new short[width * height];
+        }
+
+        @Override
+        public int getRGB(final int yCoordinate, final int xCoordinate) {
+            return gray16ToRGB(pixels[index(yCoordinate, xCoordinate)] & MAX_16_BIT);
+        }
+
+        @Override
+        public void setRGB(final int yCoordinate, final int xCoordinate, final int rgb) {
+            pixels[index(yCoordinate, xCoordinate)] = (short) rgbToGray16(rgb);
+        }
+
+        @Override
+        public Color getColor(final int yCoordinate, final int xCoordinate) {
+            return gray16ToColor(pixels[index(yCoordinate, xCoordinate)] & MAX_16_BIT);
+        }
+
+        @Override
+        public void setColor(final int yCoordinate, final int xCoordinate, final Color color) {
+            pixels[index(yCoordinate, xCoordinate)] = (short) colorToGray16(color);
+        }
+
+        @Override
+        public void getRow(final int yCoordinate, final int xCoordinate, final int length, final int[] destination, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, destination, offset);
+            if (length == 0)
+                return;
+
+            final int start = index(yCoordinate, xCoordinate);
+            for (int index = 0; index < length; index++) {
+                destination[offset + index] = gray16ToRGB(pixels[start + index] & MAX_16_BIT);
+            }
+        }
+
+        @Override
+        public void setRow(final int yCoordinate, final int xCoordinate, final int length, final int[] source, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, source, offset);
+            if (length == 0)
+                return;
+
+            final int start = index(yCoordinate, xCoordinate);
+            for (int index = 0; index < length; index++) {
+                pixels[start + index] = (short) rgbToGray16(source[offset + index]);
+            }
+        }
+    }
+
+    /**
+     * A buffer with three floats per pixel, which keep channels above 1.
+     */
+    private static final class FloatBuffer extends FrameBuffer {
+        /**
+         * The count of channels.
+         */
+        private static final int CHANNELS = 3;
+
+        /**
+         * The red, green and blue values of every pixel.
+         */
+        private final float[] pixels;
+
+        /**
+         * Constructs the buffer.
+         *
+         * @param width  The width in pixels.
+         * @param height The height in pixels.
+         */
+        FloatBuffer(final int width, final int height) {
+            super(width, height, PixelFormat.FLOAT_RGB);
+            pixels = new float[width * height * CHANNELS];
+        }
+
+        @Override
+        public int getRGB(final int yCoordinate, final int xCoordinate) {
+            final int index = index(yCoordinate, xCoordinate) * CHANNELS;
+            return floatsToRGB(pixels[index], pixels[index + 1], pixels[index + 2]);
+        }
+
+        @Override
+        public void setRGB(final int yCoordinate, final int xCoordinate, final int rgb) {
+            final int index = index(yCoordinate, xCoordinate) * CHANNELS;
+            pixels[index] = channelToFloat(Color.getRed(rgb));
+            pixels[index + 1] = channelToFloat(Color.getGreen(rgb));
+            pixels[index + 2] = channelToFloat(Color.getBlue(rgb));
+        }
+
+        @Override
+        public Color getColor(final int yCoordinate, final int xCoordinate) {
+            final int index = index(yCoordinate, xCoordinate) * CHANNELS;
+            return new Color(pixels[index], pixels[index + 1], pixels[index + 2]);
+        }
+
+        @Override
+        public void setColor(final int yCoordinate, final int xCoordinate, final Color color) {
+            final int index = index(yCoordinate, xCoordinate) * CHANNELS;
+            pixels[index] = (float) color.getRed();
+            pixels[index + 1] = (float) color.getGreen();
+            pixels[index + 2] = (float) color.getBlue();
+        }
+
+        @Override
+        public void getRow(final int yCoordinate, final int xCoordinate, final int length, final int[] destination, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, destination, offset);
+            if (length == 0)
+                return;
+
+            int channel = index(yCoordinate, xCoordinate) * CHANNELS;
+            for (int index = 0; index < length; index++, channel += CHANNELS) {
+                destination[offset + index] = floatsToRGB(pixels[channel], pixels[channel + 1], pixels[channel + 2]);
+            }
+        }
+
+        @Override
+        public void setRow(final int yCoordinate, final int xCoordinate, final int length, final int[] source, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, source, offset);
+            if (length == 0)
+                return;
+
+            int channel = index(yCoordinate, xCoordinate) * CHANNELS;
+            for (int index = 0; index < length; index++, channel += CHANNELS) {
+                final int rgb = source[offset + index];
+                pixels[channel] = channelToFloat(Color.getRed(rgb));
+                pixels[channel + 1] = channelToFloat(Color.getGreen(rgb));
+                pixels[channel + 2] = channelToFloat(Color.getBlue(rgb));
+            }
+        }
+    }
+
+    /**
+     * A buffer with an int with packed 8 bit channels per pixel.
+     */
+    private static final class PackedBuffer extends FrameBuffer {
+        /**
+         * The packed colours.
+         */
+        private final int[] pixels;
+
+        /**
+         * Constructs the buffer.
+         *
+         * @param width  The width in pixels.
+         * @param height The height in pixels.
+         */
+        PackedBuffer(final int width, final int height) {
+            super(width, height, PixelFormat.PACKED_RGB);
+            pixels = new int[width * height];
+        }
+
+        @Override
+        public int getRGB(final int yCoordinate, final int xCoordinate) {
+            return pixels[index(yCoordinate, xCoordinate)];
+        }
+
+        @Override
+        public void setRGB(final int yCoordinate, final int xCoordinate, final int rgb) {
+            pixels[index(yCoordinate, xCoordinate)] = rgb;
+        }
+
+        @Override
+        public Color getColor(final int yCoordinate, final int xCoordinate) {
+            return Color.fromRGB(getRGB(yCoordinate, xCoordinate));
+        }
+
+        @Override
+        public void setColor(final int yCoordinate, final int xCoordinate, final Color color) {
+            setRGB(yCoordinate, xCoordinate, color.toRGB());
+        }
+
+        @Override
+        public void getRow(final int yCoordinate, final int xCoordinate, final int length, final int[] destination, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, destination, offset);
+
+            if (length > 0)
+                System.arraycopy(pixels, index(yCoordinate, xCoordinate), destination, offset, length);
+        }
+
+        @Override
+        public void setRow(final int yCoordinate, final int xCoordinate, final int length, final int[] source, final int offset) {
+            checkRow(yCoordinate, xCoordinate, length, source, offset);
+
+            if (length > 0)
+                System.arraycopy(source, offset, pixels, index(yCoordinate, xCoordinate), length);
+        }
+    }
+}
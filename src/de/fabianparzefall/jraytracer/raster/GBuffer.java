@@ -0,0 +1,261 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.Scene;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Stores the primary intersection of every pixel of a raster.
+ * <p>
+ * The values are kept in flat arrays with one entry (or three entries for vectors) per pixel. Points and distances
+ * are stored with double precision, because shadow and reflexion rays start there, normals and view directions with
+ * float precision.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class GBuffer {
+    /**
+     * The primitive id of a pixel without an intersection.
+     */
+    public static final int NO_PRIMITIVE = -1;
+
+    /**
+     * The width in pixels.
+     */
+    private final int width;
+
+    /**
+     * The height in pixels.
+     */
+    private final int height;
+
+    /**
+     * The id of the intersected primitive of every pixel or {@link #NO_PRIMITIVE}.
+     */
+    private final int[] primitiveIds;
+
+    /**
+     * The distance between the camera and the intersection of every pixel.
+     */
+    private final double[] distances;
+
+    /**
+     * The intersection point of every pixel.
+     */
+    private final double[] points;
+
+    /**
+     * The normalized normal at the intersection point of every pixel.
+     */
+    private final float[] normals;
+
+    /**
+     * The normalized direction of the primary ray of every pixel.
+     */
+    private final float[] viewDirections;
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param width  The width in pixels, must be greater or equal 1.
+     * @param height The height in pixels, must be greater or equal 1.
+     */
+    public GBuffer(final int width, final int height) {
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+
+        this.width = width;
+        this.height = height;
+
+        final int pixelCount = width * height;
+        primitiveIds = new int[pixelCount];
+        distances = new double[pixelCount];
+        points = new double[pixelCount * 3];
+        normals = new float[pixelCount * 3];
+        viewDirections = new float[pixelCount * 3];
+        Arrays.fill(primitiveIds, NO_PRIMITIVE);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Stores the primary intersection of a pixel.
+     *
+     * @param yCoordinate          The y coordinate of the pixel.
+     * @param xCoordinate          The x coordinate of the pixel.
+     * @param ray                  The primary ray.
+     * @param optionalIntersection The intersection of the primary ray.
+     */
+    public void store(final int yCoordinate, final int xCoordinate, final Ray ray,
+                      final Optional<Intersection> optionalIntersection) {
+        assert ray != null;
+        assert optionalIntersection != null;
+
+        final int index = getIndex(yCoordinate, xCoordinate);
+        setVector(viewDirections, index, ray.getDirection());
+
+        if (!optionalIntersection.isPresent()) {
+            primitiveIds[index] = NO_PRIMITIVE;
+            return;
+        }
+
+        final Intersection intersection = optionalIntersection.get();
+        final Point point = intersection.getIntersectionPoint();
+        primitiveIds[index] = intersection.getIntersectedPrimitive().getId();
+        distances[index] = intersection.getDistance();
+        points[index * 3] = point.getX();
+        points[index * 3 + 1] = point.getY();
+        points[index * 3 + 2] = point.getZ();
+        setVector(normals, index, intersection.getIntersectedPrimitive().getNormal(point).normalize());
+    }
+
+    /**
+     * Gets the id of the primitive intersected in a pixel.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The id or {@link #NO_PRIMITIVE}.
+     */
+    public int getPrimitiveId(final int yCoordinate, final int xCoordinate) {
+        return primitiveIds[getIndex(yCoordinate, xCoordinate)];
+    }
+
+    /**
+     * Gets the distance between camera and intersection of a pixel.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The distance or 0, if there is no intersection.
+     */
+    public double getDistance(final int yCoordinate, final int xCoordinate) {
+        final int index = getIndex(yCoordinate, xCoordinate);
+        return primitiveIds[index] == NO_PRIMITIVE ? 0 : distances[index];
+    }
+
+    /**
+     * Gets the normal at the intersection of a pixel.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The normalized normal or the null vector, if there is no intersection.
+     */
+    public Vector getNormal(final int yCoordinate, final int xCoordinate) {
+        final int index = getIndex(yCoordinate, xCoordinate);
+        return primitiveIds[index] == NO_PRIMITIVE ? Vector.NULL_VECTOR : getVector(normals, index);
+    }
+
+    /**
+     * Gets the intersection point of a pixel.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The point or an empty optional, if there is no intersection.
+     */
+    public Optional<Point> getPoint(final int yCoordinate, final int xCoordinate) {
+        final int index = getIndex(yCoordinate, xCoordinate);
+        if (primitiveIds[index] == NO_PRIMITIVE) {
+            return Optional.empty();
+        }
+        return Optional.of(new Point(points[index * 3], points[index * 3 + 1], points[index * 3 + 2]));
+    }
+
+    /**
+     * Gets the direction of the primary ray of a pixel.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The normalized direction, also for pixels without an intersection.
+     */
+    public Vector getViewDirection(final int yCoordinate, final int xCoordinate) {
+        return getVector(viewDirections, getIndex(yCoordinate, xCoordinate));
+    }
+
+    /**
+     * Restores the primary ray of a pixel, whose intersection is known. The ray starts at the camera.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The ray or an empty optional, if there is no intersection.
+     */
+    public Optional<Ray> getRay(final int yCoordinate, final int xCoordinate) {
+        final int index = getIndex(yCoordinate, xCoordinate);
+        return getPoint(yCoordinate, xCoordinate).map(point -> {
+            final Vector direction = getVector(viewDirections, index);
+            return new Ray(point.add(direction.scalarProduct(-distances[index])), direction);
+        });
+    }
+
+    /**
+     * Restores the primary intersection of a pixel in a scene. The scene must contain the same primitives as the scene
+     * the buffer was filled with, but it may differ in materials and light.
+     *
+     * @param scene       The scene.
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The intersection or an empty optional.
+     */
+    public Optional<Intersection> getIntersection(final Scene scene, final int yCoordinate, final int xCoordinate) {
+        assert scene != null;
+
+        final int index = getIndex(yCoordinate, xCoordinate);
+        return getPoint(yCoordinate, xCoordinate).map(point -> {
+            final Primitive primitive = scene.getPrimitive(primitiveIds[index]);
+            // The ray enters the primitive, if it runs against the normal.
+            final boolean entering = getVector(viewDirections, index).dotProduct(getVector(normals, index)) < 0;
+            return new Intersection(point, primitive, distances[index], entering);
+        });
+    }
+
+    /**
+     * Calculates the index of a pixel in the arrays.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The index.
+     */
+    private int getIndex(final int yCoordinate, final int xCoordinate) {
+        if (!(0 <= xCoordinate && xCoordinate < width) || !(0 <= yCoordinate && yCoordinate < height))
+            throw new IllegalArgumentException("point is not within the resolution.");
+
+        return yCoordinate * width + xCoordinate;
+    }
+
+    /**
+     * Stores a vector in a float array.
+     *
+     * @param array  The array.
+     * @param index  The index of the pixel.
+     * @param vector The vector.
+     */
+    private static void setVector(final float[] array, final int index, final Vector vector) {
+        array[index * 3] = (float) vector.getX();
+        array[index * 3 + 1] = (float) vector.getY();
+        array[index * 3 + 2] = (float) vector.getZ();
+    }
+
+    /**
+     * Loads a vector from a float array.
+     *
+     * @param array The array.
+     * @param index The index of the pixel.
+     * @return The vector.
+     */
+    private static Vector getVector(final float[] array, final int index) {
+        return new Vector(array[index * 3], array[index * 3 + 1], array[index * 3 + 2]);
+    }
+}
@@ -0,0 +1,85 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.Optional;
+
+/**
+ * A parallel raster, that keeps the primary intersection of every pixel in a {@link GBuffer}.
+ * <p>
+ * After a render, the raster can be relit with another raytracer, whose scene contains the same primitives but other
+ * materials or another light. Relighting only traces the shadow and reflexion rays.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class GBufferRaster extends ParallelRaster {
+    /**
+     * The buffer with the primary intersections.
+     */
+    private final GBuffer gBuffer;
+
+    /**
+     * True, while the raster is relit from the buffer.
+     */
+    private boolean relighting;
+
+    /**
+     * Constructs a GBufferRaster from width, height and the count of threads.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public GBufferRaster(final int width, final int height, final int threadCount) {
+        super(width, height, threadCount);
+
+        gBuffer = new GBuffer(width, height);
+    }
+
+    public GBuffer getGBuffer() {
+        return gBuffer;
+    }
+
+    /**
+     * Shades the stored primary intersections again without intersecting the primary rays.
+     *
+     * @param raytracer A raytracer, whose scene contains the same primitives as the one of the last render.
+     * @return This with the relit image.
+     */
+    public Raster relight(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        relighting = true;
+        try {
+            return render(raytracer);
+        } finally {
+            relighting = false;
+        }
+    }
+
+    @Override
+    protected Color tracePixel(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                                final int yCoordinate, final int xCoordinate) {
+        if (relighting) {
+            final Optional<Ray> primaryRay = gBuffer.getRay(yCoordinate, xCoordinate);
+            // Rays without an intersection don't get any light.
+            return primaryRay.isPresent()
+                    ? raytracer.shade(primaryRay.get(), gBuffer.getIntersection(raytracer.getScene(), yCoordinate, xCoordinate))
+                    : Color.BLACK;
+        }
+
+        final Ray primaryRay = raytracer.getPrimaryRay(
+                coordinateConverter.calculateHorizontalCoordinate(xCoordinate),
+                coordinateConverter.calculateVerticalCoordinate(yCoordinate),
+                coordinateConverter.getPixelSize());
+        final Optional<Intersection> primaryIntersection = raytracer.findIntersection(primaryRay);
+        gBuffer.store(yCoordinate, xCoordinate, primaryRay, primaryIntersection);
+
+        return raytracer.shade(primaryRay, primaryIntersection);
+    }
+}
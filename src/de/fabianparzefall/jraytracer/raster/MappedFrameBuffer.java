@@ -0,0 +1,267 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A frame buffer in a memory mapped file, so the size of the image is not limited by the heap.
+ * <p>
+ * The file is laid out tile by tile, and the pixels of a tile are stored row by row. So a worker, that renders a tile,
+ * writes to a few contiguous pages, and a writer, that reads the image row by row, reads the file band by band. A
+ * mapping can't be bigger than 2 GB, so the file is mapped in several regions of whole tiles.
+ * <p>
+ * The pixels are stored in the native byte order, so the file is a scratch file for the current machine.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class MappedFrameBuffer extends FrameBuffer implements Closeable {
+    /**
+     * The maximum size of a mapped region in bytes.
+     */
+    private static final long MAXIMUM_REGION_SIZE = 1L << 30;
+
+    /**
+     * The count of channels of a float pixel.
+     */
+    private static final int FLOAT_CHANNELS = 3;
+
+    /**
+     * The edge length of the tiles.
+     */
+    private final int tileSize;
+
+    /**
+     * The count of tiles in a row of tiles.
+     */
+    private final int tileColumns;
+
+    /**
+     * The size of a tile in bytes.
+     */
+    private final int tileByteCount;
+
+    /**
+     * The count of tiles in a region.
+     */
+    private final int tilesPerRegion;
+
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped regions.
+     */
+    private final MappedByteBuffer[] regions;
+
+    /**
+     * Creates a black frame buffer in a file. An existing file is overwritten.
+     *
+     * @param file     The file.
+     * @param format   The format of the pixels.
+     * @param width    The width in pixels, must be at least 1.
+     * @param height   The height in pixels, must be at least 1.
+     * @param tileSize The edge length of the tiles, must be at least 1.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public MappedFrameBuffer(final Path file, final PixelFormat format, final int width, final int height,
+                             final int tileSize) throws IOException {
+        super(width, height, format);
+        assert file != null;
+
+        if (tileSize < 1)
+            throw new IllegalArgumentException("tileSize is less than 1.");
+        if ((long) tileSize * tileSize * format.getBytesPerPixel() > MAXIMUM_REGION_SIZE)
+            throw new IllegalArgumentException("tileSize is too big.");
+
+        this.tileSize = tileSize;
+        tileColumns = (width + tileSize - 1) / tileSize;
+        final int tileRows = (height + tileSize - 1) / tileSize;
+        tileByteCount = tileSize * tileSize * format.getBytesPerPixel();
+        tilesPerRegion = (int) Math.min((long) tileColumns * tileRows, MAXIMUM_REGION_SIZE / tileByteCount);
+
+        final long tileCount = (long) tileColumns * tileRows;
+        regions = new MappedByteBuffer[(int) ((tileCount + tilesPerRegion - 1) / tilesPerRegion)];
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            for (int region = 0; region < regions.length; region++) {
+                final long firstTile = (long) region * tilesPerRegion;
+                final long regionTiles = Math.min(tilesPerRegion, tileCount - firstTile);
+                regions[region] = channel.map(FileChannel.MapMode.READ_WRITE, firstTile * tileByteCount,
+                        regionTiles * tileByteCount);
+                regions[region].order(ByteOrder.nativeOrder());
+            }
+        } catch (final IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    @Override
+    public long getByteCount() {
+        long byteCount = 0;
+        for (final MappedByteBuffer region : regions) {
+            byteCount += region.capacity();
+        }
+        return byteCount;
+    }
+
+    @Override
+    public int getRGB(final int yCoordinate, final int xCoordinate) {
+        final MappedByteBuffer region = getRegion(yCoordinate, xCoordinate);
+        final int offset = getOffset(yCoordinate, xCoordinate);
+
+        switch (getFormat()) {
+            case GRAY8:
+                final int brightness = region.get(offset) & MAX_8_BIT;
+                return Color.pack(brightness, brightness, brightness);
+            case GRAY16:
+                return gray16ToRGB(region.getShort(offset) & MAX_16_BIT);
+            case FLOAT_RGB:
+                return getColor(yCoordinate, xCoordinate).toRGB();
+            case PACKED_RGB:
+                return region.getInt(offset);
+            default:
+                throw new IllegalStateException(String.format("unknown format %s.", getFormat()));
+        }
+    }
+
+    @Override
+    public void setRGB(final int yCoordinate, final int xCoordinate, final int rgb) {
+        final MappedByteBuffer region = getRegion(yCoordinate, xCoordinate);
+        final int offset = getOffset(yCoordinate, xCoordinate);
+
+        switch (getFormat()) {
+            case GRAY8:
+                region.put(offset, (byte) Color.getBrightness(rgb));
+                break;
+            case GRAY16:
+                region.putShort(offset, (short) rgbToGray16(rgb));
+                break;
+            case FLOAT_RGB:
+                region.putFloat(offset, channelToFloat(Color.getRed(rgb)));
+                region.putFloat(offset + Float.BYTES, channelToFloat(Color.getGreen(rgb)));
+                region.putFloat(offset + 2 * Float.BYTES, channelToFloat(Color.getBlue(rgb)));
+                break;
+            case PACKED_RGB:
+                region.putInt(offset, rgb);
+                break;
+            default:
+                throw new IllegalStateException(String.format("unknown format %s.", getFormat()));
+        }
+    }
+
+    @Override
+    public Color getColor(final int yCoordinate, final int xCoordinate) {
+        final MappedByteBuffer region = getRegion(yCoordinate, xCoordinate);
+        final int offset = getOffset(yCoordinate, xCoordinate);
+
+        switch (getFormat()) {
+            case GRAY8:
+                return gray8ToColor(region.get(offset) & MAX_8_BIT);
+            case GRAY16:
+                return gray16ToColor(region.getShort(offset) & MAX_16_BIT);
+            case FLOAT_RGB:
+                return new Color(region.getFloat(offset), region.getFloat(offset + Float.BYTES),
+                        region.getFloat(offset + 2 * Float.BYTES));
+            case PACKED_RGB:
+                return Color.fromRGB(region.getInt(offset));
+            default:
+                throw new IllegalStateException(String.format("unknown format %s.", getFormat()));
+        }
+    }
+
+    @Override
+    public void setColor(final int yCoordinate, final int xCoordinate, final Color color) {
+        assert color != null;
+
+        switch (getFormat()) {
+            case GRAY16:
+                getRegion(yCoordinate, xCoordinate).putShort(getOffset(yCoordinate, xCoordinate), (short) colorToGray16(color));
+                break;
+            case FLOAT_RGB:
+                final MappedByteBuffer region = getRegion(yCoordinate, xCoordinate);
+                final int offset = getOffset(yCoordinate, xCoordinate);
+                region.putFloat(offset, (float) color.getRed());
+                region.putFloat(offset + Float.BYTES, (float) color.getGreen());
+                region.putFloat(offset + 2 * Float.BYTES, (float) color.getBlue());
+                break;
+            default:
+                setRGB(yCoordinate, xCoordinate, color.toRGB());
+        }
+    }
+
+    /**
+     * Writes the changed pixels to the file.
+     */
+    public void force() {
+        for (final MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    /**
+     * Writes the changed pixels to the file and closes it. The mapping itself is released by the garbage collector, so
+     * the buffer must not be used afterwards.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Gets the index of the tile of a pixel.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The index of the tile in the file.
+     */
+    private long getTileIndex(final int yCoordinate, final int xCoordinate) {
+        if (!(0 <= xCoordinate && xCoordinate < getWidth() && 0 <= yCoordinate && yCoordinate < getHeight()))
+            throw new IllegalArgumentException("point is not within the resolution.");
+
+        return (long) (yCoordinate / tileSize) * tileColumns + xCoordinate / tileSize;
+    }
+
+    /**
+     * Gets the region of a pixel.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The mapped region.
+     */
+    private MappedByteBuffer getRegion(final int yCoordinate, final int xCoordinate) {
+        return regions[(int) (getTileIndex(yCoordinate, xCoordinate) / tilesPerRegion)];
+    }
+
+    /**
+     * Gets the offset of a pixel in its region.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The offset in bytes.
+     */
+    private int getOffset(final int yCoordinate, final int xCoordinate) {
+        final int tileInRegion = (int) (getTileIndex(yCoordinate, xCoordinate) % tilesPerRegion);
+        final int pixelInTile = yCoordinate % tileSize * tileSize + xCoordinate % tileSize;
+        return tileInRegion * tileByteCount + pixelInTile * getFormat().getBytesPerPixel();
+    }
+}
@@ -0,0 +1,80 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * A parallel raster, whose pixels are stored in a {@link MappedFrameBuffer}.
+ * <p>
+ * The tiles of the render are the tiles of the file and are rendered row by row, so the workers write neighbouring
+ * pages and the operating system can write them back in order.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class MappedRaster extends ParallelRaster implements Closeable {
+    /**
+     * Constructs a MappedRaster on an opened file.
+     *
+     * @param frameBuffer The buffer in the file.
+     * @param threadCount The number of threads to use, must be positive or 0.
+     */
+    private MappedRaster(final MappedFrameBuffer frameBuffer, final int threadCount) {
+        super(frameBuffer, threadCount, DEFAULT_TILE_SIZE, Optional.of(TileOrder.ROW_MAJOR));
+    }
+
+    /**
+     * Creates a MappedRaster, that stores the pixels in a file. The arguments are checked before the file is opened,
+     * and the file is closed again, if the raster can't be created.
+     *
+     * @param file        The file, an existing file is overwritten.
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param format      The format, in which the pixels are stored.
+     * @return The raster, which must be closed.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public static MappedRaster open(final Path file, final int width, final int height, final int threadCount,
+                                    final PixelFormat format) throws IOException {
+        assert file != null;
+        assert format != null;
+
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+        if (threadCount < 0)
+            throw new IllegalArgumentException("threadCount must be at least 0.");
+
+        final MappedFrameBuffer frameBuffer = new MappedFrameBuffer(file, format, width, height, DEFAULT_TILE_SIZE);
+        try {
+            return new MappedRaster(frameBuffer, threadCount);
+        } catch (final RuntimeException exception) {
+            try {
+                frameBuffer.close();
+            } catch (final IOException closeException) {
+                exception.addSuppressed(closeException);
+            }
+            throw exception;
+        }
+    }
+
+    @Override
+    public MappedFrameBuffer getFrameBuffer() {
+        return (MappedFrameBuffer) super.getFrameBuffer();
+    }
+
+    /**
+     * Closes the file of the raster.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        getFrameBuffer().close();
+    }
+}
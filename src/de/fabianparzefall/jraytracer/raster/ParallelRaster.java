@@ -1,20 +1,65 @@
 package de.fabianparzefall.jraytracer.raster;
 
+import de.fabianparzefall.jraytracer.common.Processors;
 import de.fabianparzefall.jraytracer.tracer.Raytracer;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A raster, which you uses threads for optimal parallelism.
+ * <p>
+ * The raster is split into tiles, that are rendered on a fork/join pool. Tiles are split further as long as the
+ * workers run out of queued work, so idle workers can steal the halves of big tiles. The pools are shared by all
+ * rasters with the same count of threads. A render holds its pool until it returns, and only a few pools without a
+ * render are kept for the next renders, the others are shut down.
+ * <p>
+ * Alternatively, the raster is split into a grid of tiles, which all workers take from a {@link TileOrder} one after
+ * another.
+ * <p>
+ * A render can be cancelled by a {@link CancellationToken} or by interrupting the rendering thread. The workers stop
+ * taking new tiles and the render throws a {@link CancellationException}, while the pixels of the finished tiles stay
+ * in the raster.
  *
  * @author Fabian Parzefall
- * @version 15-06-18
+ * @version 26-10-19
  */
 public class ParallelRaster extends ArrayRaster {
     /**
-     * The maximum brightness of the scene.
+     * The default maximum edge length of a tile.
      */
-    private static final int MAX_BRIGHTNESS = 255;
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /**
+     * The edge length, below which tiles are not split anymore.
+     */
+    private static final int MINIMUM_TILE_SIZE = 4;
+
+    /**
+     * The count of queued tasks of a worker, up to which it splits its tiles further.
+     */
+    private static final int SURPLUS_THRESHOLD = 2;
+
+    /**
+     * The count of pools without a render, that are kept for the next renders.
+     */
+    private static final int MAXIMUM_IDLE_POOLS = 2;
+
+    /**
+     * The pools by their parallelism in the order of their last use. All accesses are synchronized on the map.
+     */
+    private static final Map<Integer, SharedPool> POOLS = new LinkedHashMap<>(16, 0.75f, true);
 
     /**
      * The count of threads.
@@ -22,9 +67,24 @@ public class ParallelRaster extends ArrayRaster {
     private final int threadCount;
 
     /**
-     * This zero-based int contains the highest row number, which is not calculated yet.
+     * The maximum edge length of a tile. Bigger tiles are always split.
      */
-    private int remainingRows;
+    private final int tileSize;
+
+    /**
+     * The order of the tiles or an empty optional, if tiles are split adaptively.
+     */
+    private final Optional<TileOrder> tileOrder;
+
+    /**
+     * The pool, on which the tiles of the current or last render are rendered.
+     */
+    private volatile ForkJoinPool pool;
+
+    /**
+     * The token, that cancels the renders.
+     */
+    private volatile CancellationToken cancellationToken = new CancellationToken();
 
     /**
      * Constructs a ParallelRaster from width, height and the count of threads.
@@ -35,101 +95,453 @@ public class ParallelRaster extends ArrayRaster {
      *                    processors is used.
      */
     public ParallelRaster(final int width, final int height, final int threadCount) {
-        super(width, height);
+        this(width, height, threadCount, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructs a ParallelRaster from width, height, the count of threads and the maximum size of the tiles.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param tileSize    The maximum edge length of a tile, must be at least 1.
+     */
+    public ParallelRaster(final int width, final int height, final int threadCount, final int tileSize) {
+        this(FrameBuffer.allocate(PixelFormat.PACKED_RGB, width, height), threadCount, tileSize, Optional.empty());
+    }
+
+    /**
+     * Constructs a ParallelRaster from width, height, the count of threads and the format of the pixels.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param format      The format, in which the pixels are stored.
+     */
+    public ParallelRaster(final int width, final int height, final int threadCount, final PixelFormat format) {
+        this(FrameBuffer.allocate(format, width, height), threadCount, DEFAULT_TILE_SIZE, Optional.empty());
+    }
+
+    /**
+     * Constructs a ParallelRaster, that renders a grid of tiles in a fixed order.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     * @param tileSize    The edge length of a tile, must be at least 1.
+     * @param tileOrder   The order, in which the tiles are rendered.
+     */
+    public ParallelRaster(final int width, final int height, final int threadCount, final int tileSize,
+                          final TileOrder tileOrder) {
+        this(FrameBuffer.allocate(PixelFormat.PACKED_RGB, width, height), threadCount, tileSize, Optional.of(tileOrder));
+    }
+
+    /**
+     * Constructs a ParallelRaster on a frame buffer with an optional tile order.
+     *
+     * @param frameBuffer The buffer, in which the colours are stored.
+     * @param threadCount The number of threads to use, must be positive or 0.
+     * @param tileSize    The edge length of a tile, must be at least 1.
+     * @param tileOrder   The order of the tiles or an empty optional for adaptive splitting.
+     */
+    ParallelRaster(final FrameBuffer frameBuffer, final int threadCount, final int tileSize,
+                   final Optional<TileOrder> tileOrder) {
+        super(frameBuffer);
 
         if (threadCount < 0) {
             throw new IllegalArgumentException("threadCount must be at least 0.");
         }
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tileSize is less than 1.");
+        }
 
-        // If threadCount is 0, get the count of available processors.
+        // If threadCount is 0, get the count of available processors within the CPU quota.
         if (threadCount == 0) {
-            this.threadCount = Runtime.getRuntime().availableProcessors();
+            this.threadCount = Processors.getAvailableCount();
         } else {
             this.threadCount = threadCount;
         }
+        this.tileSize = tileSize;
+        this.tileOrder = tileOrder;
+    }
+
+    /**
+     * Acquires the shared pool with the given parallelism for a render. The pool is created, if no pool with the
+     * parallelism is kept.
+     *
+     * @param parallelism The count of worker threads.
+     * @return The pool, that has to be released by {@link #releasePool(int)} after the render.
+     */
+    private static ForkJoinPool acquirePool(final int parallelism) {
+        synchronized (POOLS) {
+            final SharedPool sharedPool = POOLS.computeIfAbsent(parallelism, SharedPool::new);
+            sharedPool.renders++;
+            return sharedPool.pool;
+        }
+    }
+
+    /**
+     * Releases the shared pool with the given parallelism after a render. If more than {@link #MAXIMUM_IDLE_POOLS}
+     * pools are without a render, the least recently used of them are shut down.
+     *
+     * @param parallelism The count of worker threads of the pool, must have been acquired before.
+     */
+    private static void releasePool(final int parallelism) {
+        synchronized (POOLS) {
+            POOLS.get(parallelism).renders--;
+
+            int idlePools = 0;
+            for (final SharedPool sharedPool : POOLS.values()) {
+                if (sharedPool.renders == 0)
+                    idlePools++;
+            }
 
-        remainingRows = height - 1;
+            final Iterator<SharedPool> iterator = POOLS.values().iterator();
+            while (idlePools > MAXIMUM_IDLE_POOLS && iterator.hasNext()) {
+                final SharedPool sharedPool = iterator.next();
+                if (sharedPool.renders == 0) {
+                    iterator.remove();
+                    sharedPool.pool.shutdown();
+                    idlePools--;
+                }
+            }
+        }
     }
 
     public int getThreadCount() {
         return threadCount;
     }
 
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public Optional<TileOrder> getTileOrder() {
+        return tileOrder;
+    }
+
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Sets the token, that cancels the following renders.
+     *
+     * @param cancellationToken The token.
+     */
+    public void setCancellationToken(final CancellationToken cancellationToken) {
+        assert cancellationToken != null;
+
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Renders all tiles of the raster.
+     *
+     * @param raytracer The raytracer.
+     * @return This with the rendered image.
+     * @throws CancellationException If the render is cancelled by the token or an interrupt.
+     */
     @Override
     public Raster render(final Raytracer raytracer) {
         assert raytracer != null;
 
-        final Thread[] threads = new Thread[threadCount];
+        if (tileOrder.isPresent())
+            return renderTiles(raytracer, tileOrder.get().arrange(getWidth(), getHeight(), tileSize));
+
+        // The render gets its own token, so an interrupt doesn't cancel the token of the caller.
+        final CancellationToken renderToken = cancellationToken.createChild();
+        renderToken.throwIfCancelled();
+
+        await(new TileTask(raytracer, createCoordinateConverter(), renderToken, new Tile(0, 0, getWidth(), getHeight())),
+                renderToken);
+        renderToken.throwIfCancelled();
+
+        return this;
+    }
+
+    /**
+     * Renders a list of tiles, which all workers take one after another. The tiles are not split.
+     *
+     * @param raytracer The raytracer.
+     * @param tiles     The tiles in the order, in which they are taken.
+     * @return This with the rendered tiles.
+     * @throws CancellationException If the render is cancelled by the token or an interrupt.
+     */
+    protected Raster renderTiles(final Raytracer raytracer, final List<Tile> tiles) {
+        assert raytracer != null;
+        assert tiles != null;
+
+        final CancellationToken renderToken = cancellationToken.createChild();
+        renderToken.throwIfCancelled();
+
+        final CoordinateConverter coordinateConverter = createCoordinateConverter();
+        final AtomicInteger cursor = new AtomicInteger();
+        final List<OrderedTileTask> tasks = new ArrayList<>(threadCount);
         for (int index = 0; index < threadCount; index++) {
-            threads[index] = new LineProcessor(raytracer);
-            // The thread gets as its name an id, that can be used by the Thread ID Raster.
-            threads[index].setName(Integer.toString(index));
-            threads[index].start();
+            tasks.add(new OrderedTileTask(raytracer, coordinateConverter, renderToken, tiles, cursor));
+        }
+
+        await(new RecursiveAction() {
+            /**
+             * The version of the serialized form.
+             */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        }, renderToken);
+        renderToken.throwIfCancelled();
+
+        return this;
+    }
+
+    /**
+     * Runs a task on the pool and waits for it. If the waiting thread is interrupted, the task is cancelled by the
+     * token and the interrupt is kept for the caller.
+     *
+     * @param task        The task.
+     * @param renderToken The token of the render, that the task checks.
+     */
+    private void await(final ForkJoinTask<Void> task, final CancellationToken renderToken) {
+        pool = acquirePool(threadCount);
+        try {
+            awaitOnPool(task, renderToken);
+        } finally {
+            releasePool(threadCount);
+        }
+    }
+
+    /**
+     * Runs a task on the acquired pool and waits for it.
+     *
+     * @param task        The task.
+     * @param renderToken The token of the render, that the task checks.
+     */
+    private void awaitOnPool(final ForkJoinTask<Void> task, final CancellationToken renderToken) {
+        // A worker of the pool joins the task, so it can help with the tiles instead of blocking.
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+            return;
         }
 
-        for (final Thread processor : threads) {
+        pool.execute(task);
+        boolean interrupted = false;
+        while (true) {
             try {
-                // Wait for all threads.
-                processor.join();
+                task.get();
+                break;
             } catch (final InterruptedException exception) {
-                // This should never be hit.
-                assert false;
+                interrupted = true;
+                renderToken.cancel();
+            } catch (final ExecutionException exception) {
+                final Throwable cause = exception.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new IllegalStateException(cause);
             }
         }
 
-        return this;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * Fetches the vertical coordinate of the next row to process. This method is thread safe.
+     * Renders one tile of the raster.
      *
-     * @return An optional with an int value or an empty optional, if there are no more rows to process.
+     * @param raytracer           The raytracer.
+     * @param coordinateConverter The converter for the resolution of the raster.
+     * @param tile                The tile.
      */
-    private synchronized Optional<Integer> fetchNextRow() {
-        if (remainingRows < 0) {
-            return Optional.empty();
-        } else {
-            // Decrement after creating optional.
-            return Optional.of(remainingRows--);
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        // Rows are rendered from the top, like the old line processors did.
+        for (int yCoordinate = tile.getEndYCoordinate() - 1; yCoordinate >= tile.getYCoordinate(); yCoordinate--) {
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                setColor(yCoordinate, xCoordinate, tracePixel(raytracer, coordinateConverter, yCoordinate, xCoordinate));
+            }
         }
     }
 
     /**
-     * This class renders one line after another.
+     * This task renders a tile or splits it, if it is too big or other workers are running out of work.
      */
-    private class LineProcessor extends Thread {
+    private class TileTask extends RecursiveAction {
+        /**
+         * The version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
         /**
          * The raytracer to raytrace points.
          */
         private final Raytracer raytracer;
 
         /**
-         * Creates a LineProcessor with the given raytracer.
+         * The converter for the resolution of the raster.
+         */
+        private final CoordinateConverter coordinateConverter;
+
+        /**
+         * The token of the render.
+         */
+        private final CancellationToken renderToken;
+
+        /**
+         * The tile to render.
+         */
+        private final Tile tile;
+
+        /**
+         * Creates a TileTask.
          *
-         * @param raytracer The raytracer.
+         * @param raytracer           The raytracer.
+         * @param coordinateConverter The converter for the resolution of the raster.
+         * @param renderToken         The token of the render.
+         * @param tile                The tile to render.
          */
-        public LineProcessor(final Raytracer raytracer) {
+        TileTask(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                 final CancellationToken renderToken, final Tile tile) {
             this.raytracer = raytracer;
+            this.coordinateConverter = coordinateConverter;
+            this.renderToken = renderToken;
+            this.tile = tile;
         }
 
         @Override
-        public void run() {
-            Optional<Integer> currentRow = fetchNextRow();
-
-            final CoordinateConverter coordinateConverter = new CoordinateConverter(getWidth(), getHeight());
-
-            while (currentRow.isPresent()) {
-                // Iterate through a row.
-                for (int xCoordinate = 0; xCoordinate < getWidth(); xCoordinate++) {
-                    setPixel(currentRow.get(), xCoordinate,
-                            (int) (raytracer.tracePrimary(
-                                    coordinateConverter.calculateHorizontalCoordinate(xCoordinate),
-                                    coordinateConverter.calculateVerticalCoordinate(currentRow.get())
-                            ) * MAX_BRIGHTNESS));
-                }
+        protected void compute() {
+            if (renderToken.isCancelled())
+                return;
 
-                currentRow = fetchNextRow();
+            if (isTooBig() || isSplittable() && getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD) {
+                final Tile[] halves = tile.split();
+                invokeAll(new TileTask(raytracer, coordinateConverter, renderToken, halves[0]),
+                        new TileTask(raytracer, coordinateConverter, renderToken, halves[1]));
+            } else {
+                renderTile(raytracer, coordinateConverter, tile);
             }
         }
+
+        /**
+         * Tests if the tile is bigger than the maximum tile size.
+         *
+         * @return True, if the tile must be split.
+         */
+        private boolean isTooBig() {
+            return tile.getWidth() > tileSize || tile.getHeight() > tileSize;
+        }
+
+        /**
+         * Tests if the halves of the tile would still reach the minimum tile size.
+         *
+         * @return True, if the tile may be split.
+         */
+        private boolean isSplittable() {
+            return Math.max(tile.getWidth(), tile.getHeight()) >= 2 * MINIMUM_TILE_SIZE;
+        }
+    }
+
+    /**
+     * This task renders the next tile of the order, until all tiles are taken.
+     */
+    private class OrderedTileTask extends RecursiveAction {
+        /**
+         * The version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The raytracer to raytrace points.
+         */
+        private final Raytracer raytracer;
+
+        /**
+         * The converter for the resolution of the raster.
+         */
+        private final CoordinateConverter coordinateConverter;
+
+        /**
+         * The token of the render.
+         */
+        private final CancellationToken renderToken;
+
+        /**
+         * The tiles in their order.
+         */
+        private final List<Tile> tiles;
+
+        /**
+         * The index of the next tile, shared by all tasks of the render.
+         */
+        private final AtomicInteger cursor;
+
+        /**
+         * Creates an OrderedTileTask.
+         *
+         * @param raytracer           The raytracer.
+         * @param coordinateConverter The converter for the resolution of the raster.
+         * @param renderToken         The token of the render.
+         * @param tiles               The tiles in their order.
+         * @param cursor              The index of the next tile.
+         */
+        OrderedTileTask(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                        final CancellationToken renderToken, final List<Tile> tiles, final AtomicInteger cursor) {
+            this.raytracer = raytracer;
+            this.coordinateConverter = coordinateConverter;
+            this.renderToken = renderToken;
+            this.tiles = tiles;
+            this.cursor = cursor;
+        }
+
+        @Override
+        protected void compute() {
+            for (int index = cursor.getAndIncrement(); index < tiles.size(); index = cursor.getAndIncrement()) {
+                if (renderToken.isCancelled())
+                    return;
+
+                renderTile(raytracer, coordinateConverter, tiles.get(index));
+            }
+        }
+    }
+
+    /**
+     * A pool, that is shared by the renders with the same count of threads.
+     */
+    private static final class SharedPool {
+        /**
+         * The pool.
+         */
+        private final ForkJoinPool pool;
+
+        /**
+         * The count of renders, that hold the pool.
+         */
+        private int renders;
+
+        /**
+         * Creates a SharedPool with a new pool.
+         *
+         * @param parallelism The count of worker threads.
+         */
+        SharedPool(final int parallelism) {
+            pool = new ForkJoinPool(parallelism, pool -> {
+                final ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                // The thread gets as its name an id, that can be used by the Thread ID Raster.
+                worker.setName(Integer.toString(worker.getPoolIndex()));
+                worker.setDaemon(true);
+                return worker;
+            }, null, false);
+        }
     }
 }
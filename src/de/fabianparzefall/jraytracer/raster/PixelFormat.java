@@ -0,0 +1,58 @@
+package de.fabianparzefall.jraytracer.raster;
+
+/**
+ * The formats, in which a {@link FrameBuffer} stores its pixels.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public enum PixelFormat {
+    /**
+     * A brightness with 8 bits.
+     */
+    GRAY8(1, 1),
+
+    /**
+     * A brightness with 16 bits.
+     */
+    GRAY16(2, 1),
+
+    /**
+     * Three float channels without an upper bound.
+     */
+    FLOAT_RGB(12, 3),
+
+    /**
+     * Three channels with 8 bits packed into an int.
+     */
+    PACKED_RGB(4, 1);
+
+    /**
+     * The count of bytes per pixel.
+     */
+    private final int bytesPerPixel;
+
+    /**
+     * The count of array elements per pixel in a buffer on the heap.
+     */
+    private final int elementsPerPixel;
+
+    /**
+     * Constructs a pixel format.
+     *
+     * @param bytesPerPixel    The count of bytes per pixel.
+     * @param elementsPerPixel The count of array elements per pixel in a buffer on the heap.
+     */
+    PixelFormat(final int bytesPerPixel, final int elementsPerPixel) {
+        this.bytesPerPixel = bytesPerPixel;
+        this.elementsPerPixel = elementsPerPixel;
+    }
+
+    public int getBytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    public int getElementsPerPixel() {
+        return elementsPerPixel;
+    }
+}
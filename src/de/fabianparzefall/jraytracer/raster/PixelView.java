@@ -0,0 +1,47 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+
+/**
+ * Read access to the pixels of an image. Every raster is a view of its pixels, but a view can't be rendered, so the
+ * results of a render can be handed out without exposing the raster.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public interface PixelView {
+    /**
+     * Gets the width of the raster.
+     *
+     * @return The width.
+     */
+    int getWidth();
+
+    /**
+     * Gets the height of the raster.
+     *
+     * @return The height.
+     */
+    int getHeight();
+
+    /**
+     * Gets a pixel from the raster by the coordinates.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The brightness value.
+     */
+    int getPixel(int yCoordinate, int xCoordinate);
+
+    /**
+     * Gets the colour of a pixel from the raster by the coordinates.
+     *
+     * @param yCoordinate The y coordinate.
+     * @param xCoordinate The x coordinate.
+     * @return The colour packed with 8 bits per channel.
+     */
+    default int getColor(final int yCoordinate, final int xCoordinate) {
+        final int brightness = getPixel(yCoordinate, xCoordinate);
+        return Color.pack(brightness, brightness, brightness);
+    }
+}
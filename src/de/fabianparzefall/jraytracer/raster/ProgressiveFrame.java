@@ -0,0 +1,96 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+
+/**
+ * A read-only view of the image of a {@link ProgressiveRaster} after one pass. Pixels between the traced ones are
+ * interpolated.
+ * <p>
+ * The view can be saved as an image, while the progressive raster is still rendering. Every frame has its own buffer,
+ * which the raster doesn't write anymore after the frame is published, so a frame stays valid after later passes and
+ * renders.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class ProgressiveFrame implements PixelView {
+    /**
+     * The width in pixels.
+     */
+    private final int width;
+
+    /**
+     * The height in pixels.
+     */
+    private final int height;
+
+    /**
+     * The distance between the traced pixels of the pass. A step of 1 means, the frame is complete.
+     */
+    private final int step;
+
+    /**
+     * The packed colours row by row.
+     */
+    private final int[] colors;
+
+    /**
+     * Constructs a view of the buffer of a progressive raster. The array is not copied, so the raster must not write
+     * it anymore.
+     *
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     * @param step   The distance between the traced pixels.
+     * @param colors The packed colours row by row.
+     */
+    ProgressiveFrame(final int width, final int height, final int step, final int[] colors) {
+        assert colors != null;
+        assert colors.length == width * height;
+
+        this.width = width;
+        this.height = height;
+        this.step = step;
+        this.colors = colors;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Tests if all pixels of the frame are traced.
+     *
+     * @return True, if this is the frame of the last pass.
+     */
+    public boolean isComplete() {
+        return step == 1;
+    }
+
+    @Override
+    public int getPixel(final int yCoordinate, final int xCoordinate) {
+        return Color.getBrightness(getColor(yCoordinate, xCoordinate));
+    }
+
+    @Override
+    public int getColor(final int yCoordinate, final int xCoordinate) {
+        if (!(0 <= xCoordinate && xCoordinate < width && 0 <= yCoordinate && yCoordinate < height))
+            throw new IllegalArgumentException("point is not within the resolution.");
+
+        return colors[yCoordinate * width + xCoordinate];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProgressiveFrame{width=%d, height=%d, step=%d}", width, height, step);
+    }
+}
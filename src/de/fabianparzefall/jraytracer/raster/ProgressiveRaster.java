@@ -0,0 +1,235 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A parallel raster, that renders in passes from coarse to fine.
+ * <p>
+ * The first pass traces every 8th pixel in both directions, every further pass halves the distance and only traces
+ * the pixels, that are new. After each pass, the gaps are filled by bilinear interpolation in parallel by tile and the
+ * result is published as a {@link ProgressiveFrame}. The interpolation reads only the pixels traced by this pass and
+ * the coarser ones, and writes into a new buffer, which is owned by the frame of the pass and never written again
+ * after it's published. Readers get the latest frame from a volatile reference, so they never wait for the render
+ * and never see pixels of two passes.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class ProgressiveRaster extends ParallelRaster {
+    /**
+     * The distance between the traced pixels of the first pass. It must be a power of two.
+     */
+    public static final int INITIAL_STEP = 8;
+
+    /**
+     * The listeners, that are called after each pass.
+     */
+    private final List<Consumer<ProgressiveFrame>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The packed colours row by row, into which the current pass interpolates its frame.
+     */
+    private volatile int[] frameColors;
+
+    /**
+     * The pass, which the tiles run.
+     */
+    private volatile Pass pass = Pass.TRACE;
+
+    /**
+     * The distance between the traced pixels of the current pass.
+     */
+    private volatile int step;
+
+    /**
+     * The latest published frame or null, if no pass is done yet.
+     */
+    private volatile ProgressiveFrame frame;
+
+    /**
+     * Constructs a ProgressiveRaster from width, height and the count of threads.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public ProgressiveRaster(final int width, final int height, final int threadCount) {
+        super(width, height, threadCount);
+    }
+
+    /**
+     * Adds a listener, which gets the frame of every pass. The listener is called by the rendering thread, so it should
+     * return quickly.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(final Consumer<ProgressiveFrame> listener) {
+        assert listener != null;
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets the latest frame. This method can be called from any thread while the raster is rendering.
+     *
+     * @return The frame of the latest pass or an empty optional, if no pass is done yet.
+     */
+    public Optional<ProgressiveFrame> getFrame() {
+        return Optional.ofNullable(frame);
+    }
+
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        frame = null;
+        try {
+            for (step = INITIAL_STEP; step >= 1; step /= 2) {
+                pass = Pass.TRACE;
+                super.render(raytracer);
+                // A published frame is never written again, so every pass interpolates into a new buffer.
+                frameColors = new int[getWidth() * getHeight()];
+                pass = Pass.INTERPOLATE;
+                super.render(raytracer);
+
+                final ProgressiveFrame completedFrame = new ProgressiveFrame(getWidth(), getHeight(), step, frameColors);
+                frame = completedFrame;
+                for (final Consumer<ProgressiveFrame> listener : listeners) {
+                    listener.accept(completedFrame);
+                }
+            }
+        } finally {
+            pass = Pass.TRACE;
+        }
+
+        return this;
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        final int currentStep = step;
+        if (pass == Pass.INTERPOLATE) {
+            interpolateTile(tile, currentStep);
+            return;
+        }
+
+        for (int yCoordinate = tile.getEndYCoordinate() - 1; yCoordinate >= tile.getYCoordinate(); yCoordinate--) {
+            if (yCoordinate % currentStep != 0)
+                continue;
+
+            for (int xCoordinate = firstMultiple(tile.getXCoordinate(), currentStep); xCoordinate < tile.getEndXCoordinate(); xCoordinate += currentStep) {
+                if (!isTracedBefore(yCoordinate, xCoordinate, currentStep)) {
+                    setColor(yCoordinate, xCoordinate, tracePixel(raytracer, coordinateConverter, yCoordinate, xCoordinate));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if a pixel was traced by a coarser pass.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @param currentStep The distance between the traced pixels of the current pass.
+     * @return True, if the pixel doesn't need to be traced again.
+     */
+    private static boolean isTracedBefore(final int yCoordinate, final int xCoordinate, final int currentStep) {
+        final int coarserStep = 2 * currentStep;
+        return currentStep < INITIAL_STEP && yCoordinate % coarserStep == 0 && xCoordinate % coarserStep == 0;
+    }
+
+    /**
+     * Gets the first multiple of a step, that is not less than a value.
+     *
+     * @param value       The value.
+     * @param currentStep The step.
+     * @return The multiple.
+     */
+    private static int firstMultiple(final int value, final int currentStep) {
+        return (value + currentStep - 1) / currentStep * currentStep;
+    }
+
+    /**
+     * Copies the traced pixels of a tile into the frame and interpolates the pixels between them.
+     *
+     * @param tile        The tile.
+     * @param currentStep The distance between the traced pixels.
+     */
+    private void interpolateTile(final Tile tile, final int currentStep) {
+        final int width = getWidth();
+        final int[] colors = frameColors;
+
+        // The last traced row and column, beyond them the values are repeated.
+        final int lastY = (getHeight() - 1) / currentStep * currentStep;
+        final int lastX = (width - 1) / currentStep * currentStep;
+
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            final int lowerY = yCoordinate - yCoordinate % currentStep;
+            final int upperY = Math.min(lowerY + currentStep, lastY);
+            final double yWeight = upperY == lowerY ? 0 : (double) (yCoordinate - lowerY) / (upperY - lowerY);
+
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                final int leftX = xCoordinate - xCoordinate % currentStep;
+                final int rightX = Math.min(leftX + currentStep, lastX);
+                final double xWeight = rightX == leftX ? 0 : (double) (xCoordinate - leftX) / (rightX - leftX);
+
+                colors[yCoordinate * width + xCoordinate] = interpolate(
+                        getColor(lowerY, leftX), getColor(lowerY, rightX),
+                        getColor(upperY, leftX), getColor(upperY, rightX), xWeight, yWeight);
+            }
+        }
+    }
+
+    /**
+     * Interpolates four packed colours bilinearly.
+     *
+     * @param lowerLeft  The colour at the lower left corner.
+     * @param lowerRight The colour at the lower right corner.
+     * @param upperLeft  The colour at the upper left corner.
+     * @param upperRight The colour at the upper right corner.
+     * @param xWeight    The horizontal position between 0 and 1.
+     * @param yWeight    The vertical position between 0 and 1.
+     * @return The interpolated packed colour.
+     */
+    private static int interpolate(final int lowerLeft, final int lowerRight, final int upperLeft, final int upperRight,
+                                   final double xWeight, final double yWeight) {
+        if (xWeight == 0 && yWeight == 0)
+            return lowerLeft;
+
+        final double lowerLeftWeight = (1 - xWeight) * (1 - yWeight);
+        final double lowerRightWeight = xWeight * (1 - yWeight);
+        final double upperLeftWeight = (1 - xWeight) * yWeight;
+        final double upperRightWeight = xWeight * yWeight;
+
+        final long red = Math.round(Color.getRed(lowerLeft) * lowerLeftWeight + Color.getRed(lowerRight) * lowerRightWeight
+                + Color.getRed(upperLeft) * upperLeftWeight + Color.getRed(upperRight) * upperRightWeight);
+        final long green = Math.round(Color.getGreen(lowerLeft) * lowerLeftWeight + Color.getGreen(lowerRight) * lowerRightWeight
+                + Color.getGreen(upperLeft) * upperLeftWeight + Color.getGreen(upperRight) * upperRightWeight);
+        final long blue = Math.round(Color.getBlue(lowerLeft) * lowerLeftWeight + Color.getBlue(lowerRight) * lowerRightWeight
+                + Color.getBlue(upperLeft) * upperLeftWeight + Color.getBlue(upperRight) * upperRightWeight);
+
+        return Color.pack((int) red, (int) green, (int) blue);
+    }
+
+    /**
+     * The passes over all tiles.
+     */
+    private enum Pass {
+        /**
+         * Traces the pixels of the current step.
+         */
+        TRACE,
+
+        /**
+         * Interpolates the frame of the current step.
+         */
+        INTERPOLATE
+    }
+}
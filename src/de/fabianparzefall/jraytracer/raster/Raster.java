@@ -1,16 +1,20 @@
 package de.fabianparzefall.jraytracer.raster;
 
+import de.fabianparzefall.jraytracer.sampling.Sampler;
 import de.fabianparzefall.jraytracer.tracer.Raytracer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
 /**
  * A raster that renders with a raytracer.
  *
  * @author Fabian Parzefall
- * @version 15-06-18
+ * @version 26-10-19
  */
-public interface Raster {
+public interface Raster extends PixelView {
     /**
      * Creates a raster by an array of strings.
      * <p>
@@ -37,11 +41,70 @@ public interface Raster {
             case "":
                 return new ArrayRaster();
             case "ArrayRaster":
+                // The pixel format is optional.
+                if (args.length > 3)
+                    return new ArrayRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), PixelFormat.valueOf(args[argumentPosition]));
                 return new ArrayRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
             case "Supersampled":
                 return new Supersampled(make(Arrays.copyOfRange(args, argumentPosition, args.length)));
             case "ParallelRaster":
+                // The tile size and the tile order are optional.
+                if (args.length > 5)
+                    return new ParallelRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), TileOrder.valueOf(args[argumentPosition]));
+                if (args.length > 4)
+                    return new ParallelRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
                 return new ParallelRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "CoherentRaster":
+                return new CoherentRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "CostBalancedRaster":
+                // The stride of the probe pass is optional.
+                if (args.length > 4)
+                    return new CostBalancedRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+                return new CostBalancedRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "GBufferRaster":
+                return new GBufferRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "ReprojectingRaster":
+                return new ReprojectingRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "ProgressiveRaster":
+                return new ProgressiveRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "AdaptiveSupersampled":
+                // The maximum of samples, the contrast threshold and the pattern with its seed are optional, each of them
+                // after the ones before it.
+                if (args.length > 6)
+                    return new AdaptiveSupersampled(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Double.parseDouble(args[argumentPosition++]), Sampler.parse(String.join(" ", Arrays.copyOfRange(args, argumentPosition, args.length))));
+                if (args.length > 5)
+                    return new AdaptiveSupersampled(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Double.parseDouble(args[argumentPosition]));
+                if (args.length > 4)
+                    return new AdaptiveSupersampled(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]), AdaptiveSupersampled.DEFAULT_CONTRAST_THRESHOLD);
+                return new AdaptiveSupersampled(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "FilteredSupersampled":
+                // The pattern and the seed are optional.
+                if (args.length > 5)
+                    return new FilteredSupersampled(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Sampler.parse(String.join(" ", Arrays.copyOfRange(args, argumentPosition, args.length))));
+                return new FilteredSupersampled(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "DenoisedRaster":
+                // The count of iterations is followed by the raster, that renders the noisy image.
+                final Raster sampledRaster = make(Arrays.copyOfRange(args, argumentPosition + 1, args.length));
+                if (!(sampledRaster instanceof ParallelRaster))
+                    throw new IllegalArgumentException("DenoisedRaster needs a parallel raster.");
+                return new DenoisedRaster((ParallelRaster) sampledRaster, Integer.parseInt(args[argumentPosition]));
+            case "MappedRaster":
+                try {
+                    return MappedRaster.open(Paths.get(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), PixelFormat.valueOf(args[argumentPosition]));
+                } catch (final IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            case "CheckpointedRaster":
+                // The snapshot interval is optional.
+                if (args.length > 5)
+                    return new CheckpointedRaster(Paths.get(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Long.parseLong(args[argumentPosition]));
+                return new CheckpointedRaster(Paths.get(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
+            case "DeadlineRaster":
+                return new DeadlineRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Long.parseLong(args[argumentPosition]));
+            case "CropRaster":
+                return new CropRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), new Tile(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++])), Integer.parseInt(args[argumentPosition]));
+            case "AutoTunedRaster":
+                return new AutoTunedRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), new AutoTuner(Paths.get(args[argumentPosition])));
             case "ThreadIdRaster":
                 return new ThreadIdRaster(Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition++]), Integer.parseInt(args[argumentPosition]));
             default:
@@ -49,29 +112,6 @@ public interface Raster {
         }
     }
 
-    /**
-     * Gets the width of the raster.
-     *
-     * @return The width.
-     */
-    int getWidth();
-
-    /**
-     * Gets the height of the raster.
-     *
-     * @return The height.
-     */
-    int getHeight();
-
-    /**
-     * Gets a pixel from the raster by the coordinates.
-     *
-     * @param yCoordinate The y coordinate.
-     * @param xCoordinate The x coordinate.
-     * @return The brightness value.
-     */
-    int getPixel(int yCoordinate, int xCoordinate);
-
     /**
      * Uses a raytracer to fill the raster with values.
      *
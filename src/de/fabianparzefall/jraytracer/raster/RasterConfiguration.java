@@ -0,0 +1,174 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import java.util.Optional;
+
+/**
+ * The settings of a parallel raster, that don't change the image, but the speed of a render.
+ * <p>
+ * A configuration is written as the arguments of {@link Raster#make(String...)} without the size, like
+ * "ParallelRaster 4 32 HILBERT" or "CoherentRaster 4".
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class RasterConfiguration {
+    /**
+     * Whether the rays are traced in coherent waves by a {@link CoherentRaster}.
+     */
+    private final boolean coherent;
+
+    /**
+     * The count of threads, must be positive.
+     */
+    private final int threadCount;
+
+    /**
+     * The maximum edge length of a tile.
+     */
+    private final int tileSize;
+
+    /**
+     * The order of the tiles or an empty optional, if tiles are split adaptively.
+     */
+    private final Optional<TileOrder> tileOrder;
+
+    /**
+     * Constructs a configuration.
+     *
+     * @param coherent    Whether the rays are traced in coherent waves.
+     * @param threadCount The count of threads, must be positive.
+     * @param tileSize    The maximum edge length of a tile, must be at least 1.
+     * @param tileOrder   The order of the tiles or an empty optional for adaptive splitting.
+     */
+    private RasterConfiguration(final boolean coherent, final int threadCount, final int tileSize,
+                                final Optional<TileOrder> tileOrder) {
+        assert tileOrder != null;
+
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount is less than 1.");
+        if (tileSize < 1)
+            throw new IllegalArgumentException("tileSize is less than 1.");
+
+        this.coherent = coherent;
+        this.threadCount = threadCount;
+        this.tileSize = tileSize;
+        this.tileOrder = tileOrder;
+    }
+
+    /**
+     * Creates the configuration of a {@link ParallelRaster}.
+     *
+     * @param threadCount The count of threads, must be positive.
+     * @param tileSize    The maximum edge length of a tile, must be at least 1.
+     * @param tileOrder   The order of the tiles or an empty optional for adaptive splitting.
+     * @return The configuration.
+     */
+    public static RasterConfiguration parallel(final int threadCount, final int tileSize,
+                                               final Optional<TileOrder> tileOrder) {
+        return new RasterConfiguration(false, threadCount, tileSize, tileOrder);
+    }
+
+    /**
+     * Creates the configuration of a {@link CoherentRaster}, which always splits its tiles adaptively.
+     *
+     * @param threadCount The count of threads, must be positive.
+     * @return The configuration.
+     */
+    public static RasterConfiguration coherent(final int threadCount) {
+        return new RasterConfiguration(true, threadCount, ParallelRaster.DEFAULT_TILE_SIZE, Optional.empty());
+    }
+
+    /**
+     * Creates a configuration from its description, like "ParallelRaster 4 32 HILBERT".
+     *
+     * @param description The description as returned by {@link #getDescription()}.
+     * @return The configuration.
+     */
+    public static RasterConfiguration parse(final String description) {
+        assert description != null;
+
+        final String[] parts = description.trim().split(" +");
+        switch (parts[0]) {
+            case "ParallelRaster":
+                if (parts.length < 3 || parts.length > 4)
+                    throw new IllegalArgumentException("a parallel raster needs the threads, the tile size and an optional order.");
+                return parallel(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                        parts.length > 3 ? Optional.of(TileOrder.valueOf(parts[3])) : Optional.empty());
+            case "CoherentRaster":
+                if (parts.length != 2)
+                    throw new IllegalArgumentException("a coherent raster needs only the threads.");
+                return coherent(Integer.parseInt(parts[1]));
+            default:
+                throw new IllegalArgumentException(String.format("unknown raster \"%s\".", parts[0]));
+        }
+    }
+
+    public boolean isCoherent() {
+        return coherent;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public Optional<TileOrder> getTileOrder() {
+        return tileOrder;
+    }
+
+    /**
+     * Gets the description of the configuration.
+     *
+     * @return The arguments of {@link Raster#make(String...)} without the size, separated by spaces.
+     */
+    public String getDescription() {
+        if (coherent)
+            return String.format("CoherentRaster %d", threadCount);
+
+        return tileOrder.map(order -> String.format("ParallelRaster %d %d %s", threadCount, tileSize, order))
+                .orElse(String.format("ParallelRaster %d %d", threadCount, tileSize));
+    }
+
+    /**
+     * Creates a raster with the configuration.
+     *
+     * @param width  The width of the raster, must be positive.
+     * @param height The height of the raster, must be positive.
+     * @return The new raster.
+     */
+    public ParallelRaster createRaster(final int width, final int height) {
+        if (coherent)
+            return new CoherentRaster(width, height, threadCount);
+
+        return tileOrder.map(order -> new ParallelRaster(width, height, threadCount, tileSize, order))
+                .orElseGet(() -> new ParallelRaster(width, height, threadCount, tileSize));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        assert obj != null;
+        if (this == obj) return true;
+        if (getClass() != obj.getClass()) return false;
+
+        final RasterConfiguration configuration = (RasterConfiguration) obj;
+
+        return coherent == configuration.coherent
+                && threadCount == configuration.threadCount
+                && tileSize == configuration.tileSize
+                && tileOrder.equals(configuration.tileOrder);
+    }
+
+    @Override
+    public int hashCode() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RasterConfiguration{coherent=%b, threadCount=%d, tileSize=%d, tileOrder=%s}",
+                coherent, threadCount, tileSize, tileOrder.map(TileOrder::name).orElse("adaptive"));
+    }
+}
@@ -0,0 +1,94 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.scene.Looker;
+import de.fabianparzefall.jraytracer.scene.Scene;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.MaterialTable;
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
+
+import java.util.Optional;
+
+/**
+ * A scene, that counts the rays, which every thread traces through another scene.
+ * <p>
+ * Primary, reflected and shadow rays all end in {@link #findIntersection(Ray)}, so the count of a thread grows by the
+ * rays of every pixel, that the thread traces.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+final class RayCountingScene implements Scene {
+    /**
+     * The scene, that finds the intersections.
+     */
+    private final Scene scene;
+
+    /**
+     * The count of rays of the current thread.
+     */
+    private final ThreadLocal<long[]> rayCount = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Constructs a RayCountingScene.
+     *
+     * @param scene The scene, whose rays are counted.
+     */
+    RayCountingScene(final Scene scene) {
+        assert scene != null;
+
+        this.scene = scene;
+    }
+
+    /**
+     * Gets the count of rays, that the current thread traced so far.
+     *
+     * @return The count of rays.
+     */
+    long getRayCount() {
+        return rayCount.get()[0];
+    }
+
+    @Override
+    public Looker getLooker() {
+        return scene.getLooker();
+    }
+
+    @Override
+    public Optional<Point> getLight() {
+        return scene.getLight();
+    }
+
+    @Override
+    public Color getLightColor() {
+        return scene.getLightColor();
+    }
+
+    @Override
+    public int getPrimitiveCount() {
+        return scene.getPrimitiveCount();
+    }
+
+    @Override
+    public Primitive getPrimitive(final int id) {
+        return scene.getPrimitive(id);
+    }
+
+    @Override
+    public MaterialTable getMaterialTable() {
+        return scene.getMaterialTable();
+    }
+
+    @Override
+    public Optional<Intersection> findIntersection(final Ray ray) {
+        rayCount.get()[0]++;
+        return scene.findIntersection(ray);
+    }
+
+    @Override
+    public String getFingerprint() {
+        return scene.getFingerprint();
+    }
+}
@@ -0,0 +1,98 @@
+package de.fabianparzefall.jraytracer.raster;
+
+/**
+ * The quality levels, which a {@link DeadlineRaster} reaches one after another. Every level is a complete image.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public enum RenderQuality {
+    /**
+     * Every 8th pixel is traced with one reflexion, the others are interpolated.
+     */
+    PASS_8(8, DeadlineRaster.SHALLOW_REFLEXION_DEPTH, 1),
+
+    /**
+     * Every 4th pixel is traced with one reflexion, the others are interpolated.
+     */
+    PASS_4(4, DeadlineRaster.SHALLOW_REFLEXION_DEPTH, 1),
+
+    /**
+     * Every 2nd pixel is traced with one reflexion, the others are interpolated.
+     */
+    PASS_2(2, DeadlineRaster.SHALLOW_REFLEXION_DEPTH, 1),
+
+    /**
+     * Every pixel is traced with one reflexion.
+     */
+    SHALLOW(1, DeadlineRaster.SHALLOW_REFLEXION_DEPTH, 1),
+
+    /**
+     * Every pixel is traced with all reflexions.
+     */
+    FULL(1, Integer.MAX_VALUE, 1),
+
+    /**
+     * Every pixel is traced with all reflexions and pixels with a high contrast get up to 2x2 samples.
+     */
+    ANTIALIASED_4(1, Integer.MAX_VALUE, 4),
+
+    /**
+     * Every pixel is traced with all reflexions and pixels with a high contrast are supersampled.
+     */
+    ANTIALIASED(1, Integer.MAX_VALUE, AdaptiveSupersampled.DEFAULT_MAXIMUM_SAMPLES);
+
+    /**
+     * The distance between the traced pixels.
+     */
+    private final int step;
+
+    /**
+     * The count of reflexions, after which no further mirrored rays are traced.
+     */
+    private final int maximumReflexionDepth;
+
+    /**
+     * The maximum count of samples per pixel.
+     */
+    private final int maximumSamples;
+
+    /**
+     * Constructs a quality level.
+     *
+     * @param step                  The distance between the traced pixels.
+     * @param maximumReflexionDepth The count of reflexions.
+     * @param maximumSamples        The maximum count of samples per pixel.
+     */
+    RenderQuality(final int step, final int maximumReflexionDepth, final int maximumSamples) {
+        this.step = step;
+        this.maximumReflexionDepth = maximumReflexionDepth;
+        this.maximumSamples = maximumSamples;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getMaximumReflexionDepth() {
+        return maximumReflexionDepth;
+    }
+
+    public int getMaximumSamples() {
+        return maximumSamples;
+    }
+
+    /**
+     * Gets the level of a pass of the progressive render.
+     *
+     * @param step The distance between the traced pixels of the pass.
+     * @return The level.
+     */
+    static RenderQuality ofStep(final int step) {
+        for (final RenderQuality quality : values()) {
+            if (quality.step == step)
+                return quality;
+        }
+        throw new IllegalArgumentException("step is not the step of a pass.");
+    }
+}
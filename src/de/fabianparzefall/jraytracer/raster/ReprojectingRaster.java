@@ -0,0 +1,474 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.scene.Looker;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.MaterialTable;
+import de.fabianparzefall.jraytracer.tracer.Raytracer;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A parallel raster for previews, that reuses the shading of the last frame, when the camera moves.
+ * <p>
+ * The intersection points of the last frame are projected into the view of the new looker, pixels without an
+ * intersection by their direction. Where the nearest projected point lands on a pixel, the new primary ray is
+ * intersected with the scene, and the pixel is accepted, if it hits the primitive of the point close to the projected
+ * point and the neighbours see the same primitive. So a surface, that was hidden in the last frame and moves in front
+ * of a reprojected surface, is traced. Surfaces, which don't depend on the view, keep their colour, the others are
+ * shaded again. Single pixels, on which no point lands, take the primitive of a neighbour and are shaded again. All
+ * other pixels, mostly disocclusions, silhouettes and the border of the raster, are traced completely.
+ * <p>
+ * The primary visibility is always traced again: every pixel intersects its new primary ray with the whole scene,
+ * because a surface, that was hidden in the last frame, has no point in the G-buffer, which could be compared with
+ * the reprojected one. So the reprojection saves the shading, that is the shadow and reflexion rays, but not the
+ * primary rays.
+ * <p>
+ * The projection, the filling of holes and the reprojection run as passes over the tiles of the raster. Between two
+ * frames only the looker may change.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class ReprojectingRaster extends ParallelRaster {
+    /**
+     * The source of a pixel, that has no reprojected intersection. It differs from {@link GBuffer#NO_PRIMITIVE}, so
+     * it can be used as primitive id, too.
+     */
+    private static final int NO_SOURCE = -2;
+
+    /**
+     * The projection of a pixel, on which no point lands. It is behind all projected points.
+     */
+    private static final long NO_PROJECTION = Long.MAX_VALUE;
+
+    /**
+     * The depth of pixels without intersection, which are behind all intersections.
+     */
+    private static final float MISS_DEPTH = Float.MAX_VALUE;
+
+    /**
+     * The distance in pixel widths, by which the new intersection may differ from the reprojected point.
+     */
+    private static final double TOLERANCE = 1;
+
+    /**
+     * The smallest cosine between a primary ray and a surface, by which the tolerance is stretched.
+     */
+    private static final double MINIMUM_COSINE = 0.1;
+
+    /**
+     * The intersections of the frame, that is rendered.
+     */
+    private GBuffer gBuffer;
+
+    /**
+     * The intersections of the last frame.
+     */
+    private GBuffer previousGBuffer;
+
+    /**
+     * The packed colours of the last frame.
+     */
+    private final int[] previousColors;
+
+    /**
+     * The nearest point projected into every pixel, packed as the bits of its float depth above the index of its
+     * pixel in the last frame, or {@link #NO_PROJECTION}. As the depth is positive, the nearest point has the least
+     * value.
+     */
+    private final AtomicLongArray projections;
+
+    /**
+     * The index of the pixel of the last frame, that is reprojected into a pixel, or {@link #NO_SOURCE}.
+     */
+    private final int[] sources;
+
+    /**
+     * True for the pixels, whose source is taken from a neighbour.
+     */
+    private final boolean[] borrowedSources;
+
+    /**
+     * True, if the raster has a frame, that can be reprojected.
+     */
+    private boolean hasFrame;
+
+    /**
+     * The pass, which the tiles run.
+     */
+    private volatile Pass pass = Pass.TRACE;
+
+    /**
+     * The count of pixels of the last render, that kept their colour.
+     */
+    private final LongAdder reusedPixelCount = new LongAdder();
+
+    /**
+     * The count of pixels of the last render, that kept their intersection, but were shaded again.
+     */
+    private final LongAdder reshadedPixelCount = new LongAdder();
+
+    /**
+     * The count of pixels of the last render, that were traced completely.
+     */
+    private final LongAdder tracedPixelCount = new LongAdder();
+
+    /**
+     * Constructs a ReprojectingRaster from width, height and the count of threads.
+     *
+     * @param width       The width of the raster, must be positive.
+     * @param height      The height of the raster, must be positive.
+     * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
+     */
+    public ReprojectingRaster(final int width, final int height, final int threadCount) {
+        super(width, height, threadCount);
+
+        gBuffer = new GBuffer(width, height);
+        previousGBuffer = new GBuffer(width, height);
+        previousColors = new int[width * height];
+        projections = new AtomicLongArray(width * height);
+        sources = new int[width * height];
+        borrowedSources = new boolean[width * height];
+    }
+
+    public GBuffer getGBuffer() {
+        return gBuffer;
+    }
+
+    public long getReusedPixelCount() {
+        return reusedPixelCount.sum();
+    }
+
+    public long getReshadedPixelCount() {
+        return reshadedPixelCount.sum();
+    }
+
+    public long getTracedPixelCount() {
+        return tracedPixelCount.sum();
+    }
+
+    /**
+     * Renders the frame completely and keeps its intersections for the next reprojection.
+     *
+     * @param raytracer The raytracer.
+     * @return This with the rendered image.
+     */
+    @Override
+    public Raster render(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        resetCounts();
+        hasFrame = false;
+        super.render(raytracer);
+        hasFrame = true;
+
+        return this;
+    }
+
+    /**
+     * Renders the frame of another looker by reprojecting the last frame. Without a last frame, the frame is rendered
+     * completely.
+     *
+     * @param raytracer A raytracer with the scene of the last frame and the new looker.
+     * @return This with the rendered image.
+     */
+    public Raster reproject(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        if (!hasFrame)
+            return render(raytracer);
+
+        // The last frame is read by all tiles, while the new one is written.
+        hasFrame = false;
+        final GBuffer lastGBuffer = gBuffer;
+        gBuffer = previousGBuffer;
+        previousGBuffer = lastGBuffer;
+
+        resetCounts();
+        try {
+            pass = Pass.CLEAR;
+            super.render(raytracer);
+            pass = Pass.SCATTER;
+            super.render(raytracer);
+            pass = Pass.FILL;
+            super.render(raytracer);
+            pass = Pass.REPROJECT;
+            super.render(raytracer);
+        } finally {
+            pass = Pass.TRACE;
+        }
+        hasFrame = true;
+
+        return this;
+    }
+
+    @Override
+    protected void renderTile(final Raytracer raytracer, final CoordinateConverter coordinateConverter, final Tile tile) {
+        switch (pass) {
+            case CLEAR:
+                clearTile(tile);
+                break;
+            case SCATTER:
+                scatterTile(raytracer.getLooker(), coordinateConverter, tile);
+                break;
+            case FILL:
+                fillTile(tile);
+                break;
+            default:
+                super.renderTile(raytracer, coordinateConverter, tile);
+        }
+    }
+
+    /**
+     * Keeps the colours of the last frame within a tile and clears the projections of its pixels.
+     *
+     * @param tile The tile.
+     */
+    private void clearTile(final Tile tile) {
+        final int width = getWidth();
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            getFrameBuffer().getRow(yCoordinate, tile.getXCoordinate(), tile.getWidth(), previousColors,
+                    yCoordinate * width + tile.getXCoordinate());
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                projections.set(yCoordinate * width + xCoordinate, NO_PROJECTION);
+            }
+        }
+    }
+
+    /**
+     * Projects the intersection points of the last frame within a tile into the new view. If several points land on a
+     * pixel, the point nearest to the camera wins, no matter which tile projects it first.
+     *
+     * @param looker              The new looker.
+     * @param coordinateConverter The converter for the resolution of the raster.
+     * @param tile                The tile of the last frame.
+     */
+    private void scatterTile(final Looker looker, final CoordinateConverter coordinateConverter, final Tile tile) {
+        final int width = getWidth();
+        final int height = getHeight();
+        final Point cameraPosition = looker.getCameraPosition();
+
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                final Optional<Point> point = previousGBuffer.getPoint(yCoordinate, xCoordinate);
+                // A pixel without intersection sees infinitely far, so only its direction is projected.
+                final Optional<double[]> viewportCoordinates = looker.project(point.orElse(
+                        cameraPosition.add(previousGBuffer.getViewDirection(yCoordinate, xCoordinate))));
+                if (!viewportCoordinates.isPresent())
+                    continue;
+
+                final long targetX = Math.round(coordinateConverter.calculateXCoordinate(viewportCoordinates.get()[0]));
+                final long targetY = Math.round(coordinateConverter.calculateYCoordinate(viewportCoordinates.get()[1]));
+                if (targetX < 0 || targetX >= width || targetY < 0 || targetY >= height)
+                    continue;
+
+                final int target = (int) targetY * width + (int) targetX;
+                final float depth = point.isPresent() ? (float) cameraPosition.vectorTo(point.get()).getLength()
+                        : MISS_DEPTH;
+                final long projection = (long) Float.floatToIntBits(depth) << 32 | yCoordinate * width + xCoordinate;
+                long current = projections.get(target);
+                while (projection < current && !projections.compareAndSet(target, current, projection)) {
+                    current = projections.get(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the sources of the pixels within a tile from the projections and gives the pixels without projection the
+     * source of a neighbour. Only sources, that are projected, are given, so a hole is filled only one pixel deep. The
+     * border of the raster isn't filled, so surfaces, which come into the view, are traced.
+     *
+     * @param tile The tile.
+     */
+    private void fillTile(final Tile tile) {
+        final int width = getWidth();
+        final int height = getHeight();
+
+        for (int yCoordinate = tile.getYCoordinate(); yCoordinate < tile.getEndYCoordinate(); yCoordinate++) {
+            for (int xCoordinate = tile.getXCoordinate(); xCoordinate < tile.getEndXCoordinate(); xCoordinate++) {
+                final int index = yCoordinate * width + xCoordinate;
+                final long projection = projections.get(index);
+                borrowedSources[index] = false;
+                if (projection != NO_PROJECTION) {
+                    sources[index] = (int) projection;
+                    continue;
+                }
+
+                sources[index] = NO_SOURCE;
+                if (xCoordinate == 0 || xCoordinate == width - 1 || yCoordinate == 0 || yCoordinate == height - 1)
+                    continue;
+
+                for (final int neighbour : new int[]{index - 1, index + 1, index - width, index + width}) {
+                    final long neighbourProjection = projections.get(neighbour);
+                    if (neighbourProjection != NO_PROJECTION) {
+                        sources[index] = (int) neighbourProjection;
+                        borrowedSources[index] = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Color tracePixel(final Raytracer raytracer, final CoordinateConverter coordinateConverter,
+                                final int yCoordinate, final int xCoordinate) {
+        final Ray primaryRay = raytracer.getPrimaryRay(
+                coordinateConverter.calculateHorizontalCoordinate(xCoordinate),
+                coordinateConverter.calculateVerticalCoordinate(yCoordinate),
+                coordinateConverter.getPixelSize());
+
+        // Even a reprojected pixel needs the intersection to find surfaces, that were hidden in the last frame.
+        final Optional<Intersection> primaryIntersection = raytracer.findIntersection(primaryRay);
+        if (pass == Pass.REPROJECT) {
+            final Optional<Color> color = reprojectPixel(raytracer, primaryRay, primaryIntersection, yCoordinate,
+                    xCoordinate);
+            if (color.isPresent())
+                return color.get();
+        }
+
+        tracedPixelCount.increment();
+        gBuffer.store(yCoordinate, xCoordinate, primaryRay, primaryIntersection);
+        return raytracer.shade(primaryRay, primaryIntersection);
+    }
+
+    /**
+     * Calculates the colour of a pixel from its reprojected intersection.
+     *
+     * @param raytracer           The raytracer.
+     * @param primaryRay          The new primary ray of the pixel.
+     * @param primaryIntersection The intersection of the new primary ray with the scene.
+     * @param yCoordinate         The y coordinate of the pixel.
+     * @param xCoordinate         The x coordinate of the pixel.
+     * @return The colour or an empty optional, if the pixel must be shaded completely.
+     */
+    private Optional<Color> reprojectPixel(final Raytracer raytracer, final Ray primaryRay,
+                                           final Optional<Intersection> primaryIntersection,
+                                           final int yCoordinate, final int xCoordinate) {
+        final int width = getWidth();
+        final int index = yCoordinate * width + xCoordinate;
+        final int source = sources[index];
+        if (source == NO_SOURCE || isSilhouette(yCoordinate, xCoordinate))
+            return Optional.empty();
+
+        final int sourceY = source / width;
+        final int sourceX = source % width;
+        final int primitiveId = previousGBuffer.getPrimitiveId(sourceY, sourceX);
+        if (primitiveId == GBuffer.NO_PRIMITIVE) {
+            // The pixel and its neighbours saw nothing in the last frame, unless something moved into the view.
+            if (primaryIntersection.isPresent())
+                return Optional.empty();
+
+            reusedPixelCount.increment();
+            gBuffer.store(yCoordinate, xCoordinate, primaryRay, Optional.empty());
+            return Optional.of(raytracer.shade(primaryRay, Optional.empty()));
+        }
+
+        // Another primitive in front of the reprojected point occludes it.
+        if (!primaryIntersection.isPresent()
+                || primaryIntersection.get().getIntersectedPrimitive().getId() != primitiveId)
+            return Optional.empty();
+
+        final Point sourcePoint = previousGBuffer.getPoint(sourceY, sourceX).get();
+        final Intersection intersection = primaryIntersection.get();
+        final double deviation = intersection.getIntersectionPoint().vectorTo(sourcePoint).getLength();
+        // On an oblique surface a pixel covers a longer stretch than its footprint.
+        final double cosine = Math.max(MINIMUM_COSINE, Math.abs(previousGBuffer.getNormal(sourceY, sourceX)
+                .dotProduct(primaryRay.getDirection().normalize())));
+        if (!borrowedSources[index]
+                && deviation > TOLERANCE * primaryRay.getFootprint(intersection.getDistance()) / cosine)
+            return Optional.empty();
+
+        final MaterialTable materialTable = raytracer.getScene().getMaterialTable();
+        final int materialId = intersection.getIntersectedPrimitive().getSurface().getMaterialId();
+        // The colour of a borrowed source belongs to the neighbour, so it isn't reused.
+        if (!borrowedSources[index] && materialTable.getSpecularRatio(materialId) == 0
+                && materialTable.getReflexionRatio(materialId) == 0) {
+            // The colour belongs to the source point, so the point is kept with it and doesn't drift.
+            reusedPixelCount.increment();
+            final Ray sourceRay = new Ray(primaryRay.getStartPoint(), primaryRay.getStartPoint().vectorTo(sourcePoint));
+            final double sourceDistance = primaryRay.getStartPoint().vectorTo(sourcePoint).getLength();
+            gBuffer.store(yCoordinate, xCoordinate, sourceRay, Optional.of(new Intersection(sourcePoint, intersection.getIntersectedPrimitive(),
+                    sourceDistance, intersection.isEntering())));
+            return Optional.of(Color.fromRGB(previousColors[source]));
+        }
+
+        reshadedPixelCount.increment();
+        gBuffer.store(yCoordinate, xCoordinate, primaryRay, primaryIntersection);
+        return Optional.of(raytracer.shade(primaryRay, primaryIntersection));
+    }
+
+    /**
+     * Tests if a neighbour of a pixel has no reprojected point or one of another primitive.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return True, if the pixel is at the edge of a reprojected surface.
+     */
+    private boolean isSilhouette(final int yCoordinate, final int xCoordinate) {
+        final int primitiveId = getSourcePrimitiveId(yCoordinate, xCoordinate);
+        return xCoordinate > 0 && getSourcePrimitiveId(yCoordinate, xCoordinate - 1) != primitiveId
+                || xCoordinate < getWidth() - 1 && getSourcePrimitiveId(yCoordinate, xCoordinate + 1) != primitiveId
+                || yCoordinate > 0 && getSourcePrimitiveId(yCoordinate - 1, xCoordinate) != primitiveId
+                || yCoordinate < getHeight() - 1 && getSourcePrimitiveId(yCoordinate + 1, xCoordinate) != primitiveId;
+    }
+
+    /**
+     * Gets the primitive id of the point, that is reprojected into a pixel.
+     *
+     * @param yCoordinate The y coordinate of the pixel.
+     * @param xCoordinate The x coordinate of the pixel.
+     * @return The id, {@link GBuffer#NO_PRIMITIVE} or {@link #NO_SOURCE}, if no point is reprojected.
+     */
+    private int getSourcePrimitiveId(final int yCoordinate, final int xCoordinate) {
+        final int source = sources[yCoordinate * getWidth() + xCoordinate];
+        return source == NO_SOURCE ? NO_SOURCE
+                : previousGBuffer.getPrimitiveId(source / getWidth(), source % getWidth());
+    }
+
+    /**
+     * Resets the counts of the pixels.
+     */
+    private void resetCounts() {
+        reusedPixelCount.reset();
+        reshadedPixelCount.reset();
+        tracedPixelCount.reset();
+    }
+
+    /**
+     * The passes over all tiles.
+     */
+    private enum Pass {
+        /**
+         * Traces all pixels completely.
+         */
+        TRACE,
+
+        /**
+         * Keeps the colours of the last frame and clears the projections.
+         */
+        CLEAR,
+
+        /**
+         * Projects the points of the last frame into the new view.
+         */
+        SCATTER,
+
+        /**
+         * Takes the sources from the projections and fills the holes.
+         */
+        FILL,
+
+        /**
+         * Reprojects or traces the pixels.
+         */
+        REPROJECT
+    }
+}
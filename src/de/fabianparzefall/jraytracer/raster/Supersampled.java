@@ -1,14 +1,16 @@
 package de.fabianparzefall.jraytracer.raster;
 
+import de.fabianparzefall.jraytracer.common.Color;
 import de.fabianparzefall.jraytracer.tracer.Raytracer;
 
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
  * An implementation of a supersampled raster, that works on another raster.
  *
  * @author Fabian Parzefall
- * @version 15-06-15
+ * @version 26-10-19
  */
 class Supersampled implements Raster {
     /**
@@ -60,6 +62,26 @@ class Supersampled implements Raster {
         return (int) Math.round(value);
     }
 
+    @Override
+    public int getColor(final int yCoordinate, final int xCoordinate) {
+        if (!(0 <= xCoordinate && xCoordinate < getWidth()) && !(0 <= yCoordinate && yCoordinate < getHeight()))
+            throw new IllegalArgumentException("point is not within the resolution.");
+
+        final int doubledYCoordinate = yCoordinate * 2;
+        final int doubledXCoordinate = xCoordinate * 2;
+
+        final int[] colors = {
+                underlyingRaster.getColor(doubledYCoordinate, doubledXCoordinate),
+                underlyingRaster.getColor(doubledYCoordinate, doubledXCoordinate + 1),
+                underlyingRaster.getColor(doubledYCoordinate + 1, doubledXCoordinate),
+                underlyingRaster.getColor(doubledYCoordinate + 1, doubledXCoordinate + 1)};
+
+        return Color.pack(
+                (int) Math.round(IntStream.of(colors).map(Color::getRed).average().getAsDouble()),
+                (int) Math.round(IntStream.of(colors).map(Color::getGreen).average().getAsDouble()),
+                (int) Math.round(IntStream.of(colors).map(Color::getBlue).average().getAsDouble()));
+    }
+
     @Override
     public Raster render(final Raytracer raytracer) {
         assert raytracer != null;
@@ -1,10 +1,14 @@
 package de.fabianparzefall.jraytracer.raster;
 
+import de.fabianparzefall.jraytracer.common.Color;
+
+import java.util.concurrent.ForkJoinWorkerThread;
+
 /**
  * This class produces a raster, in which you can see the activities of the various threads.
  *
  * @author Fabian Parzefall
- * @version 15-06-18
+ * @version 26-10-19
  */
 public class ThreadIdRaster extends ParallelRaster {
     /**
@@ -18,14 +22,30 @@ public class ThreadIdRaster extends ParallelRaster {
      * @param width       The width of the raster, must be positive.
      * @param height      The height of the raster, must be positive.
      * @param threadCount The number of threads to use, must be positive or 0. If it's 0, than the count of available
+     *                    processors is used.
      */
     public ThreadIdRaster(final int width, final int height, final int threadCount) {
         super(width, height, threadCount);
     }
 
     @Override
-    protected void setPixel(final int yCoordinate, final int xCoordinate, final int brightness) {
-        final int brightnessValue = (int) ((double) MAX_BRIGHTNESS * Integer.parseInt(Thread.currentThread().getName()) / (getThreadCount() - 1));
-        super.setPixel(yCoordinate, xCoordinate, brightnessValue);
+    void setColor(final int yCoordinate, final int xCoordinate, final Color color) {
+        final int brightnessValue = (int) ((double) MAX_BRIGHTNESS * getThreadId() / (getThreadCount() - 1));
+        super.setColor(yCoordinate, xCoordinate, Color.pack(brightnessValue, brightnessValue, brightnessValue));
+    }
+
+    /**
+     * Gets the id of the current thread in the pool. The thread, that waits for the render, may help with tiles and
+     * gets the highest id, like compensating threads of the pool.
+     *
+     * @return An id between 0 and the count of threads - 1.
+     */
+    private int getThreadId() {
+        final Thread thread = Thread.currentThread();
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == getPool()) {
+            return Math.min(((ForkJoinWorkerThread) thread).getPoolIndex(), getThreadCount() - 1);
+        }
+
+        return getThreadCount() - 1;
     }
 }
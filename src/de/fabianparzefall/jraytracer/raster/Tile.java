@@ -0,0 +1,140 @@
+package de.fabianparzefall.jraytracer.raster;
+
+/**
+ * A rectangular part of a raster.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class Tile {
+    /**
+     * The x coordinate of the first column.
+     */
+    private final int xCoordinate;
+
+    /**
+     * The y coordinate of the first row.
+     */
+    private final int yCoordinate;
+
+    /**
+     * The width in pixels.
+     */
+    private final int width;
+
+    /**
+     * The height in pixels.
+     */
+    private final int height;
+
+    /**
+     * Constructs a tile.
+     *
+     * @param xCoordinate The x coordinate of the first column, must be positive or 0.
+     * @param yCoordinate The y coordinate of the first row, must be positive or 0.
+     * @param width       The width in pixels, must be at least 1.
+     * @param height      The height in pixels, must be at least 1.
+     */
+    public Tile(final int xCoordinate, final int yCoordinate, final int width, final int height) {
+        if (xCoordinate < 0 || yCoordinate < 0)
+            throw new IllegalArgumentException("coordinates are negative.");
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+
+        this.xCoordinate = xCoordinate;
+        this.yCoordinate = yCoordinate;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getXCoordinate() {
+        return xCoordinate;
+    }
+
+    public int getYCoordinate() {
+        return yCoordinate;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the x coordinate behind the last column.
+     *
+     * @return The exclusive end of the columns.
+     */
+    public int getEndXCoordinate() {
+        return xCoordinate + width;
+    }
+
+    /**
+     * Gets the y coordinate behind the last row.
+     *
+     * @return The exclusive end of the rows.
+     */
+    public int getEndYCoordinate() {
+        return yCoordinate + height;
+    }
+
+    /**
+     * Gets the count of pixels in the tile.
+     *
+     * @return The area.
+     */
+    public int getArea() {
+        return width * height;
+    }
+
+    /**
+     * Splits the tile along its longer side into two halves.
+     *
+     * @return An array with two tiles. The tile must be bigger than 1x1.
+     */
+    public Tile[] split() {
+        if (width == 1 && height == 1)
+            throw new IllegalStateException("tile can't be split.");
+
+        if (width >= height) {
+            final int leftWidth = width / 2;
+            return new Tile[]{
+                    new Tile(xCoordinate, yCoordinate, leftWidth, height),
+                    new Tile(xCoordinate + leftWidth, yCoordinate, width - leftWidth, height)};
+        } else {
+            final int lowerHeight = height / 2;
+            return new Tile[]{
+                    new Tile(xCoordinate, yCoordinate, width, lowerHeight),
+                    new Tile(xCoordinate, yCoordinate + lowerHeight, width, height - lowerHeight)};
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Tile{xCoordinate=%d, yCoordinate=%d, width=%d, height=%d}", xCoordinate, yCoordinate, width, height);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        assert obj != null;
+        if (this == obj) return true;
+        if (getClass() != obj.getClass()) return false;
+
+        final Tile that = (Tile) obj;
+
+        return xCoordinate == that.xCoordinate
+                && yCoordinate == that.yCoordinate
+                && width == that.width
+                && height == that.height;
+    }
+
+    @Override
+    public int hashCode() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,572 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+
+/**
+ * Records the completed tiles of a render on disk, so an interrupted render can be continued.
+ * <p>
+ * Every completed tile is appended with its pixels and a checksum to a journal. The journal is synced in batches, so a
+ * crash loses at most the tiles of the last batch. From time to time the whole frame buffer is written to a snapshot,
+ * which replaces the old one atomically, and the journal starts again. Restoring reads the snapshot and replays the
+ * journal up to the first incomplete record.
+ * <p>
+ * The records, syncs and snapshots are written by a background thread, so the workers of a render only hand over the
+ * index of a completed tile and never wait for the disk. The completed tiles are kept in a bit set of atomic words,
+ * which the workers read without a lock.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+final class TileJournal implements Closeable {
+    /**
+     * The first int of a journal.
+     */
+    private static final int JOURNAL_MAGIC = 0x4A52544A;
+
+    /**
+     * The first int of a snapshot.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x4A525453;
+
+    /**
+     * The version of the file formats.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The count of records, after which the journal is synced.
+     */
+    private static final int SYNC_RECORDS = 64;
+
+    /**
+     * The time in nanoseconds, after which the journal is synced.
+     */
+    private static final long SYNC_NANOSECONDS = 1_000_000_000L;
+
+    /**
+     * The name of the journal file.
+     */
+    static final String JOURNAL_NAME = "journal";
+
+    /**
+     * The name of the snapshot file.
+     */
+    static final String SNAPSHOT_NAME = "snapshot";
+
+    /**
+     * The journal file.
+     */
+    private final Path journalFile;
+
+    /**
+     * The snapshot file.
+     */
+    private final Path snapshotFile;
+
+    /**
+     * The fingerprint of the render.
+     */
+    private final String fingerprint;
+
+    /**
+     * The buffer of the render.
+     */
+    private final FrameBuffer frameBuffer;
+
+    /**
+     * The tiles by their index.
+     */
+    private final List<Tile> tiles;
+
+    /**
+     * The time in nanoseconds between two snapshots.
+     */
+    private final long snapshotInterval;
+
+    /**
+     * The indices of the completed tiles, 64 in a word.
+     */
+    private final AtomicLongArray completedTiles;
+
+    /**
+     * The indices of the tiles, that are restored or written to the journal. Only the writer thread uses it after the
+     * journal is opened.
+     */
+    private final BitSet journaledTiles;
+
+    /**
+     * The thread, that writes the journal and the snapshots.
+     */
+    private final ExecutorService writer;
+
+    /**
+     * The first error of the writer thread or null.
+     */
+    private volatile IOException writeError;
+
+    /**
+     * The stream of the journal file, which is used to sync it.
+     */
+    private FileOutputStream journalStream;
+
+    /**
+     * The buffered output to the journal.
+     */
+    private DataOutputStream journal;
+
+    /**
+     * The count of records since the last sync.
+     */
+    private int unsyncedRecords;
+
+    /**
+     * The time of the last sync.
+     */
+    private long lastSync;
+
+    /**
+     * The time of the last snapshot.
+     */
+    private long lastSnapshot;
+
+    /**
+     * The count of restored tiles.
+     */
+    private final int restoredTileCount;
+
+    /**
+     * Opens the journal in a directory and restores the tiles of an earlier render with the same fingerprint into the
+     * frame buffer. Files of another render are overwritten.
+     *
+     * @param directory        The directory.
+     * @param fingerprint      The fingerprint of the render.
+     * @param frameBuffer      The buffer of the render.
+     * @param tiles            The tiles by their index, they must not change between renders with the same fingerprint.
+     * @param snapshotInterval The time in nanoseconds between two snapshots.
+     * @throws IOException If the files cannot be read or written.
+     */
+    TileJournal(final Path directory, final String fingerprint, final FrameBuffer frameBuffer, final List<Tile> tiles,
+                final long snapshotInterval) throws IOException {
+        assert directory != null;
+        assert fingerprint != null;
+        assert frameBuffer != null;
+        assert tiles != null;
+
+        Files.createDirectories(directory);
+        journalFile = directory.resolve(JOURNAL_NAME);
+        snapshotFile = directory.resolve(SNAPSHOT_NAME);
+        this.fingerprint = fingerprint;
+        this.frameBuffer = frameBuffer;
+        this.tiles = tiles;
+        this.snapshotInterval = snapshotInterval;
+        journaledTiles = new BitSet(tiles.size());
+
+        readSnapshot();
+        final boolean replayed = replayJournal();
+        restoredTileCount = journaledTiles.cardinality();
+        completedTiles = new AtomicLongArray(Arrays.copyOf(journaledTiles.toLongArray(),
+                (tiles.size() + Long.SIZE - 1) / Long.SIZE));
+
+        // Replayed records are moved into a snapshot, before the journal starts again.
+        if (replayed) {
+            writeSnapshot();
+        } else {
+            lastSnapshot = System.nanoTime();
+        }
+        startJournal();
+
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the count of tiles, that were restored from an earlier render.
+     *
+     * @return The count of tiles.
+     */
+    int getRestoredTileCount() {
+        return restoredTileCount;
+    }
+
+    /**
+     * Tests if a tile is completed.
+     *
+     * @param index The index of the tile.
+     * @return True, if the tile doesn't need to be rendered.
+     */
+    boolean isCompleted(final int index) {
+        return (completedTiles.get(index / Long.SIZE) & 1L << index) != 0;
+    }
+
+    /**
+     * Hands a completed tile to the writer thread, which appends it to the journal. The tile must be written to the
+     * frame buffer by the calling thread and must not change afterwards.
+     *
+     * @param index The index of the tile.
+     * @throws IOException If an earlier record cannot be written.
+     */
+    void record(final int index) throws IOException {
+        throwWriteError();
+
+        completedTiles.getAndAccumulate(index / Long.SIZE, 1L << index, (word, bit) -> word | bit);
+        try {
+            writer.execute(() -> write(() -> append(index)));
+        } catch (final RejectedExecutionException exception) {
+            throw new IOException("journal is closed.", exception);
+        }
+    }
+
+    /**
+     * Writes a snapshot of all completed tiles and starts the journal again. It waits for the records, that were
+     * handed over before.
+     *
+     * @throws IOException If the files cannot be written.
+     */
+    void checkpoint() throws IOException {
+        await(writer.submit(() -> write(() -> {
+            writeSnapshot();
+            startJournal();
+        })));
+        throwWriteError();
+    }
+
+    /**
+     * Writes the records, that were handed over, syncs the journal and closes it.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer.isShutdown())
+            return;
+
+        try {
+            await(writer.submit(() -> {
+                // The journal is closed even after an error, it ends with the last complete record.
+                try {
+                    write(this::sync);
+                } finally {
+                    journal.close();
+                }
+                return null;
+            }));
+        } finally {
+            writer.shutdown();
+        }
+        throwWriteError();
+    }
+
+    /**
+     * Deletes the files of a journal.
+     *
+     * @param directory The directory of the journal.
+     * @throws IOException If the files cannot be deleted.
+     */
+    static void delete(final Path directory) throws IOException {
+        Files.deleteIfExists(directory.resolve(JOURNAL_NAME));
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_NAME));
+    }
+
+    /**
+     * Appends a completed tile to the journal and syncs it or writes a snapshot, when it is due. It runs on the writer
+     * thread.
+     *
+     * @param index The index of the tile.
+     * @throws IOException If the journal cannot be written.
+     */
+    private void append(final int index) throws IOException {
+        final Tile tile = tiles.get(index);
+        final int[] pixels = new int[tile.getArea()];
+        frameBuffer.getTile(tile, pixels);
+
+        final ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + pixels.length * Integer.BYTES);
+        record.putInt(index);
+        record.putInt(pixels.length);
+        record.asIntBuffer().put(pixels);
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(record.array());
+        journal.write(record.array());
+        journal.writeInt((int) checksum.getValue());
+
+        journaledTiles.set(index);
+        unsyncedRecords++;
+
+        final long now = System.nanoTime();
+        if (now - lastSnapshot >= snapshotInterval) {
+            writeSnapshot();
+            startJournal();
+        } else if (unsyncedRecords >= SYNC_RECORDS || now - lastSync >= SYNC_NANOSECONDS) {
+            sync();
+        }
+    }
+
+    /**
+     * Runs a write on the writer thread and keeps its error. After the first error nothing is written anymore, so
+     * the journal ends with the last complete record.
+     *
+     * @param action The write.
+     */
+    private void write(final WriteAction action) {
+        if (writeError != null)
+            return;
+
+        try {
+            action.run();
+        } catch (final IOException exception) {
+            writeError = exception;
+        }
+    }
+
+    /**
+     * Throws the error of the writer thread, if there is one.
+     *
+     * @throws IOException If a write failed.
+     */
+    private void throwWriteError() throws IOException {
+        final IOException error = writeError;
+        if (error != null)
+            throw new IOException("journal cannot be written.", error);
+    }
+
+    /**
+     * Waits until the writer thread has run a write.
+     *
+     * @param pendingWrite The future of the write.
+     * @throws IOException If the write fails or the thread is interrupted.
+     */
+    private static void await(final Future<?> pendingWrite) throws IOException {
+        try {
+            pendingWrite.get();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing the journal.");
+        } catch (final ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Reads the snapshot, if it exists and belongs to this render.
+     *
+     * @throws IOException If the snapshot cannot be read.
+     */
+    private void readSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile))
+            return;
+
+        try (DataInputStream input = open(snapshotFile)) {
+            if (!readHeader(input, SNAPSHOT_MAGIC))
+                return;
+
+            final long[] words = new long[input.readInt()];
+            for (int index = 0; index < words.length; index++) {
+                words[index] = input.readLong();
+            }
+
+            final int[] row = new int[frameBuffer.getWidth()];
+            for (int yCoordinate = 0; yCoordinate < frameBuffer.getHeight(); yCoordinate++) {
+                for (int xCoordinate = 0; xCoordinate < row.length; xCoordinate++) {
+                    row[xCoordinate] = input.readInt();
+                }
+                frameBuffer.setRow(yCoordinate, 0, row.length, row, 0);
+            }
+            journaledTiles.or(BitSet.valueOf(words));
+        } catch (final EOFException exception) {
+            // The snapshot is only replaced when complete, so this is a file of something else.
+            journaledTiles.clear();
+        }
+    }
+
+    /**
+     * Replays the records of the journal up to the first incomplete one.
+     *
+     * @return True, if there was at least one record.
+     * @throws IOException If the journal cannot be read.
+     */
+    private boolean replayJournal() throws IOException {
+        if (!Files.exists(journalFile))
+            return false;
+
+        boolean replayed = false;
+        try (DataInputStream input = open(journalFile)) {
+            if (!readHeader(input, JOURNAL_MAGIC))
+                return false;
+
+            while (true) {
+                final int index = input.readInt();
+                final int length = input.readInt();
+                if (index < 0 || index >= tiles.size() || length != tiles.get(index).getArea())
+                    break;
+
+                final ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + length * Integer.BYTES);
+                record.putInt(index);
+                record.putInt(length);
+                input.readFully(record.array(), record.position(), record.remaining());
+
+                final CRC32 checksum = new CRC32();
+                checksum.update(record.array());
+                if (input.readInt() != (int) checksum.getValue())
+                    break;
+
+                final int[] pixels = new int[length];
+                record.position(2 * Integer.BYTES);
+                record.asIntBuffer().get(pixels);
+                frameBuffer.setTile(tiles.get(index), pixels);
+                journaledTiles.set(index);
+                replayed = true;
+            }
+        } catch (final EOFException exception) {
+            // The last record was cut off by the crash.
+        }
+        return replayed;
+    }
+
+    /**
+     * Writes the frame buffer and the completed tiles into a temporary file and moves it over the snapshot.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private void writeSnapshot() throws IOException {
+        final Path temporaryFile = snapshotFile.resolveSibling(SNAPSHOT_NAME + ".tmp");
+
+        try (FileOutputStream stream = new FileOutputStream(temporaryFile.toFile());
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+            writeHeader(output, SNAPSHOT_MAGIC);
+
+            final long[] words = journaledTiles.toLongArray();
+            output.writeInt(words.length);
+            for (final long word : words) {
+                output.writeLong(word);
+            }
+
+            final int[] row = new int[frameBuffer.getWidth()];
+            for (int yCoordinate = 0; yCoordinate < frameBuffer.getHeight(); yCoordinate++) {
+                frameBuffer.getRow(yCoordinate, 0, row.length, row, 0);
+                for (final int color : row) {
+                    output.writeInt(color);
+                }
+            }
+
+            output.flush();
+            stream.getFD().sync();
+        }
+
+        Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSnapshot = System.nanoTime();
+    }
+
+    /**
+     * Truncates the journal and writes its header.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    private void startJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+
+        journalStream = new FileOutputStream(journalFile.toFile());
+        journal = new DataOutputStream(new BufferedOutputStream(journalStream));
+        writeHeader(journal, JOURNAL_MAGIC);
+        sync();
+    }
+
+    /**
+     * Writes the buffered records to the disk.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    private void sync() throws IOException {
+        journal.flush();
+        journalStream.getFD().sync();
+        unsyncedRecords = 0;
+        lastSync = System.nanoTime();
+    }
+
+    /**
+     * Writes the header of a file, which identifies the render.
+     *
+     * @param output The output.
+     * @param magic  The magic of the file type.
+     * @throws IOException If the header cannot be written.
+     */
+    private void writeHeader(final DataOutputStream output, final int magic) throws IOException {
+        output.writeInt(magic);
+        output.writeInt(VERSION);
+        output.writeUTF(fingerprint);
+        output.writeInt(frameBuffer.getWidth());
+        output.writeInt(frameBuffer.getHeight());
+        output.writeInt(tiles.size());
+    }
+
+    /**
+     * Reads the header of a file and compares it with this render.
+     *
+     * @param input The input.
+     * @param magic The magic of the file type.
+     * @return True, if the file belongs to this render.
+     * @throws IOException If the header cannot be read.
+     */
+    private boolean readHeader(final DataInputStream input, final int magic) throws IOException {
+        return input.readInt() == magic
+                && input.readInt() == VERSION
+                && input.readUTF().equals(fingerprint)
+                && input.readInt() == frameBuffer.getWidth()
+                && input.readInt() == frameBuffer.getHeight()
+                && input.readInt() == tiles.size();
+    }
+
+    /**
+     * Opens a file for reading.
+     *
+     * @param file The file.
+     * @return A buffered input.
+     * @throws IOException If the file cannot be opened.
+     */
+    private static DataInputStream open(final Path file) throws IOException {
+        final InputStream stream = Files.newInputStream(file);
+        return new DataInputStream(new BufferedInputStream(stream));
+    }
+
+    /**
+     * A write, that runs on the writer thread.
+     */
+    private interface WriteAction {
+        /**
+         * Runs the write.
+         *
+         * @throws IOException If the files cannot be written.
+         */
+        void run() throws IOException;
+    }
+}
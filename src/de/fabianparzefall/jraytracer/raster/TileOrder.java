@@ -0,0 +1,156 @@
+package de.fabianparzefall.jraytracer.raster;
+
+import de.fabianparzefall.jraytracer.common.Morton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The orders, in which a {@link ParallelRaster} hands out the tiles of a regular grid.
+ * <p>
+ * All workers take the next tile from the same order, so at any time they work on tiles, that are close to each other
+ * along the curve. With a space filling curve, close tiles are close in the image, so the workers share the primitives
+ * and the cache lines of the scene they touch.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public enum TileOrder {
+    /**
+     * Row by row from the top, from left to right.
+     */
+    ROW_MAJOR {
+        @Override
+        long calculateKey(final int column, final int row, final int columns, final int rows) {
+            return (long) (rows - 1 - row) * columns + column;
+        }
+    },
+
+    /**
+     * Along the Z-order curve.
+     */
+    MORTON {
+        @Override
+        long calculateKey(final int column, final int row, final int columns, final int rows) {
+            return Morton.encode(column, rows - 1 - row);
+        }
+    },
+
+    /**
+     * Along the Hilbert curve, which has no jumps between neighbouring tiles.
+     */
+    HILBERT {
+        @Override
+        long calculateKey(final int column, final int row, final int columns, final int rows) {
+            int size = 1;
+            while (size < Math.max(columns, rows)) {
+                size <<= 1;
+            }
+
+            long key = 0;
+            int x = column;
+            int y = rows - 1 - row;
+            for (int half = size / 2; half > 0; half /= 2) {
+                final int quadrantX = (x & half) > 0 ? 1 : 0;
+                final int quadrantY = (y & half) > 0 ? 1 : 0;
+                key += (long) half * half * (3 * quadrantX ^ quadrantY);
+
+                // Rotate the quadrant, so the curve continues in the right direction.
+                if (quadrantY == 0) {
+                    if (quadrantX == 1) {
+                        x = size - 1 - x;
+                        y = size - 1 - y;
+                    }
+                    final int swap = x;
+                    x = y;
+                    y = swap;
+                }
+            }
+            return key;
+        }
+    },
+
+    /**
+     * In rings from the centre outwards, so the interesting middle of the image is done first.
+     */
+    SPIRAL {
+        @Override
+        long calculateKey(final int column, final int row, final int columns, final int rows) {
+            // Doubled coordinates relative to the centre keep the centre of even grids exact.
+            final int xOffset = 2 * column + 1 - columns;
+            final int yOffset = 2 * row + 1 - rows;
+            final long ring = Math.max(Math.abs(xOffset), Math.abs(yOffset));
+
+            // Within a ring, the tiles are ordered by their angle around the centre.
+            final double angle = Math.atan2(yOffset, xOffset) + Math.PI;
+            return ring << ANGLE_BITS | (long) (angle / (2 * Math.PI) * ((1 << ANGLE_BITS) - 1));
+        }
+    };
+
+    /**
+     * The count of bits of the angle in the keys of {@link #SPIRAL}.
+     */
+    private static final int ANGLE_BITS = 15;
+
+    /**
+     * The count of bits of a key. The keys are packed with the index of their tile into one long, so they are sorted
+     * without boxing.
+     */
+    private static final int KEY_BITS = 31;
+
+    /**
+     * Calculates the position of a tile in the order.
+     *
+     * @param column  The column of the tile in the grid.
+     * @param row     The row of the tile in the grid, counted from the bottom like the y coordinates of a raster.
+     * @param columns The count of columns of the grid.
+     * @param rows    The count of rows of the grid.
+     * @return A key, by which the tiles are sorted. It must fit into {@link #KEY_BITS} bits.
+     */
+    abstract long calculateKey(int column, int row, int columns, int rows);
+
+    /**
+     * Splits a raster into a grid of tiles and sorts them.
+     *
+     * @param width    The width of the raster, must be positive.
+     * @param height   The height of the raster, must be positive.
+     * @param tileSize The edge length of the tiles, must be at least 1. The tiles at the right and the upper edge may be
+     *                 smaller.
+     * @return The tiles in this order.
+     */
+    public List<Tile> arrange(final int width, final int height, final int tileSize) {
+        if (width < 1)
+            throw new IllegalArgumentException("width is less than 1.");
+        if (height < 1)
+            throw new IllegalArgumentException("height is less than 1.");
+        if (tileSize < 1)
+            throw new IllegalArgumentException("tileSize is less than 1.");
+
+        final int columns = (width + tileSize - 1) / tileSize;
+        final int rows = (height + tileSize - 1) / tileSize;
+
+        final List<Tile> tiles = new ArrayList<>(columns * rows);
+        final long[] keys = new long[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int xCoordinate = column * tileSize;
+                final int yCoordinate = row * tileSize;
+                final long key = calculateKey(column, row, columns, rows);
+                assert 0 <= key && key < 1L << KEY_BITS;
+
+                // The index in the low bits keeps tiles with the same key in the order of the grid.
+                keys[tiles.size()] = key << Integer.SIZE | tiles.size();
+                tiles.add(new Tile(xCoordinate, yCoordinate,
+                        Math.min(tileSize, width - xCoordinate), Math.min(tileSize, height - yCoordinate)));
+            }
+        }
+        Arrays.sort(keys);
+
+        final List<Tile> ordered = new ArrayList<>(tiles.size());
+        for (final long key : keys) {
+            ordered.add(tiles.get((int) key));
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,71 @@
+package de.fabianparzefall.jraytracer.sampling;
+
+import java.util.SplittableRandom;
+
+/**
+ * Creates independent random generators for the pixels of a frame.
+ * <p>
+ * The generator of a pixel only depends on the seed and the coordinates of the pixel in the frame, not on the tile,
+ * the thread or the order, in which the pixels are rendered. So every pixel gets the same random numbers at any count
+ * of threads, and the threads never share a generator.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class PixelRandom {
+    /**
+     * The increment of the SplitMix64 generator, an odd number close to 2^64 divided by the golden ratio.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Creates the generator of a pixel.
+     *
+     * @param seed        The seed of the frame.
+     * @param xCoordinate The x coordinate of the pixel in the frame.
+     * @param yCoordinate The y coordinate of the pixel in the frame.
+     * @return A new generator.
+     */
+    public static SplittableRandom create(final long seed, final int xCoordinate, final int yCoordinate) {
+        return new SplittableRandom(hash(seed, xCoordinate, yCoordinate));
+    }
+
+    /**
+     * Creates the generator of a stream within a pixel, for example of a single sample.
+     *
+     * @param seed        The seed of the frame.
+     * @param xCoordinate The x coordinate of the pixel in the frame.
+     * @param yCoordinate The y coordinate of the pixel in the frame.
+     * @param stream      The number of the stream.
+     * @return A new generator, that is independent of the generators of the other streams.
+     */
+    public static SplittableRandom create(final long seed, final int xCoordinate, final int yCoordinate,
+                                          final int stream) {
+        return new SplittableRandom(mix(hash(seed, xCoordinate, yCoordinate) + (stream + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Hashes the seed with the coordinates of a pixel.
+     *
+     * @param seed        The seed of the frame.
+     * @param xCoordinate The x coordinate of the pixel in the frame.
+     * @param yCoordinate The y coordinate of the pixel in the frame.
+     * @return A hash, whose bits all depend on all arguments.
+     */
+    static long hash(final long seed, final int xCoordinate, final int yCoordinate) {
+        // Neighbouring pixels differ in few bits, so every step is mixed before the next coordinate is added.
+        return mix(mix(mix(seed) + xCoordinate * GOLDEN_GAMMA) + yCoordinate * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Mixes the bits of a number with the finalizer of SplitMix64.
+     *
+     * @param value The number.
+     * @return The mixed number.
+     */
+    private static long mix(final long value) {
+        long mixed = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+        return mixed ^ (mixed >>> 31);
+    }
+}
@@ -0,0 +1,105 @@
+package de.fabianparzefall.jraytracer.sampling;
+
+import java.util.SplittableRandom;
+
+/**
+ * The patterns, in which the samples of a pixel are placed.
+ * <p>
+ * A pixel with N*N samples is divided into a grid of N*N strata. The positions are given within the pixel from 0 to 1,
+ * the lower left corner of the pixel is at 0.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public enum SamplePattern {
+    /**
+     * Every sample is in the centre of its stratum. The pattern is the same in all pixels, so edges, that are nearly
+     * parallel to the grid, still show steps.
+     */
+    CENTERED {
+        @Override
+        public double[] getPosition(final long seed, final int xCoordinate, final int yCoordinate, final int gridSize,
+                                    final int index) {
+            return new double[]{(index % gridSize + 0.5) / gridSize, (index / gridSize + 0.5) / gridSize};
+        }
+    },
+
+    /**
+     * Every sample is at a random position in its stratum.
+     */
+    JITTERED {
+        @Override
+        public double[] getPosition(final long seed, final int xCoordinate, final int yCoordinate, final int gridSize,
+                                    final int index) {
+            final SplittableRandom random = PixelRandom.create(seed, xCoordinate, yCoordinate, index);
+            return new double[]{(index % gridSize + random.nextDouble()) / gridSize,
+                    (index / gridSize + random.nextDouble()) / gridSize};
+        }
+    },
+
+    /**
+     * The samples are the points of the two dimensional Sobol sequence, shifted randomly per pixel. If the edge of the
+     * grid is a power of two, every stratum gets exactly one sample, and so does every other rectangle of the same
+     * area with power of two edges. The sample of an index doesn't need to be in the stratum of the index.
+     */
+    SOBOL {
+        @Override
+        public double[] getPosition(final long seed, final int xCoordinate, final int yCoordinate, final int gridSize,
+                                    final int index) {
+            // A shift with XOR keeps the strata of the sequence, other than a shift with addition.
+            final SplittableRandom random = PixelRandom.create(seed, xCoordinate, yCoordinate);
+            final int horizontalShift = random.nextInt();
+            final int verticalShift = random.nextInt();
+
+            // The first dimension is the van der Corput sequence, the second one uses the direction numbers of the
+            // polynomial x + 1.
+            final int horizontal = Integer.reverse(index);
+            int vertical = 0;
+            int direction = 1 << 31;
+            for (int bits = index; bits != 0; bits >>>= 1, direction ^= direction >>> 1) {
+                if ((bits & 1) != 0) {
+                    vertical ^= direction;
+                }
+            }
+
+            return new double[]{toUnitInterval(horizontal ^ horizontalShift), toUnitInterval(vertical ^ verticalShift)};
+        }
+    };
+
+    /**
+     * The value of the lowest bit of a 32 bit fraction.
+     */
+    private static final double FRACTION_UNIT = 0x1p-32;
+
+    /**
+     * Tests, if the first samples of a finer grid are the samples of a coarser grid. A pixel can then be refined
+     * without tracing its samples again.
+     *
+     * @return True, if the positions don't depend on the size of the grid.
+     */
+    public boolean isNested() {
+        return this == SOBOL;
+    }
+
+    /**
+     * Calculates the position of a sample in a pixel.
+     *
+     * @param seed        The seed of the frame.
+     * @param xCoordinate The x coordinate of the pixel in the frame.
+     * @param yCoordinate The y coordinate of the pixel in the frame.
+     * @param gridSize    The count of strata in each direction, must be positive.
+     * @param index       The index of the sample, from 0 to gridSize * gridSize exclusive.
+     * @return An array with the horizontal and the vertical position, both at least 0 and less than 1.
+     */
+    public abstract double[] getPosition(long seed, int xCoordinate, int yCoordinate, int gridSize, int index);
+
+    /**
+     * Converts the bits of an int into a fraction.
+     *
+     * @param bits The bits after the binary point.
+     * @return The fraction at least 0 and less than 1.
+     */
+    private static double toUnitInterval(final int bits) {
+        return (bits & 0xFFFFFFFFL) * FRACTION_UNIT;
+    }
+}
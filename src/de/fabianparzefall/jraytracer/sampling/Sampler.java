@@ -0,0 +1,105 @@
+package de.fabianparzefall.jraytracer.sampling;
+
+/**
+ * Places the samples of the pixels of a frame with a pattern and a seed.
+ * <p>
+ * The samples only depend on the pattern, the seed and the coordinates in the frame, so a frame looks the same at any
+ * count of threads, with any tiles and in any part of the frame, that is rendered on its own.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class Sampler {
+    /**
+     * The sampler, that places every sample in the centre of its stratum.
+     */
+    public static final Sampler CENTERED = new Sampler(SamplePattern.CENTERED, 0);
+
+    /**
+     * The pattern of the samples.
+     */
+    private final SamplePattern pattern;
+
+    /**
+     * The seed, from which the random numbers of all pixels are derived.
+     */
+    private final long seed;
+
+    /**
+     * Constructs a sampler.
+     *
+     * @param pattern The pattern of the samples.
+     * @param seed    The seed. Frames with the same seed get the same samples.
+     */
+    public Sampler(final SamplePattern pattern, final long seed) {
+        assert pattern != null;
+
+        this.pattern = pattern;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a sampler from a string with the pattern and an optional seed, like "SOBOL 42".
+     *
+     * @param description The name of the pattern and the seed separated by a space.
+     * @return The sampler, with the seed 0, if there is none.
+     */
+    public static Sampler parse(final String description) {
+        assert description != null;
+
+        final String[] parts = description.trim().split(" +");
+        if (parts.length > 2)
+            throw new IllegalArgumentException("description has more than a pattern and a seed.");
+
+        return new Sampler(SamplePattern.valueOf(parts[0]), parts.length > 1 ? Long.parseLong(parts[1]) : 0);
+    }
+
+    public SamplePattern getPattern() {
+        return pattern;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Calculates the position of a sample in a pixel.
+     *
+     * @param xCoordinate The x coordinate of the pixel in the frame.
+     * @param yCoordinate The y coordinate of the pixel in the frame.
+     * @param gridSize    The count of strata in each direction, must be positive.
+     * @param index       The index of the sample, from 0 to gridSize * gridSize exclusive.
+     * @return An array with the horizontal and the vertical position, both at least 0 and less than 1.
+     * @see SamplePattern#getPosition(long, int, int, int, int)
+     */
+    public double[] getPosition(final int xCoordinate, final int yCoordinate, final int gridSize, final int index) {
+        if (gridSize < 1)
+            throw new IllegalArgumentException("gridSize is less than 1.");
+        if (index < 0 || index >= gridSize * gridSize)
+            throw new IllegalArgumentException("index is not within the grid.");
+
+        return pattern.getPosition(seed, xCoordinate, yCoordinate, gridSize, index);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        assert obj != null;
+        if (this == obj) return true;
+        if (getClass() != obj.getClass()) return false;
+
+        final Sampler sampler = (Sampler) obj;
+
+        return pattern == sampler.pattern
+                && seed == sampler.seed;
+    }
+
+    @Override
+    public int hashCode() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Sampler{pattern=%s, seed=%d}", pattern, seed);
+    }
+}
@@ -0,0 +1,188 @@
+package de.fabianparzefall.jraytracer.scene;
+
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.MaterialTable;
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * A frame of an animation of another scene. The frame has its own looker and light and moves some primitives of the
+ * scene, while it shares everything else with the scene: the primitives, the sphere clusters and the material table.
+ * So a frame costs only the moved primitives and any count of frames can be rendered at the same time.
+ * <p>
+ * A ray skips the original positions of the moved primitives by continuing behind them in the scene. The proxies of
+ * sphere clusters are not moved, so with level of detail a moved sphere is still seen at its old position from far
+ * away.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class FrameScene implements Scene {
+    /**
+     * The distance, by which a ray continues behind a skipped intersection, so it doesn't hit it again. It is far above
+     * the minimum distance of an intersection, so the rounding errors of the restarted ray stay below it.
+     */
+    private static final double SKIP_DISTANCE = 1000 * MINIMUM_DISTANCE;
+
+    /**
+     * The scene, that is animated.
+     */
+    private final Scene scene;
+
+    /**
+     * The looker of the frame.
+     */
+    private final Looker looker;
+
+    /**
+     * The light of the frame.
+     */
+    private final Optional<Point> light;
+
+    /**
+     * The moved primitives by their ids.
+     */
+    private final Map<Integer, MovedPrimitive> movedPrimitives;
+
+    /**
+     * Constructs a frame of a scene.
+     *
+     * @param scene        The scene, that is animated.
+     * @param looker       The looker of the frame.
+     * @param light        The light of the frame.
+     * @param translations The translations of the moved primitives by their ids.
+     */
+    public FrameScene(final Scene scene, final Looker looker, final Optional<Point> light,
+                      final Map<Integer, Vector> translations) {
+        assert scene != null;
+        assert looker != null;
+        assert light != null;
+        assert translations != null;
+
+        this.scene = scene;
+        this.looker = looker;
+        this.light = light;
+
+        final Map<Integer, MovedPrimitive> primitives = new HashMap<>();
+        for (final Map.Entry<Integer, Vector> translation : translations.entrySet()) {
+            primitives.put(translation.getKey(),
+                    new MovedPrimitive(scene.getPrimitive(translation.getKey()), translation.getValue()));
+        }
+        movedPrimitives = Collections.unmodifiableMap(primitives);
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    @Override
+    public Looker getLooker() {
+        return looker;
+    }
+
+    @Override
+    public Optional<Point> getLight() {
+        return light;
+    }
+
+    @Override
+    public Color getLightColor() {
+        return scene.getLightColor();
+    }
+
+    @Override
+    public int getPrimitiveCount() {
+        return scene.getPrimitiveCount();
+    }
+
+    @Override
+    public Primitive getPrimitive(final int id) {
+        final Primitive movedPrimitive = movedPrimitives.get(id);
+        return movedPrimitive != null ? movedPrimitive : scene.getPrimitive(id);
+    }
+
+    @Override
+    public MaterialTable getMaterialTable() {
+        return scene.getMaterialTable();
+    }
+
+    @Override
+    public Optional<Intersection> findIntersection(final Ray ray) {
+        assert ray != null;
+
+        Optional<Intersection> nearest = Optional.empty();
+        for (final MovedPrimitive primitive : movedPrimitives.values()) {
+            for (final Intersection intersection : primitive.intersections(ray)) {
+                if (intersection.getDistance() > MINIMUM_DISTANCE) {
+                    if (!nearest.isPresent() || intersection.getDistance() < nearest.get().getDistance()) {
+                        nearest = Optional.of(intersection);
+                    }
+                    break;
+                }
+            }
+        }
+
+        final Optional<Intersection> sceneIntersection = findSceneIntersection(ray,
+                nearest.map(Intersection::getDistance).orElse(Double.POSITIVE_INFINITY));
+        if (sceneIntersection.isPresent() && (!nearest.isPresent() || sceneIntersection.get().getDistance() < nearest.get().getDistance()))
+            return sceneIntersection;
+        return nearest;
+    }
+
+    /**
+     * Finds the nearest intersection in the scene, which isn't an original position of a moved primitive.
+     *
+     * @param ray             The ray.
+     * @param maximumDistance The distance, beyond which intersections are not needed.
+     * @return An intersection or an empty optional.
+     */
+    private Optional<Intersection> findSceneIntersection(final Ray ray, final double maximumDistance) {
+        Ray currentRay = ray;
+        double travelledDistance = 0;
+
+        while (true) {
+            final Optional<Intersection> optionalIntersection = scene.findIntersection(currentRay);
+            if (!optionalIntersection.isPresent())
+                return Optional.empty();
+
+            final Intersection intersection = optionalIntersection.get();
+            final double distance = travelledDistance + intersection.getDistance();
+            if (distance >= maximumDistance)
+                return Optional.empty();
+
+            if (!movedPrimitives.containsKey(intersection.getIntersectedPrimitive().getId())) {
+                return Optional.of(currentRay == ray ? intersection : new Intersection(
+                        intersection.getIntersectionPoint(), intersection.getIntersectedPrimitive(), distance, intersection.isEntering()));
+            }
+
+            // The ray continues behind the original position of the moved primitive.
+            travelledDistance = distance + SKIP_DISTANCE;
+            currentRay = new Ray(ray.getPoint(travelledDistance), ray.getDirection(), ray.getWeight(),
+                    ray.getFootprint(travelledDistance), ray.getSpread(), ray.getDepth());
+        }
+    }
+
+    @Override
+    public String getFingerprint() {
+        // The translations are sorted, so equal frames have equal fingerprints.
+        final Map<Integer, Vector> translations = new TreeMap<>();
+        for (final MovedPrimitive primitive : movedPrimitives.values()) {
+            translations.put(primitive.getId(), primitive.getTranslation());
+        }
+        return String.format("%s, looker=%s, light=%s, translations=%s", scene.getFingerprint(), looker, light, translations);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FrameScene{looker=%s, light=%s, movedPrimitives=%s}", looker, light, movedPrimitives.values());
+    }
+}
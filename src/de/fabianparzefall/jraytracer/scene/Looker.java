@@ -4,11 +4,13 @@ import de.fabianparzefall.jraytracer.geometry.Point;
 import de.fabianparzefall.jraytracer.geometry.Ray;
 import de.fabianparzefall.jraytracer.geometry.Vector;
 
+import java.util.Optional;
+
 /**
  * Calculates the rays.
  *
  * @author Fabian Parzefall
- * @version 15-03-06
+ * @version 26-10-19
  */
 public class Looker {
     /**
@@ -72,6 +74,20 @@ public class Looker {
      * @return A ray.
      */
     public Ray getPrimaryRay(final double horizontal, final double vertical) {
+        return getPrimaryRay(horizontal, vertical, 0);
+    }
+
+    /**
+     * Calculates a ray based on viewport coordinates between -1 and 1, which represents a pixel.
+     *
+     * @param horizontal The horizontal component, ranges between -1 and 1.
+     * @param vertical   The vertical component, ranges between -1 and 1.
+     * @param pixelSize  The size of a pixel in viewport coordinates.
+     * @return A ray, whose footprint grows with the width of the pixel.
+     */
+    public Ray getPrimaryRay(final double horizontal, final double vertical, final double pixelSize) {
+        if (pixelSize < 0)
+            throw new IllegalArgumentException("pixelSize is negative.");
         if (Math.abs(horizontal) > 1)
             throw new IllegalArgumentException("horizontal is not within -1 and 1");
         if (Math.abs(vertical) > 1)
@@ -84,6 +100,39 @@ public class Looker {
         // And the direction.
         final Vector direction = viewVector.add(hVector).add(vVector);
 
-        return new Ray(cameraPosition, direction);
+        // The angle a pixel covers seen from the camera.
+        final double spread = pixelSize * Math.max(rightVector.getLength(), upVector.getLength()) / viewVector.getLength();
+
+        return new Ray(cameraPosition, direction, 1, 0, spread);
+    }
+
+    public Point getCameraPosition() {
+        return cameraPosition;
+    }
+
+    /**
+     * Projects a point onto the viewport. This is the inverse of {@link #getPrimaryRay(double, double)}.
+     *
+     * @param point The point.
+     * @return An array with the horizontal and the vertical viewport coordinate, which are only within -1 and 1, if
+     * the point is in the view, or an empty optional, if the point isn't in front of the camera.
+     */
+    public Optional<double[]> project(final Point point) {
+        assert point != null;
+
+        final Vector direction = cameraPosition.vectorTo(point);
+        // The view, right and up vectors are orthogonal, so the components of the direction are independent.
+        final double depth = direction.dotProduct(viewVector) / viewVector.dotProduct(viewVector);
+        if (depth <= 0)
+            return Optional.empty();
+
+        final double horizontal = direction.dotProduct(rightVector) / (depth * rightVector.dotProduct(rightVector));
+        final double vertical = direction.dotProduct(upVector) / (depth * upVector.dotProduct(upVector));
+        return Optional.of(new double[]{horizontal, vertical});
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Looker{cameraPosition=%s, viewVector=%s, rightVector=%s, upVector=%s}", cameraPosition, viewVector, rightVector, upVector);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package de.fabianparzefall.jraytracer.scene;
+
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
+import de.fabianparzefall.jraytracer.scene.primitive.Surface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A primitive, that is moved by a translation. It keeps the id and the frozen surface of the original primitive, so
+ * it uses the material table of the original scene.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+final class MovedPrimitive implements Primitive {
+    /**
+     * The primitive at its original position.
+     */
+    private final Primitive original;
+
+    /**
+     * The translation from the original position.
+     */
+    private final Vector translation;
+
+    /**
+     * The inverse translation.
+     */
+    private final Vector inverseTranslation;
+
+    /**
+     * Constructs a moved primitive.
+     *
+     * @param original    The primitive at its original position.
+     * @param translation The translation from the original position.
+     */
+    MovedPrimitive(final Primitive original, final Vector translation) {
+        assert original != null;
+        assert translation != null;
+
+        this.original = original;
+        this.translation = translation;
+        inverseTranslation = translation.scalarProduct(-1);
+    }
+
+    public Vector getTranslation() {
+        return translation;
+    }
+
+    @Override
+    public int getId() {
+        return original.getId();
+    }
+
+    @Override
+    public Vector getNormal(final Point point) {
+        return original.getNormal(point.add(inverseTranslation));
+    }
+
+    @Override
+    public Point project(final Point point) {
+        return original.project(point.add(inverseTranslation)).add(translation);
+    }
+
+    @Override
+    public double getCurvature() {
+        return original.getCurvature();
+    }
+
+    @Override
+    public Surface getSurface() {
+        return original.getSurface();
+    }
+
+    @Override
+    public List<Intersection> intersections(final Ray ray) {
+        assert ray != null;
+
+        // The ray is moved back instead of the primitive.
+        final Ray movedRay = new Ray(ray.getStartPoint().add(inverseTranslation), ray.getDirection(), ray.getWeight(),
+                ray.getFootprint(0), ray.getSpread(), ray.getDepth());
+
+        final List<Intersection> originalIntersections = original.intersections(movedRay);
+        final List<Intersection> intersections = new ArrayList<>(originalIntersections.size());
+        for (final Intersection intersection : originalIntersections) {
+            intersections.add(new Intersection(intersection.getIntersectionPoint().add(translation), this,
+                    intersection.getDistance(), intersection.isEntering()));
+        }
+        return intersections;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MovedPrimitive{original=%s, translation=%s}", original, translation);
+    }
+}
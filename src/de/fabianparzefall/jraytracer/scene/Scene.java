@@ -1,8 +1,11 @@
 package de.fabianparzefall.jraytracer.scene;
 
+import de.fabianparzefall.jraytracer.common.Color;
 import de.fabianparzefall.jraytracer.geometry.Point;
 import de.fabianparzefall.jraytracer.geometry.Ray;
 import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.MaterialTable;
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -12,9 +15,14 @@ import java.util.Optional;
  * The interface for a scene.
  *
  * @author Fabian Parzefall
- * @version 15-03-06
+ * @version 26-10-19
  */
 public interface Scene {
+    /**
+     * The minimum distance of an intersection. Closer intersections are the surface, from which a ray starts.
+     */
+    double MINIMUM_DISTANCE = 1E-10;
+
     /**
      * Creates a scene by an array of strings.
      * <p>
@@ -65,6 +73,35 @@ public interface Scene {
      */
     Optional<Point> getLight();
 
+    /**
+     * Gets the colour of the light source.
+     *
+     * @return The colour, white by default.
+     */
+    Color getLightColor();
+
+    /**
+     * Gets the count of primitives in the scene. The primitives have the ids from 0 to the count exclusive.
+     *
+     * @return The count of primitives.
+     */
+    int getPrimitiveCount();
+
+    /**
+     * Gets a primitive by its id.
+     *
+     * @param id The id of the primitive.
+     * @return The primitive.
+     */
+    Primitive getPrimitive(int id);
+
+    /**
+     * Gets the table with the materials of all primitives in the scene.
+     *
+     * @return The material table.
+     */
+    MaterialTable getMaterialTable();
+
     /**
      * Finds intersection of the given ray in the scene.
      *
@@ -72,4 +109,11 @@ public interface Scene {
      * @return An intersection or null.
      */
     Optional<Intersection> findIntersection(Ray ray);
+
+    /**
+     * Gets a fingerprint of the scene. Scenes with the same fingerprint render the same images.
+     *
+     * @return A hexadecimal hash.
+     */
+    String getFingerprint();
 }
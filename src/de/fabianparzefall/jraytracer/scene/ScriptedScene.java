@@ -1,13 +1,18 @@
 package de.fabianparzefall.jraytracer.scene;
 
+import de.fabianparzefall.jraytracer.common.Color;
 import de.fabianparzefall.jraytracer.common.Strings;
 import de.fabianparzefall.jraytracer.geometry.Point;
 import de.fabianparzefall.jraytracer.geometry.Ray;
 import de.fabianparzefall.jraytracer.geometry.Vector;
 import de.fabianparzefall.jraytracer.scene.primitive.*;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 
@@ -15,14 +20,9 @@ import java.util.stream.Stream;
  * A scene that is created by a string.
  *
  * @author Fabian Parzefall
- * @version 15-06-03
+ * @version 26-10-19
  */
 class ScriptedScene implements Scene {
-    /**
-     * The minimum distance of an intersection.
-     */
-    private static final double MINIMUM_DISTANCE = 1E-10;
-
     /**
      * This map contains relations between and instruction name and it's action.
      */
@@ -32,6 +32,22 @@ class ScriptedScene implements Scene {
      * A list with all primitives in the scene.
      */
     private final List<Primitive> primitives = new ArrayList<>();
+    /**
+     * The primitives, which aren't part of the sphere clusters.
+     */
+    private final List<Primitive> unclusteredPrimitives = new ArrayList<>();
+    /**
+     * The proxies of the sphere clusters. Their ids follow the ids of the primitives.
+     */
+    private final List<Sphere> proxies = new ArrayList<>();
+    /**
+     * The root of the sphere clusters.
+     */
+    private Optional<SphereCluster> sphereClusters = Optional.empty();
+    /**
+     * The factor, by which the footprint of a ray must be bigger than a sphere cluster to use its proxy.
+     */
+    private double lodThreshold;
     /**
      * The looker of the scene.
      */
@@ -40,10 +56,22 @@ class ScriptedScene implements Scene {
      * The light of the scene.
      */
     private Optional<Point> light = Optional.empty();
+    /**
+     * The colour of the light.
+     */
+    private Color lightColor = Color.WHITE;
+    /**
+     * The materials of the primitives. The surfaces get frozen into this table, after all instructions are parsed.
+     */
+    private final MaterialTable materialTable;
     /**
      * This value is used by the parser, to check, if there is a property allowed at the current position.
      */
     private boolean propertyAllowed;
+    /**
+     * The hash of the instructions.
+     */
+    private final String fingerprint;
 
     /**
      * Constructs a scene from an array of instructions.
@@ -51,10 +79,13 @@ class ScriptedScene implements Scene {
      * It supports currently the following instructions:
      * <pre>
      *     looker [x y z] [x y z] w h
-     *     light [x y z]
+     *     light [x y z] [r g b]
      *     sphere [x y z] r
      *     plane [x y z] <x y z>
+     *     lod f
      * </pre>
+     * The lod instruction enables level of detail: clusters of spheres, which are smaller than f times the footprint
+     * of a ray, are replaced by a single sphere with their averaged surface.
      *
      * @param instructions An array with instructions.
      */
@@ -63,15 +94,51 @@ class ScriptedScene implements Scene {
 
         setupParserMap();
 
-        Stream.of(instructions)
+        final List<String> relevantInstructions = Stream.of(instructions)
                 .map(String::trim)
                 .filter(instruction -> !"".equals(instruction) && instruction.charAt(0) != '#')
+                .collect(Collectors.toList());
+        relevantInstructions.stream()
                 .map(ParameterIterator::new)
                 .forEach(this::parseParameters);
+        fingerprint = calculateFingerprint(relevantInstructions);
 
         // looker must be present.
         if (!looker.isPresent())
             throw new IllegalArgumentException("instructions must contain a definition for looker.");
+
+        buildSphereClusters();
+
+        materialTable = MaterialTable.compile(Stream.concat(primitives.stream(), proxies.stream())
+                .map(Primitive::getSurface)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Hashes the instructions without comments and blank lines.
+     *
+     * @param relevantInstructions The trimmed instructions.
+     * @return The SHA-256 hash as hexadecimal string.
+     */
+    private static String calculateFingerprint(final List<String> relevantInstructions) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException exception) {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(exception);
+        }
+
+        for (final String instruction : relevantInstructions) {
+            digest.update(instruction.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (final byte value : digest.digest()) {
+            builder.append(String.format("%02x", value));
+        }
+        return builder.toString();
     }
 
     /**
@@ -89,11 +156,22 @@ class ScriptedScene implements Scene {
             if (light.isPresent())
                 throw new IllegalArgumentException("second light defined.");
             light = Optional.of(parameters.nextPoint());
+            // The colour of the light is optional.
+            if (parameters.hasNext()) {
+                lightColor = parameters.nextColor();
+            }
             propertyAllowed = false;
         });
 
-        actionMap.put("sphere", parameters -> addPrimitive(new Sphere(parameters.nextPoint(), parameters.nextDouble())));
-        actionMap.put("plane", parameters -> addPrimitive(new Plane(parameters.nextPoint(), parameters.nextVector())));
+        actionMap.put("sphere", parameters -> addPrimitive(new Sphere(primitives.size(), parameters.nextPoint(), parameters.nextDouble())));
+        actionMap.put("plane", parameters -> addPrimitive(new Plane(primitives.size(), parameters.nextPoint(), parameters.nextVector())));
+
+        actionMap.put("lod", parameters -> {
+            lodThreshold = parameters.nextDouble();
+            if (lodThreshold < 0)
+                throw new IllegalArgumentException("lod threshold is negative.");
+            propertyAllowed = false;
+        });
 
         actionMap.put("ambient", parameters -> setPropertyForLastPrimitive(Surface.Property.AmbientRatio, parameters.nextDouble()));
         actionMap.put("diffuse", parameters -> setPropertyForLastPrimitive(Surface.Property.DiffuseRatio, parameters.nextDouble()));
@@ -102,6 +180,33 @@ class ScriptedScene implements Scene {
             setPropertyForLastPrimitive(Surface.Property.SpecularExponent, parameters.nextDouble());
         });
         actionMap.put("reflexion", parameters -> setPropertyForLastPrimitive(Surface.Property.ReflexionRatio, parameters.nextDouble()));
+        actionMap.put("color", parameters -> {
+            setPropertyForLastPrimitive(Surface.Property.Red, parameters.nextDouble());
+            setPropertyForLastPrimitive(Surface.Property.Green, parameters.nextDouble());
+            setPropertyForLastPrimitive(Surface.Property.Blue, parameters.nextDouble());
+        });
+    }
+
+    /**
+     * Builds the sphere clusters. All other primitives are tested one after another.
+     */
+    private void buildSphereClusters() {
+        final List<Sphere> spheres = new ArrayList<>();
+        for (final Primitive primitive : primitives) {
+            if (primitive instanceof Sphere) {
+                spheres.add((Sphere) primitive);
+            } else {
+                unclusteredPrimitives.add(primitive);
+            }
+        }
+
+        if (!spheres.isEmpty()) {
+            final int[] nextId = {primitives.size()};
+            final SphereCluster root = SphereCluster.build(spheres, () -> nextId[0]++);
+            root.collectProxies(proxies);
+            proxies.sort(Comparator.comparingInt(Primitive::getId));
+            sphereClusters = Optional.of(root);
+        }
     }
 
     /**
@@ -150,6 +255,11 @@ class ScriptedScene implements Scene {
         }
     }
 
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
     @Override
     public Looker getLooker() {
         return looker.get();
@@ -160,14 +270,38 @@ class ScriptedScene implements Scene {
         return light;
     }
 
+    @Override
+    public Color getLightColor() {
+        return lightColor;
+    }
+
+    @Override
+    public int getPrimitiveCount() {
+        return primitives.size() + proxies.size();
+    }
+
+    @Override
+    public Primitive getPrimitive(final int id) {
+        if (!(0 <= id && id < getPrimitiveCount()))
+            throw new IllegalArgumentException("id is not the id of a primitive.");
+
+        return id < primitives.size() ? primitives.get(id) : proxies.get(id - primitives.size());
+    }
+
+    @Override
+    public MaterialTable getMaterialTable() {
+        return materialTable;
+    }
+
     @Override
     public Optional<Intersection> findIntersection(final Ray ray) {
         assert ray != null;
 
         final ArrayList<Intersection> intersections = new ArrayList<>();
-        for (final Primitive primitive : primitives) {
+        for (final Primitive primitive : unclusteredPrimitives) {
             intersections.addAll(primitive.intersections(ray));
         }
+        sphereClusters.ifPresent(root -> root.collectIntersections(ray, lodThreshold, intersections));
 
         if (intersections.isEmpty())
             return Optional.empty();
@@ -234,6 +368,20 @@ class ScriptedScene implements Scene {
             return new Point(nextDouble(), nextDouble(), nextDouble());
         }
 
+        /**
+         * Parses the next 3 parameters as a colour.
+         *
+         * @return A colour.
+         */
+        public Color nextColor() {
+            final double red = nextDouble();
+            final double green = nextDouble();
+            final double blue = nextDouble();
+            if (red < 0 || green < 0 || blue < 0)
+                throw new IllegalArgumentException("colour has a negative channel.");
+            return new Color(red, green, blue);
+        }
+
         /**
          * Parses the next 3 parameters as a vector.
          *
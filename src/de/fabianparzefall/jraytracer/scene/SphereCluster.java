@@ -0,0 +1,255 @@
+package de.fabianparzefall.jraytracer.scene;
+
+import de.fabianparzefall.jraytracer.common.Morton;
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.Sphere;
+import de.fabianparzefall.jraytracer.scene.primitive.Surface;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * A node in a hierarchy of bounding spheres around the spheres of a scene.
+ * <p>
+ * Rays, which miss the bounding sphere of a cluster, skip all spheres in it. Every cluster also has a proxy: a sphere
+ * as big as the bounding sphere with the averaged surface of all spheres in the cluster. If the footprint of a ray is
+ * big compared to the cluster, the ray only intersects the proxy, so distant detail costs a bounded amount per ray.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+class SphereCluster {
+    /**
+     * The maximum count of children or spheres in a cluster.
+     */
+    private static final int BRANCHING_FACTOR = 8;
+
+    /**
+     * The relative tolerance of the bounding sphere test.
+     */
+    private static final double TOLERANCE = 1E-9;
+
+    /**
+     * The center of the bounding sphere.
+     */
+    private final Point center;
+
+    /**
+     * The radius of the bounding sphere.
+     */
+    private final double radius;
+
+    /**
+     * The sphere, that replaces the cluster for wide rays.
+     */
+    private final Sphere proxy;
+
+    /**
+     * The child clusters. This is empty for leaves.
+     */
+    private final List<SphereCluster> children;
+
+    /**
+     * The spheres in a leaf. This is empty for inner clusters.
+     */
+    private final List<Sphere> spheres;
+
+    /**
+     * The count of spheres in the cluster and all its children.
+     */
+    private final int sphereCount;
+
+    /**
+     * Constructs a cluster.
+     *
+     * @param children The child clusters or an empty list.
+     * @param spheres  The spheres of a leaf or an empty list.
+     * @param proxyId  The id of the proxy sphere.
+     */
+    private SphereCluster(final List<SphereCluster> children, final List<Sphere> spheres, final int proxyId) {
+        assert children != null;
+        assert spheres != null;
+        assert children.isEmpty() != spheres.isEmpty();
+
+        this.children = children;
+        this.spheres = spheres;
+
+        // The center of the bounding box of the parts is a good center for the bounding sphere.
+        final double[] minimum = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        final double[] maximum = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        forEachPart((partCenter, partRadius) -> {
+            minimum[0] = Math.min(minimum[0], partCenter.getX() - partRadius);
+            minimum[1] = Math.min(minimum[1], partCenter.getY() - partRadius);
+            minimum[2] = Math.min(minimum[2], partCenter.getZ() - partRadius);
+            maximum[0] = Math.max(maximum[0], partCenter.getX() + partRadius);
+            maximum[1] = Math.max(maximum[1], partCenter.getY() + partRadius);
+            maximum[2] = Math.max(maximum[2], partCenter.getZ() + partRadius);
+        });
+        center = new Point((minimum[0] + maximum[0]) / 2, (minimum[1] + maximum[1]) / 2, (minimum[2] + maximum[2]) / 2);
+
+        final double[] boundingRadius = {0};
+        forEachPart((partCenter, partRadius) ->
+                boundingRadius[0] = Math.max(boundingRadius[0], center.vectorTo(partCenter).getLength() + partRadius));
+        radius = boundingRadius[0];
+
+        int count = spheres.size();
+        for (final SphereCluster child : children) {
+            count += child.sphereCount;
+        }
+        sphereCount = count;
+
+        proxy = new Sphere(proxyId, center, radius);
+        for (final Surface.Property property : Surface.Property.values()) {
+            proxy.getSurface().set(property, averageProperty(property));
+        }
+    }
+
+    /**
+     * Builds the hierarchy of clusters for a list of spheres.
+     *
+     * @param spheres The spheres, must not be empty.
+     * @param nextId  Supplies the ids for the proxies.
+     * @return The root cluster.
+     */
+    static SphereCluster build(final List<Sphere> spheres, final IntSupplier nextId) {
+        assert spheres != null && !spheres.isEmpty();
+        assert nextId != null;
+
+        // Sort the spheres along a Morton curve, so consecutive spheres are close to each other.
+        final double[] minimum = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        final double[] maximum = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (final Sphere sphere : spheres) {
+            final Point sphereCenter = sphere.getCenter();
+            minimum[0] = Math.min(minimum[0], sphereCenter.getX());
+            minimum[1] = Math.min(minimum[1], sphereCenter.getY());
+            minimum[2] = Math.min(minimum[2], sphereCenter.getZ());
+            maximum[0] = Math.max(maximum[0], sphereCenter.getX());
+            maximum[1] = Math.max(maximum[1], sphereCenter.getY());
+            maximum[2] = Math.max(maximum[2], sphereCenter.getZ());
+        }
+        final List<Sphere> sortedSpheres = new ArrayList<>(spheres);
+        sortedSpheres.sort(Comparator.comparingInt(sphere -> Morton.encode(
+                Morton.quantize(sphere.getCenter().getX(), minimum[0], maximum[0]),
+                Morton.quantize(sphere.getCenter().getY(), minimum[1], maximum[1]),
+                Morton.quantize(sphere.getCenter().getZ(), minimum[2], maximum[2]))));
+
+        List<SphereCluster> level = new ArrayList<>();
+        for (int index = 0; index < sortedSpheres.size(); index += BRANCHING_FACTOR) {
+            final List<Sphere> leafSpheres = sortedSpheres.subList(index, Math.min(index + BRANCHING_FACTOR, sortedSpheres.size()));
+            level.add(new SphereCluster(new ArrayList<>(0), new ArrayList<>(leafSpheres), nextId.getAsInt()));
+        }
+
+        // Group the clusters level by level until one root is left.
+        while (level.size() > 1) {
+            final List<SphereCluster> parents = new ArrayList<>();
+            for (int index = 0; index < level.size(); index += BRANCHING_FACTOR) {
+                final List<SphereCluster> group = level.subList(index, Math.min(index + BRANCHING_FACTOR, level.size()));
+                parents.add(new SphereCluster(new ArrayList<>(group), new ArrayList<>(0), nextId.getAsInt()));
+            }
+            level = parents;
+        }
+        return level.get(0);
+    }
+
+    /**
+     * Adds the proxies of this cluster and all children to a list.
+     *
+     * @param proxies The list.
+     */
+    void collectProxies(final List<Sphere> proxies) {
+        proxies.add(proxy);
+        children.forEach(child -> child.collectProxies(proxies));
+    }
+
+    /**
+     * Adds all intersections of a ray with the spheres in the cluster to a list.
+     *
+     * @param ray           The ray.
+     * @param lodThreshold  The factor, by which the footprint of the ray must be bigger than the diameter of the
+     *                      cluster, so that the proxy is used. 0 disables the proxies.
+     * @param intersections The list.
+     */
+    void collectIntersections(final Ray ray, final double lodThreshold, final List<Intersection> intersections) {
+        final Vector centerVector = ray.getStartPoint().vectorTo(center);
+        final double centerDistance = centerVector.dotProduct(ray.getDirection());
+        final double squaredRayDistance = centerVector.dotProduct(centerVector) - centerDistance * centerDistance;
+        final double tolerantRadius = radius * (1 + TOLERANCE) + TOLERANCE;
+
+        // The ray passes the bounding sphere or the bounding sphere is completely behind the start point.
+        if (squaredRayDistance > tolerantRadius * tolerantRadius
+                || centerDistance < 0 && centerVector.getLength() > tolerantRadius) {
+            return;
+        }
+
+        if (lodThreshold > 0 && 2 * radius < lodThreshold * ray.getFootprint(Math.max(centerDistance, 0))) {
+            intersections.addAll(proxy.intersections(ray));
+            return;
+        }
+
+        for (final Sphere sphere : spheres) {
+            intersections.addAll(sphere.intersections(ray));
+        }
+        for (final SphereCluster child : children) {
+            child.collectIntersections(ray, lodThreshold, intersections);
+        }
+    }
+
+    /**
+     * Calculates the average of a property over all spheres in the cluster.
+     *
+     * @param property The property.
+     * @return The average value.
+     */
+    private double averageProperty(final Surface.Property property) {
+        double sum = 0;
+        double minimum = Double.MAX_VALUE;
+        double maximum = -Double.MAX_VALUE;
+        for (final Sphere sphere : spheres) {
+            final double value = sphere.getSurface().get(property);
+            sum += value;
+            minimum = Math.min(minimum, value);
+            maximum = Math.max(maximum, value);
+        }
+        for (final SphereCluster child : children) {
+            final double value = child.proxy.getSurface().get(property);
+            sum += value * child.sphereCount;
+            minimum = Math.min(minimum, value);
+            maximum = Math.max(maximum, value);
+        }
+        // Rounding errors mustn't push the average out of the range of the values.
+        return Math.max(minimum, Math.min(maximum, sum / sphereCount));
+    }
+
+    /**
+     * Calls an action for the bounding sphere of every part of the cluster.
+     *
+     * @param action The action, which gets center and radius of the part.
+     */
+    private void forEachPart(final PartAction action) {
+        for (final Sphere sphere : spheres) {
+            action.accept(sphere.getCenter(), sphere.getRadius());
+        }
+        for (final SphereCluster child : children) {
+            action.accept(child.center, child.radius);
+        }
+    }
+
+    /**
+     * An action on the bounding sphere of a part of a cluster.
+     */
+    @FunctionalInterface
+    private interface PartAction {
+        /**
+         * Performs the action.
+         *
+         * @param partCenter The center of the part.
+         * @param partRadius The radius of the part.
+         */
+        void accept(Point partCenter, double partRadius);
+    }
+}
@@ -0,0 +1,182 @@
+package de.fabianparzefall.jraytracer.scene.primitive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table with the frozen surfaces of a scene.
+ * <p>
+ * Surfaces with identical values share one material. The values of all materials are stored in one flat array, so a
+ * lookup is a plain array access without boxing.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public final class MaterialTable {
+    /**
+     * The count of values stored for every material.
+     */
+    private static final int STRIDE = Surface.Property.values().length;
+
+    /**
+     * Marks a specular exponent, which isn't a small integer and therefor has no fast path.
+     */
+    private static final int NO_INTEGER_EXPONENT = -1;
+
+    /**
+     * The values of all materials. The values of a material are stored consecutively in the order of the properties.
+     */
+    private final double[] values;
+
+    /**
+     * The specular exponent of every material as integer or {@link #NO_INTEGER_EXPONENT}.
+     */
+    private final int[] integerSpecularExponents;
+
+    /**
+     * Constructs the table from the values of the materials.
+     *
+     * @param values The values of all materials.
+     */
+    private MaterialTable(final double[] values) {
+        assert values != null;
+        assert values.length % STRIDE == 0;
+
+        this.values = values;
+
+        integerSpecularExponents = new int[values.length / STRIDE];
+        for (int materialId = 0; materialId < integerSpecularExponents.length; materialId++) {
+            final double exponent = get(materialId, Surface.Property.SpecularExponent);
+            integerSpecularExponents[materialId] = exponent == Math.rint(exponent) ? (int) exponent : NO_INTEGER_EXPONENT;
+        }
+    }
+
+    /**
+     * Freezes a list of surfaces into a table. Every surface gets the id of its material and can't be changed anymore.
+     *
+     * @param surfaces The surfaces to freeze.
+     * @return The table with the deduplicated materials.
+     */
+    public static MaterialTable compile(final List<Surface> surfaces) {
+        assert surfaces != null;
+
+        final Map<List<Double>, Integer> materialIds = new HashMap<>();
+        final List<double[]> materials = new ArrayList<>();
+        final int[] surfaceMaterialIds = new int[surfaces.size()];
+
+        for (int index = 0; index < surfaces.size(); index++) {
+            final double[] material = surfaces.get(index).getValues();
+            final List<Double> key = new ArrayList<>(STRIDE);
+            for (final double value : material) {
+                key.add(value);
+            }
+
+            Integer materialId = materialIds.get(key);
+            if (materialId == null) {
+                materialId = materials.size();
+                materialIds.put(key, materialId);
+                materials.add(material);
+            }
+            surfaceMaterialIds[index] = materialId;
+        }
+
+        final double[] values = new double[materials.size() * STRIDE];
+        for (int materialId = 0; materialId < materials.size(); materialId++) {
+            System.arraycopy(materials.get(materialId), 0, values, materialId * STRIDE, STRIDE);
+        }
+
+        final MaterialTable table = new MaterialTable(values);
+        for (int index = 0; index < surfaces.size(); index++) {
+            surfaces.get(index).freeze(table, surfaceMaterialIds[index]);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the count of distinct materials.
+     *
+     * @return The count of materials.
+     */
+    public int size() {
+        return integerSpecularExponents.length;
+    }
+
+    /**
+     * Gets a property of a material.
+     *
+     * @param materialId The id of the material.
+     * @param property   The property.
+     * @return The value of the property.
+     */
+    public double get(final int materialId, final Surface.Property property) {
+        assert property != null;
+
+        return values[materialId * STRIDE + property.ordinal()];
+    }
+
+    public double getAmbientRatio(final int materialId) {
+        return values[materialId * STRIDE + Surface.Property.AmbientRatio.ordinal()];
+    }
+
+    public double getDiffuseRatio(final int materialId) {
+        return values[materialId * STRIDE + Surface.Property.DiffuseRatio.ordinal()];
+    }
+
+    public double getSpecularRatio(final int materialId) {
+        return values[materialId * STRIDE + Surface.Property.SpecularRatio.ordinal()];
+    }
+
+    public double getReflexionRatio(final int materialId) {
+        return values[materialId * STRIDE + Surface.Property.ReflexionRatio.ordinal()];
+    }
+
+    public double getRed(final int materialId) {
+        return values[materialId * STRIDE + Surface.Property.Red.ordinal()];
+    }
+
+    public double getGreen(final int materialId) {
+        return values[materialId * STRIDE + Surface.Property.Green.ordinal()];
+    }
+
+    public double getBlue(final int materialId) {
+        return values[materialId * STRIDE + Surface.Property.Blue.ordinal()];
+    }
+
+    /**
+     * Calculates the specular highlight of a material.
+     * <p>
+     * Integer exponents, which are the common case, are calculated by repeated squaring instead of {@link Math#pow}.
+     *
+     * @param materialId The id of the material.
+     * @param cosine     The cosine between the mirrored view vector and the light vector. Must be positive.
+     * @return The specular ratio multiplied with the cosine to the power of the specular exponent.
+     */
+    public double calculateSpecular(final int materialId, final double cosine) {
+        assert cosine >= 0;
+
+        final int integerExponent = integerSpecularExponents[materialId];
+        final double power;
+        if (integerExponent == NO_INTEGER_EXPONENT) {
+            power = Math.pow(cosine, get(materialId, Surface.Property.SpecularExponent));
+        } else {
+            double result = 1;
+            double base = cosine;
+            for (int exponent = integerExponent; exponent != 0; exponent >>= 1) {
+                if ((exponent & 1) != 0) {
+                    result *= base;
+                }
+                base *= base;
+            }
+            power = result;
+        }
+        return getSpecularRatio(materialId) * power;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MaterialTable{size=%d, values=%s}", size(), Arrays.toString(values));
+    }
+}
@@ -13,9 +13,14 @@ import java.util.List;
  * normal to the plane.
  *
  * @author Fabian Parzefall
- * @version 15-05-25
+ * @version 26-10-19
  */
 public class Plane implements Primitive {
+    /**
+     * The id of the plane.
+     */
+    private final int id;
+
     /**
      * An vector to an arbitrary point in the plane.
      */
@@ -39,15 +44,17 @@ public class Plane implements Primitive {
     /**
      * Constructs the plane.
      *
+     * @param id           The id of the plane.
      * @param point        An arbitrary point in the plane.
      * @param normalVector A normalized vector normal to the plane. It must not equals the null vector.
      */
-    public Plane(final Point point, final Vector normalVector) {
+    public Plane(final int id, final Point point, final Vector normalVector) {
         assert point != null;
         assert normalVector != null;
         if (normalVector.equals(Vector.NULL_VECTOR))
             throw new IllegalArgumentException("normalVector is the null vector.");
 
+        this.id = id;
         this.startVector = Point.ORIGIN.vectorTo(point);
         this.normalVector = normalVector.normalize();
 
@@ -88,6 +95,16 @@ public class Plane implements Primitive {
         return intersections;
     }
 
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public double getCurvature() {
+        return 0;
+    }
+
     @Override
     public Vector getNormal(final Point point) {
         // Even it doesn't make any difference for the method, this point shouldn't be null, because it makes no sense.
@@ -96,6 +113,14 @@ public class Plane implements Primitive {
         return normalVector;
     }
 
+    @Override
+    public Point project(final Point point) {
+        assert point != null;
+
+        final double planeDistance = normalVector.dotProduct(Point.ORIGIN.vectorTo(point)) + originDistance;
+        return point.add(normalVector.scalarProduct(-planeDistance));
+    }
+
     public Surface getSurface() {
         return surface;
     }
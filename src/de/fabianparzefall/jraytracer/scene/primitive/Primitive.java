@@ -10,9 +10,16 @@ import java.util.List;
  * A primitive is generic object in the scene.
  *
  * @author Fabian Parzefall
- * @version 15-05-06
+ * @version 26-10-19
  */
 public interface Primitive {
+    /**
+     * Gets the id of the primitive. The ids of the primitives in a scene are distinct.
+     *
+     * @return The id.
+     */
+    int getId();
+
     /**
      * Gets the normal on the surface at the given point.
      *
@@ -21,6 +28,21 @@ public interface Primitive {
      */
     Vector getNormal(Point point);
 
+    /**
+     * Projects a point onto the surface of the primitive.
+     *
+     * @param point The point.
+     * @return The nearest point on the surface.
+     */
+    Point project(Point point);
+
+    /**
+     * Gets the curvature of the surface, which widens reflected rays.
+     *
+     * @return The reciprocal of the radius of curvature or 0 for flat surfaces.
+     */
+    double getCurvature();
+
     /**
      * Gets the surface of the primitive.
      *
@@ -11,9 +11,14 @@ import java.util.List;
  * Class representing a sphere in 3 dimensional space.
  *
  * @author Fabian Parzefall
- * @version 15-05-25
+ * @version 26-10-19
  */
 public class Sphere implements Primitive {
+    /**
+     * The id of the sphere.
+     */
+    private final int id;
+
     /**
      * The center of the sphere.
      */
@@ -32,14 +37,16 @@ public class Sphere implements Primitive {
     /**
      * Constructs a sphere from a center point and the radius.
      *
+     * @param id     The id of the sphere.
      * @param center Center of the sphere.
      * @param radius Radius of the sphere.
      */
-    public Sphere(final Point center, final double radius) {
+    public Sphere(final int id, final Point center, final double radius) {
         assert center != null;
         if (radius <= 0)
             throw new IllegalArgumentException("radius is less or equal 0.");
 
+        this.id = id;
         this.center = center;
         this.radius = radius;
     }
@@ -111,6 +118,24 @@ public class Sphere implements Primitive {
         return intersections;
     }
 
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    public Point getCenter() {
+        return center;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    @Override
+    public double getCurvature() {
+        return 1 / radius;
+    }
+
     @Override
     public Vector getNormal(final Point point) {
         assert point != null;
@@ -118,6 +143,18 @@ public class Sphere implements Primitive {
         return center.vectorTo(point);
     }
 
+    @Override
+    public Point project(final Point point) {
+        assert point != null;
+
+        final Vector centerVector = center.vectorTo(point);
+        // The center has the same distance to every point on the surface.
+        if (centerVector.equals(Vector.NULL_VECTOR)) {
+            return center.add(Vector.X_VECTOR.scale(radius));
+        }
+        return center.add(centerVector.scale(radius));
+    }
+
     public Surface getSurface() {
         return surface;
     }
@@ -1,19 +1,37 @@
 package de.fabianparzefall.jraytracer.scene.primitive;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
  * The surface of a primitive.
+ * <p>
+ * While the scene is built, the properties are stored in a map. Afterwards the surface gets frozen into a
+ * {@link MaterialTable} and only keeps the id of its material.
  *
  * @author Fabian Parzefall
- * @version 15-03-06
+ * @version 26-10-19
  */
 public class Surface {
     /**
-     * This map contains the properties and values.
+     * The id of a surface, which isn't frozen yet.
      */
-    private final Map<Property, Double> propertyDoubleMap = new HashMap<>();
+    private static final int NO_MATERIAL = -1;
+
+    /**
+     * This map contains the properties and values. It is dropped, when the surface gets frozen.
+     */
+    private Map<Property, Double> propertyDoubleMap = new EnumMap<>(Property.class);
+
+    /**
+     * The table with the material of the surface, if it is frozen.
+     */
+    private MaterialTable materialTable;
+
+    /**
+     * The id of the material in the table.
+     */
+    private int materialId = NO_MATERIAL;
 
     /**
      * Get a property.
@@ -24,7 +42,9 @@ public class Surface {
     public double get(final Property property) {
         assert property != null;
 
-        if (propertyDoubleMap.containsKey(property)) {
+        if (isFrozen()) {
+            return materialTable.get(materialId, property);
+        } else if (propertyDoubleMap.containsKey(property)) {
             return propertyDoubleMap.get(property);
         } else {
             return property.getDefaultValue();
@@ -42,12 +62,67 @@ public class Surface {
         if (!property.isValidValue(newValue))
             throw new IllegalArgumentException(String.format("newValue is not between %f and %f.", property.minValue, property.maxValue));
 
+        if (isFrozen())
+            throw new IllegalStateException("Surface is already frozen.");
         if (propertyDoubleMap.containsKey(property))
             throw new IllegalStateException(String.format("Key \"%s\" is already set.", property));
 
         propertyDoubleMap.put(property, newValue);
     }
 
+    /**
+     * Checks, if the surface is frozen into a material table.
+     *
+     * @return True, if the surface can't be changed anymore.
+     */
+    public boolean isFrozen() {
+        return materialTable != null;
+    }
+
+    /**
+     * Gets the id of the material in the table, the surface is frozen into.
+     *
+     * @return The id of the material.
+     */
+    public int getMaterialId() {
+        if (!isFrozen())
+            throw new IllegalStateException("Surface is not frozen.");
+
+        return materialId;
+    }
+
+    /**
+     * Gets the values of all properties in the order of the properties.
+     *
+     * @return An array with a value for every property.
+     */
+    double[] getValues() {
+        final Property[] properties = Property.values();
+        final double[] values = new double[properties.length];
+        for (final Property property : properties) {
+            values[property.ordinal()] = get(property);
+        }
+        return values;
+    }
+
+    /**
+     * Freezes the surface into a material table.
+     *
+     * @param table The table with the material.
+     * @param id    The id of the material in the table.
+     */
+    void freeze(final MaterialTable table, final int id) {
+        assert table != null;
+        assert 0 <= id && id < table.size();
+        if (isFrozen())
+            throw new IllegalStateException("Surface is already frozen.");
+
+        materialTable = table;
+        materialId = id;
+        // The values are in the table now.
+        propertyDoubleMap = null;
+    }
+
     /**
      * An enum with the possible properties of the surface.
      */
@@ -74,7 +149,22 @@ public class Surface {
         /**
          * The ratio of a reflexion.
          */
-        ReflexionRatio(0, 1, 0);
+        ReflexionRatio(0, 1, 0),
+
+        /**
+         * The red channel of the colour of the surface.
+         */
+        Red(0, 1, 1),
+
+        /**
+         * The green channel of the colour of the surface.
+         */
+        Green(0, 1, 1),
+
+        /**
+         * The blue channel of the colour of the surface.
+         */
+        Blue(0, 1, 1);
 
         /**
          * The default value of a property.
@@ -2,7 +2,6 @@ package de.fabianparzefall.jraytracer.tracer;
 
 import de.fabianparzefall.jraytracer.scene.Scene;
 import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
-import de.fabianparzefall.jraytracer.scene.primitive.Surface;
 
 import java.util.Optional;
 
@@ -10,7 +9,7 @@ import java.util.Optional;
  * Calculates ambient light.
  *
  * @author Fabian Parzefall
- * @version 15-05-25
+ * @version 26-10-19
  */
 public class Ambient implements LightModel {
     @Override
@@ -19,7 +18,7 @@ public class Ambient implements LightModel {
         assert intersection != null;
 
         return intersection
-                .map(intersectionValue -> intersectionValue.getIntersectedPrimitive().getSurface().get(Surface.Property.AmbientRatio))
+                .map(intersectionValue -> scene.getMaterialTable().getAmbientRatio(intersectionValue.getIntersectedPrimitive().getSurface().getMaterialId()))
                 .orElse(0D);
     }
 }
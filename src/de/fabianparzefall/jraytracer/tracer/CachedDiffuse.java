@@ -0,0 +1,39 @@
+package de.fabianparzefall.jraytracer.tracer;
+
+import de.fabianparzefall.jraytracer.scene.Scene;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+
+import java.util.Optional;
+
+/**
+ * Calculates shadowed diffuse light from an irradiance cache.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class CachedDiffuse implements LightModel {
+    /**
+     * The cache with the diffuse light of the scene.
+     */
+    private final IrradianceCache irradianceCache;
+
+    /**
+     * Constructs the CachedDiffuse model.
+     *
+     * @param irradianceCache The cache with the diffuse light of the scene.
+     */
+    public CachedDiffuse(final IrradianceCache irradianceCache) {
+        assert irradianceCache != null;
+
+        this.irradianceCache = irradianceCache;
+    }
+
+    @Override
+    public double calculate(final Scene scene, final Optional<Intersection> optionalIntersection) {
+        assert scene != null;
+        assert optionalIntersection != null;
+        assert scene == irradianceCache.getScene();
+
+        return optionalIntersection.map(irradianceCache::calculate).orElse(0D);
+    }
+}
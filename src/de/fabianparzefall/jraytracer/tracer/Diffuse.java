@@ -5,7 +5,6 @@ import de.fabianparzefall.jraytracer.geometry.Vector;
 import de.fabianparzefall.jraytracer.scene.Scene;
 import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
 import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
-import de.fabianparzefall.jraytracer.scene.primitive.Surface;
 
 import java.util.Optional;
 
@@ -13,7 +12,7 @@ import java.util.Optional;
  * Calculates diffuse light.
  *
  * @author Fabian Parzefall
- * @version 15-06-15
+ * @version 26-10-19
  */
 public class Diffuse implements LightModel {
     /**
@@ -41,7 +40,7 @@ public class Diffuse implements LightModel {
 
         final Intersection primaryIntersection = optionalIntersection.get();
         final Primitive intersectedPrimitive = primaryIntersection.getIntersectedPrimitive();
-        final double diffuseRatio = intersectedPrimitive.getSurface().get(Surface.Property.DiffuseRatio);
+        final double diffuseRatio = scene.getMaterialTable().getDiffuseRatio(intersectedPrimitive.getSurface().getMaterialId());
 
         if (diffuseRatio == 0) {
             return 0;
@@ -0,0 +1,357 @@
+package de.fabianparzefall.jraytracer.tracer;
+
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.Scene;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the shadowed diffuse light of a static scene in world space.
+ * <p>
+ * The diffuse light and the shadows don't depend on the camera. This cache samples them on the corners of a regular
+ * grid, separately for every primitive, and interpolates trilinearly between the samples. The samples are calculated
+ * lazily, when they are needed first. The cache is thread safe and can be shared by all raytracers, which render the
+ * same scene, even if they use different lookers.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class IrradianceCache {
+    /**
+     * The count of bits used for one grid coordinate in a sample key.
+     */
+    private static final int COORDINATE_BITS = 21;
+
+    /**
+     * The mask of a grid coordinate in a sample key.
+     */
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    /**
+     * The biggest grid coordinate, that fits into a sample key.
+     */
+    private static final long MAX_COORDINATE = COORDINATE_MASK >> 1;
+
+    /**
+     * The scene, whose light is cached.
+     */
+    private final Scene scene;
+
+    /**
+     * The edge length of a grid cell.
+     */
+    private final double cellSize;
+
+    /**
+     * The samples of every primitive, indexed by the id of the primitive.
+     */
+    private final AtomicReferenceArray<SampleTable> samples;
+
+    /**
+     * The count of calculated samples.
+     */
+    private final LongAdder sampleCount = new LongAdder();
+
+    /**
+     * The count of lookups.
+     */
+    private final LongAdder lookupCount = new LongAdder();
+
+    /**
+     * Constructs the cache for a scene.
+     *
+     * @param scene    The scene. Its light and primitives must not change.
+     * @param cellSize The edge length of a grid cell. Smaller cells give sharper shadows but need more samples.
+     */
+    public IrradianceCache(final Scene scene, final double cellSize) {
+        assert scene != null;
+        if (cellSize <= 0)
+            throw new IllegalArgumentException("cellSize is less or equal 0.");
+
+        this.scene = scene;
+        this.cellSize = cellSize;
+        samples = new AtomicReferenceArray<>(scene.getPrimitiveCount());
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public long getSampleCount() {
+        return sampleCount.sum();
+    }
+
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Calculates the shadowed diffuse light at an intersection by interpolating the cached samples.
+     *
+     * @param intersection The intersection.
+     * @return The brightness of the diffuse light.
+     */
+    public double calculate(final Intersection intersection) {
+        assert intersection != null;
+
+        lookupCount.increment();
+
+        final Primitive primitive = intersection.getIntersectedPrimitive();
+        final Vector position = Point.ORIGIN.vectorTo(intersection.getIntersectionPoint()).scalarProduct(1 / cellSize);
+
+        final long cellX = (long) Math.floor(position.getX());
+        final long cellY = (long) Math.floor(position.getY());
+        final long cellZ = (long) Math.floor(position.getZ());
+
+        // The grid doesn't reach that far, so there is nothing to interpolate.
+        if (Math.max(Math.max(Math.abs(cellX), Math.abs(cellY)), Math.abs(cellZ)) >= MAX_COORDINATE) {
+            return calculateSample(primitive, intersection.getIntersectionPoint());
+        }
+
+        final double fractionX = position.getX() - cellX;
+        final double fractionY = position.getY() - cellY;
+        final double fractionZ = position.getZ() - cellZ;
+
+        double brightness = 0;
+        for (int corner = 0; corner < 8; corner++) {
+            final int offsetX = corner & 1;
+            final int offsetY = corner >> 1 & 1;
+            final int offsetZ = corner >> 2 & 1;
+
+            final double weight = (offsetX == 0 ? 1 - fractionX : fractionX)
+                    * (offsetY == 0 ? 1 - fractionY : fractionY)
+                    * (offsetZ == 0 ? 1 - fractionZ : fractionZ);
+            if (weight > 0) {
+                brightness += weight * getSample(primitive, cellX + offsetX, cellY + offsetY, cellZ + offsetZ);
+            }
+        }
+        return brightness;
+    }
+
+    /**
+     * Gets the sample of a primitive at a corner of the grid. The sample is calculated, if it isn't cached yet.
+     *
+     * @param primitive The primitive.
+     * @param cornerX   The x coordinate of the corner in the grid.
+     * @param cornerY   The y coordinate of the corner in the grid.
+     * @param cornerZ   The z coordinate of the corner in the grid.
+     * @return The brightness of the diffuse light.
+     */
+    private double getSample(final Primitive primitive, final long cornerX, final long cornerY, final long cornerZ) {
+        SampleTable primitiveSamples = samples.get(primitive.getId());
+        if (primitiveSamples == null) {
+            samples.compareAndSet(primitive.getId(), null, new SampleTable());
+            primitiveSamples = samples.get(primitive.getId());
+        }
+
+        final long key = (cornerX & COORDINATE_MASK) << 2 * COORDINATE_BITS
+                | (cornerY & COORDINATE_MASK) << COORDINATE_BITS
+                | cornerZ & COORDINATE_MASK;
+
+        final double cachedSample = primitiveSamples.get(key);
+        if (!Double.isNaN(cachedSample)) {
+            return cachedSample;
+        }
+
+        // Two threads may calculate the same sample, but they both get the same value anyway.
+        final Point corner = new Point(cornerX * cellSize, cornerY * cellSize, cornerZ * cellSize);
+        final double sample = calculateSample(primitive, primitive.project(corner));
+        if (primitiveSamples.putIfAbsent(key, sample)) {
+            sampleCount.increment();
+        }
+        return sample;
+    }
+
+    /**
+     * Calculates the shadowed diffuse light at a point on the surface of a primitive.
+     *
+     * @param primitive The primitive.
+     * @param point     A point on the surface of the primitive.
+     * @return The brightness of the diffuse light.
+     */
+    private double calculateSample(final Primitive primitive, final Point point) {
+        if (!scene.getLight().isPresent()) {
+            return 0;
+        }
+
+        final double diffuseRatio = scene.getMaterialTable().getDiffuseRatio(primitive.getSurface().getMaterialId());
+        if (diffuseRatio == 0) {
+            return 0;
+        }
+
+        final Vector lightVector = point.vectorTo(scene.getLight().get());
+        final double cosine = primitive.getNormal(point).normalize().dotProduct(lightVector.normalize());
+        if (cosine <= 0) {
+            return 0;
+        }
+
+        final Ray lightRay = new Ray(point, lightVector);
+        final Optional<Intersection> occluder = scene.findIntersection(lightRay);
+        if (occluder.isPresent() && occluder.get().getDistance() < lightVector.getLength()) {
+            return 0;
+        }
+
+        return diffuseRatio * cosine;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IrradianceCache{cellSize=%s, sampleCount=%d, lookupCount=%d}", cellSize, getSampleCount(), getLookupCount());
+    }
+
+    /**
+     * The samples of one primitive in an open addressing table with primitive keys and values.
+     * <p>
+     * Lookups don't lock. Inserts lock the table and write the value before the key, so a reader, that finds a key,
+     * also finds its value. A full table is copied into a bigger one, which replaces it at once.
+     */
+    private static final class SampleTable {
+        /**
+         * The key of an empty slot. Sample keys have 3 * {@link IrradianceCache#COORDINATE_BITS} bits, so they are
+         * never negative.
+         */
+        private static final long EMPTY = -1;
+
+        /**
+         * The count of slots of a new table, which must be a power of two.
+         */
+        private static final int INITIAL_CAPACITY = 16;
+
+        /**
+         * The multiplier, which spreads the keys over the slots.
+         */
+        private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+        /**
+         * The keys and values of the current slots.
+         */
+        private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+
+        /**
+         * The count of stored samples.
+         */
+        private int size;
+
+        /**
+         * Gets a sample.
+         *
+         * @param key The key of the corner.
+         * @return The sample or NaN, if it isn't stored.
+         */
+        double get(final long key) {
+            final Slots currentSlots = slots;
+            for (int slot = currentSlots.getFirstSlot(key); ; slot = currentSlots.getNextSlot(slot)) {
+                final long slotKey = currentSlots.keys.get(slot);
+                if (slotKey == key)
+                    return Double.longBitsToDouble(currentSlots.values.get(slot));
+                if (slotKey == EMPTY)
+                    return Double.NaN;
+            }
+        }
+
+        /**
+         * Stores a sample, if there is none for its key yet.
+         *
+         * @param key    The key of the corner.
+         * @param sample The sample, which isn't NaN.
+         * @return True, if the sample was stored.
+         */
+        synchronized boolean putIfAbsent(final long key, final double sample) {
+            assert key >= 0;
+            assert !Double.isNaN(sample);
+
+            if (!Double.isNaN(get(key)))
+                return false;
+
+            // The table is kept at most half full, so the probes stay short.
+            if (2 * (size + 1) > slots.keys.length()) {
+                final Slots biggerSlots = new Slots(2 * slots.keys.length());
+                for (int slot = 0; slot < slots.keys.length(); slot++) {
+                    final long slotKey = slots.keys.get(slot);
+                    if (slotKey != EMPTY) {
+                        biggerSlots.insert(slotKey, slots.values.get(slot));
+                    }
+                }
+                slots = biggerSlots;
+            }
+
+            slots.insert(key, Double.doubleToRawLongBits(sample));
+            size++;
+            return true;
+        }
+
+        /**
+         * The arrays of a table with a fixed count of slots.
+         */
+        private static final class Slots {
+            /**
+             * The keys or {@link SampleTable#EMPTY}.
+             */
+            private final AtomicLongArray keys;
+
+            /**
+             * The bits of the samples.
+             */
+            private final AtomicLongArray values;
+
+            /**
+             * Constructs empty slots.
+             *
+             * @param capacity The count of slots, which must be a power of two.
+             */
+            Slots(final int capacity) {
+                keys = new AtomicLongArray(capacity);
+                values = new AtomicLongArray(capacity);
+                for (int slot = 0; slot < capacity; slot++) {
+                    keys.set(slot, EMPTY);
+                }
+            }
+
+            /**
+             * Gets the slot, at which the search for a key starts.
+             *
+             * @param key The key.
+             * @return The index of the slot.
+             */
+            int getFirstSlot(final long key) {
+                return (int) (key * HASH_MULTIPLIER >>> Long.SIZE - Integer.numberOfTrailingZeros(keys.length()));
+            }
+
+            /**
+             * Gets the slot after a slot.
+             *
+             * @param slot The index of the slot.
+             * @return The index of the next slot, which wraps around at the end.
+             */
+            int getNextSlot(final int slot) {
+                return slot + 1 & keys.length() - 1;
+            }
+
+            /**
+             * Inserts a key, which isn't stored yet, into a free slot. The value is written before the key.
+             *
+             * @param key   The key.
+             * @param value The bits of the sample.
+             */
+            void insert(final long key, final long value) {
+                int slot = getFirstSlot(key);
+                while (keys.get(slot) != EMPTY) {
+                    slot = getNextSlot(slot);
+                }
+                values.set(slot, value);
+                keys.set(slot, key);
+            }
+        }
+    }
+}
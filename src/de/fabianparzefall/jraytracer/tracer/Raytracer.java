@@ -1,19 +1,24 @@
 package de.fabianparzefall.jraytracer.tracer;
 
 import de.fabianparzefall.jraytracer.common.BooleanPromise;
+import de.fabianparzefall.jraytracer.common.Color;
 import de.fabianparzefall.jraytracer.geometry.Ray;
 import de.fabianparzefall.jraytracer.scene.Looker;
 import de.fabianparzefall.jraytracer.scene.Scene;
 import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.MaterialTable;
 
+import java.util.Arrays;
 import java.util.Optional;
-import java.util.stream.Stream;
 
 /**
  * The raytracer traces rays through a given scene.
+ * <p>
+ * The light models calculate the intensity of their light once per intersection. The raytracer colours these
+ * intensities with the colours of the surface and the light, so colour costs only a few multiplications per ray.
  *
  * @author Fabian Parzefall
- * @version 15-06-15
+ * @version 26-10-19
  */
 public class Raytracer {
     /**
@@ -26,16 +31,123 @@ public class Raytracer {
      */
     private final Looker looker;
 
+    /**
+     * The cache with the last occluders of the shadow rays.
+     */
+    private final ShadowCache shadowCache = new ShadowCache();
+
+    /**
+     * The optional cache for the diffuse light.
+     */
+    private final Optional<IrradianceCache> irradianceCache;
+
+    /**
+     * The count of reflexions, after which no further mirrored rays are traced.
+     */
+    private final int maximumReflexionDepth;
+
     /**
      * Initializes the raytracer with a scene.
      *
      * @param scene The scene.
      */
     public Raytracer(final Scene scene) {
+        this(scene, scene.getLooker());
+    }
+
+    /**
+     * Initializes the raytracer with a scene, which is seen through another looker.
+     *
+     * @param scene  The scene.
+     * @param looker The looker, that is used instead of the looker of the scene.
+     */
+    public Raytracer(final Scene scene, final Looker looker) {
+        this(scene, looker, Optional.empty());
+    }
+
+    /**
+     * Initializes the raytracer with a scene, which is seen through another looker, and a cache for the diffuse light.
+     * The cache can be shared with other raytracers of the same scene.
+     *
+     * @param scene           The scene.
+     * @param looker          The looker, that is used instead of the looker of the scene.
+     * @param irradianceCache The cache for the diffuse light of the scene.
+     */
+    public Raytracer(final Scene scene, final Looker looker, final IrradianceCache irradianceCache) {
+        this(scene, looker, Optional.of(irradianceCache));
+    }
+
+    /**
+     * Initializes the raytracer.
+     *
+     * @param scene           The scene.
+     * @param looker          The looker.
+     * @param irradianceCache The optional cache for the diffuse light of the scene.
+     */
+    private Raytracer(final Scene scene, final Looker looker, final Optional<IrradianceCache> irradianceCache) {
+        this(scene, looker, irradianceCache, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Initializes the raytracer with a limit for the reflexions.
+     *
+     * @param scene                 The scene.
+     * @param looker                The looker.
+     * @param irradianceCache       The optional cache for the diffuse light of the scene.
+     * @param maximumReflexionDepth The count of reflexions, after which no further mirrored rays are traced.
+     */
+    private Raytracer(final Scene scene, final Looker looker, final Optional<IrradianceCache> irradianceCache,
+                      final int maximumReflexionDepth) {
         assert scene != null;
+        assert looker != null;
+        assert irradianceCache != null;
+        if (irradianceCache.isPresent() && irradianceCache.get().getScene() != scene)
+            throw new IllegalArgumentException("irradianceCache belongs to another scene.");
+        if (maximumReflexionDepth < 0)
+            throw new IllegalArgumentException("maximumReflexionDepth is negative.");
 
         this.scene = scene;
-        looker = scene.getLooker();
+        this.looker = looker;
+        this.irradianceCache = irradianceCache;
+        this.maximumReflexionDepth = maximumReflexionDepth;
+    }
+
+    /**
+     * Creates a raytracer for the same scene, looker and cache, that traces at most a count of reflexions. Images with
+     * fewer reflexions are cheaper, but mirrors show their surroundings less often.
+     *
+     * @param maximumReflexionDepth The count of reflexions, must be positive or 0. With 0, nothing is reflected.
+     * @return The new raytracer.
+     */
+    public Raytracer withMaximumReflexionDepth(final int maximumReflexionDepth) {
+        return new Raytracer(scene, looker, irradianceCache, maximumReflexionDepth);
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    public Looker getLooker() {
+        return looker;
+    }
+
+    public ShadowCache getShadowCache() {
+        return shadowCache;
+    }
+
+    public int getMaximumReflexionDepth() {
+        return maximumReflexionDepth;
+    }
+
+    /**
+     * Gets a fingerprint of everything, that changes the images of the raytracer.
+     *
+     * @return A string with the fingerprint of the scene, the looker and the cache settings.
+     */
+    public String getFingerprint() {
+        return String.format("scene=%s, looker=%s, irradianceCellSize=%s, maximumReflexionDepth=%d",
+                scene.getFingerprint(), looker, irradianceCache.map(cache -> Double.toString(cache.getCellSize())).orElse("none"),
+                maximumReflexionDepth);
     }
 
     /**
@@ -43,41 +155,207 @@ public class Raytracer {
      *
      * @param horizontal The horizontal viewport coordinate.
      * @param vertical   The vertical viewport coordinate.
-     * @return The brightness at the given coordinates.
+     * @return The colour at the given coordinates.
+     */
+    public Color tracePrimary(final double horizontal, final double vertical) {
+        return tracePrimary(horizontal, vertical, 0);
+    }
+
+    /**
+     * Traces a ray, that represents a pixel, with the given viewport coordinates.
+     *
+     * @param horizontal The horizontal viewport coordinate.
+     * @param vertical   The vertical viewport coordinate.
+     * @param pixelSize  The size of the pixel in viewport coordinates.
+     * @return The colour at the given coordinates.
      */
-    public double tracePrimary(final double horizontal, final double vertical) {
+    public Color tracePrimary(final double horizontal, final double vertical, final double pixelSize) {
+        return traceRay(getPrimaryRay(horizontal, vertical, pixelSize));
+    }
+
+    /**
+     * Calculates the primary ray with the given viewport coordinates.
+     *
+     * @param horizontal The horizontal viewport coordinate.
+     * @param vertical   The vertical viewport coordinate.
+     * @return The primary ray.
+     */
+    public Ray getPrimaryRay(final double horizontal, final double vertical) {
+        return getPrimaryRay(horizontal, vertical, 0);
+    }
+
+    /**
+     * Calculates the primary ray, that represents a pixel, with the given viewport coordinates.
+     *
+     * @param horizontal The horizontal viewport coordinate.
+     * @param vertical   The vertical viewport coordinate.
+     * @param pixelSize  The size of the pixel in viewport coordinates.
+     * @return The primary ray.
+     */
+    public Ray getPrimaryRay(final double horizontal, final double vertical, final double pixelSize) {
         if (Math.abs(horizontal) > 1)
             throw new IllegalArgumentException("horizontal must be within -1 and 1");
         if (Math.abs(vertical) > 1)
             throw new IllegalArgumentException("vertical must be within -1 and 1");
 
-        final Ray primaryRay = looker.getPrimaryRay(horizontal, vertical);
-        return traceRay(primaryRay);
+        return looker.getPrimaryRay(horizontal, vertical, pixelSize);
     }
 
     /**
      * Traces a ray through the scene.
      *
      * @param ray The ray.
-     * @return A brightness value.
+     * @return The colour of the ray.
+     */
+    public Color traceRay(final Ray ray) {
+        assert ray != null;
+
+        final double[] channels = new double[Color.CHANNELS];
+        traceRay(ray, channels, 0);
+        return Color.fromChannels(channels, 0);
+    }
+
+    /**
+     * Traces a ray through the scene into an array of channels.
+     *
+     * @param ray      The ray.
+     * @param channels The array, into which the colour of the ray is written.
+     * @param offset   The index of the red channel of the colour.
+     */
+    public void traceRay(final Ray ray, final double[] channels, final int offset) {
+        assert ray != null;
+
+        shade(ray, findIntersection(ray), channels, offset);
+    }
+
+    /**
+     * Finds the intersection of a ray in the scene.
+     *
+     * @param ray The ray.
+     * @return An intersection or an empty optional.
+     */
+    public Optional<Intersection> findIntersection(final Ray ray) {
+        assert ray != null;
+
+        return scene.findIntersection(ray);
+    }
+
+    /**
+     * Calculates the colour of a ray, whose intersection is already known. Only the shadow and reflexion rays are
+     * traced.
+     *
+     * @param ray                  The ray.
+     * @param optionalIntersection The intersection of the ray in the scene.
+     * @return The colour of the ray.
+     */
+    public Color shade(final Ray ray, final Optional<Intersection> optionalIntersection) {
+        final double[] channels = new double[Color.CHANNELS];
+        shade(ray, optionalIntersection, channels, 0);
+        return Color.fromChannels(channels, 0);
+    }
+
+    /**
+     * Calculates the colour of a ray, whose intersection is already known, into an array of channels. The reflexions
+     * are traced into the same channels, so no colour is created on the way.
+     *
+     * @param ray                  The ray.
+     * @param optionalIntersection The intersection of the ray in the scene.
+     * @param channels             The array, into which the colour of the ray is written.
+     * @param offset               The index of the red channel of the colour.
      */
-    public double traceRay(final Ray ray) {
+    public void shade(final Ray ray, final Optional<Intersection> optionalIntersection, final double[] channels,
+                      final int offset) {
         assert ray != null;
+        assert optionalIntersection != null;
+        assert channels != null;
 
-        final Optional<Intersection> optionalIntersection = scene.findIntersection(ray);
         final BooleanPromise isShadowed =
-                new BooleanPromise(() -> new Shadowed().calculate(scene, optionalIntersection) > 0);
-        final double brightness = Stream.of(new Ambient(),
-                new Diffuse(isShadowed),
-                new SpecularHighlight(isShadowed, ray),
-                new Reflexion(ray, this))
-                .map(lightModel -> lightModel.calculate(scene, optionalIntersection))
-                .mapToDouble(Double::doubleValue)
-                .sum();
-
-        // Light models mustn't return a negative value for the brightness.
-        assert brightness >= 0;
-        // If the brightness is bigger than 1, than normalize the result to one.
-        return brightness > 1 ? 1 : brightness;
+                new BooleanPromise(() -> new Shadowed(shadowCache).calculate(scene, optionalIntersection) > 0);
+
+        shadeLocally(ray, optionalIntersection, isShadowed, channels, offset);
+        final double localRed = channels[offset];
+        final double localGreen = channels[offset + 1];
+        final double localBlue = channels[offset + 2];
+
+        final Optional<Ray> mirroredRay = new Reflexion(ray, this).createMirroredRay(scene, optionalIntersection);
+        if (mirroredRay.isPresent()) {
+            traceRay(mirroredRay.get(), channels, offset);
+        } else {
+            Arrays.fill(channels, offset, offset + Color.CHANNELS, 0);
+        }
+        combine(localRed, localGreen, localBlue, channels, offset);
+    }
+
+    /**
+     * Calculates the colour of all light models except the reflexion into an array of channels.
+     *
+     * @param ray                  The ray.
+     * @param optionalIntersection The intersection of the ray in the scene.
+     * @param isShadowed           A promise, if the intersection is in the shadow.
+     * @param channels             The array, into which the sum of the light models is written.
+     * @param offset               The index of the red channel of the colour.
+     */
+    void shadeLocally(final Ray ray, final Optional<Intersection> optionalIntersection, final BooleanPromise isShadowed,
+                      final double[] channels, final int offset) {
+        if (!optionalIntersection.isPresent()) {
+            Arrays.fill(channels, offset, offset + Color.CHANNELS, 0);
+            return;
+        }
+
+        // With a cache, the diffuse light doesn't need its own shadow ray.
+        final LightModel diffuse = irradianceCache.isPresent()
+                ? new CachedDiffuse(irradianceCache.get())
+                : new Diffuse(isShadowed);
+
+        final double ambientIntensity = new Ambient().calculate(scene, optionalIntersection);
+        final double diffuseIntensity = diffuse.calculate(scene, optionalIntersection);
+        final double specularIntensity = new SpecularHighlight(isShadowed, ray).calculate(scene, optionalIntersection);
+
+        final MaterialTable materialTable = scene.getMaterialTable();
+        final int materialId = optionalIntersection.get().getIntersectedPrimitive().getSurface().getMaterialId();
+        final Color lightColor = scene.getLightColor();
+
+        // The surface colours ambient and diffuse light, the specular highlight has the colour of the light.
+        channels[offset] = materialTable.getRed(materialId) * (ambientIntensity + diffuseIntensity * lightColor.getRed())
+                + specularIntensity * lightColor.getRed();
+        channels[offset + 1] = materialTable.getGreen(materialId) * (ambientIntensity + diffuseIntensity * lightColor.getGreen())
+                + specularIntensity * lightColor.getGreen();
+        channels[offset + 2] = materialTable.getBlue(materialId) * (ambientIntensity + diffuseIntensity * lightColor.getBlue())
+                + specularIntensity * lightColor.getBlue();
+    }
+
+    /**
+     * Checks, if the shading of an intersection needs to know, whether the intersection is in the shadow.
+     *
+     * @param intersection The intersection.
+     * @return True, if a shadow ray has to be traced.
+     */
+    boolean needsShadowRay(final Intersection intersection) {
+        assert intersection != null;
+
+        if (!scene.getLight().isPresent()) {
+            return false;
+        }
+        // Without a cache the diffuse light always asks for the shadow, otherwise only the specular highlight does.
+        return !irradianceCache.isPresent()
+                || scene.getMaterialTable().getSpecularRatio(intersection.getIntersectedPrimitive().getSurface().getMaterialId()) != 0;
+    }
+
+    /**
+     * Combines the local colour with the colour of the reflexion.
+     *
+     * @param localRed   The red channel of all light models except the reflexion.
+     * @param localGreen The green channel of all light models except the reflexion.
+     * @param localBlue  The blue channel of all light models except the reflexion.
+     * @param channels   The array with the colour of the reflexion, which is replaced by a colour with all channels
+     *                   between 0 and 1.
+     * @param offset     The index of the red channel of the colour.
+     */
+    void combine(final double localRed, final double localGreen, final double localBlue, final double[] channels,
+                 final int offset) {
+        // If a channel is bigger than 1, than normalize it to one.
+        channels[offset] = Math.min(localRed + channels[offset], 1);
+        channels[offset + 1] = Math.min(localGreen + channels[offset + 1], 1);
+        channels[offset + 2] = Math.min(localBlue + channels[offset + 2], 1);
     }
 }
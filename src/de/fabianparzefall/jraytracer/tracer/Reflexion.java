@@ -1,22 +1,22 @@
 package de.fabianparzefall.jraytracer.tracer;
 
+import de.fabianparzefall.jraytracer.common.Color;
 import de.fabianparzefall.jraytracer.geometry.Point;
 import de.fabianparzefall.jraytracer.geometry.Ray;
 import de.fabianparzefall.jraytracer.geometry.Vector;
 import de.fabianparzefall.jraytracer.scene.Scene;
 import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
 import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
-import de.fabianparzefall.jraytracer.scene.primitive.Surface;
 
 import java.util.Optional;
 
 /**
- * Calculates reflexions.
+ * Calculates reflexions. Unlike the light models, a reflexion has the colour of the traced mirrored ray.
  *
  * @author Fabian Parzefall
- * @version 15-06-15
+ * @version 26-10-19
  */
-public class Reflexion implements LightModel {
+public class Reflexion {
     /**
      * This value is used, to stop reflection, if it ping pongs between two primitives.
      */
@@ -46,13 +46,36 @@ public class Reflexion implements LightModel {
         this.raytracer = raytracer;
     }
 
-    @Override
-    public double calculate(final Scene scene, final Optional<Intersection> optionalIntersection) {
+    /**
+     * Calculates the colour of the reflexion for the given (optional) intersection.
+     *
+     * @param scene                The scene to work with.
+     * @param optionalIntersection The optional intersection of the primary ray.
+     * @return The colour of the mirrored ray.
+     */
+    public Color calculate(final Scene scene, final Optional<Intersection> optionalIntersection) {
+        // Trace the new ray.
+        return createMirroredRay(scene, optionalIntersection).map(raytracer::traceRay).orElse(Color.BLACK);
+    }
+
+    /**
+     * Creates the mirrored ray at the intersection.
+     *
+     * @param scene                The scene to work with.
+     * @param optionalIntersection The optional intersection of the primary ray.
+     * @return The mirrored ray or an empty optional, if there is no intersection, the weight of the mirrored ray is
+     * too low or the maximum reflexion depth is reached.
+     */
+    Optional<Ray> createMirroredRay(final Scene scene, final Optional<Intersection> optionalIntersection) {
         assert scene != null;
         assert optionalIntersection != null;
 
         if (!optionalIntersection.isPresent()) {
-            return 0;
+            return Optional.empty();
+        }
+        // A raytracer with lower quality stops the reflexions early.
+        if (primaryRay.getDepth() >= raytracer.getMaximumReflexionDepth()) {
+            return Optional.empty();
         }
 
         // Remark: this isn't necessarily the primary intersection, because the ray could also be a reflected one. But
@@ -65,15 +88,20 @@ public class Reflexion implements LightModel {
         // Mirror the vector at the intersection point.
         final Vector mirroredVector = primaryRay.getDirection().mirror(intersectedPrimitive.getNormal(intersectionPoint));
 
+        // The footprint of the ray continues at the intersection and curved surfaces widen it.
+        final double footprint = primaryRay.getFootprint(primaryIntersection.getDistance());
+        final double spread = primaryRay.getSpread() + 2 * footprint * intersectedPrimitive.getCurvature();
+
         // Create the new mirrored ray and reduce it's weight by multiplying it with the reflexion ratio.
-        final Ray newMirroredRay = new Ray(intersectionPoint, mirroredVector, primaryRay.getWeight() * intersectedPrimitive.getSurface().get(Surface.Property.ReflexionRatio));
+        final Ray newMirroredRay = new Ray(intersectionPoint, mirroredVector,
+                primaryRay.getWeight() * scene.getMaterialTable().getReflexionRatio(intersectedPrimitive.getSurface().getMaterialId()),
+                footprint, spread, primaryRay.getDepth() + 1);
 
         // If the new ray is below a specific weight, it will be treated as 0.
         if (newMirroredRay.getWeight() < REFLEXION_WEIGHT_STOP) {
-            return 0;
+            return Optional.empty();
         }
 
-        // Trace the new ray.
-        return raytracer.traceRay(newMirroredRay);
+        return Optional.of(newMirroredRay);
     }
 }
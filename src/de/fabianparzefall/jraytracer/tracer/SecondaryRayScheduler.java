@@ -0,0 +1,324 @@
+package de.fabianparzefall.jraytracer.tracer;
+
+import de.fabianparzefall.jraytracer.common.BooleanPromise;
+import de.fabianparzefall.jraytracer.common.Color;
+import de.fabianparzefall.jraytracer.common.Morton;
+import de.fabianparzefall.jraytracer.geometry.Point;
+import de.fabianparzefall.jraytracer.geometry.Ray;
+import de.fabianparzefall.jraytracer.geometry.Vector;
+import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traces a batch of rays wave by wave and sorts the secondary rays of every wave for coherence.
+ * <p>
+ * Shadow and reflexion rays start at scattered points and run into scattered directions. Before they are traced, this
+ * scheduler sorts them by the octant of their direction and the Morton code of their start point, so consecutive rays
+ * visit the same parts of the scene. The result is the same as tracing every ray with {@link Raytracer#traceRay}.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class SecondaryRayScheduler {
+    /**
+     * The count of bits in a sort key, which hold the index of the ray.
+     */
+    private static final int INDEX_BITS = 31;
+
+    /**
+     * The count of bits of the Morton code in a coherence key.
+     */
+    private static final int MORTON_BITS = 3 * Morton.BITS_3D;
+
+    /**
+     * The raytracer, which traces the rays.
+     */
+    private final Raytracer raytracer;
+
+    /**
+     * The shadow model, which traces the shadow rays.
+     */
+    private final Shadowed shadowed;
+
+    /**
+     * The count of traced shadow rays.
+     */
+    private final LongAdder shadowRayCount = new LongAdder();
+
+    /**
+     * The count of traced reflexion rays.
+     */
+    private final LongAdder reflexionRayCount = new LongAdder();
+
+    /**
+     * The sum of the distances between the coherence keys of consecutive secondary rays before sorting.
+     */
+    private final LongAdder unsortedDistance = new LongAdder();
+
+    /**
+     * The sum of the distances between the coherence keys of consecutive secondary rays after sorting.
+     */
+    private final LongAdder sortedDistance = new LongAdder();
+
+    /**
+     * The time in nanoseconds spent on sorting.
+     */
+    private final LongAdder sortTime = new LongAdder();
+
+    /**
+     * The time in nanoseconds spent on finding the intersections of the sorted secondary rays.
+     */
+    private final LongAdder traceTime = new LongAdder();
+
+    /**
+     * Constructs the scheduler for a raytracer.
+     *
+     * @param raytracer The raytracer.
+     */
+    public SecondaryRayScheduler(final Raytracer raytracer) {
+        assert raytracer != null;
+
+        this.raytracer = raytracer;
+        shadowed = new Shadowed(raytracer.getShadowCache());
+    }
+
+    public long getShadowRayCount() {
+        return shadowRayCount.sum();
+    }
+
+    public long getReflexionRayCount() {
+        return reflexionRayCount.sum();
+    }
+
+    public long getSortTime() {
+        return sortTime.sum();
+    }
+
+    public long getTraceTime() {
+        return traceTime.sum();
+    }
+
+    /**
+     * Gets the factor, by which sorting reduced the distance between the coherence keys of consecutive secondary rays.
+     * The keys consist of direction octant and Morton code of the start point. This only shows, how much the order of
+     * the rays changed, not how much faster they are traced; for that, compare the trace time or the throughput with
+     * a render without this scheduler.
+     *
+     * @return The factor or 1, if nothing was sorted yet.
+     */
+    public double getKeyDistanceReduction() {
+        final long sorted = sortedDistance.sum();
+        return sorted == 0 ? 1 : (double) unsortedDistance.sum() / sorted;
+    }
+
+    /**
+     * Traces a batch of rays.
+     *
+     * @param rays The rays, for example the primary rays of a tile.
+     * @return The channels of the colour of every ray, {@link Color#CHANNELS} per ray in the order of the rays.
+     */
+    public double[] trace(final Ray[] rays) {
+        assert rays != null;
+
+        return traceWave(rays, false);
+    }
+
+    /**
+     * Traces a wave of rays.
+     *
+     * @param rays      The rays of the wave.
+     * @param secondary True, if the rays are reflexion rays.
+     * @return The channels of the colour of every ray.
+     */
+    private double[] traceWave(final Ray[] rays, final boolean secondary) {
+        final int rayCount = rays.length;
+        final List<Optional<Intersection>> intersections = new ArrayList<>(rayCount);
+
+        final long start = System.nanoTime();
+        for (final Ray ray : rays) {
+            intersections.add(raytracer.findIntersection(ray));
+        }
+        if (secondary) {
+            traceTime.add(System.nanoTime() - start);
+        }
+
+        final boolean[] shadows = traceShadowRays(intersections);
+
+        // Shade locally and collect the reflexion rays of the next wave.
+        final double[] localChannels = new double[rayCount * Color.CHANNELS];
+        final int[] reflexionIndices = new int[rayCount];
+        final List<Ray> mirroredRays = new ArrayList<>();
+        for (int index = 0; index < rayCount; index++) {
+            final boolean isShadowed = shadows[index];
+            raytracer.shadeLocally(rays[index], intersections.get(index), new BooleanPromise(() -> isShadowed),
+                    localChannels, index * Color.CHANNELS);
+
+            final Optional<Ray> mirroredRay = new Reflexion(rays[index], raytracer)
+                    .createMirroredRay(raytracer.getScene(), intersections.get(index));
+            reflexionIndices[index] = mirroredRay.isPresent() ? mirroredRays.size() : -1;
+            mirroredRay.ifPresent(mirroredRays::add);
+        }
+
+        final double[] reflexionChannels = traceReflexionRays(mirroredRays);
+
+        // The reflexions are combined into the channels of the reflexion, so the local channels are reused for them.
+        for (int index = 0; index < rayCount; index++) {
+            final int offset = index * Color.CHANNELS;
+            final double localRed = localChannels[offset];
+            final double localGreen = localChannels[offset + 1];
+            final double localBlue = localChannels[offset + 2];
+            if (reflexionIndices[index] < 0) {
+                Arrays.fill(localChannels, offset, offset + Color.CHANNELS, 0);
+            } else {
+                System.arraycopy(reflexionChannels, reflexionIndices[index] * Color.CHANNELS, localChannels, offset,
+                        Color.CHANNELS);
+            }
+            raytracer.combine(localRed, localGreen, localBlue, localChannels, offset);
+        }
+        return localChannels;
+    }
+
+    /**
+     * Sorts and traces the shadow rays of a wave.
+     *
+     * @param intersections The intersections of the wave.
+     * @return For every intersection, if it is in the shadow.
+     */
+    private boolean[] traceShadowRays(final List<Optional<Intersection>> intersections) {
+        final List<Ray> lightRays = new ArrayList<>();
+        final List<Integer> lightRayIndices = new ArrayList<>();
+        for (int index = 0; index < intersections.size(); index++) {
+            final Optional<Intersection> intersection = intersections.get(index);
+            if (intersection.isPresent() && raytracer.needsShadowRay(intersection.get())) {
+                lightRays.add(Shadowed.createLightRay(raytracer.getScene(), intersection.get()));
+                lightRayIndices.add(index);
+            }
+        }
+
+        final boolean[] shadows = new boolean[intersections.size()];
+        final int[] order = sort(lightRays);
+
+        final long start = System.nanoTime();
+        for (final int index : order) {
+            shadows[lightRayIndices.get(index)] = shadowed.isBlocked(raytracer.getScene(), lightRays.get(index));
+        }
+        traceTime.add(System.nanoTime() - start);
+        shadowRayCount.add(order.length);
+
+        return shadows;
+    }
+
+    /**
+     * Sorts and traces the reflexion rays of a wave. The next wave is traced recursively.
+     *
+     * @param mirroredRays The reflexion rays.
+     * @return The channels of the colour of every reflexion ray.
+     */
+    private double[] traceReflexionRays(final List<Ray> mirroredRays) {
+        if (mirroredRays.isEmpty()) {
+            return new double[0];
+        }
+
+        final int[] order = sort(mirroredRays);
+        final Ray[] sortedRays = new Ray[order.length];
+        for (int position = 0; position < order.length; position++) {
+            sortedRays[position] = mirroredRays.get(order[position]);
+        }
+        reflexionRayCount.add(order.length);
+
+        final double[] sortedChannels = traceWave(sortedRays, true);
+
+        final double[] channels = new double[sortedChannels.length];
+        for (int position = 0; position < order.length; position++) {
+            System.arraycopy(sortedChannels, position * Color.CHANNELS, channels, order[position] * Color.CHANNELS,
+                    Color.CHANNELS);
+        }
+        return channels;
+    }
+
+    /**
+     * Sorts rays by the octant of their direction and the Morton code of their start point.
+     *
+     * @param rays The rays.
+     * @return The indices of the rays in sorted order.
+     */
+    private int[] sort(final List<Ray> rays) {
+        final long start = System.nanoTime();
+
+        // The bounding box of the start points gives the range of the Morton codes.
+        final double[] minimum = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        final double[] maximum = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (final Ray ray : rays) {
+            final Point startPoint = ray.getStartPoint();
+            minimum[0] = Math.min(minimum[0], startPoint.getX());
+            minimum[1] = Math.min(minimum[1], startPoint.getY());
+            minimum[2] = Math.min(minimum[2], startPoint.getZ());
+            maximum[0] = Math.max(maximum[0], startPoint.getX());
+            maximum[1] = Math.max(maximum[1], startPoint.getY());
+            maximum[2] = Math.max(maximum[2], startPoint.getZ());
+        }
+
+        final long[] keys = new long[rays.size()];
+        for (int index = 0; index < keys.length; index++) {
+            keys[index] = calculateKey(rays.get(index), minimum, maximum) << INDEX_BITS | index;
+        }
+        unsortedDistance.add(calculateDistance(keys));
+
+        Arrays.sort(keys);
+        sortedDistance.add(calculateDistance(keys));
+
+        final int[] order = new int[keys.length];
+        for (int position = 0; position < keys.length; position++) {
+            order[position] = (int) (keys[position] & (1L << INDEX_BITS) - 1);
+        }
+
+        sortTime.add(System.nanoTime() - start);
+        return order;
+    }
+
+    /**
+     * Calculates the coherence key of a ray.
+     *
+     * @param ray     The ray.
+     * @param minimum The minimum corner of the bounding box of all start points.
+     * @param maximum The maximum corner of the bounding box of all start points.
+     * @return A key with the direction octant in the upper and the Morton code of the start point in the lower bits.
+     */
+    private static long calculateKey(final Ray ray, final double[] minimum, final double[] maximum) {
+        final Vector direction = ray.getDirection();
+        final int octant = (direction.getX() < 0 ? 4 : 0) | (direction.getY() < 0 ? 2 : 0) | (direction.getZ() < 0 ? 1 : 0);
+
+        final Point startPoint = ray.getStartPoint();
+        final int mortonCode = Morton.encode(
+                Morton.quantize(startPoint.getX(), minimum[0], maximum[0]),
+                Morton.quantize(startPoint.getY(), minimum[1], maximum[1]),
+                Morton.quantize(startPoint.getZ(), minimum[2], maximum[2]));
+
+        return (long) octant << MORTON_BITS | mortonCode;
+    }
+
+    /**
+     * Sums up the distances between the coherence keys of consecutive rays.
+     *
+     * @param keys The sort keys of the rays.
+     * @return The sum of the distances.
+     */
+    private static long calculateDistance(final long[] keys) {
+        long distance = 0;
+        for (int index = 1; index < keys.length; index++) {
+            distance += Math.abs((keys[index] >>> INDEX_BITS) - (keys[index - 1] >>> INDEX_BITS));
+        }
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SecondaryRayScheduler{shadowRayCount=%d, reflexionRayCount=%d, keyDistanceReduction=%.2f, sortTime=%dms, traceTime=%dms}",
+                getShadowRayCount(), getReflexionRayCount(), getKeyDistanceReduction(), getSortTime() / 1000000, getTraceTime() / 1000000);
+    }
+}
@@ -0,0 +1,87 @@
+package de.fabianparzefall.jraytracer.tracer;
+
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers for every render thread the primitive, which blocked the last shadow ray.
+ * <p>
+ * Neighbouring shadow rays towards the same light are usually blocked by the same primitive, so testing this primitive
+ * first often saves the search through the whole scene.
+ *
+ * @author Fabian Parzefall
+ * @version 26-10-19
+ */
+public class ShadowCache {
+    /**
+     * The last occluder of the current thread.
+     */
+    private final ThreadLocal<Primitive> lastOccluder = new ThreadLocal<>();
+
+    /**
+     * The count of shadow rays, which looked up the cache.
+     */
+    private final LongAdder lookupCount = new LongAdder();
+
+    /**
+     * The count of shadow rays, which were blocked by the cached primitive.
+     */
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * Gets the primitive, which blocked the last shadow ray of the current thread.
+     *
+     * @return The primitive or an empty optional, if the thread didn't find an occluder yet.
+     */
+    Optional<Primitive> getLastOccluder() {
+        return Optional.ofNullable(lastOccluder.get());
+    }
+
+    /**
+     * Sets the primitive, which blocked the last shadow ray of the current thread.
+     *
+     * @param occluder The primitive.
+     */
+    void setLastOccluder(final Primitive occluder) {
+        assert occluder != null;
+
+        lastOccluder.set(occluder);
+    }
+
+    /**
+     * Records a lookup of the cache.
+     *
+     * @param hit True, if the cached primitive blocked the shadow ray.
+     */
+    void recordLookup(final boolean hit) {
+        lookupCount.increment();
+        if (hit) {
+            hitCount.increment();
+        }
+    }
+
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the ratio of shadow rays, which were blocked by the cached primitive.
+     *
+     * @return A value between 0 and 1 or 0, if there weren't any lookups yet.
+     */
+    public double getHitRate() {
+        final long lookups = getLookupCount();
+        return lookups == 0 ? 0 : (double) getHitCount() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ShadowCache{lookupCount=%d, hitCount=%d, hitRate=%.3f}", getLookupCount(), getHitCount(), getHitRate());
+    }
+}
@@ -5,6 +5,7 @@ import de.fabianparzefall.jraytracer.geometry.Ray;
 import de.fabianparzefall.jraytracer.geometry.Vector;
 import de.fabianparzefall.jraytracer.scene.Scene;
 import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
+import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
 
 import java.util.Optional;
 
@@ -12,9 +13,25 @@ import java.util.Optional;
  * Calculates shadows.
  *
  * @author Fabian Parzefall
- * @version 15-06-15
+ * @version 26-10-19
  */
 public class Shadowed implements LightModel {
+    /**
+     * The cache with the last occluders.
+     */
+    private final ShadowCache shadowCache;
+
+    /**
+     * Constructs the Shadowed model.
+     *
+     * @param shadowCache The cache with the last occluders.
+     */
+    public Shadowed(final ShadowCache shadowCache) {
+        assert shadowCache != null;
+
+        this.shadowCache = shadowCache;
+    }
+
     @Override
     public double calculate(final Scene scene, final Optional<Intersection> optionalIntersection) {
         assert scene != null;
@@ -26,17 +43,72 @@ public class Shadowed implements LightModel {
             return 0;
         }
 
-        final Intersection primaryIntersection = optionalIntersection.get();
-        final Point intersectionPoint = primaryIntersection.getIntersectionPoint();
+        return isBlocked(scene, createLightRay(scene, optionalIntersection.get())) ? 1 : 0;
+    }
 
-        // A ray to the light.
-        final Vector lightVector = intersectionPoint.vectorTo(scene.getLight().get());
-        final Ray lightRay = new Ray(intersectionPoint, lightVector);
+    /**
+     * Creates the ray from an intersection to the light of the scene.
+     *
+     * @param scene        The scene, which must have a light.
+     * @param intersection The intersection.
+     * @return A ray to the light.
+     */
+    static Ray createLightRay(final Scene scene, final Intersection intersection) {
+        assert scene != null;
+        assert intersection != null;
+
+        final Point intersectionPoint = intersection.getIntersectionPoint();
+        return new Ray(intersectionPoint, intersectionPoint.vectorTo(scene.getLight().get()));
+    }
+
+    /**
+     * Checks, if a primitive blocks the ray to the light.
+     *
+     * @param scene    The scene, which must have a light.
+     * @param lightRay A ray from an intersection to the light.
+     * @return True, if the start point of the ray is in the shadow.
+     */
+    boolean isBlocked(final Scene scene, final Ray lightRay) {
+        assert scene != null;
+        assert lightRay != null;
+
+        final Vector lightVector = lightRay.getStartPoint().vectorTo(scene.getLight().get());
+
+        // Try the primitive, which blocked the last shadow ray of this thread, before searching the whole scene.
+        final Optional<Primitive> lastOccluder = shadowCache.getLastOccluder();
+        if (lastOccluder.isPresent()) {
+            final boolean hit = isOccluding(lastOccluder.get(), lightRay, lightVector.getLength());
+            shadowCache.recordLookup(hit);
+            if (hit) {
+                return true;
+            }
+        }
 
         // Is there a primitive between the intersection and the intersection?
         final Optional<Intersection> secondaryIntersection = scene.findIntersection(lightRay);
         // If the distance is greater than the length of the light vector, it means, that intersection is behind the
         // lightsource, therefor irrelevant and no shadow.
-        return secondaryIntersection.map(intersection -> intersection.getDistance() < lightVector.getLength() ? 1 : 0).orElse(0);
+        if (secondaryIntersection.isPresent() && secondaryIntersection.get().getDistance() < lightVector.getLength()) {
+            shadowCache.setLastOccluder(secondaryIntersection.get().getIntersectedPrimitive());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks, if a primitive lies between the start point of the light ray and the light.
+     *
+     * @param primitive     The primitive to test.
+     * @param lightRay      The ray to the light.
+     * @param lightDistance The distance between the start point of the ray and the light.
+     * @return True, if the primitive blocks the light.
+     */
+    private boolean isOccluding(final Primitive primitive, final Ray lightRay, final double lightDistance) {
+        for (final Intersection intersection : primitive.intersections(lightRay)) {
+            if (intersection.getDistance() > Scene.MINIMUM_DISTANCE && intersection.getDistance() < lightDistance) {
+                return true;
+            }
+        }
+        return false;
     }
 }
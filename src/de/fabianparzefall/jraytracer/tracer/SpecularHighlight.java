@@ -7,7 +7,7 @@ import de.fabianparzefall.jraytracer.geometry.Vector;
 import de.fabianparzefall.jraytracer.scene.Scene;
 import de.fabianparzefall.jraytracer.scene.primitive.Intersection;
 import de.fabianparzefall.jraytracer.scene.primitive.Primitive;
-import de.fabianparzefall.jraytracer.scene.primitive.Surface;
+import de.fabianparzefall.jraytracer.scene.primitive.MaterialTable;
 
 import java.util.Optional;
 
@@ -15,7 +15,7 @@ import java.util.Optional;
  * Calculates specular highlights.
  *
  * @author Fabian Parzefall
- * @version 15-03-15
+ * @version 26-10-19
  */
 public class SpecularHighlight implements LightModel {
     /**
@@ -44,17 +44,23 @@ public class SpecularHighlight implements LightModel {
         assert scene != null;
         assert optionalIntersection != null;
 
-        // No intersection, no light or shadow -> no specular highlight.
-        if (!optionalIntersection.isPresent() || !scene.getLight().isPresent() || isShadowed.get()) {
+        // No intersection or no light -> no specular highlight.
+        if (!optionalIntersection.isPresent() || !scene.getLight().isPresent()) {
             return 0;
         }
 
         final Intersection primaryIntersection = optionalIntersection.get();
         final Primitive intersectedPrimitive = primaryIntersection.getIntersectedPrimitive();
-        final double specularRatio = intersectedPrimitive.getSurface().get(Surface.Property.SpecularRatio);
+        final MaterialTable materialTable = scene.getMaterialTable();
+        final int materialId = intersectedPrimitive.getSurface().getMaterialId();
 
         // No specular ratio - no reason no continue.
-        if (specularRatio == 0) {
+        if (materialTable.getSpecularRatio(materialId) == 0) {
+            return 0;
+        }
+
+        // The shadow is only tested after the ratio, so surfaces without specular highlights don't need a shadow ray.
+        if (isShadowed.get()) {
             return 0;
         }
 
@@ -69,7 +75,6 @@ public class SpecularHighlight implements LightModel {
         }
 
         // Calculate the brightness according to the formula.
-        return intersectedPrimitive.getSurface().get(Surface.Property.SpecularRatio)
-                * Math.pow(specularValue, intersectedPrimitive.getSurface().get(Surface.Property.SpecularExponent));
+        return materialTable.calculateSpecular(materialId, specularValue);
     }
 }